@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.common;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.ApiDateTimeXmlAdapter;
+
+/**
+ * JMH benchmarks for parsing and formatting date/times in the format used by the reporting APIs.
+ * <p>
+ * Compares {@link ApiDateTimeFormatter} and {@link ApiDateTimeXmlAdapter} with the implementations they replaced - a
+ * {@link SimpleDateFormat} cached per thread, as previously used by {@link ApiDateTimeFormatter}, and JAXB's
+ * {@link DatatypeConverter}, as previously used to unmarshal the date/time fields of API resources. Run with the GC
+ * profiler (as {@link #main} does) to report the bytes allocated per operation as well as the time taken.
+ * 
+ * @author Neil Brown
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiDateTimeParsingBenchmark {
+
+  private static final String DATE_TIME = "2014-04-30T21:32:21Z";
+
+  private static final ThreadLocal<DateFormat> THREAD_LOCAL_DATE_TIME_FORMAT = new ThreadLocal<DateFormat>() {
+    @Override
+    protected DateFormat initialValue() {
+      DateFormat df = new SimpleDateFormat(ApiDateTimeFormatter.API_DATE_TIME_PATTERN);
+      df.setTimeZone(TimeZone.getTimeZone("UTC"));
+      return df;
+    }
+  };
+
+  private final ApiDateTimeFormatter apiDateTimeFormatter = new ApiDateTimeFormatter();
+  private final ApiDateTimeXmlAdapter apiDateTimeXmlAdapter = new ApiDateTimeXmlAdapter();
+  private final Date date = this.apiDateTimeFormatter.parse(DATE_TIME);
+
+  /**
+   * @return The date parsed using a {@link SimpleDateFormat} cached per thread.
+   * @throws ParseException If an error occurs parsing.
+   */
+  @Benchmark
+  public Date simpleDateFormatParse() throws ParseException {
+    return THREAD_LOCAL_DATE_TIME_FORMAT.get().parse(DATE_TIME);
+  }
+
+  /**
+   * @return The date parsed using {@link DatatypeConverter}.
+   */
+  @Benchmark
+  public Date datatypeConverterParse() {
+    return DatatypeConverter.parseDateTime(DATE_TIME).getTime();
+  }
+
+  /**
+   * @return The date parsed using {@link ApiDateTimeFormatter#parse(String)}.
+   */
+  @Benchmark
+  public Date apiDateTimeFormatterParse() {
+    return this.apiDateTimeFormatter.parse(DATE_TIME);
+  }
+
+  /**
+   * @return The no. of millis since the epoch parsed using {@link ApiDateTimeFormatter#parseToEpochMillis(String)}.
+   */
+  @Benchmark
+  public long apiDateTimeFormatterParseToEpochMillis() {
+    return this.apiDateTimeFormatter.parseToEpochMillis(DATE_TIME);
+  }
+
+  /**
+   * @return The date unmarshalled using {@link ApiDateTimeXmlAdapter#unmarshal(String)}.
+   */
+  @Benchmark
+  public Date apiDateTimeXmlAdapterUnmarshal() {
+    return this.apiDateTimeXmlAdapter.unmarshal(DATE_TIME);
+  }
+
+  /**
+   * @return The date formatted using a {@link SimpleDateFormat} cached per thread.
+   */
+  @Benchmark
+  public String simpleDateFormatFormat() {
+    return THREAD_LOCAL_DATE_TIME_FORMAT.get().format(this.date);
+  }
+
+  /**
+   * @return The date formatted using {@link ApiDateTimeFormatter#formatAsDateTime(Date)}.
+   */
+  @Benchmark
+  public String apiDateTimeFormatterFormat() {
+    return this.apiDateTimeFormatter.formatAsDateTime(this.date);
+  }
+
+  /**
+   * Runs the benchmarks in this class, with the GC profiler enabled.
+   * 
+   * @param args Not used.
+   * @throws RunnerException If an error occurs running the benchmarks.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ApiDateTimeParsingBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks comparing unmarshalling integer strings using {@link IntegerXmlAdapter} with the implementation it
+ * replaced - {@link Integer#parseInt(String)}, boxed using {@link Integer#valueOf(int)} - for a range of values, from
+ * one within the range of the JDK's Integer cache, to a typical resource id. Run with the GC profiler (as
+ * {@link #main} does) to report the bytes allocated per operation as well as the time taken.
+ * 
+ * @author Neil Brown
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntegerXmlAdapterBenchmark {
+
+  /** The integer string to be unmarshalled. */
+  @Param({ "42", "2395", "123456" })
+  private String value;
+
+  private final IntegerXmlAdapter integerXmlAdapter = new IntegerXmlAdapter();
+
+  /**
+   * @return The Integer parsed using {@link Integer#parseInt(String)}.
+   */
+  @Benchmark
+  public Integer integerParseInt() {
+    return Integer.valueOf(Integer.parseInt(this.value));
+  }
+
+  /**
+   * @return The Integer unmarshalled using {@link IntegerXmlAdapter}.
+   * @throws Exception If an error occurs unmarshalling.
+   */
+  @Benchmark
+  public Integer integerXmlAdapterUnmarshal() throws Exception {
+    return this.integerXmlAdapter.unmarshal(this.value);
+  }
+
+  /**
+   * Runs the benchmarks in this class, with the GC profiler enabled.
+   * 
+   * @param args Not used.
+   * @throws RunnerException If an error occurs running the benchmarks.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(IntegerXmlAdapterBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.oxm.Unmarshaller;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.ApiResourceJaxbContext;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelResource;
+
+/**
+ * JMH benchmarks for the time taken to create the JAXB context used to unmarshal API resources, in a new JVM, as
+ * happens on the startup of every application which uses the API client.
+ * <p>
+ * Each benchmark is run once per forked JVM (single shot), with no warm-up, so that it measures the cold start cost,
+ * including class loading. The benchmarks compare -
+ * <ul>
+ * <li>{@link #scanPackages()} - Creating the context from the classes found by scanning the classpath for those in the
+ * resource package annotated with {@link javax.xml.bind.annotation.XmlRootElement}, as the API client previously
+ * did.</li>
+ * <li>{@link #explicitClasses()} - Creating the context from the explicit list of
+ * {@link ApiResourceJaxbContext#RESOURCE_CLASSES}.</li>
+ * <li>{@link #appConfigFirstUnmarshal()} - Creating the Spring application context declared by {@link AppConfig},
+ * and then unmarshalling a resource, which includes waiting for the JAXB context to be created in the background.</li>
+ * </ul>
+ * 
+ * @author Neil Brown
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class JaxbContextStartupBenchmark {
+
+  private static final byte[] CHANNELS = "<channels/>".getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * @return The JAXB context created from the classes found by scanning the resource package.
+   */
+  @Benchmark
+  public JAXBContext scanPackages() {
+    Jaxb2Marshaller jaxb2Marshaller = new Jaxb2Marshaller();
+    jaxb2Marshaller.setPackagesToScan(new String[] { ChannelResource.class.getPackage().getName() });
+    return jaxb2Marshaller.getJaxbContext();
+  }
+
+  /**
+   * @return The JAXB context created from the explicit list of resource classes.
+   * @throws JAXBException If an error occurs creating the context.
+   */
+  @Benchmark
+  public JAXBContext explicitClasses() throws JAXBException {
+    return JAXBContext.newInstance(ApiResourceJaxbContext.RESOURCE_CLASSES
+        .toArray(new Class<?>[ApiResourceJaxbContext.RESOURCE_CLASSES.size()]));
+  }
+
+  /**
+   * @return A resource unmarshalled using the marshaller created by the application context.
+   * @throws IOException If an error occurs unmarshalling.
+   */
+  @Benchmark
+  public Object appConfigFirstUnmarshal() throws IOException {
+    try (AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext(
+        AppConfig.class)) {
+      Unmarshaller unmarshaller = (Unmarshaller) applicationContext.getBean("marshaller");
+      return unmarshaller.unmarshal(new StreamSource(new ByteArrayInputStream(CHANNELS)));
+    }
+  }
+
+  /**
+   * Runs the benchmarks in this class.
+   * 
+   * @param args Not used.
+   * @throws RunnerException If an error occurs running the benchmarks.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JaxbContextStartupBenchmark.class.getSimpleName()).build()).run();
+  }
+}
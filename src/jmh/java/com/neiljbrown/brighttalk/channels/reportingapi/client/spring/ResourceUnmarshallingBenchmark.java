@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.oxm.Unmarshaller;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * JMH benchmarks for unmarshalling pages of API resources using the {@link org.springframework.oxm.Marshaller} created
+ * by {@link AppConfig#marshaller()}, as used by the API client. The marshaller is obtained from a Spring application
+ * context created from {@link AppConfig}, so that it's configured exactly as in production, using the default values
+ * of the configuration properties, e.g. for sharing webcasts.
+ * <p>
+ * Each benchmark unmarshalls a synthetic page of a different type of API resource, generated from the canned API
+ * responses used by the integration tests, for a range of page sizes. Run with the GC profiler (as {@link #main} does)
+ * to report the bytes allocated per operation as well as the throughput, e.g. to detect regressions caused by changes
+ * to the marshaller configuration or the JAXB annotations on the resource classes.
+ * 
+ * @author Neil Brown
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResourceUnmarshallingBenchmark {
+
+  private static final String CANNED_RESPONSE_PREFIX = "SpringApiClientImplTest.";
+
+  /** The no. of resources in each unmarshalled page. */
+  @Param({ "10", "100", "1000" })
+  private int pageSize;
+
+  private AnnotationConfigApplicationContext context;
+  private Unmarshaller unmarshaller;
+  private byte[] channelsPage;
+  private byte[] webcastsPage;
+  private byte[] webcastViewingsPage;
+  private byte[] surveyResponsesPage;
+
+  /**
+   * Creates the application context declaring the unmarshaller, and generates the pages of resources to be
+   * unmarshalled.
+   * 
+   * @throws IOException If an error occurs reading a canned API response.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    this.context = new AnnotationConfigApplicationContext(AppConfig.class);
+    this.unmarshaller = this.context.getBean(Unmarshaller.class);
+    this.channelsPage = SyntheticResourcePages.generate(
+        CANNED_RESPONSE_PREFIX + "getMyChannelsMultipleChannelsWithNextPage-response.xml", "channel", this.pageSize);
+    this.webcastsPage = SyntheticResourcePages.generate(
+        CANNED_RESPONSE_PREFIX + "getWebcastsForChannelWhenMultipleWebastsAndNextPage-response.xml", "webcast",
+        this.pageSize);
+    this.webcastViewingsPage = SyntheticResourcePages.generate(
+        CANNED_RESPONSE_PREFIX + "getWebcastViewingsForWebcastWhenMultipleViewingsAndNextPage-response.xml",
+        "webcastViewing", this.pageSize);
+    this.surveyResponsesPage = SyntheticResourcePages.generate(CANNED_RESPONSE_PREFIX
+        + "getSurveyResponsesWhenMultipleResponsesWithMultipleQuestionsAndAnswersAndNextPage-response.xml",
+        "surveyResponse", this.pageSize);
+    // Fail fast if a generated page doesn't unmarshall to the expected no. of resources
+    checkPageSize(this.unmarshalChannels().getChannels().size());
+    checkPageSize(this.unmarshalWebcasts().getWebcasts().size());
+    checkPageSize(this.unmarshalWebcastViewings().getWebcastViewings().size());
+    checkPageSize(this.unmarshalSurveyResponses().getSurveyResponses().size());
+  }
+
+  /**
+   * Closes the application context.
+   */
+  @TearDown
+  public void tearDown() {
+    this.context.close();
+  }
+
+  /**
+   * @return The unmarshalled page of channels.
+   * @throws IOException If an error occurs unmarshalling.
+   */
+  @Benchmark
+  public ChannelsResource unmarshalChannels() throws IOException {
+    return (ChannelsResource) this.unmarshal(this.channelsPage);
+  }
+
+  /**
+   * @return The unmarshalled page of webcasts.
+   * @throws IOException If an error occurs unmarshalling.
+   */
+  @Benchmark
+  public WebcastsResource unmarshalWebcasts() throws IOException {
+    return (WebcastsResource) this.unmarshal(this.webcastsPage);
+  }
+
+  /**
+   * @return The unmarshalled page of webcast viewings.
+   * @throws IOException If an error occurs unmarshalling.
+   */
+  @Benchmark
+  public WebcastViewingsResource unmarshalWebcastViewings() throws IOException {
+    return (WebcastViewingsResource) this.unmarshal(this.webcastViewingsPage);
+  }
+
+  /**
+   * @return The unmarshalled page of survey responses.
+   * @throws IOException If an error occurs unmarshalling.
+   */
+  @Benchmark
+  public SurveyResponsesResource unmarshalSurveyResponses() throws IOException {
+    return (SurveyResponsesResource) this.unmarshal(this.surveyResponsesPage);
+  }
+
+  /**
+   * Runs the benchmarks in this class, with the GC profiler enabled.
+   * 
+   * @param args Not used.
+   * @throws RunnerException If an error occurs running the benchmarks.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ResourceUnmarshallingBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+  private Object unmarshal(byte[] page) throws IOException {
+    return this.unmarshaller.unmarshal(new StreamSource(new ByteArrayInputStream(page)));
+  }
+
+  private void checkPageSize(int actualPageSize) {
+    if (actualPageSize != this.pageSize) {
+      throw new IllegalStateException("Generated page contains [" + actualPageSize + "] resources, expected ["
+          + this.pageSize + "].");
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Utility class for generating synthetic API responses containing pages of resources of a specified size, for use in
+ * benchmarks.
+ * <p>
+ * Pages are generated from the canned API responses used by the integration tests, by repeating the first resource in
+ * the canned page (with a unique ID) the required no. of times. The generated pages are therefore representative of
+ * real API responses, in terms of the elements and values they contain.
+ * 
+ * @author Neil Brown
+ */
+final class SyntheticResourcePages {
+
+  private SyntheticResourcePages() {
+  }
+
+  /**
+   * Generates a page of resources.
+   * 
+   * @param cannedResponseName The name of the canned API response, loaded relative to this class.
+   * @param resourceElementName The name of the XML element representing each resource in the page, e.g. "channel".
+   * @param pageSize The no. of resources to include in the generated page.
+   * @return The generated API response, as UTF-8 encoded bytes.
+   * @throws IOException If an error occurs reading the canned response.
+   */
+  static byte[] generate(String cannedResponseName, String resourceElementName, int pageSize) throws IOException {
+    String cannedResponse = load(cannedResponseName);
+    String startTag = "<" + resourceElementName + " ";
+    String endTag = "</" + resourceElementName + ">";
+    int resourceStart = cannedResponse.indexOf(startTag);
+    int resourceEnd = cannedResponse.indexOf(endTag, resourceStart) + endTag.length();
+    Preconditions.checkArgument(resourceStart != -1 && resourceEnd > resourceStart,
+        "Element [%s] not found in canned response [%s].", resourceElementName, cannedResponseName);
+    int lastResourceEnd = cannedResponse.lastIndexOf(endTag) + endTag.length();
+    String resource = cannedResponse.substring(resourceStart, resourceEnd);
+    int idStart = resource.indexOf("id=\"") + "id=\"".length();
+    int idEnd = resource.indexOf('"', idStart);
+
+    StringBuilder page = new StringBuilder(cannedResponse.length() + resource.length() * pageSize);
+    page.append(cannedResponse, 0, resourceStart);
+    for (int i = 1; i <= pageSize; i++) {
+      page.append(resource, 0, idStart).append(i).append(resource, idEnd, resource.length()).append('\n');
+    }
+    page.append(cannedResponse, lastResourceEnd, cannedResponse.length());
+    return page.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String load(String cannedResponseName) throws IOException {
+    try (InputStream in = SyntheticResourcePages.class.getResourceAsStream(cannedResponseName)) {
+      Preconditions.checkArgument(in != null, "Canned response [%s] not found.", cannedResponseName);
+      return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+    }
+  }
+}
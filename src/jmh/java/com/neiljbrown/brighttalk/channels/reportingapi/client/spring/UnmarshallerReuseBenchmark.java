@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.oxm.Unmarshaller;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.ApiResourceJaxbContext;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+
+/**
+ * JMH benchmarks comparing unmarshalling pages of API resources using a new JAXB unmarshaller and SAX parser for each
+ * page, as a standard {@link Jaxb2Marshaller} does, with reusing them from pools, as the
+ * {@link ApiResourceJaxb2Marshaller} created by {@link AppConfig#marshaller()} does.
+ * <p>
+ * Both marshallers are configured with the same validation event handler. The benefit of reuse is greatest for small
+ * pages, for which the cost of creating and configuring an unmarshaller and parser is a larger proportion of the
+ * total. Run with
+ * the GC profiler (as {@link #main} does) to report the bytes allocated per operation as well as the throughput.
+ * 
+ * @author Neil Brown
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UnmarshallerReuseBenchmark {
+
+  /** The no. of resources in each unmarshalled page. */
+  @Param({ "1", "10", "100" })
+  private int pageSize;
+
+  private Unmarshaller newUnmarshallerPerCallMarshaller;
+  private Unmarshaller pooledUnmarshallerMarshaller;
+  private byte[] webcastViewingsPage;
+
+  /**
+   * Creates the marshallers, and generates the page of resources to be unmarshalled.
+   * 
+   * @throws Exception If an error occurs creating a marshaller or reading a canned API response.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    AppConfig appConfig = new AppConfig();
+    Jaxb2Marshaller jaxb2Marshaller = new Jaxb2Marshaller();
+    jaxb2Marshaller.setClassesToBeBound(ApiResourceJaxbContext.RESOURCE_CLASSES
+        .toArray(new Class<?>[ApiResourceJaxbContext.RESOURCE_CLASSES.size()]));
+    jaxb2Marshaller.setValidationEventHandler(appConfig.validationEventHandler());
+    jaxb2Marshaller.afterPropertiesSet();
+    this.newUnmarshallerPerCallMarshaller = jaxb2Marshaller;
+    this.pooledUnmarshallerMarshaller = (Unmarshaller) appConfig.marshaller();
+    this.webcastViewingsPage = SyntheticResourcePages.generate(
+        "SpringApiClientImplTest.getWebcastViewingsForWebcastWhenMultipleViewingsAndNextPage-response.xml",
+        "webcastViewing", this.pageSize);
+    // Fail fast if the generated page doesn't unmarshall to the expected no. of resources
+    checkPageSize(this.newUnmarshallerPerCall().getWebcastViewings().size());
+    checkPageSize(this.pooledUnmarshaller().getWebcastViewings().size());
+  }
+
+  /**
+   * @return The page of webcast viewings, unmarshalled using a new unmarshaller.
+   * @throws IOException If an error occurs unmarshalling.
+   */
+  @Benchmark
+  public WebcastViewingsResource newUnmarshallerPerCall() throws IOException {
+    return unmarshal(this.newUnmarshallerPerCallMarshaller, this.webcastViewingsPage);
+  }
+
+  /**
+   * @return The page of webcast viewings, unmarshalled using an unmarshaller reused from a pool.
+   * @throws IOException If an error occurs unmarshalling.
+   */
+  @Benchmark
+  public WebcastViewingsResource pooledUnmarshaller() throws IOException {
+    return unmarshal(this.pooledUnmarshallerMarshaller, this.webcastViewingsPage);
+  }
+
+  /**
+   * Runs the benchmarks in this class, with the GC profiler enabled.
+   * 
+   * @param args Not used.
+   * @throws RunnerException If an error occurs running the benchmarks.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(UnmarshallerReuseBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+  private static WebcastViewingsResource unmarshal(Unmarshaller unmarshaller, byte[] page) throws IOException {
+    return (WebcastViewingsResource) unmarshaller.unmarshal(new StreamSource(new ByteArrayInputStream(page)));
+  }
+
+  private void checkPageSize(int actualPageSize) {
+    if (actualPageSize != this.pageSize) {
+      throw new IllegalStateException("Generated page contains [" + actualPageSize + "] resources, expected ["
+          + this.pageSize + "].");
+    }
+  }
+}
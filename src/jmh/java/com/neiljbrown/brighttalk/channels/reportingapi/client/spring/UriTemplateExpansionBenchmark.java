@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriTemplate;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.CompiledUriTemplate;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastViewingsRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+
+/**
+ * JMH benchmarks comparing the two ways the API client has built the URI of each API call -
+ * <ul>
+ * <li>Building the absolute URL template of the resource using a {@link UriComponentsBuilder} from the base URI and
+ * request parameters, and then parsing, expanding and encoding it using a Spring {@link UriTemplate}, as the
+ * {@link org.springframework.web.client.RestTemplate} does.</li>
+ * <li>Expanding a {@link CompiledUriTemplate}, compiled once on construction of the API client.</li>
+ * </ul>
+ * Each is benchmarked for a resource without request parameters (a webcast) and for a page of a resource collection
+ * with typical paging and filter request parameters (webcast viewings). Run with the GC profiler (as {@link #main}
+ * does) to report the bytes allocated per operation as well as the throughput.
+ * 
+ * @author Neil Brown
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UriTemplateExpansionBenchmark {
+
+  private static final URI BASE_URI = URI.create("https://api.brighttalk.com:443");
+  private static final int CHANNEL_ID = 1234;
+  private static final int WEBCAST_ID = 56789;
+  private static final String NEXT_PAGE_URL =
+      "https://api.brighttalk.com/v1/channel/1234/webcast_viewings?cursor=5-1376595689&pageSize=100";
+
+  private Map<String, List<String>> requestParams;
+  private CompiledUriTemplate webcastUriTemplate;
+  private CompiledUriTemplate webcastViewingsUriTemplate;
+
+  /**
+   * Compiles the URI templates, and creates the request parameters of a typical request for a page of viewings.
+   */
+  @Setup
+  public void setUp() {
+    PageCriteria pageCriteria = new PageCriteria(100, new Link(NEXT_PAGE_URL, "next"));
+    this.requestParams = new GetWebcastViewingsRequestParamsBuilder(new Date(1376595689000L), WebcastStatus.RECORDED,
+        pageCriteria).asMap();
+    this.webcastUriTemplate = new CompiledUriTemplate(BASE_URI, WebcastResource.RELATIVE_URI_TEMPLATE);
+    this.webcastViewingsUriTemplate =
+        new CompiledUriTemplate(BASE_URI, WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE);
+    // Fail fast if the two ways of building a URI differ
+    checkEqual(this.springWebcast(), this.compiledWebcast());
+    checkEqual(this.springWebcastViewings(), this.compiledWebcastViewings());
+  }
+
+  /**
+   * @return The URI of a webcast, built using Spring.
+   */
+  @Benchmark
+  public URI springWebcast() {
+    return expandUsingSpring(WebcastResource.RELATIVE_URI_TEMPLATE, null, CHANNEL_ID, WEBCAST_ID);
+  }
+
+  /**
+   * @return The URI of a webcast, built using a {@link CompiledUriTemplate}.
+   */
+  @Benchmark
+  public URI compiledWebcast() {
+    return this.webcastUriTemplate.expand(null, CHANNEL_ID, WEBCAST_ID);
+  }
+
+  /**
+   * @return The URI of a page of webcast viewings, built using Spring.
+   */
+  @Benchmark
+  public URI springWebcastViewings() {
+    return expandUsingSpring(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE, this.requestParams,
+        CHANNEL_ID);
+  }
+
+  /**
+   * @return The URI of a page of webcast viewings, built using a {@link CompiledUriTemplate}.
+   */
+  @Benchmark
+  public URI compiledWebcastViewings() {
+    return this.webcastViewingsUriTemplate.expand(this.requestParams, CHANNEL_ID);
+  }
+
+  /**
+   * Runs the benchmarks in this class, with the GC profiler enabled.
+   * 
+   * @param args Not used.
+   * @throws RunnerException If an error occurs running the benchmarks.
+   */
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(UriTemplateExpansionBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+  /**
+   * Builds a URI as the API client did before using {@link CompiledUriTemplate} - see
+   * {@link AbstractSpringApiClient#buildAbsoluteHttpUrl(String, Map)}.
+   */
+  private static URI expandUsingSpring(String relativeUriTemplate, Map<String, List<String>> requestParams,
+      Object... uriVariables) {
+    UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUri(BASE_URI).path(relativeUriTemplate);
+    if (requestParams != null) {
+      for (String paramName : requestParams.keySet()) {
+        for (String paramValue : requestParams.get(paramName)) {
+          uriBuilder.queryParam(paramName, paramValue);
+        }
+      }
+    }
+    return new UriTemplate(uriBuilder.build().toUriString()).expand(uriVariables);
+  }
+
+  private static void checkEqual(URI expected, URI actual) {
+    if (!expected.equals(actual)) {
+      throw new IllegalStateException("Expected URI [" + expected + "], but was [" + actual + "].");
+    }
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client;
+
+import java.util.Date;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveysResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * An asynchronous client for accessing the BrightTALK channel owner reporting API (version 1.x).
+ * <p>
+ * Supports the same operations as {@link ApiClient}, but rather than blocking the calling thread until the API call
+ * completes, each operation initiates the API call and immediately returns a {@link ListenableFuture} which completes
+ * when the API response has been received, allowing many API calls to be in progress concurrently without dedicating a
+ * thread to each.
+ * <p>
+ * If an API call fails, the returned future fails with the same exception that would've been thrown by the
+ * equivalent {@link ApiClient} operation, e.g. an {@link ApiErrorResponseException} for an error response returned by
+ * the API. When retrieved using {@link ListenableFuture#get()} the exception is the cause of the thrown
+ * {@link java.util.concurrent.ExecutionException}. Cancelling a returned future aborts the API call if it's still in
+ * progress.
+ * 
+ * @author Neil Brown
+ * @see ApiClient
+ */
+public interface AsyncApiClient {
+
+  /**
+   * Asynchronously retrieves the channels owned by the current API user.
+   * 
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link ChannelsResource}.
+   * @see ApiClient#getMyChannels(PageCriteria)
+   */
+  ListenableFuture<ChannelsResource> getMyChannels(PageCriteria pageCriteria);
+
+  /**
+   * Asynchronously retrieves the channels owned by an identified BrightTALK user.
+   * 
+   * @param userId The ID of the BrightTALK user.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link ChannelsResource}.
+   * @see ApiClient#getUserChannels(int, PageCriteria)
+   */
+  ListenableFuture<ChannelsResource> getUserChannels(int userId, PageCriteria pageCriteria);
+
+  /**
+   * Asynchronously retrieves the list of current and/or past subscribers to a channel owned by an API user.
+   * 
+   * @param channelId The ID of the channel.
+   * @param subscribed Optional subscription status filter.
+   * @param subscribedSince Optional subscribed since filter.
+   * @param unsubscribedSince Optional unsubscribed since filter.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link ChannelSubscribersResource}.
+   * @see ApiClient#getChannelSubscribers(int, Boolean, Date, Date, PageCriteria)
+   */
+  ListenableFuture<ChannelSubscribersResource> getChannelSubscribers(int channelId, Boolean subscribed,
+      Date subscribedSince, Date unsubscribedSince, PageCriteria pageCriteria);
+
+  /**
+   * Asynchronously retrieves a summary of per subscriber activity for webcasts in one of the channel owner's channels.
+   * 
+   * @param channelId The ID of the channel.
+   * @param since Optional since filter.
+   * @param expandChannelSurveyResponse Optional flag controlling whether to include channel survey responses.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link SubscribersWebcastActivityResource}.
+   * @see ApiClient#getSubscribersWebcastActivityForChannel(int, Date, Boolean, PageCriteria)
+   */
+  ListenableFuture<SubscribersWebcastActivityResource> getSubscribersWebcastActivityForChannel(int channelId,
+      Date since, Boolean expandChannelSurveyResponse, PageCriteria pageCriteria);
+
+  /**
+   * Asynchronously retrieves a summary of per subscriber activity for a specific webcast in one of the channel owner's
+   * channels.
+   * 
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @param since Optional since filter.
+   * @param expandChannelSurveyResponse Optional flag controlling whether to include channel survey responses.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link SubscribersWebcastActivityResource}.
+   * @see ApiClient#getSubscribersWebcastActivityForWebcast(int, int, Date, Boolean, PageCriteria)
+   */
+  ListenableFuture<SubscribersWebcastActivityResource> getSubscribersWebcastActivityForWebcast(int channelId,
+      int webcastId, Date since, Boolean expandChannelSurveyResponse, PageCriteria pageCriteria);
+
+  /**
+   * Asynchronously retrieves the survey (definitions) for a channel owned by the current user.
+   * 
+   * @param channelId The ID of the channel.
+   * @return A {@link ListenableFuture} for the {@link SurveysResource}.
+   * @see ApiClient#getSurveysForChannel(int)
+   */
+  ListenableFuture<SurveysResource> getSurveysForChannel(int channelId);
+
+  /**
+   * Asynchronously retrieves an identified survey (definition) owned by the current user.
+   * 
+   * @param surveyId The ID of the survey.
+   * @return A {@link ListenableFuture} for the {@link SurveyResource}.
+   * @see ApiClient#getSurvey(int)
+   */
+  ListenableFuture<SurveyResource> getSurvey(int surveyId);
+
+  /**
+   * Asynchronously retrieves the responses to an identified survey owned by the current user.
+   * 
+   * @param surveyId The ID of the survey.
+   * @param since Optional since filter.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link SurveyResponsesResource}.
+   * @see ApiClient#getSurveyResponses(int, Date, PageCriteria)
+   */
+  ListenableFuture<SurveyResponsesResource> getSurveyResponses(int surveyId, Date since, PageCriteria pageCriteria);
+
+  /**
+   * Asynchronously retrieves the webcasts in an identified channel owned by the current user.
+   * 
+   * @param channelId The ID of the channel.
+   * @param since Optional since filter.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link WebcastsResource}.
+   * @see ApiClient#getWebcastsForChannel(int, Date, PageCriteria)
+   */
+  ListenableFuture<WebcastsResource> getWebcastsForChannel(int channelId, Date since, PageCriteria pageCriteria);
+
+  /**
+   * Asynchronously retrieves the full details of an identified webcast, in a channel owned by the current user.
+   * 
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @return A {@link ListenableFuture} for the {@link WebcastResource}.
+   * @see ApiClient#getWebcast(int, int)
+   */
+  ListenableFuture<WebcastResource> getWebcast(int channelId, int webcastId);
+
+  /**
+   * Asynchronously retrieves the registrations for an identified webcast in a channel owned by the current user.
+   * 
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @param since Optional since filter.
+   * @param viewed Optional viewed filter.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link WebcastRegistrationsResource}.
+   * @see ApiClient#getWebcastRegistrationsForWebcast(int, int, Date, Boolean, PageCriteria)
+   */
+  ListenableFuture<WebcastRegistrationsResource> getWebcastRegistrationsForWebcast(int channelId, int webcastId,
+      Date since, Boolean viewed, PageCriteria pageCriteria);
+
+  /**
+   * Asynchronously retrieves the viewings that have taken place for all webcasts in a channel owned by the current
+   * user.
+   * 
+   * @param channelId The ID of the channel.
+   * @param since Optional since filter.
+   * @param webcastStatus Optional webcast status filter.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link WebcastViewingsResource}.
+   * @throws IllegalArgumentException If {@code webcastStatus} is not one of the status supported by this API.
+   * @see ApiClient#getWebcastViewingsForChannel(int, Date, WebcastStatus, PageCriteria)
+   */
+  ListenableFuture<WebcastViewingsResource> getWebcastViewingsForChannel(int channelId, Date since,
+      WebcastStatus webcastStatus, PageCriteria pageCriteria);
+
+  /**
+   * Asynchronously retrieves the viewings that have taken place for an identified webcast in a channel owned by the
+   * current user.
+   * 
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @param since Optional since filter.
+   * @param webcastStatus Optional webcast status filter.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @return A {@link ListenableFuture} for the {@link WebcastViewingsResource}.
+   * @throws IllegalArgumentException If {@code webcastStatus} is not one of the status supported by this API.
+   * @see ApiClient#getWebcastViewingsForWebcast(int, int, Date, WebcastStatus, PageCriteria)
+   */
+  ListenableFuture<WebcastViewingsResource> getWebcastViewingsForWebcast(int channelId, int webcastId, Date since,
+      WebcastStatus webcastStatus, PageCriteria pageCriteria);
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client;
+
+/**
+ * Class of non-checked (runtime) exception thrown to reject an API call which wasn't made because the client's circuit
+ * breaker for the API endpoint is open, as a result of a high rate of recent failed or slow calls to the endpoint.
+ * <p>
+ * The API call was not attempted. Callers should back off, rather than retry immediately, until the circuit breaker
+ * is expected to allow trial calls again - see {@link #getRetryAfterMillis()}.
+ * 
+ * @author Neil Brown
+ */
+public class CircuitBreakerOpenException extends ApiClientException {
+
+  private final String endpoint;
+  private final long retryAfterMillis;
+
+  /**
+   * @param endpoint The API endpoint whose circuit breaker is open, identified by its relative URI template.
+   * @param retryAfterMillis The time, in milliseconds, after which the circuit breaker is expected to allow trial calls
+   * to the endpoint.
+   */
+  public CircuitBreakerOpenException(String endpoint, long retryAfterMillis) {
+    super("Circuit breaker open for API endpoint [" + endpoint + "]. Retry after [" + retryAfterMillis + "] ms.");
+    this.endpoint = endpoint;
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  /**
+   * @return The API endpoint whose circuit breaker is open, identified by its relative URI template.
+   */
+  public final String getEndpoint() {
+    return this.endpoint;
+  }
+
+  /**
+   * @return The time, in milliseconds, after which the circuit breaker is expected to allow trial calls to the
+   * endpoint. Zero if the circuit breaker is already allowing its max no. of trial calls.
+   */
+  public final long getRetryAfterMillis() {
+    return this.retryAfterMillis;
+  }
+}
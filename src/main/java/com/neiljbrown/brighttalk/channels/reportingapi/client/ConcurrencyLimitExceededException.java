@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client;
+
+/**
+ * Class of non-checked (runtime) exception thrown to reject an API call which couldn't be made because the client's
+ * limit on the no. of concurrent (in-flight) API calls was reached, and a permit to make the call didn't become
+ * available within the max time allowed for queuing.
+ * <p>
+ * The API call was not attempted, and may be safely retried, preferably after backing off.
+ * 
+ * @author Neil Brown
+ */
+public class ConcurrencyLimitExceededException extends ApiClientException {
+
+  private final int limit;
+  private final long maxQueueWaitMillis;
+
+  /**
+   * @param limit The concurrency limit at the time the call was rejected.
+   * @param maxQueueWaitMillis The max time, in milliseconds, the call was queued before being rejected.
+   */
+  public ConcurrencyLimitExceededException(int limit, long maxQueueWaitMillis) {
+    super("Concurrency limit [" + limit + "] reached. No permit available after waiting [" + maxQueueWaitMillis
+        + "] ms.");
+    this.limit = limit;
+    this.maxQueueWaitMillis = maxQueueWaitMillis;
+  }
+
+  /**
+   * @return The concurrency limit at the time the call was rejected.
+   */
+  public final int getLimit() {
+    return this.limit;
+  }
+
+  /**
+   * @return The max time, in milliseconds, the call was queued before being rejected.
+   */
+  public final long getMaxQueueWaitMillis() {
+    return this.maxQueueWaitMillis;
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client;
+
+/**
+ * A callback used to process the resources in a page of a resource collection one at a time, as they are read from an
+ * API response, rather than after the whole page has been read.
+ * <p>
+ * Supports processing large pages of resources without holding all of the resources in the page in memory at once.
+ * 
+ * @param <E> The class of API resource processed by this handler, e.g.
+ * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource}.
+ * @author Neil Brown
+ */
+public interface ResourceCallbackHandler<E> {
+
+  /**
+   * Processes a single resource read from an API response.
+   * 
+   * @param resource The resource.
+   */
+  void processResource(E resource);
+}
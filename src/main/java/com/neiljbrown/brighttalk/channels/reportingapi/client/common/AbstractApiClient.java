@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.common;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveysResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * Base class for implementations of the API client, which manages the (environment specific) location of the API
+ * service the client communicates with, and the {@link CompiledUriTemplate compiled URI templates} of the API's
+ * resources at that location.
+ * <p>
+ * Has no dependency on the Spring framework, so that it can be shared by both the Spring and plain Java
+ * implementations of the API client.
+ * 
+ * @author Neil Brown
+ */
+public abstract class AbstractApiClient {
+
+  private static final String PROTOCOL_HTTP = "http";
+  private static final String PROTOCOL_HTTPS = "https";
+  private static final int HTTP_DEFAULT_PORT = 80;
+  private static final int HTTPS_DEFAULT_PORT = 443;
+  /** Compiled regex for a valid host name. See http://en.wikipedia.org/wiki/Hostname#Restrictions_on_valid_host_names */
+  private static final Pattern VALID_HOST_NAME_PATTERN =
+      Pattern.compile("[a-zA-Z0-9\\.\\-]{4,253}", Pattern.CASE_INSENSITIVE);
+
+  /** The relative URI templates of all of the API's resources, which are compiled on construction. */
+  private static final List<String> RELATIVE_URI_TEMPLATES = ImmutableList.of(
+      ChannelsResource.MY_CHANNELS_RELATIVE_URI_TEMPLATE,
+      ChannelsResource.USER_CHANNELS_RELATIVE_URI_TEMPLATE,
+      ChannelSubscribersResource.RELATIVE_URI_TEMPLATE,
+      SubscribersWebcastActivityResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE,
+      SubscribersWebcastActivityResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE,
+      SurveysResource.FOR_CHANNELS_RELATIVE_URI_TEMPLATE,
+      SurveyResource.RELATIVE_URI_TEMPLATE,
+      SurveyResponsesResource.RELATIVE_URI_TEMPLATE,
+      WebcastsResource.RELATIVE_URI_TEMPLATE,
+      WebcastResource.RELATIVE_URI_TEMPLATE,
+      WebcastRegistrationsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE,
+      WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE,
+      WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
+
+  private final String apiServiceProtocol;
+  private final String apiServiceHostName;
+  private final int apiServicePort;
+  private final URI apiServiceBaseUri;
+  private final Map<String, CompiledUriTemplate> compiledUriTemplates;
+
+  /**
+   * @param apiServiceProtocol The protocol used to communicate with the BrightTALK API service. One of "http" or
+   * "https". Optional. If null defaults to "https".
+   * @param apiServiceHostName The host name of the BrightTALK API service. A fully qualified domain name.
+   * @param apiServicePort The port of the BrightTALK API service. Optional. If null defaults to 80 or 443 depending on
+   * {@code apiServiceProtocol}.
+   */
+  protected AbstractApiClient(String apiServiceProtocol, String apiServiceHostName, Integer apiServicePort) {
+    if (apiServiceProtocol == null) {
+      apiServiceProtocol = PROTOCOL_HTTPS;
+    }
+    Preconditions.checkArgument(
+        PROTOCOL_HTTP.equalsIgnoreCase(apiServiceProtocol) || PROTOCOL_HTTPS.equalsIgnoreCase(apiServiceProtocol),
+        "API service protocol must be one or '%s' or '%s', not [%s]", PROTOCOL_HTTP, PROTOCOL_HTTPS, apiServiceProtocol);
+    this.apiServiceProtocol = apiServiceProtocol.toLowerCase();
+
+    Preconditions.checkNotNull(apiServiceHostName, "API service host name must not be null.");
+    Preconditions.checkArgument(VALID_HOST_NAME_PATTERN.matcher(apiServiceHostName).matches(),
+        "Invalid API service host name [%s].", apiServiceHostName);
+    this.apiServiceHostName = apiServiceHostName;
+
+    if (apiServicePort == null) {
+      apiServicePort = PROTOCOL_HTTP.equalsIgnoreCase(apiServiceProtocol) ? HTTP_DEFAULT_PORT : HTTPS_DEFAULT_PORT;
+    }
+    Preconditions.checkArgument(apiServicePort > 0, "API service port must be a positive number, not [%s]",
+        apiServicePort);
+    this.apiServicePort = apiServicePort;
+
+    this.apiServiceBaseUri =
+        initApiServiceBaseUri(this.apiServiceProtocol, this.apiServiceHostName, this.apiServicePort);
+    ImmutableMap.Builder<String, CompiledUriTemplate> compiledUriTemplates = ImmutableMap.builder();
+    for (String relativeUriTemplate : RELATIVE_URI_TEMPLATES) {
+      compiledUriTemplates.put(relativeUriTemplate, new CompiledUriTemplate(this.apiServiceBaseUri,
+          relativeUriTemplate));
+    }
+    this.compiledUriTemplates = compiledUriTemplates.build();
+  }
+
+  /**
+   * @return the apiServiceProtocol
+   */
+  public final String getApiServiceProtocol() {
+    return this.apiServiceProtocol;
+  }
+
+  /**
+   * @return the apiServiceHostName
+   */
+  public final String getApiServiceHostName() {
+    return this.apiServiceHostName;
+  }
+
+  /**
+   * @return the apiServicePort
+   */
+  public final int getApiServicePort() {
+    return this.apiServicePort;
+  }
+
+  /**
+   * @return The base (protocol, host name and optional port) {@link URI} of the API service which this client is
+   * currently configured to use. This is an environment specific value.
+   */
+  public final URI getApiServiceBaseUri() {
+    try {
+      // Return a new URI to preserve immutability
+      return new URI(this.apiServiceBaseUri.toString());
+    } catch (URISyntaxException e) {
+      throw new ApiClientException(e);
+    }
+  }
+
+  /**
+   * Gets the {@link CompiledUriTemplate} for the absolute URI of an API resource, using this client's configured
+   * {@link #getApiServiceBaseUri() API service base URI}. The templates of all of the API's resources are compiled on
+   * construction of the client, so this is a cheap lookup. Any other template is compiled on each call.
+   * 
+   * @param relativeUriTemplate The relative URI template of the resource, e.g.
+   * {@link WebcastResource#RELATIVE_URI_TEMPLATE}.
+   * @return The {@link CompiledUriTemplate}.
+   */
+  protected final CompiledUriTemplate getCompiledUriTemplate(String relativeUriTemplate) {
+    CompiledUriTemplate compiledUriTemplate = this.compiledUriTemplates.get(relativeUriTemplate);
+    return compiledUriTemplate != null ? compiledUriTemplate : new CompiledUriTemplate(this.apiServiceBaseUri,
+        relativeUriTemplate);
+  }
+
+  private static URI initApiServiceBaseUri(String protocol, String hostName, int port) {
+    try {
+      return new URI(protocol + "://" + hostName + ":" + port);
+    } catch (URISyntaxException e) {
+      throw new ApiClientException(e);
+    }
+  }
+}
@@ -34,7 +34,7 @@ public class ApiCredentials {
    */
   public ApiCredentials(int key, String secret) {
     Preconditions.checkArgument(key > 0, "API key must be a positive integer.");
-    Preconditions.checkArgument(Strings.isNullOrEmpty(secret), "API secret must be a non-empty string.");
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(secret), "API secret must be a non-empty string.");
     this.key = key;
     this.secret = secret;
   }
@@ -45,5 +45,29 @@ public class ApiCredentials {
 
   public final String getSecret() {
     return this.secret;
-  }       
-}
\ No newline at end of file
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + this.key;
+    result = prime * result + this.secret.hashCode();
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    ApiCredentials other = (ApiCredentials) obj;
+    return this.key == other.key && this.secret.equals(other.secret);
+  }
+}
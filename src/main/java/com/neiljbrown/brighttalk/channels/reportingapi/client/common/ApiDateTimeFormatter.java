@@ -15,11 +15,7 @@
  */
 package com.neiljbrown.brighttalk.channels.reportingapi.client.common;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.TimeZone;
 
 import com.google.common.base.Preconditions;
 
@@ -30,6 +26,14 @@ import com.google.common.base.Preconditions;
  * simplified subset of the ISO 8601 standard. See patterns {@link #API_DATE_TIME_PATTERN} and
  * {@link #API_DATE_ONLY_PATTERN}.
  * <p>
+ * As both formats have a fixed layout, and are always in UTC, they are formatted and parsed directly, character by
+ * character, using the proleptic Gregorian calendar, rather than using a {@link java.text.DateFormat} and
+ * {@link java.util.Calendar}. This avoids the cost of creating (or the need to cache per thread) the latter, which
+ * aren't thread-safe, and limits the objects allocated to the result. Parsing is strict - values which don't exactly
+ * match the format, or contain an out of range field (e.g. a month of 13) are rejected, rather than being rolled over.
+ * Similarly, as the formats have a four digit year, dates with a year outside the range 0 to 9999 can't be formatted,
+ * and are rejected, rather than being formatted with more digits.
+ * <p>
  * Thread-safe.
  * 
  * @author Neil Brown
@@ -62,31 +66,16 @@ public final class ApiDateTimeFormatter {
    */
   protected static final String API_DATE_ONLY_PATTERN = "yyyy-MM-dd";
 
-  /**
-   * Thread-safe {@link DateFormat} for efficient formatting and parsing combined date and times using the
-   * {@link API_DATE_TIME_PATTERN}, implemented as a ThreadLocal variable.
-   */
-  private static ThreadLocal<DateFormat> threadLocalDateTimeFormat = new ThreadLocal<DateFormat>() {
-    @Override
-    protected DateFormat initialValue() {
-      DateFormat df = new SimpleDateFormat(API_DATE_TIME_PATTERN);
-      df.setTimeZone(TimeZone.getTimeZone("UTC"));
-      return df;
-    }
-  };
+  private static final int API_DATE_TIME_LENGTH = API_DATE_TIME_PATTERN.length()
+      - API_DATE_TIME_PATTERN_LITERAL_QUOTE_COUNT;
+  private static final int API_DATE_ONLY_LENGTH = API_DATE_ONLY_PATTERN.length();
 
-  /**
-   * Thread-safe {@link DateFormat} for efficient formatting and parsing dates (only) using the
-   * {@link API_DATE_ONLY_PATTERN}, implemented as a ThreadLocal variable.
-   */
-  private static ThreadLocal<DateFormat> threadLocalDateOnlyFormat = new ThreadLocal<DateFormat>() {
-    @Override
-    protected DateFormat initialValue() {
-      DateFormat df = new SimpleDateFormat(API_DATE_ONLY_PATTERN);
-      df.setTimeZone(TimeZone.getTimeZone("UTC"));
-      return df;
-    }
-  };
+  private static final long MILLIS_PER_SECOND = 1000L;
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * MILLIS_PER_SECOND;
+  private static final int MAX_YEAR = 9999;
+
+  /** Value returned by {@link #parseEpochDay(String)} for an invalid date. */
+  private static final long INVALID_EPOCH_DAY = Long.MIN_VALUE;
 
   /**
    * Formats a supplied Java {@link java.util.Date}, assumed to be in the UTC time zone, in the ISO 8601 date/time
@@ -94,22 +83,36 @@ public final class ApiDateTimeFormatter {
    * 
    * @param date The {@link Date} to format.
    * @return The formatted date/time string.
+   * @throws IllegalArgumentException If the year of the date (in UTC) is outside the range 0 to 9999.
    */
   public String formatAsDateTime(Date date) {
     Preconditions.checkNotNull(date);
-    return threadLocalDateTimeFormat.get().format(date);
+    char[] chars = new char[API_DATE_TIME_LENGTH];
+    long millisOfDay = formatDate(date.getTime(), chars);
+    int secondOfDay = (int) (millisOfDay / MILLIS_PER_SECOND);
+    chars[10] = 'T';
+    formatDigits(secondOfDay / 3600, chars, 11, 2);
+    chars[13] = ':';
+    formatDigits(secondOfDay / 60 % 60, chars, 14, 2);
+    chars[16] = ':';
+    formatDigits(secondOfDay % 60, chars, 17, 2);
+    chars[19] = 'Z';
+    return new String(chars);
   }
-  
+
   /**
    * Formats a supplied Java {@link java.util.Date}, assumed to be in the UTC time zone, in the ISO 8601 date only 
    * format expected by the reporting APIs.
    *  
    * @param date The {@link Date} to format.
    * @return The formatted date string.
+   * @throws IllegalArgumentException If the year of the date (in UTC) is outside the range 0 to 9999.
    */
   public String formatAsDateOnly(Date date) {
     Preconditions.checkNotNull(date);
-    return threadLocalDateOnlyFormat.get().format(date);    
+    char[] chars = new char[API_DATE_ONLY_LENGTH];
+    formatDate(date.getTime(), chars);
+    return new String(chars);
   }
 
   /**
@@ -120,21 +123,144 @@ public final class ApiDateTimeFormatter {
    * @return The {@link Date} parsed from the string.
    */
   public Date parse(String value) {
+    return new Date(this.parseToEpochMillis(value));
+  }
+
+  /**
+   * Parses a supplied string in the ISO 8601 date/time or date only format used by the reporting APIs and returns the
+   * resulting instant as a no. of milliseconds since the epoch (1970-01-01T00:00:00Z), without creating a
+   * {@link Date}.
+   * 
+   * @param value The date/time string to parse.
+   * @return The no. of milliseconds since the epoch parsed from the string.
+   */
+  public long parseToEpochMillis(String value) {
     Preconditions.checkNotNull(value);
-    if (value.length() == API_DATE_TIME_PATTERN.length() - API_DATE_TIME_PATTERN_LITERAL_QUOTE_COUNT) {
-      try {             
-        return threadLocalDateTimeFormat.get().parse(value);
-      } catch (ParseException e) {
-        throw new IllegalArgumentException("Failed to parse value as API date/time [" + value + "].", e);
-      }        
-    } else if (value.length() == API_DATE_ONLY_PATTERN.length()) {
-      try {
-        return threadLocalDateOnlyFormat.get().parse(value);
-      } catch (ParseException e) {
-        throw new IllegalArgumentException("Failed to parse value as API date [" + value + "].", e);
+    if (value.length() == API_DATE_TIME_LENGTH) {
+      long epochDay = parseEpochDay(value);
+      int hour = parseDigits(value, 11, 2);
+      int minute = parseDigits(value, 14, 2);
+      int second = parseDigits(value, 17, 2);
+      if (epochDay == INVALID_EPOCH_DAY || value.charAt(10) != 'T' || value.charAt(13) != ':'
+          || value.charAt(16) != ':' || value.charAt(19) != 'Z' || hour < 0 || hour > 23 || minute < 0 || minute > 59
+          || second < 0 || second > 59) {
+        throw new IllegalArgumentException("Failed to parse value as API date/time [" + value + "].");
+      }
+      return epochDay * MILLIS_PER_DAY + ((hour * 60 + minute) * 60 + second) * MILLIS_PER_SECOND;
+    } else if (value.length() == API_DATE_ONLY_LENGTH) {
+      long epochDay = parseEpochDay(value);
+      if (epochDay == INVALID_EPOCH_DAY) {
+        throw new IllegalArgumentException("Failed to parse value as API date [" + value + "].");
       }
+      return epochDay * MILLIS_PER_DAY;
     } else {
       throw new IllegalArgumentException("Failed to parse value as API date/time string [" + value + "].");
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Parses the date at the start of a supplied value, in the {@link #API_DATE_ONLY_PATTERN} format.
+   * 
+   * @return The no. of days since the epoch, or {@link #INVALID_EPOCH_DAY} if the value doesn't start with a valid
+   * date.
+   */
+  private static long parseEpochDay(String value) {
+    int year = parseDigits(value, 0, 4);
+    int month = parseDigits(value, 5, 2);
+    int day = parseDigits(value, 8, 2);
+    if (year < 0 || value.charAt(4) != '-' || value.charAt(7) != '-' || month < 1 || month > 12 || day < 1
+        || day > lengthOfMonth(year, month)) {
+      return INVALID_EPOCH_DAY;
+    }
+    return toEpochDay(year, month, day);
+  }
+
+  /**
+   * @return The non-negative integer represented by the decimal digits in the specified range of the value, or -1 if
+   * any of the chars aren't a digit.
+   */
+  private static int parseDigits(String value, int start, int count) {
+    int result = 0;
+    for (int i = start; i < start + count; i++) {
+      int digit = value.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      result = result * 10 + digit;
+    }
+    return result;
+  }
+
+  /**
+   * Formats the date part of an instant into the first 10 chars of a supplied array.
+   * 
+   * @return The no. of milliseconds into the day of the instant.
+   * @throws IllegalArgumentException If the year of the instant is outside the range 0 to {@value #MAX_YEAR}.
+   */
+  private static long formatDate(long epochMillis, char[] chars) {
+    long epochDay = epochMillis / MILLIS_PER_DAY;
+    long millisOfDay = epochMillis % MILLIS_PER_DAY;
+    if (millisOfDay < 0) {
+      epochDay--;
+      millisOfDay += MILLIS_PER_DAY;
+    }
+    // Convert the day to a year, month and day, using a year starting in March, so the leap day is its last day
+    long dayOfEra = epochDay + 719468;
+    long era = (dayOfEra >= 0 ? dayOfEra : dayOfEra - 146096) / 146097;
+    int dayOfEra400 = (int) (dayOfEra - era * 146097);
+    int yearOfEra = (dayOfEra400 - dayOfEra400 / 1460 + dayOfEra400 / 36524 - dayOfEra400 / 146096) / 365;
+    int dayOfYear = dayOfEra400 - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int marchBasedMonth = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * marchBasedMonth + 2) / 5 + 1;
+    int month = marchBasedMonth < 10 ? marchBasedMonth + 3 : marchBasedMonth - 9;
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    Preconditions.checkArgument(year >= 0 && year <= MAX_YEAR,
+        "Failed to format date [%s] as API date - its year [%s] is outside the supported range of 0 to %s.",
+        epochMillis, year, MAX_YEAR);
+    formatDigits((int) year, chars, 0, 4);
+    chars[4] = '-';
+    formatDigits(month, chars, 5, 2);
+    chars[7] = '-';
+    formatDigits(day, chars, 8, 2);
+    return millisOfDay;
+  }
+
+  private static void formatDigits(int value, char[] chars, int start, int count) {
+    int remainder = value;
+    for (int i = start + count - 1; i >= start; i--) {
+      chars[i] = (char) ('0' + remainder % 10);
+      remainder /= 10;
+    }
+  }
+
+  /**
+   * @return The no. of days since the epoch of a (valid) year, month and day.
+   */
+  private static long toEpochDay(int year, int month, int day) {
+    // Count from a year starting in March, so the leap day is the last day of the year
+    int marchBasedYear = month <= 2 ? year - 1 : year;
+    int era = (marchBasedYear >= 0 ? marchBasedYear : marchBasedYear - 399) / 400;
+    int yearOfEra = marchBasedYear - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+
+  private static int lengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return isLeapYear(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  private static boolean isLeapYear(int year) {
+    return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.common;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+
+/**
+ * The absolute URI template of an API resource, compiled once, which expands the template's variables and appends any
+ * request parameters to produce the resource's encoded {@link URI} in a single pass.
+ * <p>
+ * The template is parsed on construction into the literal parts of its path, which are prefixed with the API service's
+ * base URI, and the variables between them. Expanding the template only appends the literals, and the encoded values of
+ * the variables and request parameters, to a (per-thread, reused) buffer, from which the {@link URI} is created. This
+ * avoids building a {@link org.springframework.web.util.UriComponentsBuilder}, and then parsing the resulting string
+ * as a template (and re-encoding it) for every API call.
+ * <p>
+ * Variable values and request parameters are encoded as they are by Spring's
+ * {@link org.springframework.web.util.UriTemplate} - characters not allowed in the path, or a query parameter,
+ * respectively, are percent-encoded as UTF-8. (Unlike expanding a template built from the request parameters, a '&' or
+ * '#' in a request parameter value is encoded, rather than being treated as a delimiter). Variables are expanded in the
+ * order they appear in the template. Regular expressions in template variables (e.g. {@code {id:\d+}}) aren't
+ * supported, nor are variables in request parameters.
+ * <p>
+ * Thread-safe.
+ * 
+ * @author Neil Brown
+ */
+public final class CompiledUriTemplate {
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  /** The max capacity of a reused buffer. Larger buffers are discarded rather than retained by the thread. */
+  private static final int MAX_REUSED_BUFFER_CAPACITY = 4096;
+
+  private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+    @Override
+    protected StringBuilder initialValue() {
+      return new StringBuilder(256);
+    }
+  };
+
+  private final String relativeUriTemplate;
+  /** The literal parts of the template. One more than the no. of variables. The first includes the base URI. */
+  private final String[] literals;
+  private final String[] variableNames;
+
+  /**
+   * @param baseUri The base URI of the API service.
+   * @param relativeUriTemplate The relative URI template of an API resource, e.g.
+   * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource#RELATIVE_URI_TEMPLATE}. Must
+   * not contain a query.
+   */
+  public CompiledUriTemplate(URI baseUri, String relativeUriTemplate) {
+    Preconditions.checkNotNull(baseUri, "baseUri must not be null.");
+    Preconditions.checkNotNull(relativeUriTemplate, "relativeUriTemplate must not be null.");
+    Preconditions.checkArgument(relativeUriTemplate.indexOf('?') < 0,
+        "relativeUriTemplate must not contain a query [%s].", relativeUriTemplate);
+    this.relativeUriTemplate = relativeUriTemplate;
+    List<String> literals = new ArrayList<>();
+    List<String> variableNames = new ArrayList<>();
+    StringBuilder literal = new StringBuilder(baseUri.toString());
+    int start = 0;
+    int open;
+    while ((open = relativeUriTemplate.indexOf('{', start)) >= 0) {
+      int close = relativeUriTemplate.indexOf('}', open);
+      Preconditions.checkArgument(close > open + 1, "Invalid variable in relativeUriTemplate [%s].",
+          relativeUriTemplate);
+      String variableName = relativeUriTemplate.substring(open + 1, close);
+      Preconditions.checkArgument(variableName.indexOf(':') < 0,
+          "Regular expressions in template variables aren't supported [%s].", relativeUriTemplate);
+      literals.add(literal.append(relativeUriTemplate, start, open).toString());
+      variableNames.add(variableName);
+      literal.setLength(0);
+      start = close + 1;
+    }
+    literals.add(literal.append(relativeUriTemplate, start, relativeUriTemplate.length()).toString());
+    this.literals = literals.toArray(new String[literals.size()]);
+    this.variableNames = variableNames.toArray(new String[variableNames.size()]);
+  }
+
+  /**
+   * @return The relative URI template from which this template was compiled, which identifies the API endpoint.
+   */
+  public String getRelativeUriTemplate() {
+    return this.relativeUriTemplate;
+  }
+
+  /**
+   * Expands this template to produce the encoded URI of an API resource.
+   * 
+   * @param requestParams An optional, map representation of request parameters to be appended to the URI. Can be null.
+   * @param uriVariables The values of the template's variables, in the order they appear in the template.
+   * @return The encoded {@link URI}.
+   * @throws IllegalArgumentException If fewer values are supplied than the template has variables.
+   */
+  public URI expand(Map<String, List<String>> requestParams, Object... uriVariables) {
+    Preconditions.checkArgument(uriVariables.length >= this.variableNames.length,
+        "Not enough variable values available to expand [%s].", this.relativeUriTemplate);
+    StringBuilder buffer = BUFFER.get();
+    buffer.setLength(0);
+    buffer.append(this.literals[0]);
+    for (int i = 0; i < this.variableNames.length; i++) {
+      Object value = uriVariables[i];
+      appendEncoded(buffer, value != null ? value.toString() : "", false);
+      buffer.append(this.literals[i + 1]);
+    }
+    if (requestParams != null && !requestParams.isEmpty()) {
+      char separator = '?';
+      for (Map.Entry<String, List<String>> requestParam : requestParams.entrySet()) {
+        for (String value : requestParam.getValue()) {
+          buffer.append(separator);
+          appendEncoded(buffer, requestParam.getKey(), true);
+          if (value != null) {
+            buffer.append('=');
+            appendEncoded(buffer, value, true);
+          }
+          separator = '&';
+        }
+      }
+    }
+    String uri = buffer.toString();
+    if (buffer.capacity() > MAX_REUSED_BUFFER_CAPACITY) {
+      BUFFER.remove();
+    }
+    try {
+      return new URI(uri);
+    } catch (URISyntaxException e) {
+      throw new ApiClientException("Invalid URI [" + uri + "].", e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("relativeUriTemplate", this.relativeUriTemplate)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Appends a string to a buffer, percent-encoding the UTF-8 bytes of any characters which aren't allowed in either a
+   * path or a query parameter.
+   */
+  private static void appendEncoded(StringBuilder buffer, String source, boolean queryParam) {
+    int length = source.length();
+    for (int i = 0; i < length; i++) {
+      char c = source.charAt(i);
+      if (c < 0x80 && isAllowed(c, queryParam)) {
+        buffer.append(c);
+      } else if (c < 0x80) {
+        appendEscaped(buffer, c);
+      } else {
+        // Rare - encode the remainder of the string as UTF-8
+        for (byte b : source.substring(i).getBytes(StandardCharsets.UTF_8)) {
+          if (b >= 0 && isAllowed((char) b, queryParam)) {
+            buffer.append((char) b);
+          } else {
+            appendEscaped(buffer, b & 0xFF);
+          }
+        }
+        return;
+      }
+    }
+  }
+
+  private static void appendEscaped(StringBuilder buffer, int b) {
+    buffer.append('%').append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+  }
+
+  /**
+   * @return True if an ASCII character is allowed, unencoded, in a path ('pchar' or '/') or in a query parameter
+   * ('pchar', '/' or '?', other than '=', '+' and '&'), as defined by RFC 3986.
+   */
+  private static boolean isAllowed(char c, boolean queryParam) {
+    if (queryParam && (c == '=' || c == '+' || c == '&')) {
+      return false;
+    }
+    return isPchar(c) || c == '/' || (queryParam && c == '?');
+  }
+
+  private static boolean isPchar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+        || "-._~!$&'()*+,;=:@".indexOf(c) >= 0;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.http.client;
+
+import java.io.IOException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.auth.AUTH;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.io.BaseEncoding;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiCredentials;
+
+/**
+ * An implementation of {@link HttpRequestInterceptor} which preemptively authenticates all requests sent to the API
+ * service's host and port using HTTP basic authentication, by adding an Authorization header to the request.
+ * <p>
+ * Rather than relying on HttpClient to look-up the credentials and encode them for each request, the value of the
+ * Authorization header is encoded once, from the supplied
+ * {@link ApiCredentials}, and the same (immutable) header is added to every request. The header is only re-encoded if
+ * the credentials are changed, using {@link #setApiCredentials(ApiCredentials)}, e.g. when they're rotated.
+ * <p>
+ * For security, the header is only added to requests whose target host and port match those of the API service, as
+ * supplied on construction. Requests which already include an Authorization header are left unchanged.
+ * <p>
+ * Thread safe.
+ * 
+ * @author Neil Brown
+ */
+public class CachedBasicAuthHttpRequestInterceptor implements HttpRequestInterceptor {
+
+  private static final Logger logger = LoggerFactory.getLogger(CachedBasicAuthHttpRequestInterceptor.class);
+
+  private static final String PROTOCOL_HTTPS = "https";
+  private static final int HTTP_DEFAULT_PORT = 80;
+  private static final int HTTPS_DEFAULT_PORT = 443;
+
+  private final String apiServiceHostName;
+  private final int apiServicePort;
+  private volatile Header authorizationHeader;
+
+  /**
+   * @param apiServiceHostName The host name of the API service to which credentials should be sent.
+   * @param apiServicePort The port of the API service to which credentials should be sent.
+   * @param apiCredentials The {@link ApiCredentials} to authenticate requests with.
+   */
+  public CachedBasicAuthHttpRequestInterceptor(String apiServiceHostName, int apiServicePort,
+      ApiCredentials apiCredentials) {
+    this.apiServiceHostName = Preconditions.checkNotNull(apiServiceHostName, "apiServiceHostName must not be null.");
+    Preconditions.checkArgument(apiServicePort > 0, "apiServicePort must be a positive number, not [%s].",
+        apiServicePort);
+    this.apiServicePort = apiServicePort;
+    this.setApiCredentials(apiCredentials);
+  }
+
+  /**
+   * Replaces the credentials used to authenticate subsequent requests, e.g. when they've been rotated.
+   * 
+   * @param apiCredentials The {@link ApiCredentials} to authenticate requests with.
+   */
+  public final void setApiCredentials(ApiCredentials apiCredentials) {
+    Preconditions.checkNotNull(apiCredentials, "apiCredentials must not be null.");
+    this.authorizationHeader = createAuthorizationHeader(apiCredentials);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Adds the cached Authorization header to the request if its target host and port are those of the API service.
+   */
+  @Override
+  public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+    if (request.containsHeader(AUTH.WWW_AUTH_RESP)) {
+      return;
+    }
+    HttpHost targetHost = (HttpHost) context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+    // For added security only send credentials to the API service's host and port
+    if (targetHost != null && this.apiServiceHostName.equalsIgnoreCase(targetHost.getHostName())
+        && this.apiServicePort == getPort(targetHost)) {
+      request.addHeader(this.authorizationHeader);
+    } else {
+      logger.debug("Not adding authentication credentials to request. Target host [{}] is not the API service [{}:{}].",
+          targetHost, this.apiServiceHostName, this.apiServicePort);
+    }
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("apiServiceHostName", this.apiServiceHostName)
+      .add("apiServicePort", this.apiServicePort)
+      .toString();
+    /* @formatter:on */
+  }
+
+  private static Header createAuthorizationHeader(ApiCredentials apiCredentials) {
+    // Encode credentials in the same way (and charset) as HttpClient's BasicScheme
+    byte[] credentials = (apiCredentials.getKey() + ":" + apiCredentials.getSecret()).getBytes(Charsets.US_ASCII);
+    return new BasicHeader(AUTH.WWW_AUTH_RESP, "Basic " + BaseEncoding.base64().encode(credentials));
+  }
+
+  /**
+   * @return The port of the supplied host, or the default port for its scheme if the port is not specified.
+   */
+  private static int getPort(HttpHost host) {
+    if (host.getPort() >= 0) {
+      return host.getPort();
+    }
+    return PROTOCOL_HTTPS.equalsIgnoreCase(host.getSchemeName()) ? HTTPS_DEFAULT_PORT : HTTP_DEFAULT_PORT;
+  }
+}
@@ -0,0 +1,687 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.AbstractApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiCredentials;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.CompiledUriTemplate;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetChannelSubscribersRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetSubscribersWebcastActivityRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetSurveyResponsesRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastRegistrationsRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastViewingsRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastsRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.PagingRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.ApiResourceJaxbContext;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.CustomValidationEventHandler;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UnmarshallerPool;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.SharedWebcastXmlAdapter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UserXmlAdapter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ApiError;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveysResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.UserIdentityMap;
+
+/**
+ * A lightweight {@link ApiClient} implementation which uses Apache HttpClient and JAXB directly, with no dependency on
+ * the Spring framework, and so doesn't require an application context to be created.
+ * <p>
+ * Intended for short-lived processes, such as batch jobs, for which the time taken to bootstrap the Spring
+ * implementation of the client ({@link com.neiljbrown.brighttalk.channels.reportingapi.client.spring.AppConfig}) is a
+ * significant proportion of their run time. Instances are created and configured in code using a {@link Builder},
+ * e.g.
+ * 
+ * <pre>
+ * HttpClientApiClientImpl apiClient = HttpClientApiClientImpl.builder()
+ *     .apiServiceHostName(&quot;api.brighttalk.com&quot;).apiCredentials(new ApiCredentials(key, secret)).build();
+ * </pre>
+ * 
+ * The client returns the same API resource classes, and handles error responses in the same way, as the Spring
+ * implementation - an HTTP error response (4xx or 5xx status code) results in an {@link ApiErrorResponseException},
+ * which includes any {@link ApiError} contained in the response body. (See
+ * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.spring.ApiResponseErrorHandler}). An I/O error on
+ * making a request, or an error unmarshalling a response, results in an {@link ApiClientException}.
+ * <p>
+ * The client uses its own pool of HTTP connections, which is released when the client is {@link #close() closed}.
+ * Requests are preemptively authenticated using HTTP basic authentication and support HTTP response compression. It
+ * doesn't support the optional features of the Spring implementation, such as caching, rate limiting and metrics,
+ * other than optionally resolving the users embedded in resources using a {@link UserIdentityMap}, and sharing the
+ * webcasts embedded in resources - see {@link SharedWebcastXmlAdapter}.
+ * <p>
+ * Thread safe.
+ * 
+ * @author Neil Brown
+ */
+public class HttpClientApiClientImpl extends AbstractApiClient implements ApiClient, Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(HttpClientApiClientImpl.class);
+
+  private static final Header ACCEPT_XML_HEADER = new BasicHeader("Accept", ContentType.APPLICATION_XML.getMimeType());
+
+  private final CloseableHttpClient httpClient;
+  private final UnmarshallerPool unmarshallerPool;
+  private final XMLInputFactory xmlInputFactory;
+
+  private HttpClientApiClientImpl(Builder builder) {
+    super(builder.apiServiceProtocol, builder.apiServiceHostName, builder.apiServicePort);
+    // Start creating the JAXB context in the background, so it overlaps with any other work done before the first call
+    ApiResourceJaxbContext.INSTANCE.initialiseInBackground();
+    this.httpClient = createHttpClient(builder, this.getApiServicePort());
+    // No more unmarshallers can be in use at once than there are concurrent requests, bounded by the connection pool
+    List<XmlAdapter<?, ?>> adapters = new ArrayList<>();
+    if (builder.userIdentityMap != null) {
+      adapters.add(new UserXmlAdapter(builder.userIdentityMap));
+    }
+    if (builder.sharedWebcastsCacheCapacity > 0) {
+      adapters.add(new SharedWebcastXmlAdapter(builder.sharedWebcastsCacheCapacity));
+    }
+    this.unmarshallerPool = new UnmarshallerPool(ApiResourceJaxbContext.INSTANCE, builder.validationEventHandler,
+        adapters, builder.maxConnections);
+    this.xmlInputFactory = XMLInputFactory.newInstance();
+    // Disable support for DTDs and external entities, neither of which are used by the API, to prevent XXE attacks
+    this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  /**
+   * @return A new {@link Builder}.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ChannelsResource getMyChannels(PageCriteria pageCriteria) throws ApiClientException {
+    logger.debug("Requesting My Channels with page criteria [{}].", pageCriteria);
+    Map<String, List<String>> requestParams = new PagingRequestParamsBuilder(pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(ChannelsResource.MY_CHANNELS_RELATIVE_URI_TEMPLATE);
+    ChannelsResource channels = this.getResource(uriTemplate, requestParams, ChannelsResource.class);
+    logger.debug("Got My Channels [{}].", channels);
+    return channels;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ChannelsResource getUserChannels(int userId, PageCriteria pageCriteria) throws ApiClientException {
+    logger.debug("Requesting User Channels for user [{}] with page criteria [{}].", userId, pageCriteria);
+    Map<String, List<String>> requestParams = new PagingRequestParamsBuilder(pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(ChannelsResource.USER_CHANNELS_RELATIVE_URI_TEMPLATE);
+    ChannelsResource channels = this.getResource(uriTemplate, requestParams, ChannelsResource.class, userId);
+    logger.debug("Got User Channels [{}].", channels);
+    return channels;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ChannelSubscribersResource getChannelSubscribers(int channelId, Boolean subscribed, Date subscribedSince,
+      Date unsubscribedSince, PageCriteria pageCriteria) throws ApiClientException {
+    logger.debug("Requesting Channel Subscribers for channel [{}] with page criteria [{}].", channelId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetChannelSubscribersRequestParamsBuilder(subscribed,
+        subscribedSince, unsubscribedSince, pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(ChannelSubscribersResource.RELATIVE_URI_TEMPLATE);
+    ChannelSubscribersResource subscribers =
+        this.getResource(uriTemplate, requestParams, ChannelSubscribersResource.class, channelId);
+    logger.debug("Got Channel Subscribers [{}].", subscribers);
+    return subscribers;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public SubscribersWebcastActivityResource getSubscribersWebcastActivityForChannel(int channelId, Date since,
+      Boolean expandChannelSurveyResponse, PageCriteria pageCriteria) throws ApiClientException {
+    logger.debug("Requesting Subscribers Webcast Activity for channel [{}] with page criteria [{}].", channelId,
+        pageCriteria);
+    Map<String, List<String>> requestParams = new GetSubscribersWebcastActivityRequestParamsBuilder(since,
+        expandChannelSurveyResponse, pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(SubscribersWebcastActivityResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE);
+    SubscribersWebcastActivityResource subscribersWebcastActivity =
+        this.getResource(uriTemplate, requestParams, SubscribersWebcastActivityResource.class, channelId);
+    logger.debug("Got Subscribers Webcast Activity [{}].", subscribersWebcastActivity);
+    return subscribersWebcastActivity;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public SubscribersWebcastActivityResource getSubscribersWebcastActivityForWebcast(int channelId, int webcastId,
+      Date since, Boolean expandChannelSurveyResponse, PageCriteria pageCriteria) throws ApiClientException {
+    logger.debug("Requesting Subscribers Webcast Activity for channel [{}], webcast [{}] with page criteria [{}].",
+        channelId, webcastId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetSubscribersWebcastActivityRequestParamsBuilder(since,
+        expandChannelSurveyResponse, pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(SubscribersWebcastActivityResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
+    SubscribersWebcastActivityResource subscribersWebcastActivity =
+        this.getResource(uriTemplate, requestParams, SubscribersWebcastActivityResource.class, channelId, webcastId);
+    logger.debug("Got Subscribers Webcast Activity [{}].", subscribersWebcastActivity);
+    return subscribersWebcastActivity;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public SurveysResource getSurveysForChannel(int channelId) throws ApiClientException {
+    logger.debug("Requesting Surveys for channel [{}].", channelId);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(SurveysResource.FOR_CHANNELS_RELATIVE_URI_TEMPLATE);
+    SurveysResource surveys = this.getResource(uriTemplate, null, SurveysResource.class, channelId);
+    logger.debug("Got Surveys [{}].", surveys);
+    return surveys;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public SurveyResource getSurvey(int surveyId) throws ApiClientException {
+    logger.debug("Requesting Survey [{}].", surveyId);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(SurveyResource.RELATIVE_URI_TEMPLATE);
+    SurveyResource survey = this.getResource(uriTemplate, null, SurveyResource.class, surveyId);
+    logger.debug("Got Survey [{}].", survey);
+    return survey;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public SurveyResponsesResource getSurveyResponses(int surveyId, Date since, PageCriteria pageCriteria)
+      throws ApiClientException {
+    logger.debug("Requesting Survey Responses for survey [{}] with page criteria [{}].", surveyId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetSurveyResponsesRequestParamsBuilder(since, pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(SurveyResponsesResource.RELATIVE_URI_TEMPLATE);
+    SurveyResponsesResource surveyResponses =
+        this.getResource(uriTemplate, requestParams, SurveyResponsesResource.class, surveyId);
+    logger.debug("Got Survey Responses [{}].", surveyResponses);
+    return surveyResponses;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public WebcastsResource getWebcastsForChannel(int channelId, Date since, PageCriteria pageCriteria)
+      throws ApiClientException {
+    logger.debug("Requesting Webcasts for channel [{}] with page criteria [{}].", channelId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastsRequestParamsBuilder(since, pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(WebcastsResource.RELATIVE_URI_TEMPLATE);
+    WebcastsResource webcasts = this.getResource(uriTemplate, requestParams, WebcastsResource.class, channelId);
+    logger.debug("Got Webcasts [{}].", webcasts);
+    return webcasts;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public WebcastResource getWebcast(int channelId, int webcastId) throws ApiClientException {
+    logger.debug("Requesting Webcast [{}] for channel [{}].", webcastId, channelId);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(WebcastResource.RELATIVE_URI_TEMPLATE);
+    WebcastResource webcast = this.getResource(uriTemplate, null, WebcastResource.class, channelId, webcastId);
+    logger.debug("Got Webcast [{}].", webcast);
+    return webcast;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public WebcastRegistrationsResource getWebcastRegistrationsForWebcast(int channelId, int webcastId, Date since,
+      Boolean viewed, PageCriteria pageCriteria) throws ApiClientException {
+    logger.debug("Requesting Webcast Registrations for channel [{}], webcast [{}] with page criteria [{}].", channelId,
+        webcastId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastRegistrationsRequestParamsBuilder(since, viewed,
+        pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(WebcastRegistrationsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
+    WebcastRegistrationsResource webcastRegistrations =
+        this.getResource(uriTemplate, requestParams, WebcastRegistrationsResource.class, channelId, webcastId);
+    logger.debug("Got Webcast Registrations [{}].", webcastRegistrations);
+    return webcastRegistrations;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public WebcastViewingsResource getWebcastViewingsForChannel(int channelId, Date since, WebcastStatus webcastStatus,
+      PageCriteria pageCriteria) throws ApiClientException {
+    logger.debug("Requesting Webcast Viewings for channel [{}] with page criteria [{}].", channelId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastViewingsRequestParamsBuilder(since, webcastStatus,
+        pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE);
+    WebcastViewingsResource webcastViewings =
+        this.getResource(uriTemplate, requestParams, WebcastViewingsResource.class, channelId);
+    logger.debug("Got Webcast Viewings [{}].", webcastViewings);
+    return webcastViewings;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public WebcastViewingsResource getWebcastViewingsForWebcast(int channelId, int webcastId, Date since,
+      WebcastStatus webcastStatus, PageCriteria pageCriteria) throws ApiClientException {
+    logger.debug("Requesting Webcast Viewings for channel [{}], webcast [{}] with page criteria [{}].", channelId,
+        webcastId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastViewingsRequestParamsBuilder(since, webcastStatus,
+        pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
+    WebcastViewingsResource webcastViewings =
+        this.getResource(uriTemplate, requestParams, WebcastViewingsResource.class, channelId, webcastId);
+    logger.debug("Got Webcast Viewings [{}].", webcastViewings);
+    return webcastViewings;
+  }
+
+  /**
+   * Closes the client's HTTP client, releasing its pool of connections. The client can't be used once closed.
+   * 
+   * @throws IOException If an I/O error occurs on closing the connections.
+   */
+  @Override
+  public void close() throws IOException {
+    this.httpClient.close();
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("apiServiceBaseUri", this.getApiServiceBaseUri())
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Requests an API resource, and unmarshalls it from the body of the response.
+   * 
+   * @param uriTemplate The {@link CompiledUriTemplate} of the resource.
+   * @param requestParams Optional request parameters. Can be null.
+   * @param resourceClass The class of resource.
+   * @param uriVariables The values of the variables in the URI template.
+   * @return The resource, or null if the response had no body.
+   * @throws ApiErrorResponseException If the API service returns an error response.
+   * @throws ApiClientException If an I/O error occurs, or the response can't be unmarshalled.
+   */
+  private <T> T getResource(CompiledUriTemplate uriTemplate, Map<String, List<String>> requestParams,
+      Class<T> resourceClass, Object... uriVariables) throws ApiClientException {
+    URI url = uriTemplate.expand(requestParams, uriVariables);
+    HttpGet request = new HttpGet(url);
+    request.addHeader(ACCEPT_XML_HEADER);
+    try (CloseableHttpResponse response = this.httpClient.execute(request)) {
+      HttpEntity entity = response.getEntity();
+      try {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (isError(statusCode)) {
+          throw this.createErrorResponseException(response);
+        }
+        return entity != null ? this.unmarshal(entity, resourceClass) : null;
+      } finally {
+        // Consume any remainder of the response body so the connection can be reused
+        EntityUtils.consumeQuietly(entity);
+      }
+    } catch (IOException e) {
+      throw new ApiClientException("I/O error on GET request for [" + url + "].", e);
+    }
+  }
+
+  private <T> T unmarshal(HttpEntity entity, Class<T> resourceClass) throws IOException {
+    XMLStreamReader reader = null;
+    try (InputStream inputStream = entity.getContent()) {
+      Unmarshaller unmarshaller = this.unmarshallerPool.borrow();
+      reader = this.xmlInputFactory.createXMLStreamReader(inputStream);
+      T resource = unmarshaller.unmarshal(reader, resourceClass).getValue();
+      this.unmarshallerPool.release(unmarshaller);
+      return resource;
+    } catch (XMLStreamException | JAXBException e) {
+      throw new ApiClientException("Error unmarshalling response body to [" + resourceClass.getName() + "].", e);
+    } finally {
+      closeQuietly(reader);
+    }
+  }
+
+  /**
+   * Creates the exception thrown for an HTTP error response, in the same way as
+   * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.spring.ApiResponseErrorHandler}.
+   */
+  private ApiErrorResponseException createErrorResponseException(HttpResponse response) throws IOException {
+    HttpEntity entity = response.getEntity();
+    byte[] responseBody = entity != null ? EntityUtils.toByteArray(entity) : null;
+    if (responseBody == null) {
+      responseBody = new byte[0];
+    }
+    ContentType contentType = getContentType(entity);
+    Charset charset = contentType != null ? contentType.getCharset() : null;
+    return new ApiErrorResponseException(response.getStatusLine().getStatusCode(), response.getStatusLine()
+        .getReasonPhrase(), getHeaders(response), charset, responseBody, this.extractApiError(contentType,
+        responseBody));
+  }
+
+  /**
+   * Extracts API error data from the body of an HTTP error response if it exists.
+   * 
+   * @return An {@link ApiError} populated with the API error data, or null if the response body was empty (as can occur
+   * for some types of severe API errors, e.g. HTTP 500 Internal Server Error), was not XML, or didn't contain error
+   * data.
+   */
+  private ApiError extractApiError(ContentType contentType, byte[] responseBody) {
+    if (responseBody.length == 0) {
+      return null;
+    }
+    if (contentType == null || !isXml(contentType.getMimeType())) {
+      // This can happen when a web proxy returns the error response and includes e.g. an HTML error page
+      logger.debug("Error extracting API error from response body. Unsupported content type [{}]. Ignoring.",
+          contentType);
+      return null;
+    }
+    XMLStreamReader reader = null;
+    try {
+      reader = this.xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(responseBody));
+      // Use the default (strict) validation event handler, so that any entity other than an error is rejected
+      Object entity = ApiResourceJaxbContext.INSTANCE.get().createUnmarshaller().unmarshal(reader);
+      if (entity instanceof ApiError) {
+        return (ApiError) entity;
+      }
+      logger.debug("Error extracting API error from response body. Unknown entity [{}]. Ignoring.", entity);
+    } catch (XMLStreamException | JAXBException e) {
+      // The response body contained an unexpected entity. This could happen if a web proxy returned the error response.
+      logger.debug("Error extracting API error from response body. Unknown entity. Ignoring.", e);
+    } finally {
+      closeQuietly(reader);
+    }
+    return null;
+  }
+
+  private static boolean isError(int statusCode) {
+    return statusCode >= 400 && statusCode < 600;
+  }
+
+  private static boolean isXml(String mimeType) {
+    return "application/xml".equalsIgnoreCase(mimeType) || "text/xml".equalsIgnoreCase(mimeType)
+        || mimeType.toLowerCase().endsWith("+xml");
+  }
+
+  private static ContentType getContentType(HttpEntity entity) {
+    try {
+      return entity != null ? ContentType.get(entity) : null;
+    } catch (RuntimeException e) {
+      // Malformed content type, or unsupported charset
+      logger.debug("Error parsing content type of response. Ignoring.", e);
+      return null;
+    }
+  }
+
+  /**
+   * @return The headers of a response, in the same form as those of a Spring HTTP response - a map of each header name,
+   * compared case-insensitively, to its values.
+   */
+  private static Map<String, List<String>> getHeaders(HttpResponse response) {
+    Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    for (Header header : response.getAllHeaders()) {
+      List<String> values = headers.get(header.getName());
+      if (values == null) {
+        values = new ArrayList<>(1);
+        headers.put(header.getName(), values);
+      }
+      values.add(header.getValue());
+    }
+    return headers;
+  }
+
+  private static void closeQuietly(XMLStreamReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        logger.debug("Error closing XMLStreamReader. Ignoring.", e);
+      }
+    }
+  }
+
+  /**
+   * Creates the HTTP client used by an API client - preemptively authenticating all requests using the API user's
+   * credentials, with its own pool of connections. HttpClient requests HTTP response compression (using gzip) by
+   * default.
+   */
+  private static CloseableHttpClient createHttpClient(Builder builder, int apiServicePort) {
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(builder.maxConnections);
+    connectionManager.setDefaultMaxPerRoute(builder.maxConnections);
+    List<Header> defaultHeaders = new ArrayList<>(builder.defaultHeaders.size() + 1);
+    defaultHeaders.add(new BasicHeader("Api-Client", HttpClientApiClientImpl.class.getCanonicalName()));
+    defaultHeaders.addAll(builder.defaultHeaders);
+    RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(builder.connectTimeoutMillis)
+        .setSocketTimeout(builder.socketTimeoutMillis)
+        .setConnectionRequestTimeout(builder.connectionRequestTimeoutMillis).setStaleConnectionCheckEnabled(true)
+        .build();
+    HttpClientBuilder httpClientBuilder = HttpClients.custom();
+    httpClientBuilder.setConnectionManager(connectionManager);
+    httpClientBuilder.setDefaultRequestConfig(requestConfig);
+    httpClientBuilder.addInterceptorFirst(new CachedBasicAuthHttpRequestInterceptor(builder.apiServiceHostName,
+        apiServicePort, builder.apiCredentials));
+    httpClientBuilder.setDefaultHeaders(defaultHeaders);
+    return httpClientBuilder.build();
+  }
+
+  /**
+   * Builder of {@link HttpClientApiClientImpl}. The API service host name and the API user's credentials must be
+   * supplied. All other properties are optional.
+   */
+  public static final class Builder {
+    private String apiServiceProtocol;
+    private String apiServiceHostName;
+    private Integer apiServicePort;
+    private ApiCredentials apiCredentials;
+    private int connectTimeoutMillis = -1;
+    private int socketTimeoutMillis = -1;
+    private int connectionRequestTimeoutMillis = -1;
+    private int maxConnections = 20;
+    private List<Header> defaultHeaders = new ArrayList<>();
+    private ValidationEventHandler validationEventHandler = new CustomValidationEventHandler();
+    private UserIdentityMap userIdentityMap;
+    private int sharedWebcastsCacheCapacity;
+
+    private Builder() {
+    }
+
+    /**
+     * @param apiServiceProtocol The protocol used to communicate with the API service. One of "http" or "https". If
+     * not set defaults to "https".
+     * @return This builder.
+     */
+    public Builder apiServiceProtocol(String apiServiceProtocol) {
+      this.apiServiceProtocol = Preconditions.checkNotNull(apiServiceProtocol,
+          "apiServiceProtocol must not be null.");
+      return this;
+    }
+
+    /**
+     * @param apiServiceHostName The host name of the API service. A fully qualified domain name.
+     * @return This builder.
+     */
+    public Builder apiServiceHostName(String apiServiceHostName) {
+      this.apiServiceHostName = Preconditions.checkNotNull(apiServiceHostName,
+          "apiServiceHostName must not be null.");
+      return this;
+    }
+
+    /**
+     * @param apiServicePort The port of the API service. If not set defaults to 80 or 443 depending on the protocol.
+     * @return This builder.
+     */
+    public Builder apiServicePort(int apiServicePort) {
+      Preconditions.checkArgument(apiServicePort > 0, "apiServicePort must be a positive number, not [%s].",
+          apiServicePort);
+      this.apiServicePort = apiServicePort;
+      return this;
+    }
+
+    /**
+     * @param apiCredentials The {@link ApiCredentials} of the API user, used to authenticate all requests.
+     * @return This builder.
+     */
+    public Builder apiCredentials(ApiCredentials apiCredentials) {
+      this.apiCredentials = Preconditions.checkNotNull(apiCredentials, "apiCredentials must not be null.");
+      return this;
+    }
+
+    /**
+     * @param connectTimeoutMillis The max time to wait to establish a connection, in milliseconds. Zero means no
+     * timeout. If not set, the system default is used.
+     * @return This builder.
+     */
+    public Builder connectTimeoutMillis(int connectTimeoutMillis) {
+      Preconditions.checkArgument(connectTimeoutMillis >= 0, "connectTimeoutMillis must not be negative, not [%s].",
+          connectTimeoutMillis);
+      this.connectTimeoutMillis = connectTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * @param socketTimeoutMillis The max period of inactivity between two consecutive packets of data when reading a
+     * response, in milliseconds. Zero means no timeout. If not set, the system default is used.
+     * @return This builder.
+     */
+    public Builder socketTimeoutMillis(int socketTimeoutMillis) {
+      Preconditions.checkArgument(socketTimeoutMillis >= 0, "socketTimeoutMillis must not be negative, not [%s].",
+          socketTimeoutMillis);
+      this.socketTimeoutMillis = socketTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * @param connectionRequestTimeoutMillis The max time to wait for a connection from the pool, in milliseconds. Zero
+     * means no timeout. If not set, the system default is used.
+     * @return This builder.
+     */
+    public Builder connectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+      Preconditions.checkArgument(connectionRequestTimeoutMillis >= 0,
+          "connectionRequestTimeoutMillis must not be negative, not [%s].", connectionRequestTimeoutMillis);
+      this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * @param maxConnections The max no. of connections in the client's pool, and so the max no. of concurrent API
+     * calls. Must be a positive number. Defaults to 20.
+     * @return This builder.
+     */
+    public Builder maxConnections(int maxConnections) {
+      Preconditions.checkArgument(maxConnections > 0, "maxConnections must be a positive number, not [%s].",
+          maxConnections);
+      this.maxConnections = maxConnections;
+      return this;
+    }
+
+    /**
+     * Adds a header to be sent on all requests, in addition to the Api-Client header identifying the client.
+     * 
+     * @param name The name of the header.
+     * @param value The value of the header.
+     * @return This builder.
+     */
+    public Builder defaultHeader(String name, String value) {
+      Preconditions.checkNotNull(name, "name must not be null.");
+      Preconditions.checkNotNull(value, "value must not be null.");
+      this.defaultHeaders.add(new BasicHeader(name, value));
+      return this;
+    }
+
+    /**
+     * @param validationEventHandler The JAXB {@link ValidationEventHandler} used on unmarshalling API resources. Null
+     * to use the default JAXB event handler. Defaults to a {@link CustomValidationEventHandler}, which treats
+     * validation errors as non-fatal, as does the Spring implementation of the client.
+     * @return This builder.
+     */
+    public Builder validationEventHandler(ValidationEventHandler validationEventHandler) {
+      this.validationEventHandler = validationEventHandler;
+      return this;
+    }
+
+    /**
+     * @param userIdentityMap The {@link UserIdentityMap} used to resolve the users embedded in unmarshalled API
+     * resources, so that equal users share the same instance. Null (the default) to not resolve users.
+     * @return This builder.
+     */
+    public Builder userIdentityMap(UserIdentityMap userIdentityMap) {
+      this.userIdentityMap = userIdentityMap;
+      return this;
+    }
+
+    /**
+     * @param sharedWebcastsCacheCapacity The max no. of webcasts held in the client's cache of the webcasts embedded in
+     * unmarshalled API resources, so that resources which refer to the same webcast share one instance. Must be a
+     * power of two, e.g. {@link SharedWebcastXmlAdapter#DEFAULT_CACHE_CAPACITY}. Zero (the default) to not share
+     * webcasts.
+     * @return This builder.
+     */
+    public Builder sharedWebcastsCacheCapacity(int sharedWebcastsCacheCapacity) {
+      Preconditions.checkArgument(sharedWebcastsCacheCapacity >= 0,
+          "sharedWebcastsCacheCapacity must not be negative, not [%s].", sharedWebcastsCacheCapacity);
+      this.sharedWebcastsCacheCapacity = sharedWebcastsCacheCapacity;
+      return this;
+    }
+
+    /**
+     * @return The built {@link HttpClientApiClientImpl}.
+     * @throws IllegalStateException If the API service host name or the API user's credentials have not been set.
+     * @throws IllegalArgumentException If the API service protocol or host name is invalid.
+     */
+    public HttpClientApiClientImpl build() {
+      Preconditions.checkState(this.apiServiceHostName != null, "apiServiceHostName must be set.");
+      Preconditions.checkState(this.apiCredentials != null, "apiCredentials must be set.");
+      return new HttpClientApiClientImpl(this);
+    }
+  }
+}
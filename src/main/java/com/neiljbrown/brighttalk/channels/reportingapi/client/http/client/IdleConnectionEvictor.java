@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.http.client;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Periodically closes connections in a {@link PoolingHttpClientConnectionManager pool} which have expired (exceeded
+ * their time to live, or the keep-alive duration specified by the server), or which have been idle for longer than a
+ * configured max idle time, using a background (daemon) thread.
+ * <p>
+ * Connections in a pool are not otherwise closed until they're next leased, so without eviction a connection which has
+ * been closed by the server, or an intermediary, while in the pool can be handed out to a request and fail. Evicting
+ * connections also releases the resources (sockets) held by connections which are no longer needed once a burst of
+ * concurrent requests has passed.
+ * <p>
+ * Also logs the pool's statistics (leased, pending and available connections) at debug level on each run, to support
+ * monitoring the pool.
+ * 
+ * @author Neil Brown
+ */
+public class IdleConnectionEvictor {
+
+  private static final Logger logger = LoggerFactory.getLogger(IdleConnectionEvictor.class);
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final long maxIdleTimeMillis;
+  private final long evictionIntervalMillis;
+  private ScheduledExecutorService executor;
+
+  /**
+   * @param connectionManager The {@link PoolingHttpClientConnectionManager} whose connections should be evicted.
+   * @param maxIdleTimeMillis The max time in milliseconds a connection may remain idle in the pool before it's closed.
+   * Zero or a negative number to only close expired connections.
+   * @param evictionIntervalMillis The interval in milliseconds between each run of the evictor. Must be a positive
+   * number.
+   */
+  public IdleConnectionEvictor(PoolingHttpClientConnectionManager connectionManager, long maxIdleTimeMillis,
+      long evictionIntervalMillis) {
+    this.connectionManager = Preconditions.checkNotNull(connectionManager, "connectionManager must not be null.");
+    this.maxIdleTimeMillis = maxIdleTimeMillis;
+    Preconditions.checkArgument(evictionIntervalMillis > 0,
+        "evictionIntervalMillis must be a positive number, not [%s].", evictionIntervalMillis);
+    this.evictionIntervalMillis = evictionIntervalMillis;
+  }
+
+  /**
+   * Starts the background thread which evicts connections. Has no effect if the evictor is already started.
+   */
+  public synchronized void start() {
+    if (this.executor != null) {
+      return;
+    }
+    this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "brighttalk-api-client-connection-evictor");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        evictConnections();
+      }
+    }, this.evictionIntervalMillis, this.evictionIntervalMillis, TimeUnit.MILLISECONDS);
+    logger.debug("Started [{}].", this);
+  }
+
+  /**
+   * Stops the background thread which evicts connections. Has no effect if the evictor is not started.
+   */
+  public synchronized void shutdown() {
+    if (this.executor == null) {
+      return;
+    }
+    this.executor.shutdownNow();
+    this.executor = null;
+    logger.debug("Shutdown [{}].", this);
+  }
+
+  /**
+   * Closes expired connections, and any which have been idle for longer than the configured max idle time.
+   * <p>
+   * Invoked periodically by the background thread once the evictor is started, but may also be called directly.
+   */
+  public void evictConnections() {
+    try {
+      this.connectionManager.closeExpiredConnections();
+      if (this.maxIdleTimeMillis > 0) {
+        this.connectionManager.closeIdleConnections(this.maxIdleTimeMillis, TimeUnit.MILLISECONDS);
+      }
+      logger.debug("Evicted expired and idle connections. Connection pool stats [{}].",
+          this.connectionManager.getTotalStats());
+    } catch (RuntimeException e) {
+      // Don't allow an unexpected error to cancel subsequent runs of the evictor
+      logger.warn("Unexpected error evicting connections.", e);
+    }
+  }
+
+  /**
+   * @return The max time in milliseconds a connection may remain idle in the pool before it's closed.
+   */
+  public final long getMaxIdleTimeMillis() {
+    return this.maxIdleTimeMillis;
+  }
+
+  /**
+   * @return The interval in milliseconds between each run of the evictor.
+   */
+  public final long getEvictionIntervalMillis() {
+    return this.evictionIntervalMillis;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("maxIdleTimeMillis", this.maxIdleTimeMillis)
+      .add("evictionIntervalMillis", this.evictionIntervalMillis)
+      .toString();
+    /* @formatter:on */
+  }
+}
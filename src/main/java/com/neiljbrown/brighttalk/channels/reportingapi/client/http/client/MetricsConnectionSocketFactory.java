@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.http.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.metrics.ApiCallMetrics;
+
+/**
+ * A decorator of a {@link ConnectionSocketFactory} which records the time taken to establish each new connection,
+ * including any TLS handshake performed by the decorated factory, in the {@link ApiCallMetrics} of the API call in
+ * progress on the current thread.
+ * <p>
+ * Thread safe, if the decorated factory is.
+ * 
+ * @author Neil Brown
+ */
+public class MetricsConnectionSocketFactory implements LayeredConnectionSocketFactory {
+
+  private final ConnectionSocketFactory socketFactory;
+
+  /**
+   * @param socketFactory The {@link ConnectionSocketFactory} to decorate. If it's a
+   * {@link LayeredConnectionSocketFactory} (e.g. for https) then so is the decorator.
+   */
+  public MetricsConnectionSocketFactory(ConnectionSocketFactory socketFactory) {
+    this.socketFactory = Preconditions.checkNotNull(socketFactory, "socketFactory must not be null.");
+  }
+
+  @Override
+  public Socket createSocket(HttpContext context) throws IOException {
+    return this.socketFactory.createSocket(context);
+  }
+
+  @Override
+  public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+      InetSocketAddress localAddress, HttpContext context) throws IOException {
+    long startNanos = System.nanoTime();
+    Socket connectedSocket =
+        this.socketFactory.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+    ApiCallMetrics callMetrics = ApiCallMetrics.current();
+    if (callMetrics != null) {
+      callMetrics.recordConnect(System.nanoTime() - startNanos);
+    }
+    return connectedSocket;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @throws UnsupportedOperationException If the decorated factory is not a {@link LayeredConnectionSocketFactory}.
+   */
+  @Override
+  public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+    if (!(this.socketFactory instanceof LayeredConnectionSocketFactory)) {
+      throw new UnsupportedOperationException("Decorated socket factory [" + this.socketFactory
+          + "] does not support layering.");
+    }
+    return ((LayeredConnectionSocketFactory) this.socketFactory).createLayeredSocket(socket, target, port, context);
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("socketFactory", this.socketFactory)
+      .toString();
+    /* @formatter:on */
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.http.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+
+import com.google.common.base.Objects;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.metrics.ApiCallMetrics;
+
+/**
+ * An implementation of {@link HttpResponseInterceptor} which records metrics for each HTTP response in the
+ * {@link ApiCallMetrics} of the API call in progress on the current thread - the time the response headers were
+ * received, and the no. of bytes read from the response body.
+ * <p>
+ * HttpClient decompresses response bodies using a response interceptor of its own. To record the size of the body both
+ * before and after decompression, two instances of this class should be registered - one
+ * {@link #MetricsHttpResponseInterceptor(boolean) counting compressed bytes} as the first interceptor, and the other
+ * as the last, e.g. using {@link org.apache.http.impl.client.HttpClientBuilder#addInterceptorFirst} and
+ * {@link org.apache.http.impl.client.HttpClientBuilder#addInterceptorLast} respectively.
+ * <p>
+ * Thread safe.
+ * 
+ * @author Neil Brown
+ */
+public class MetricsHttpResponseInterceptor implements HttpResponseInterceptor {
+
+  private final boolean compressed;
+
+  /**
+   * @param compressed True if this interceptor precedes decompression of the response body, and should therefore count
+   * the bytes as received, and record the receipt of the response headers. False if this interceptor follows
+   * decompression, and should count the decompressed bytes.
+   */
+  public MetricsHttpResponseInterceptor(boolean compressed) {
+    this.compressed = compressed;
+  }
+
+  @Override
+  public void process(HttpResponse response, HttpContext context) throws HttpException, IOException {
+    final ApiCallMetrics callMetrics = ApiCallMetrics.current();
+    if (callMetrics == null) {
+      return;
+    }
+    if (this.compressed) {
+      callMetrics.recordResponseHeadersReceived();
+    }
+    HttpEntity entity = response.getEntity();
+    if (entity != null) {
+      response.setEntity(new ByteCountingEntity(entity, callMetrics, this.compressed));
+    }
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("compressed", this.compressed)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Wraps a response entity, counting the bytes read from its content.
+   */
+  private static final class ByteCountingEntity extends HttpEntityWrapper {
+    private final ApiCallMetrics callMetrics;
+    private final boolean compressed;
+
+    ByteCountingEntity(HttpEntity entity, ApiCallMetrics callMetrics, boolean compressed) {
+      super(entity);
+      this.callMetrics = callMetrics;
+      this.compressed = compressed;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      return new FilterInputStream(super.getContent()) {
+        @Override
+        public int read() throws IOException {
+          int b = super.read();
+          if (b != -1) {
+            addBytes(1);
+          }
+          return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+          int count = super.read(buffer, offset, length);
+          if (count > 0) {
+            addBytes(count);
+          }
+          return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+          long count = super.skip(n);
+          addBytes(count);
+          return count;
+        }
+      };
+    }
+
+    private void addBytes(long count) {
+      if (this.compressed) {
+        this.callMetrics.addCompressedBytes(count);
+      } else {
+        this.callMetrics.addDecompressedBytes(count);
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import java.util.Date;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiDateTimeFormatter;
+
+/**
+ * Custom class of JAXB {@link XmlAdapter} for converting an XML string value to/from a {@link Date}, which is
+ * optimised for the date/time format used by the reporting APIs.
+ * 
+ * <h2>Motivation</h2>
+ * Most API resources contain several date/time fields, making their conversion a significant proportion of the cost
+ * of unmarshalling resources. The JAXB reference implementation (RI) converts a date/time by parsing it as any valid
+ * XML Schema dateTime into an {@link javax.xml.datatype.XMLGregorianCalendar}, and then converting it to a
+ * {@link java.util.Calendar}, before finally creating the {@link Date}. This adapter instead parses values in the
+ * fixed date/time format used by the APIs directly, using {@link ApiDateTimeFormatter}. Any other value is parsed in
+ * the same way as the RI, using {@link DatatypeConverter}, so the range of values supported, and the reporting of
+ * invalid values to any configured ValidationEventHandler, is unchanged. This includes values in the API's date only
+ * format, which the RI parses as a date in the default time zone, rather than in UTC, as {@link ApiDateTimeFormatter}
+ * does.
+ * 
+ * @author Neil Brown
+ */
+public class ApiDateTimeXmlAdapter extends XmlAdapter<String, Date> {
+
+  private static final ApiDateTimeFormatter DATE_TIME_FORMATTER = new ApiDateTimeFormatter();
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @throws IllegalArgumentException if the string to be unmarshalled is not a valid XML Schema dateTime. The JAXB API
+   * states that callers of this adapter are responsible for catching this exception and reporting it to any configured
+   * ValidationEventHandler.
+   */
+  @Override
+  public Date unmarshal(String v) {
+    if (v == null) {
+      return null;
+    }
+    // Only date/times are parsed directly, as the RI parses dates with no time or time zone in the default time zone
+    if (v.indexOf('T') >= 0) {
+      try {
+        return DATE_TIME_FORMATTER.parse(v);
+      } catch (IllegalArgumentException e) {
+        // Not in the API's format
+      }
+    }
+    // Parse the value as any XML Schema dateTime, as the JAXB RI does
+    return DatatypeConverter.parseDateTime(v).getTime();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This implementation marshals dates in the UTC date/time format used by the APIs. Null Dates result in a null
+   * String.
+   * 
+   * @throws IllegalArgumentException If the year of the date (in UTC) is outside the range 0 to 9999, which the API's
+   * format doesn't support.
+   */
+  @Override
+  public String marshal(Date v) {
+    return v != null ? DATE_TIME_FORMATTER.formatAsDateTime(v) : null;
+  }
+}
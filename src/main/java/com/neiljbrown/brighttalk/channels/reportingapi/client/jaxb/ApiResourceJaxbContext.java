@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ApiError;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscriberResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscriberWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponseResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveysResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * The single {@link JAXBContext} used by all implementations of the API client to (un)marshal API resources.
+ * <p>
+ * The context is bound to an explicit list of the API's resource classes - see {@link #RESOURCE_CLASSES} - rather than
+ * to the classes found by scanning the classpath for those in the resource package annotated with
+ * {@link javax.xml.bind.annotation.XmlRootElement}, which avoids the cost of scanning on startup. (The list is checked
+ * against the annotated classes by a unit test).
+ * <p>
+ * Creating the context is still the most expensive part of initialising an API client. To take it off the critical
+ * path of the first API call, it can be created on a background thread as soon as an API client is being created -
+ * see {@link #initialiseInBackground()}. Otherwise it's created on first use, in the calling thread. Either way, it's
+ * only created once per class loader.
+ * <p>
+ * Thread-safe.
+ * 
+ * @author Neil Brown
+ */
+public final class ApiResourceJaxbContext implements Supplier<JAXBContext> {
+
+  private static final Logger logger = LoggerFactory.getLogger(ApiResourceJaxbContext.class);
+
+  /** The classes of all of the API's resources, which can be (un)marshalled as the root element of a document. */
+  public static final List<Class<?>> RESOURCE_CLASSES = ImmutableList.<Class<?>> of(
+      ApiError.class,
+      ChannelResource.class,
+      ChannelsResource.class,
+      ChannelSubscriberResource.class,
+      ChannelSubscribersResource.class,
+      SubscriberWebcastActivityResource.class,
+      SubscribersWebcastActivityResource.class,
+      SurveyResource.class,
+      SurveysResource.class,
+      SurveyResponseResource.class,
+      SurveyResponsesResource.class,
+      WebcastResource.class,
+      WebcastsResource.class,
+      WebcastRegistrationResource.class,
+      WebcastRegistrationsResource.class,
+      WebcastViewingResource.class,
+      WebcastViewingsResource.class);
+
+  /** The single instance. */
+  public static final ApiResourceJaxbContext INSTANCE = new ApiResourceJaxbContext();
+
+  private final FutureTask<JAXBContext> jaxbContext = new FutureTask<>(new Callable<JAXBContext>() {
+    @Override
+    public JAXBContext call() throws JAXBException {
+      long startTime = System.nanoTime();
+      JAXBContext jaxbContext =
+          JAXBContext.newInstance(RESOURCE_CLASSES.toArray(new Class<?>[RESOURCE_CLASSES.size()]));
+      logger.debug("Created JAXB context for [{}] API resource classes in [{}] ms.", RESOURCE_CLASSES.size(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      return jaxbContext;
+    }
+  });
+  private final AtomicBoolean started = new AtomicBoolean();
+
+  private ApiResourceJaxbContext() {
+  }
+
+  /**
+   * Starts creating the context on a new (daemon) background thread, unless creating it has already been started, in
+   * which case this method has no effect. Returns immediately.
+   */
+  public void initialiseInBackground() {
+    if (this.started.compareAndSet(false, true)) {
+      Thread thread = new Thread(this.jaxbContext, "api-resource-jaxb-context-init");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Gets the context, creating it in the calling thread if creating it hasn't already been started, or waiting for it
+   * to be created if it's being created in the background.
+   * 
+   * @return The {@link JAXBContext}.
+   * @throws ApiClientException If the context couldn't be created, or the calling thread is interrupted whilst
+   * waiting for it to be created.
+   */
+  @Override
+  public JAXBContext get() throws ApiClientException {
+    if (this.started.compareAndSet(false, true)) {
+      this.jaxbContext.run();
+    }
+    try {
+      return this.jaxbContext.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiClientException("Interrupted waiting for JAXB context to be created.", e);
+    } catch (ExecutionException e) {
+      throw new ApiClientException("Error creating JAXB context for API resources.", e.getCause());
+    }
+  }
+
+  /**
+   * @return True if the context has been created (or failed to be), false otherwise.
+   */
+  public boolean isInitialised() {
+    return this.jaxbContext.isDone();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded pool of canonical String instances, used to ensure that equal strings which occur repeatedly, such as the
+ * values of low-cardinality fields of API resources, share a single instance, reducing the memory retained by the
+ * unmarshalled resources.
+ * <p>
+ * Unlike {@link String#intern()}, or an unbounded map, the pool has a fixed capacity. It's implemented as a
+ * direct-mapped table of strings, indexed by their hash code. A string is canonicalised by returning the string in its
+ * slot of the table if it's equal, or otherwise storing the string in the slot, replacing any previous string, and
+ * returning it. Canonicalisation is therefore best effort - two equal strings are only guaranteed to be the same
+ * instance if there has been no intervening canonicalisation of another string with the same slot. This makes it
+ * unsuitable for high-cardinality values, for which the pool would provide no benefit anyway.
+ * <p>
+ * Thread-safe, and non-blocking.
+ * 
+ * @author Neil Brown
+ */
+public class CanonicalStringPool {
+
+  /** The default capacity of a pool. */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private static final CanonicalStringPool SHARED_INSTANCE = new CanonicalStringPool(DEFAULT_CAPACITY);
+
+  private final AtomicReferenceArray<String> table;
+  private final int mask;
+
+  /**
+   * @param capacity The max no. of strings held by the pool. Must be a positive power of two.
+   */
+  public CanonicalStringPool(int capacity) {
+    Preconditions.checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1,
+        "capacity must be a positive power of two, not [%s].", capacity);
+    this.table = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * @return The pool of default capacity shared by all instances of the API client.
+   */
+  public static CanonicalStringPool sharedInstance() {
+    return SHARED_INSTANCE;
+  }
+
+  /**
+   * Returns the canonical instance of a supplied string.
+   * 
+   * @param value The string to canonicalise. May be null.
+   * @return An instance of a string which is equal to the supplied string, which is the same instance returned for
+   * previous calls with an equal string, if still held in the pool; or null if the supplied string is null.
+   */
+  public String canonicalise(String value) {
+    if (value == null) {
+      return null;
+    }
+    int hash = value.hashCode();
+    // Spread the higher bits of the hash into the lower bits used to select the slot
+    int index = (hash ^ (hash >>> 16)) & this.mask;
+    String pooledValue = this.table.get(index);
+    if (value.equals(pooledValue)) {
+      return pooledValue;
+    }
+    this.table.lazySet(index, value);
+    return value;
+  }
+
+  /**
+   * @return The max no. of strings held by the pool.
+   */
+  public final int getCapacity() {
+    return this.table.length();
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("capacity", this.getCapacity())
+      .toString();
+    /* @formatter:on */
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+/**
+ * Custom class of JAXB {@link XmlAdapter} which canonicalises unmarshalled strings using the shared
+ * {@link CanonicalStringPool}, so that equal values share the same String instance.
+ * 
+ * <h2>Motivation</h2>
+ * Pages of API resources repeat the same values of some fields many times, e.g. the country or industry of the users
+ * embedded in a page of webcast viewings, or the status of a webcast. Without canonicalisation, each occurrence of a
+ * value is unmarshalled as a separate String, which can account for a significant proportion of the memory retained by
+ * pages of resources which are held in memory for processing.
+ * <p>
+ * Canonicalisation is opt-in, per field, by annotating the field with
+ * {@code @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)}. It should only be used for fields with a small no. of
+ * distinct values, as the pool is bounded.
+ * 
+ * @author Neil Brown
+ */
+public class CanonicalStringXmlAdapter extends XmlAdapter<String, String> {
+
+  private final CanonicalStringPool pool = CanonicalStringPool.sharedInstance();
+
+  @Override
+  public String unmarshal(String v) {
+    return this.pool.canonicalise(v);
+  }
+
+  @Override
+  public String marshal(String v) {
+    return v;
+  }
+}
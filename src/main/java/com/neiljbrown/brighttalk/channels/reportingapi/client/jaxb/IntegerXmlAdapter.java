@@ -29,20 +29,77 @@ import javax.xml.bind.annotation.adapters.XmlAdapter;
  * XmlAdapter has been created to work around this bug and ensure consistent error handling with the XmlAdapter for
  * other types.
  * 
+ * <h2>Performance</h2>
+ * The adapter is used for every int field of every resource, and so parses integers directly from the supplied string
+ * rather than using {@link Integer#parseInt(String)} and {@link Integer#valueOf(int)}, for strings consisting of an
+ * optional sign followed by ASCII decimal digits. Strings containing non-ASCII characters are parsed using
+ * {@link Integer#parseInt(String)}, so that the adapter accepts exactly the same strings, including those with
+ * non-ASCII digits accepted by {@link Character#digit(char, int)}. So, like {@link Integer#parseInt(String)}, it rejects
+ * values with leading or trailing whitespace, even though the XML Schema int type permits it. As the adapted
+ * fields are primitive ints, the returned Integer is only used transiently, so Integers for non-negative values up to
+ * {@link #CACHED_VALUE_LIMIT} (e.g. counts and durations) are cached and reused, extending the cache of small values
+ * used by {@link Integer#valueOf(int)}.
+ * <p>
+ * Note that JAXB always supplies an XmlAdapter with a String, so the adapter can't avoid the creation of the string
+ * itself.
+ * 
  * @author Neil Brown
  */
 public class IntegerXmlAdapter extends XmlAdapter<String, Integer> {
 
+  /** The (exclusive) upper limit of the non-negative values for which Integers are cached. */
+  static final int CACHED_VALUE_LIMIT = 4096;
+
+  /** Lazily populated cache of Integers. Racy, but benign, as Integers are immutable. */
+  private static final Integer[] CACHED_VALUES = new Integer[CACHED_VALUE_LIMIT];
+
   /**
    * {@inheritDoc}
    * 
-   * @throws NumberFormatException if the string to be unmarshalled is a non-integer string. The JAXB API states that
-   * callers of this adapter are responsible for catching this exception and reporting it to any configured
-   * ValdiationEventHandler.
+   * @throws NumberFormatException if the string to be unmarshalled is a non-integer string, or an integer which is
+   * outside the range of an int. The JAXB API states that callers of this adapter are responsible for catching this
+   * exception and reporting it to any configured ValdiationEventHandler.
    */
   @Override
   public Integer unmarshal(String v) throws Exception {
-    return Integer.parseInt(v);
+    if (v == null) {
+      // Same message as Integer.parseInt()
+      throw new NumberFormatException("null");
+    }
+    int length = v.length();
+    if (length == 0) {
+      throw newNumberFormatException(v);
+    }
+    int i = 0;
+    boolean negative = false;
+    char firstChar = v.charAt(0);
+    if (firstChar == '-' || firstChar == '+') {
+      negative = firstChar == '-';
+      i++;
+      if (i == length) {
+        throw newNumberFormatException(v);
+      }
+    }
+    // Accumulate the value negatively, as the range of negative ints is greater than that of positive ints
+    int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+    int result = 0;
+    for (; i < length; i++) {
+      char c = v.charAt(i);
+      if (c > '\u007f') {
+        // Non-ASCII digits (e.g. Arabic-Indic) are rare, so leave them to Integer.parseInt(), which accepts them
+        return valueOf(Integer.parseInt(v));
+      }
+      int digit = c - '0';
+      if (digit < 0 || digit > 9 || result < limit / 10) {
+        throw newNumberFormatException(v);
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw newNumberFormatException(v);
+      }
+      result -= digit;
+    }
+    return valueOf(negative ? result : -result);
   }
 
   /**
@@ -55,4 +112,21 @@ public class IntegerXmlAdapter extends XmlAdapter<String, Integer> {
   public String marshal(Integer v) {
     return v != null ? String.valueOf(v) : null;
   }
-}
\ No newline at end of file
+
+  private static Integer valueOf(int value) {
+    if (value < 0 || value >= CACHED_VALUE_LIMIT) {
+      return Integer.valueOf(value);
+    }
+    Integer cachedValue = CACHED_VALUES[value];
+    if (cachedValue == null) {
+      cachedValue = Integer.valueOf(value);
+      CACHED_VALUES[value] = cachedValue;
+    }
+    return cachedValue;
+  }
+
+  private static NumberFormatException newNumberFormatException(String v) {
+    // Same message as Integer.parseInt()
+    return new NumberFormatException("For input string: \"" + v + "\"");
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+
+/**
+ * Custom class of JAXB {@link XmlAdapter} which resolves unmarshalled {@link WebcastResource webcasts} embedded in
+ * other API resources to a shared instance, so that resources which refer to the same webcast share one instance.
+ * 
+ * <h2>Motivation</h2>
+ * Each webcast viewing and registration in a page embeds its own copy of the webcast it relates to, even though a page
+ * typically only relates to a few webcasts. Without sharing, a large page held in memory contains as many webcast
+ * objects as it does viewings or registrations.
+ * <p>
+ * An adapter created with a cache capacity resolves an unmarshalled webcast by its id, using a bounded cache owned by
+ * the adapter. The cache is therefore scoped to the unmarshaller(s) on which the adapter is
+ * {@link Unmarshaller#setAdapter(XmlAdapter) set}, e.g. those of one API client. The cached instance is only returned
+ * if it is {@link WebcastResource#equals(Object) equal} to the unmarshalled webcast, so sharing never changes the
+ * values seen by a caller, even if a webcast has changed between API calls. Otherwise the unmarshalled webcast replaces
+ * the cached instance. The cache is implemented as a table of webcasts indexed by id, holding at most one webcast per
+ * slot, so resolution is best effort for webcasts whose ids map to the same slot.
+ * <p>
+ * Applied to the webcast field of the webcast viewing and registration resources. Unless an adapter created with a
+ * cache capacity is set on the unmarshaller, JAXB uses an instance created with the default constructor, which returns
+ * unmarshalled webcasts unchanged. As shared instances may be returned to more than one caller, {@link WebcastResource}
+ * doesn't expose its mutable state.
+ * <p>
+ * Thread-safe, and non-blocking.
+ * 
+ * @author Neil Brown
+ */
+public class SharedWebcastXmlAdapter extends XmlAdapter<WebcastResource, WebcastResource> {
+
+  /** The default max no. of webcasts held in an adapter's cache. */
+  public static final int DEFAULT_CACHE_CAPACITY = 1024;
+
+  private final AtomicReferenceArray<WebcastResource> cache;
+
+  /**
+   * Creates an adapter which doesn't share webcasts.
+   */
+  public SharedWebcastXmlAdapter() {
+    this.cache = null;
+  }
+
+  /**
+   * @param cacheCapacity The max no. of webcasts held in the adapter's cache. Must be a positive power of two.
+   */
+  public SharedWebcastXmlAdapter(int cacheCapacity) {
+    Preconditions.checkArgument(cacheCapacity > 0 && Integer.bitCount(cacheCapacity) == 1,
+        "cacheCapacity must be a positive power of two, not [%s].", cacheCapacity);
+    this.cache = new AtomicReferenceArray<>(cacheCapacity);
+  }
+
+  @Override
+  public WebcastResource unmarshal(WebcastResource v) {
+    if (v == null || this.cache == null) {
+      return v;
+    }
+    int index = v.getId() & (this.cache.length() - 1);
+    WebcastResource cachedWebcast = this.cache.get(index);
+    if (v.equals(cachedWebcast)) {
+      return cachedWebcast;
+    }
+    this.cache.lazySet(index, v);
+    return v;
+  }
+
+  @Override
+  public WebcastResource marshal(WebcastResource v) {
+    return v;
+  }
+
+  /**
+   * @return The max no. of webcasts held in the adapter's cache, or zero if the adapter doesn't share webcasts.
+   */
+  public final int getCacheCapacity() {
+    return this.cache != null ? this.cache.length() : 0;
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ResourceCallbackHandler;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.LinkRelationType;
+
+/**
+ * Unmarshaller which reads a page of a collection of API resources from an XML document as a stream, using StAX, and
+ * unmarshalls the resources in the page one at a time, passing each one to a {@link ResourceCallbackHandler} as soon as
+ * it has been read.
+ * <p>
+ * Unlike unmarshalling the page as a whole (e.g. as a
+ * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource}), the memory used is
+ * proportional to the size of a single resource rather than the size of the page, as no reference to a resource is
+ * retained once it has been processed.
+ * <p>
+ * Resources are unmarshalled using the supplied {@link JAXBContext}, and so are bound in exactly the same way as when
+ * the page is unmarshalled as a whole, including the reporting of validation errors to any supplied
+ * {@link ValidationEventHandler}. Unmarshallers are reused across calls, from an {@link UnmarshallerPool}.
+ * <p>
+ * Thread-safe.
+ * 
+ * @author Neil Brown
+ */
+public class StaxResourceCollectionUnmarshaller {
+
+  private static final Logger logger = LoggerFactory.getLogger(StaxResourceCollectionUnmarshaller.class);
+
+  private static final String LINK_ELEMENT_NAME = "link";
+
+  private final UnmarshallerPool unmarshallerPool;
+  private final XMLInputFactory xmlInputFactory;
+
+  /**
+   * @param jaxbContext The {@link JAXBContext} used to unmarshal resources. Must be aware of the classes of resource to
+   * be unmarshalled, and {@link Link}.
+   * @param validationEventHandler Optional {@link ValidationEventHandler} to be used on unmarshalling. If null, the
+   * default JAXB event handler is used.
+   */
+  public StaxResourceCollectionUnmarshaller(JAXBContext jaxbContext, ValidationEventHandler validationEventHandler) {
+    this(Suppliers.ofInstance(Preconditions.checkNotNull(jaxbContext, "jaxbContext must not be null.")),
+        validationEventHandler);
+  }
+
+  /**
+   * Creates an unmarshaller which gets the {@link JAXBContext} from a supplier on first use, e.g. to support the
+   * context being created in the background.
+   * 
+   * @param jaxbContext The {@link Supplier} of the {@link JAXBContext} used to unmarshal resources. Must supply a
+   * context which is aware of the classes of resource to be unmarshalled, and {@link Link}.
+   * @param validationEventHandler Optional {@link ValidationEventHandler} to be used on unmarshalling. If null, the
+   * default JAXB event handler is used.
+   */
+  public StaxResourceCollectionUnmarshaller(Supplier<JAXBContext> jaxbContext,
+      ValidationEventHandler validationEventHandler) {
+    this(jaxbContext, validationEventHandler, Collections.<XmlAdapter<?, ?>> emptyList());
+  }
+
+  /**
+   * Creates an unmarshaller which gets the {@link JAXBContext} from a supplier on first use, and configures the JAXB
+   * unmarshallers it uses with a supplied list of {@link XmlAdapter adapters}.
+   * 
+   * @param jaxbContext The {@link Supplier} of the {@link JAXBContext} used to unmarshal resources. Must supply a
+   * context which is aware of the classes of resource to be unmarshalled, and {@link Link}.
+   * @param validationEventHandler Optional {@link ValidationEventHandler} to be used on unmarshalling. If null, the
+   * default JAXB event handler is used.
+   * @param adapters The list of thread-safe {@link XmlAdapter} to be used on unmarshalling. May be empty.
+   * @see UnmarshallerPool#UnmarshallerPool(Supplier, ValidationEventHandler, List, int)
+   */
+  public StaxResourceCollectionUnmarshaller(Supplier<JAXBContext> jaxbContext,
+      ValidationEventHandler validationEventHandler, List<? extends XmlAdapter<?, ?>> adapters) {
+    this.unmarshallerPool =
+        new UnmarshallerPool(jaxbContext, validationEventHandler, adapters, UnmarshallerPool.DEFAULT_MAX_IDLE);
+    this.xmlInputFactory = XMLInputFactory.newInstance();
+    // Disable support for DTDs and external entities, neither of which are used by the API, to prevent XXE attacks
+    this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  /**
+   * Reads a page of a collection of resources from a supplied stream, unmarshalling each resource in turn and passing
+   * it to a supplied callback handler.
+   * <p>
+   * Resources are identified as those child elements of the document's root element with the same name as the root
+   * element of the resource class. Any link elements which are children of the root element are also unmarshalled, to
+   * identify the link to the next page of the collection. All other elements are ignored.
+   * 
+   * @param <E> The class of resource contained in the collection.
+   * @param inputStream The {@link InputStream} to read the XML document from. Not closed by this method.
+   * @param resourceClass The class of resource contained in the collection. Must be annotated with
+   * {@link XmlRootElement}.
+   * @param callbackHandler The {@link ResourceCallbackHandler} to call for each resource.
+   * @return The {@link Link} to the next page of the collection, or null if the page is the last page.
+   * @throws ApiClientException If an error occurs reading or unmarshalling the document.
+   */
+  public <E> Link unmarshal(InputStream inputStream, Class<E> resourceClass,
+      ResourceCallbackHandler<? super E> callbackHandler) throws ApiClientException {
+    Preconditions.checkNotNull(inputStream, "inputStream must not be null.");
+    Preconditions.checkNotNull(callbackHandler, "callbackHandler must not be null.");
+    String resourceElementName = getRootElementName(resourceClass);
+    XMLStreamReader reader = null;
+    try {
+      Unmarshaller unmarshaller = this.unmarshallerPool.borrow();
+      reader = this.xmlInputFactory.createXMLStreamReader(inputStream);
+      Link nextPageLink = null;
+      int resourceCount = 0;
+      // Depth of the current element, relative to the document, where the root element has a depth of 1
+      int depth = 0;
+      while (reader.getEventType() != XMLStreamConstants.END_DOCUMENT) {
+        if (reader.isStartElement()) {
+          String elementName = reader.getLocalName();
+          if (depth == 1 && resourceElementName.equals(elementName)) {
+            // Unmarshalling consumes the whole element, leaving the reader positioned at the following event
+            callbackHandler.processResource(unmarshaller.unmarshal(reader, resourceClass).getValue());
+            resourceCount++;
+            continue;
+          } else if (depth == 1 && LINK_ELEMENT_NAME.equals(elementName)) {
+            Link link = unmarshaller.unmarshal(reader, Link.class).getValue();
+            if (LinkRelationType.next.name().equals(link.getRel())) {
+              nextPageLink = link;
+            }
+            continue;
+          }
+          depth++;
+        } else if (reader.isEndElement()) {
+          depth--;
+        }
+        reader.next();
+      }
+      logger.debug("Unmarshalled [{}] resources of class [{}]. Next page link [{}].", resourceCount,
+          resourceClass.getSimpleName(), nextPageLink);
+      // Only reuse the unmarshaller if the whole document was unmarshalled successfully
+      this.unmarshallerPool.release(unmarshaller);
+      return nextPageLink;
+    } catch (XMLStreamException | JAXBException e) {
+      throw new ApiClientException("Error unmarshalling collection of [" + resourceClass.getName() + "].", e);
+    } finally {
+      closeQuietly(reader);
+    }
+  }
+
+  private static String getRootElementName(Class<?> resourceClass) {
+    Preconditions.checkNotNull(resourceClass, "resourceClass must not be null.");
+    XmlRootElement rootElement = resourceClass.getAnnotation(XmlRootElement.class);
+    Preconditions.checkArgument(rootElement != null, "Resource class [%s] must be annotated with @XmlRootElement.",
+        resourceClass.getName());
+    return rootElement.name();
+  }
+
+  private static void closeQuietly(XMLStreamReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        logger.debug("Error closing XMLStreamReader. Ignoring.", e);
+      }
+    }
+  }
+}
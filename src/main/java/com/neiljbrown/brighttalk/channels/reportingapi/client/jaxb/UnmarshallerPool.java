@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A bounded pool of JAXB {@link Unmarshaller}, supporting the reuse of unmarshallers across API responses, rather than
+ * creating (and configuring) a new one for each response.
+ * <p>
+ * An {@link Unmarshaller} is not thread-safe, but is cheap to reuse for a sequence of documents. Callers
+ * {@link #borrow()} an unmarshaller for their exclusive use, and {@link #release(Unmarshaller)} it back to the pool
+ * when they've finished unmarshalling. Borrowing never blocks - if there are no idle unmarshallers a new one is created
+ * - so the pool can be shared by any no. of concurrent (including asynchronous) callers. The no. of idle unmarshallers
+ * retained for reuse is bounded by a configured max. Unmarshallers released to a full pool are discarded.
+ * <p>
+ * Every unmarshaller is configured identically on creation, with any supplied {@link ValidationEventHandler} and
+ * {@link XmlAdapter adapters}, so reuse doesn't change whether validation errors are treated as lenient or fatal.
+ * Callers must not reconfigure a borrowed unmarshaller. To avoid reusing an unmarshaller left in an unknown state,
+ * callers should only release an unmarshaller after it has been used successfully, and otherwise just drop it.
+ * <p>
+ * Note that an idle unmarshaller may retain a reference to the last object it unmarshalled, until it is next used.
+ * The max no. of idle unmarshallers therefore also bounds the no. of such objects that may be kept in memory.
+ * <p>
+ * Thread-safe.
+ * 
+ * @author Neil Brown
+ */
+public class UnmarshallerPool {
+
+  /** The default max no. of idle unmarshallers retained by the pool. */
+  public static final int DEFAULT_MAX_IDLE = 8;
+
+  private final Supplier<JAXBContext> jaxbContext;
+  private final ValidationEventHandler validationEventHandler;
+  private final List<XmlAdapter<?, ?>> adapters;
+  private final BlockingQueue<Unmarshaller> idleUnmarshallers;
+  private final int maxIdle;
+
+  /**
+   * @param jaxbContext The {@link Supplier} of the {@link JAXBContext} used to create unmarshallers. The context is
+   * only requested when the first unmarshaller is created.
+   * @param validationEventHandler Optional {@link ValidationEventHandler} to be used by each unmarshaller. If null, the
+   * default JAXB event handler is used.
+   * @param maxIdle The max no. of idle unmarshallers to retain for reuse. Must be a positive number.
+   */
+  public UnmarshallerPool(Supplier<JAXBContext> jaxbContext, ValidationEventHandler validationEventHandler,
+      int maxIdle) {
+    this(jaxbContext, validationEventHandler, Collections.<XmlAdapter<?, ?>> emptyList(), maxIdle);
+  }
+
+  /**
+   * Creates a pool of unmarshallers which are each configured with a supplied list of {@link XmlAdapter adapters}, in
+   * place of the instances of the same classes of adapter which JAXB would otherwise create, e.g. adapters which are
+   * configured with state shared by all unmarshallers.
+   * 
+   * @param jaxbContext The {@link Supplier} of the {@link JAXBContext} used to create unmarshallers. The context is
+   * only requested when the first unmarshaller is created.
+   * @param validationEventHandler Optional {@link ValidationEventHandler} to be used by each unmarshaller. If null, the
+   * default JAXB event handler is used.
+   * @param adapters The list of {@link XmlAdapter} to be set on each unmarshaller. May be empty. As the adapters are
+   * shared by all unmarshallers, they must be thread-safe.
+   * @param maxIdle The max no. of idle unmarshallers to retain for reuse. Must be a positive number.
+   */
+  public UnmarshallerPool(Supplier<JAXBContext> jaxbContext, ValidationEventHandler validationEventHandler,
+      List<? extends XmlAdapter<?, ?>> adapters, int maxIdle) {
+    this.jaxbContext = Preconditions.checkNotNull(jaxbContext, "jaxbContext must not be null.");
+    this.validationEventHandler = validationEventHandler;
+    this.adapters = ImmutableList.copyOf(Preconditions.checkNotNull(adapters, "adapters must not be null."));
+    Preconditions.checkArgument(maxIdle > 0, "maxIdle must be a positive number, not [%s].", maxIdle);
+    this.maxIdle = maxIdle;
+    this.idleUnmarshallers = new ArrayBlockingQueue<>(maxIdle);
+  }
+
+  /**
+   * Borrows an unmarshaller for the exclusive use of the caller, reusing an idle unmarshaller if there is one, or
+   * otherwise creating a new one.
+   * 
+   * @return The {@link Unmarshaller}. Never null.
+   * @throws JAXBException If an error occurs creating a new unmarshaller.
+   */
+  public Unmarshaller borrow() throws JAXBException {
+    Unmarshaller unmarshaller = this.idleUnmarshallers.poll();
+    return unmarshaller != null ? unmarshaller : this.createUnmarshaller();
+  }
+
+  /**
+   * Releases a previously borrowed unmarshaller back to the pool, so it can be reused, unless the pool already holds
+   * the max no. of idle unmarshallers, in which case it's discarded.
+   * 
+   * @param unmarshaller The {@link Unmarshaller} which was returned by {@link #borrow()}, and is no longer in use.
+   */
+  public void release(Unmarshaller unmarshaller) {
+    Preconditions.checkNotNull(unmarshaller, "unmarshaller must not be null.");
+    this.idleUnmarshallers.offer(unmarshaller);
+  }
+
+  /**
+   * @return The max no. of idle unmarshallers retained for reuse.
+   */
+  public final int getMaxIdle() {
+    return this.maxIdle;
+  }
+
+  /**
+   * @return The no. of idle unmarshallers currently available for reuse.
+   */
+  public final int getIdleCount() {
+    return this.idleUnmarshallers.size();
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("validationEventHandler", this.validationEventHandler)
+      .add("adapters", this.adapters)
+      .add("maxIdle", this.maxIdle)
+      .add("idleCount", this.getIdleCount())
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Creates and configures a new unmarshaller. Subclasses may override this method to customise the configuration,
+   * which must be the same for every unmarshaller.
+   * 
+   * @return The new {@link Unmarshaller}.
+   * @throws JAXBException If an error occurs creating the unmarshaller.
+   */
+  protected Unmarshaller createUnmarshaller() throws JAXBException {
+    Unmarshaller unmarshaller = this.jaxbContext.get().createUnmarshaller();
+    if (this.validationEventHandler != null) {
+      unmarshaller.setEventHandler(this.validationEventHandler);
+    }
+    for (XmlAdapter<?, ?> adapter : this.adapters) {
+      unmarshaller.setAdapter(adapter);
+    }
+    return unmarshaller;
+  }
+}
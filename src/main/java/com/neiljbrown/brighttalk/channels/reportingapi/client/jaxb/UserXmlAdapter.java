@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.User;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.UserIdentityMap;
+
+/**
+ * Custom class of JAXB {@link XmlAdapter} which resolves the {@link User users} embedded in unmarshalled API resources
+ * using an optional {@link UserIdentityMap}, so that equal users share the same instance.
+ * <p>
+ * Applied to every field of type {@link User} in the API resource classes. Unless an instance of the adapter created
+ * with a {@link UserIdentityMap} is {@link Unmarshaller#setAdapter(XmlAdapter) set} on the unmarshaller, JAXB uses an
+ * instance created with the default constructor, which returns unmarshalled users unchanged.
+ * <p>
+ * Thread-safe.
+ * 
+ * @author Neil Brown
+ */
+public class UserXmlAdapter extends XmlAdapter<User, User> {
+
+  private final UserIdentityMap userIdentityMap;
+
+  /**
+   * Creates an adapter which doesn't resolve users.
+   */
+  public UserXmlAdapter() {
+    this.userIdentityMap = null;
+  }
+
+  /**
+   * @param userIdentityMap The {@link UserIdentityMap} used to resolve unmarshalled users.
+   */
+  public UserXmlAdapter(UserIdentityMap userIdentityMap) {
+    this.userIdentityMap = Preconditions.checkNotNull(userIdentityMap, "userIdentityMap must not be null.");
+  }
+
+  @Override
+  public User unmarshal(User v) {
+    return this.userIdentityMap != null ? this.userIdentityMap.resolve(v) : v;
+  }
+
+  @Override
+  public User marshal(User v) {
+    return v;
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.metrics;
+
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.HttpErrorResponseException;
+
+/**
+ * Records the metrics for a single API call, made by an API client operation, and reports them to a
+ * {@link MetricsRegistry} when the call ends.
+ * <p>
+ * The following metrics are reported, all tagged with the name of the {@link #TAG_OPERATION API client operation} -
+ * <ul>
+ * <li>{@link #REQUESTS} - A count of calls.</li>
+ * <li>{@link #ERRORS} - A count of failed calls, additionally tagged with the HTTP {@link #TAG_STATUS status} and
+ * {@link #TAG_ERROR_CODE error code} - the code of the API error returned by the API, or the class of exception if no
+ * HTTP response was received.</li>
+ * <li>{@link #LATENCY_CONNECT} - The time taken to establish a connection (including any TLS handshake). Only recorded
+ * if a new connection was established, rather than a pooled connection reused.</li>
+ * <li>{@link #LATENCY_TIME_TO_FIRST_BYTE} - The time from the start of the call until the HTTP response headers were
+ * received.</li>
+ * <li>{@link #LATENCY_UNMARSHAL} - The time from receipt of the HTTP response headers until the response body has been
+ * read and unmarshalled. (The body is unmarshalled as it's read, so the two can't be measured separately).</li>
+ * <li>{@link #LATENCY_TOTAL} - The total duration of the call.</li>
+ * <li>{@link #LATENCY_RATE_LIMIT_WAIT} - The time spent waiting for a client-side rate limit permit before the call
+ * started, which is excluded from the other latencies. Only recorded if a rate limiter is used.</li>
+ * <li>{@link #RESPONSE_BYTES} - The size of the HTTP response body, tagged with an {@link #TAG_ENCODING encoding} of
+ * either {@link #ENCODING_COMPRESSED} (as received) or {@link #ENCODING_DECOMPRESSED}.</li>
+ * <li>{@link #PAGE_ITEMS} - The no. of resources in a page of a resource collection.</li>
+ * </ul>
+ * The metrics for the call in progress on the current thread are made available to the components of the HTTP client
+ * (which record the phases of the call they observe) via {@link #current()}. Instances of this class are therefore
+ * confined to the thread making the call, and are not thread-safe.
+ * 
+ * @author Neil Brown
+ */
+public final class ApiCallMetrics {
+
+  /** Name of the counter of API calls. */
+  public static final String REQUESTS = "brighttalk.reportingapi.client.requests";
+  /** Name of the counter of failed API calls. */
+  public static final String ERRORS = "brighttalk.reportingapi.client.errors";
+  /** Name of the timer of the time taken to establish a new connection. */
+  public static final String LATENCY_CONNECT = "brighttalk.reportingapi.client.latency.connect";
+  /** Name of the timer of the time until the HTTP response headers were received. */
+  public static final String LATENCY_TIME_TO_FIRST_BYTE = "brighttalk.reportingapi.client.latency.ttfb";
+  /** Name of the timer of the time taken to read and unmarshal the HTTP response body. */
+  public static final String LATENCY_UNMARSHAL = "brighttalk.reportingapi.client.latency.unmarshal";
+  /** Name of the timer of the total duration of API calls. */
+  public static final String LATENCY_TOTAL = "brighttalk.reportingapi.client.latency.total";
+  /** Name of the timer of the time spent waiting for a rate limit permit before the call started. */
+  public static final String LATENCY_RATE_LIMIT_WAIT = "brighttalk.reportingapi.client.latency.ratelimit.wait";
+  /** Name of the distribution of HTTP response body sizes, in bytes. */
+  public static final String RESPONSE_BYTES = "brighttalk.reportingapi.client.response.bytes";
+  /** Name of the distribution of the no. of resources per page of a resource collection. */
+  public static final String PAGE_ITEMS = "brighttalk.reportingapi.client.page.items";
+
+  /** Tag identifying the API client operation, e.g. "getWebcastViewingsForChannel". */
+  public static final String TAG_OPERATION = "operation";
+  /** Tag identifying the HTTP status code of a failed call. */
+  public static final String TAG_STATUS = "status";
+  /** Tag identifying the cause of a failed call. */
+  public static final String TAG_ERROR_CODE = "errorCode";
+  /** Tag identifying whether a response size is before or after decompression. */
+  public static final String TAG_ENCODING = "encoding";
+  /** Value of {@link #TAG_ENCODING} for the size of the response body as received, before any decompression. */
+  public static final String ENCODING_COMPRESSED = "compressed";
+  /** Value of {@link #TAG_ENCODING} for the size of the response body after any decompression. */
+  public static final String ENCODING_DECOMPRESSED = "decompressed";
+  /** Value of a tag which is not applicable, e.g. the HTTP status of a call that failed before receiving a response. */
+  public static final String TAG_VALUE_NONE = "none";
+
+  private static final ThreadLocal<ApiCallMetrics> currentCall = new ThreadLocal<>();
+
+  private final String operation;
+  private final long startNanos;
+  private long rateLimitWaitNanos = -1;
+  private long connectNanos = -1;
+  private long firstByteNanos = -1;
+  private long compressedBytes;
+  private long decompressedBytes;
+  private int pageItemCount = -1;
+
+  private ApiCallMetrics(String operation, long startNanos) {
+    this.operation = operation;
+    this.startNanos = startNanos;
+  }
+
+  /**
+   * Starts recording the metrics for an API call, made on the current thread.
+   * 
+   * @param operation The name of the API client operation making the call.
+   * @return The {@link ApiCallMetrics} for the call, which is also returned by {@link #current()} until the call
+   * {@link #end ends}.
+   */
+  public static ApiCallMetrics start(String operation) {
+    ApiCallMetrics callMetrics =
+        new ApiCallMetrics(Preconditions.checkNotNull(operation, "operation must not be null."), System.nanoTime());
+    currentCall.set(callMetrics);
+    return callMetrics;
+  }
+
+  /**
+   * @return The {@link ApiCallMetrics} for the API call in progress on the current thread, or null if there isn't one,
+   * e.g. metrics are disabled.
+   */
+  public static ApiCallMetrics current() {
+    return currentCall.get();
+  }
+
+  /**
+   * Records the time spent waiting for a rate limit permit before the call started.
+   * 
+   * @param durationNanos The time waited, in nanoseconds.
+   */
+  public void recordRateLimitWait(long durationNanos) {
+    this.rateLimitWaitNanos = durationNanos;
+  }
+
+  /**
+   * Records the time taken to establish a new connection. If more than one connection is established (e.g. on following
+   * a redirect) the total time is recorded.
+   * 
+   * @param durationNanos The time taken, in nanoseconds.
+   */
+  public void recordConnect(long durationNanos) {
+    this.connectNanos = Math.max(this.connectNanos, 0) + durationNanos;
+  }
+
+  /**
+   * Records that the HTTP response headers have been received.
+   */
+  public void recordResponseHeadersReceived() {
+    this.firstByteNanos = System.nanoTime();
+  }
+
+  /**
+   * @param bytes A no. of bytes of the response body read, as received, before any decompression.
+   */
+  public void addCompressedBytes(long bytes) {
+    this.compressedBytes += bytes;
+  }
+
+  /**
+   * @param bytes A no. of bytes of the response body read, after any decompression.
+   */
+  public void addDecompressedBytes(long bytes) {
+    this.decompressedBytes += bytes;
+  }
+
+  /**
+   * @param pageItemCount The no. of resources in the returned page of a resource collection.
+   */
+  public void setPageItemCount(int pageItemCount) {
+    this.pageItemCount = pageItemCount;
+  }
+
+  /**
+   * Ends the call, reporting its metrics to a supplied registry, and clearing the current call.
+   * 
+   * @param metricsRegistry The {@link MetricsRegistry} to report to.
+   * @param error The exception which caused the call to fail, or null if it succeeded.
+   */
+  public void end(MetricsRegistry metricsRegistry, Throwable error) {
+    long endNanos = System.nanoTime();
+    if (currentCall.get() == this) {
+      currentCall.remove();
+    }
+    Map<String, String> tags = ImmutableMap.of(TAG_OPERATION, this.operation);
+    metricsRegistry.incrementCounter(REQUESTS, tags);
+    if (error != null) {
+      metricsRegistry.incrementCounter(ERRORS, ImmutableMap.of(TAG_OPERATION, this.operation, TAG_STATUS,
+          getStatus(error), TAG_ERROR_CODE, getErrorCode(error)));
+    }
+    if (this.rateLimitWaitNanos >= 0) {
+      metricsRegistry.recordTime(LATENCY_RATE_LIMIT_WAIT, tags, this.rateLimitWaitNanos);
+    }
+    if (this.connectNanos >= 0) {
+      metricsRegistry.recordTime(LATENCY_CONNECT, tags, this.connectNanos);
+    }
+    if (this.firstByteNanos >= 0) {
+      metricsRegistry.recordTime(LATENCY_TIME_TO_FIRST_BYTE, tags, this.firstByteNanos - this.startNanos);
+      if (error == null) {
+        metricsRegistry.recordTime(LATENCY_UNMARSHAL, tags, endNanos - this.firstByteNanos);
+      }
+      metricsRegistry.recordValue(RESPONSE_BYTES,
+          ImmutableMap.of(TAG_OPERATION, this.operation, TAG_ENCODING, ENCODING_COMPRESSED), this.compressedBytes);
+      metricsRegistry.recordValue(RESPONSE_BYTES,
+          ImmutableMap.of(TAG_OPERATION, this.operation, TAG_ENCODING, ENCODING_DECOMPRESSED), this.decompressedBytes);
+    }
+    metricsRegistry.recordTime(LATENCY_TOTAL, tags, endNanos - this.startNanos);
+    if (error == null && this.pageItemCount >= 0) {
+      metricsRegistry.recordValue(PAGE_ITEMS, tags, this.pageItemCount);
+    }
+  }
+
+  /**
+   * @return The name of the API client operation making the call.
+   */
+  public String getOperation() {
+    return this.operation;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("operation", this.operation)
+      .add("rateLimitWaitNanos", this.rateLimitWaitNanos)
+      .add("connectNanos", this.connectNanos)
+      .add("compressedBytes", this.compressedBytes)
+      .add("decompressedBytes", this.decompressedBytes)
+      .add("pageItemCount", this.pageItemCount)
+      .toString();
+    /* @formatter:on */
+  }
+
+  private static String getStatus(Throwable error) {
+    return error instanceof HttpErrorResponseException ? String.valueOf(((HttpErrorResponseException) error)
+        .getStatusCode()) : TAG_VALUE_NONE;
+  }
+
+  private static String getErrorCode(Throwable error) {
+    if (error instanceof ApiErrorResponseException) {
+      ApiErrorResponseException apiErrorException = (ApiErrorResponseException) error;
+      String code = apiErrorException.getApiError() != null ? apiErrorException.getApiError().getCode() : null;
+      return code != null ? code : TAG_VALUE_NONE;
+    }
+    return error instanceof HttpErrorResponseException ? TAG_VALUE_NONE : error.getClass().getSimpleName();
+  }
+}
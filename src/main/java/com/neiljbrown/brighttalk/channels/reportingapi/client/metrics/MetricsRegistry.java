@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.metrics;
+
+import java.util.Map;
+
+/**
+ * A registry of metrics, to which an API client reports the metrics it records for each API call, e.g. request and
+ * error counts, latencies, and response sizes. See {@link ApiCallMetrics} for the names and tags of the reported
+ * metrics.
+ * <p>
+ * Implementations adapt the metrics to a specific monitoring library or system (e.g. maintaining counters and
+ * histograms keyed by the metric name and tags). Implementations must be thread-safe, and should be fast and
+ * non-blocking as they're called on the thread making the API call. A {@link NoOpMetricsRegistry no-op implementation}
+ * is used by default.
+ * 
+ * @author Neil Brown
+ */
+public interface MetricsRegistry {
+
+  /**
+   * Increments a named counter by one.
+   * 
+   * @param name The name of the counter.
+   * @param tags The dimensions of the metric, e.g. the API operation. Never null.
+   */
+  void incrementCounter(String name, Map<String, String> tags);
+
+  /**
+   * Records a duration in a named timer (latency histogram).
+   * 
+   * @param name The name of the timer.
+   * @param tags The dimensions of the metric, e.g. the API operation. Never null.
+   * @param durationNanos The duration, in nanoseconds.
+   */
+  void recordTime(String name, Map<String, String> tags, long durationNanos);
+
+  /**
+   * Records a value in a named distribution (histogram), e.g. a no. of bytes or items.
+   * 
+   * @param name The name of the distribution.
+   * @param tags The dimensions of the metric, e.g. the API operation. Never null.
+   * @param value The value.
+   */
+  void recordValue(String name, Map<String, String> tags, long value);
+}
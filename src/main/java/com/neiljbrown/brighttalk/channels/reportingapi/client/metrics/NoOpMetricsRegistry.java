@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.metrics;
+
+import java.util.Map;
+
+/**
+ * A {@link MetricsRegistry} which discards all metrics. Used by default, when no other registry is configured.
+ * 
+ * @author Neil Brown
+ */
+public final class NoOpMetricsRegistry implements MetricsRegistry {
+
+  /** The singleton instance of this class. */
+  public static final NoOpMetricsRegistry INSTANCE = new NoOpMetricsRegistry();
+
+  private NoOpMetricsRegistry() {
+  }
+
+  @Override
+  public void incrementCounter(String name, Map<String, String> tags) {
+  }
+
+  @Override
+  public void recordTime(String name, Map<String, String> tags, long durationNanos) {
+  }
+
+  @Override
+  public void recordValue(String name, Map<String, String> tags, long value) {
+  }
+}
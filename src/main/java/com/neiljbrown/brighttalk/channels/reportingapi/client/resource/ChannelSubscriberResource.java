@@ -24,8 +24,10 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import com.google.common.base.Objects;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UserXmlAdapter;
 
 /**
  * A current or past subscriber to a BrightTALK Channel. Comprises the subscriber’s BrightTALK user ID, their accessible
@@ -41,6 +43,7 @@ public class ChannelSubscriberResource {
   private Date lastSubscribed;
   private Date unsubscribed;
   private Embed embed;
+  @XmlJavaTypeAdapter(UserXmlAdapter.class)
   private User user;
   @XmlElement(name = "link")
   private List<Link> links = new ArrayList<>();
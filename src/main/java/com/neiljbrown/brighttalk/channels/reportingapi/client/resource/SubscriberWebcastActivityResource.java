@@ -25,8 +25,10 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementRef;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import com.google.common.base.Objects;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UserXmlAdapter;
 
 /**
  * An aggregated summary of a Channel Subscriber’s activity for a given Webcast.
@@ -39,6 +41,7 @@ public class SubscriberWebcastActivityResource {
   @XmlAttribute
   private int id;
   private WebcastResource webcast;
+  @XmlJavaTypeAdapter(UserXmlAdapter.class)
   private User user;
   private boolean preregistered;
   private int totalViewings;
@@ -25,8 +25,10 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import com.google.common.base.Objects;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UserXmlAdapter;
 
 /**
  * A BrightTALK user's response to a Survey.
@@ -39,6 +41,7 @@ public class SurveyResponseResource {
   @XmlAttribute
   private int id;
   private SurveyResource survey;
+  @XmlJavaTypeAdapter(UserXmlAdapter.class)
   private User user;
   @XmlElementWrapper(name = "questions")
   @XmlElement(name = "question")
@@ -18,8 +18,10 @@ package com.neiljbrown.brighttalk.channels.reportingapi.client.resource;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import com.google.common.base.Objects;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.CanonicalStringXmlAdapter;
 
 /**
  * The set of BrightTALK subscriber's registered user details which are accessible to a Channel owner.
@@ -35,14 +37,20 @@ public class User {
   private String realmUserId;
   private String firstName;
   private String lastName;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String timeZone;
   private String phone;
   private String jobTitle;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String level;
   private String companyName;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String companySize;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String industry;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String country;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String stateProvince;
 
   // Private, as only exists only to keep JAXB implementation happy.
@@ -24,8 +24,11 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import com.google.common.base.Objects;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.SharedWebcastXmlAdapter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UserXmlAdapter;
 
 /**
  * A registration for an upcoming {@link WebcastResource Webcast}.
@@ -37,7 +40,9 @@ import com.google.common.base.Objects;
 public class WebcastRegistrationResource {
   @XmlAttribute
   private int id;
+  @XmlJavaTypeAdapter(SharedWebcastXmlAdapter.class)
   private WebcastResource webcast;
+  @XmlJavaTypeAdapter(UserXmlAdapter.class)
   private User user;
   private Embed embed;
   private Date created;
@@ -16,6 +16,7 @@
 package com.neiljbrown.brighttalk.channels.reportingapi.client.resource;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -25,11 +26,17 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import com.google.common.base.Objects;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.CanonicalStringXmlAdapter;
 
 /**
  * A podcast, webinar or video communication in a BrightTALK Channel.
+ * <p>
+ * Immutable - the dates and lists it's created with are copied, and those it returns are copies or unmodifiable - so
+ * that one instance can safely be shared by the resources which embed it (see
+ * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.SharedWebcastXmlAdapter}).
  * 
  * @author Neil Brown
  */
@@ -49,13 +56,16 @@ public class WebcastResource {
   private Date start;
   private String keywords;
   private boolean published;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String visibility;
   private String clientBookingRef;
   private String url;
   @XmlElementWrapper(name = "categories")  
   @XmlElement(name = "category")  
   private List<String> categories;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String status;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String syndicationType;
   private Date created;
   private Date lastUpdated;
@@ -79,18 +89,18 @@ public class WebcastResource {
     this.description = description;
     this.presenter = presenter;
     this.duration = duration;
-    this.start = start;
+    this.start = copy(start);
     this.keywords = keywords;
     this.published = published;
     this.visibility = visibility;
     this.clientBookingRef = clientBookingRef;
     this.url = url;
-    this.categories = categories;
+    this.categories = categories != null ? new ArrayList<>(categories) : null;
     this.status = status;
     this.syndicationType = syndicationType;
-    this.created = created;
-    this.lastUpdated = lastUpdated;
-    this.links = links;
+    this.created = copy(created);
+    this.lastUpdated = copy(lastUpdated);
+    this.links = links != null ? new ArrayList<>(links) : null;
   }
 
   public final int getId() {
@@ -114,7 +124,7 @@ public class WebcastResource {
   }
 
   public final Date getStart() {
-    return this.start;
+    return copy(this.start);
   }
 
   public final String getKeywords() {
@@ -138,7 +148,7 @@ public class WebcastResource {
   }
 
   public final List<String> getCategories() {
-    return this.categories;
+    return this.categories != null ? Collections.unmodifiableList(this.categories) : null;
   }
 
   public final String getStatus() {
@@ -150,15 +160,15 @@ public class WebcastResource {
   }
 
   public final Date getCreated() {
-    return this.created;
+    return copy(this.created);
   }
 
   public final Date getLastUpdated() {
-    return this.lastUpdated;
+    return copy(this.lastUpdated);
   }
 
   public final List<Link> getLinks() {
-    return this.links != null ? this.links : new ArrayList<Link>();
+    return this.links != null ? Collections.unmodifiableList(this.links) : Collections.<Link>emptyList();
   }
   
   @Override
@@ -331,4 +341,8 @@ public class WebcastResource {
     }
     return true;
   }    
-}
\ No newline at end of file
+
+  private static Date copy(Date date) {
+    return date != null ? new Date(date.getTime()) : null;
+  }
+}
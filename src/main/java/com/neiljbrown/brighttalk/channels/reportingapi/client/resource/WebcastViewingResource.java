@@ -24,8 +24,12 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import com.google.common.base.Objects;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.CanonicalStringXmlAdapter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.SharedWebcastXmlAdapter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UserXmlAdapter;
 
 /**
  * A viewing of a {@link WebcastResource webcast}.
@@ -37,9 +41,12 @@ import com.google.common.base.Objects;
 public class WebcastViewingResource {
   @XmlAttribute
   private int id;
+  @XmlJavaTypeAdapter(SharedWebcastXmlAdapter.class)
   private WebcastResource webcast;
+  @XmlJavaTypeAdapter(CanonicalStringXmlAdapter.class)
   private String webcastStatus;
   private int duration;
+  @XmlJavaTypeAdapter(UserXmlAdapter.class)
   private User user;
   private Embed embed;
   private Date created;
@@ -18,11 +18,17 @@
  * resource-oriented view of the BrightTALK domain. Classes are given the 'Resource' suffix to make it easier to 
  * use them in conjunction with similarly named domain objects in utilising applications.
  */
-// Use a custom JAXB XmlAdapter for unmarshalling integer strings to overcome a bug in the one supplied in the JAXB RI
-@XmlJavaTypeAdapter(type = int.class, value = IntegerXmlAdapter.class)
+// Use a custom JAXB XmlAdapter for unmarshalling integer strings to overcome a bug in the one supplied in the JAXB RI,
+// and another for efficiently unmarshalling date/times in the format used by the API
+@XmlJavaTypeAdapters({ @XmlJavaTypeAdapter(type = int.class, value = IntegerXmlAdapter.class),
+    @XmlJavaTypeAdapter(type = Date.class, value = ApiDateTimeXmlAdapter.class) })
 package com.neiljbrown.brighttalk.channels.reportingapi.client.resource;
 
+import java.util.Date;
+
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapters;
 
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.ApiDateTimeXmlAdapter;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.IntegerXmlAdapter;
 
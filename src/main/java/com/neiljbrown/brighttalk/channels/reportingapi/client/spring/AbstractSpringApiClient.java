@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.AbstractApiClient;
+
+/**
+ * Base class for the Spring implementations of the API client, which additionally supports building the absolute URLs
+ * of the API's resources using Spring's {@link UriComponentsBuilder}.
+ * 
+ * @author Neil Brown
+ * @see AbstractApiClient
+ */
+public abstract class AbstractSpringApiClient extends AbstractApiClient {
+
+  private final URI apiServiceBaseUri;
+
+  /**
+   * @param apiServiceProtocol The protocol used to communicate with the BrightTALK API service. One of "http" or
+   * "https". Optional. If null defaults to "https".
+   * @param apiServiceHostName The host name of the BrightTALK API service. A fully qualified domain name.
+   * @param apiServicePort The port of the BrightTALK API service. Optional. If null defaults to 80 or 443 depending on
+   * {@code apiServiceProtocol}.
+   */
+  protected AbstractSpringApiClient(String apiServiceProtocol, String apiServiceHostName, Integer apiServicePort) {
+    super(apiServiceProtocol, apiServiceHostName, apiServicePort);
+    this.apiServiceBaseUri = this.getApiServiceBaseUri();
+  }
+
+  /**
+   * Builds the absolute HTTP URL of an API resource from its relative path and an optional map of request parameters,
+   * using this client's configured {@link #getApiServiceBaseUri() API service base URI}.
+   * <p>
+   * Supports building URLs before URL template variables have been expanded - template variable placeholders ({...})
+   * will _not_ be encoded.
+   * 
+   * @param relativeUrlPath The relative path to be appended to the base URI.
+   * @param requestParams An optional, map representation of request parameters to be appended to the URL. Can be null.
+   * @return A String representation of the absolute URL. A return type of String rather than {@link java.net.URI} is
+   * used to avoid encoding the URL before any template variables have been replaced.
+   * @see #buildAbsoluteHttpUrl(URI, String, Map)
+   */
+  protected final String buildAbsoluteHttpUrl(String relativeUrlPath, Map<String, List<String>> requestParams) {
+    return buildAbsoluteHttpUrl(this.apiServiceBaseUri, relativeUrlPath, requestParams);
+  }
+
+  /**
+   * Builds an absolute HTTP URL from a supplied base URI, a relative path an an optional map of request parameters.
+   * <p>
+   * Supports building URLs before URL template variables have been expanded - template variable placeholders ({...})
+   * will _not_ be encoded.
+   * 
+   * @param baseUri The {@link URL base URI}.
+   * @param relativeUrlPath The relative path to be appended to the base URI.
+   * @param requestParams An optional, map representation of request parameters to be appended to the URL. Can be null.
+   * @return A String representation of the absolute URL. A return type of String rather than {@link java.net.URI} is
+   * used to avoid encoding the URL before any template variables have been replaced.
+   */
+  private static String buildAbsoluteHttpUrl(URI baseUri, String relativeUrlPath,
+      Map<String, List<String>> requestParams) {
+    UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUri(baseUri);
+    uriBuilder.path(relativeUrlPath);
+    if (requestParams != null) {
+      for (String paramName : requestParams.keySet()) {
+        for (String paramValue : requestParams.get(paramName)) {
+          uriBuilder.queryParam(paramName, paramValue);
+        }
+      }
+    }
+    UriComponents uriComponents = uriBuilder.build();
+    return uriComponents.toUriString();
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+
+import org.springframework.oxm.UnmarshallingFailureException;
+import org.springframework.oxm.XmlMappingException;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.oxm.mime.MimeContainer;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.ApiResourceJaxbContext;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UnmarshallerPool;
+
+/**
+ * A {@link Jaxb2Marshaller} for the API's resources which, rather than creating its own {@link JAXBContext}, uses the
+ * shared {@link ApiResourceJaxbContext}, which is bound to an explicit list of resource classes, and starts creating
+ * it in the background on construction of the marshaller.
+ * <p>
+ * The marshaller is bound to the same classes as the context (see {@link #getClassesToBeBound()}), which determines
+ * which classes of object it {@link #supports(Class) supports}.
+ * <p>
+ * Rather than creating a new JAXB {@link Unmarshaller} for every call to {@link #unmarshal(Source)}, as its superclass
+ * does, unmarshallers are reused from an {@link UnmarshallerPool}. Each unmarshaller is configured by the superclass
+ * when it's created, and so honours the configuration of the marshaller, such as its
+ * {@link #setValidationEventHandler(javax.xml.bind.ValidationEventHandler) validation event handler}. The marshaller
+ * should therefore be fully configured before it's first used.
+ * <p>
+ * Similarly, when unmarshalling a {@link StreamSource}, as used by
+ * {@link org.springframework.http.converter.xml.MarshallingHttpMessageConverter} for the body of each API response,
+ * the SAX {@link XMLReader} used to parse the stream is reused from a bounded pool, rather than a new one being created
+ * for each call. The superclass configures the supplied reader on each call, exactly as it would a new one, e.g. so
+ * that it only processes external entities if the marshaller is {@link #setProcessExternalEntities(boolean)
+ * configured} to.
+ * 
+ * @author Neil Brown
+ */
+public class ApiResourceJaxb2Marshaller extends Jaxb2Marshaller {
+
+  private final UnmarshallerPool unmarshallerPool = new UnmarshallerPool(ApiResourceJaxbContext.INSTANCE, null,
+      UnmarshallerPool.DEFAULT_MAX_IDLE) {
+    @Override
+    protected Unmarshaller createUnmarshaller() {
+      return ApiResourceJaxb2Marshaller.super.createUnmarshaller();
+    }
+  };
+
+  /** The unmarshaller borrowed from the pool for the current thread's call to unmarshal, if any. */
+  private final ThreadLocal<Unmarshaller> borrowedUnmarshaller = new ThreadLocal<>();
+
+  private final BlockingQueue<XMLReader> idleXmlReaders = new ArrayBlockingQueue<>(UnmarshallerPool.DEFAULT_MAX_IDLE);
+
+  /**
+   * Creates the marshaller, and starts creating the {@link ApiResourceJaxbContext} in the background, if not already
+   * started.
+   */
+  public ApiResourceJaxb2Marshaller() {
+    this.setClassesToBeBound(ApiResourceJaxbContext.RESOURCE_CLASSES.toArray(
+        new Class<?>[ApiResourceJaxbContext.RESOURCE_CLASSES.size()]));
+    // Stop afterPropertiesSet() from getting the context, so that the Spring container isn't blocked waiting for it
+    this.setLazyInit(true);
+    ApiResourceJaxbContext.INSTANCE.initialiseInBackground();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This implementation returns the shared {@link ApiResourceJaxbContext}, waiting for it to be created if necessary.
+   */
+  @Override
+  public JAXBContext getJaxbContext() {
+    return ApiResourceJaxbContext.INSTANCE.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This implementation unmarshals the source using an unmarshaller borrowed from the pool, which is released back to
+   * the pool if unmarshalling succeeds. If a {@link MimeContainer} is supplied, a new unmarshaller is used, as the
+   * superclass configures the unmarshaller specifically for the container. A {@link StreamSource} is parsed using a
+   * pooled {@link XMLReader}, which is similarly only released if unmarshalling succeeds.
+   */
+  @Override
+  public Object unmarshal(Source source, MimeContainer mimeContainer) throws XmlMappingException {
+    if (mimeContainer != null) {
+      return super.unmarshal(source, mimeContainer);
+    }
+    Unmarshaller unmarshaller;
+    try {
+      unmarshaller = this.unmarshallerPool.borrow();
+    } catch (JAXBException e) {
+      throw this.convertJaxbException(e);
+    }
+    XMLReader xmlReader = source instanceof StreamSource ? this.borrowXmlReader() : null;
+    Source parsedSource = xmlReader != null ? new SAXSource(xmlReader, SAXSource.sourceToInputSource(source)) : source;
+    this.borrowedUnmarshaller.set(unmarshaller);
+    try {
+      Object result = super.unmarshal(parsedSource, null);
+      this.unmarshallerPool.release(unmarshaller);
+      if (xmlReader != null) {
+        this.idleXmlReaders.offer(xmlReader);
+      }
+      return result;
+    } finally {
+      this.borrowedUnmarshaller.remove();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This implementation returns the unmarshaller borrowed from the pool by the current thread's call to
+   * {@link #unmarshal(Source, MimeContainer)}, if there is one, or otherwise creates a new one.
+   */
+  @Override
+  protected Unmarshaller createUnmarshaller() {
+    Unmarshaller unmarshaller = this.borrowedUnmarshaller.get();
+    return unmarshaller != null ? unmarshaller : super.createUnmarshaller();
+  }
+
+  /**
+   * @return An idle {@link XMLReader} from the pool, or if there are none, a new one.
+   */
+  private XMLReader borrowXmlReader() {
+    XMLReader xmlReader = this.idleXmlReaders.poll();
+    if (xmlReader != null) {
+      return xmlReader;
+    }
+    try {
+      return XMLReaderFactory.createXMLReader();
+    } catch (SAXException e) {
+      throw new UnmarshallingFailureException("Error creating XMLReader.", e);
+    }
+  }
+}
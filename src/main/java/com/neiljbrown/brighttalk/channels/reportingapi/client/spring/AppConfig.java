@@ -17,42 +17,79 @@ package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
 
 import org.apache.http.Header;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.message.BasicHeader;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
 import org.springframework.http.converter.xml.MarshallingHttpMessageConverter;
 import org.springframework.oxm.Marshaller;
 import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
 import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
-import com.neiljbrown.brighttalk.channels.reportingapi.client.http.client.PreemptiveBasicAuthHttpRequestInterceptor;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.AsyncApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiCredentials;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.http.client.IdleConnectionEvictor;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.http.client.CachedBasicAuthHttpRequestInterceptor;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.http.client.MetricsConnectionSocketFactory;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.http.client.MetricsHttpResponseInterceptor;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.ApiResourceJaxbContext;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.CustomValidationEventHandler;
-import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.StaxResourceCollectionUnmarshaller;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.SharedWebcastXmlAdapter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UserXmlAdapter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.metrics.MetricsRegistry;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.AdaptiveConcurrencyLimiter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.CircuitBreaker;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.TokenBucketRateLimiter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.UserIdentityMap;
 
 /**
  * An instance of a {@link Configuration Spring Java Config} class which declares the objects used by the
  * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.spring.SpringApiClientImpl Spring implementation of
- * the API client}, which are to be managed by the Spring container, using {@link Bean} annotated methods, and wires-up
- * the dependencies of these beans. (The Java equivalent of more traditional XML-based Spring bean configuration).
+ * the API client} (and its {@link SpringAsyncApiClientImpl asynchronous counterpart}), which are to be managed by the
+ * Spring container, using {@link Bean} annotated methods, and wires-up the dependencies of these beans. (The Java
+ * equivalent of more traditional XML-based Spring bean configuration).
  * <p>
  * Services which use the Spring implementation of the API client can utilise this bean configuration if they wish by
  * importing it into their own Spring (XML or Java) configuration using &lt;import&gt; or @Import and @Autowired
@@ -62,8 +99,15 @@ import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelRe
  */
 @Configuration
 @PropertySource("classpath:brighttalk-channel-reporting-api-client-${environment:dev}.properties")
+@Import(AppConfig.UserIdentityMapConfig.class)
 public class AppConfig {
 
+  /**
+   * Property specifying the max no. of users held in the API client's user identity map. Zero (the default) disables
+   * resolving users.
+   */
+  private static final String USER_IDENTITY_MAP_MAX_ENTRIES_PROPERTY = "userIdentityMap.maxEntries";
+
   // Environment specific API service properties injected from external config (props file)
   @Value("${apiService.protocol}")
   private String apiServiceProtocol;
@@ -79,6 +123,116 @@ public class AppConfig {
   @Value("#{'${defaultRequestHeaders:}'.split(';;')}") 
   private List<String> defaultRequestHeaders;
 
+  // HTTP connection pool properties injected from external config (props file), defaulted if not configured
+  @Value("${httpClient.connectionPool.maxTotal:20}")
+  private int connectionPoolMaxTotal;
+  @Value("${httpClient.connectionPool.maxPerRoute:20}")
+  private int connectionPoolMaxPerRoute;
+  @Value("${httpClient.connectionPool.timeToLiveMillis:-1}")
+  private long connectionPoolTimeToLiveMillis;
+  @Value("${httpClient.connectionPool.staleConnectionCheckEnabled:true}")
+  private boolean connectionPoolStaleConnectionCheckEnabled;
+  @Value("${httpClient.connectionPool.maxIdleTimeMillis:30000}")
+  private long connectionPoolMaxIdleTimeMillis;
+  @Value("${httpClient.connectionPool.evictionIntervalMillis:5000}")
+  private long connectionPoolEvictionIntervalMillis;
+
+  /** Max no. of resources held in the API client's resource cache. Zero (the default) disables caching. */
+  @Value("${resourceCache.maxEntries:0}")
+  private int resourceCacheMaxEntries;
+
+  /** Whether identical concurrent requests for the same resource share a single request and resource. */
+  @Value("${requestCoalescing.enabled:false}")
+  private boolean requestCoalescingEnabled;
+
+  /** Max rate of API calls per second, per API key. Zero (the default) disables client-side rate limiting. */
+  @Value("${rateLimiter.permitsPerSecond:0}")
+  private double rateLimiterPermitsPerSecond;
+  /** Max no. of API calls that may be made in a burst, without being rate limited. */
+  @Value("${rateLimiter.burst:1}")
+  private int rateLimiterBurst;
+  /** Whether calls waiting to be rate limited are fair queued between the channels they access. */
+  @Value("${rateLimiter.fairQueuing:false}")
+  private boolean rateLimiterFairQueuing;
+
+  /**
+   * Optional {@link TokenBucketRateLimiter} used by the API client, if one is declared as a bean by the importing
+   * application, e.g. to share a rate limit between API clients in multiple application contexts. Takes precedence
+   * over the configured rate limiter properties.
+   */
+  @Autowired(required = false)
+  private TokenBucketRateLimiter rateLimiter;
+
+  /** Initial limit on the no. of concurrent API calls. Zero (the default) disables adaptive concurrency limiting. */
+  @Value("${concurrencyLimiter.initialLimit:0}")
+  private int concurrencyLimiterInitialLimit;
+  @Value("${concurrencyLimiter.minLimit:1}")
+  private int concurrencyLimiterMinLimit;
+  @Value("${concurrencyLimiter.maxLimit:20}")
+  private int concurrencyLimiterMaxLimit;
+  @Value("${concurrencyLimiter.backoffRatio:0.5}")
+  private double concurrencyLimiterBackoffRatio;
+  @Value("${concurrencyLimiter.latencyTolerance:2.0}")
+  private double concurrencyLimiterLatencyTolerance;
+  @Value("${concurrencyLimiter.maxQueueWaitMillis:5000}")
+  private long concurrencyLimiterMaxQueueWaitMillis;
+
+  /**
+   * Optional {@link AdaptiveConcurrencyLimiter} used by the API client, if one is declared as a bean by the importing
+   * application, e.g. to share a concurrency limit between API clients. Takes precedence over the configured
+   * concurrency limiter properties.
+   */
+  @Autowired(required = false)
+  private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+  /** Whether API calls to failing or slow endpoints are rejected by a circuit breaker. */
+  @Value("${circuitBreaker.enabled:false}")
+  private boolean circuitBreakerEnabled;
+  @Value("${circuitBreaker.failureRateThreshold:0.5}")
+  private double circuitBreakerFailureRateThreshold;
+  @Value("${circuitBreaker.slowCallRateThreshold:0.8}")
+  private double circuitBreakerSlowCallRateThreshold;
+  @Value("${circuitBreaker.slowCallDurationMillis:10000}")
+  private long circuitBreakerSlowCallDurationMillis;
+  @Value("${circuitBreaker.windowSize:20}")
+  private int circuitBreakerWindowSize;
+  @Value("${circuitBreaker.minCalls:10}")
+  private int circuitBreakerMinCalls;
+  @Value("${circuitBreaker.openDurationMillis:30000}")
+  private long circuitBreakerOpenDurationMillis;
+  @Value("${circuitBreaker.halfOpenCalls:3}")
+  private int circuitBreakerHalfOpenCalls;
+
+  /**
+   * Optional {@link CircuitBreaker} used by the API client, if one is declared as a bean by the importing application,
+   * e.g. to share the state of endpoints between API clients. Takes precedence over the configured circuit breaker
+   * properties.
+   */
+  @Autowired(required = false)
+  private CircuitBreaker circuitBreaker;
+
+  /**
+   * Optional {@link MetricsRegistry} to which the API client reports the metrics for each API call, if one is declared
+   * as a bean by the importing application. If not, no metrics are recorded.
+   */
+  @Autowired(required = false)
+  private MetricsRegistry metricsRegistry;
+
+  /**
+   * Max no. of webcasts held in the cache used to share the webcasts embedded in unmarshalled API resources. Zero
+   * disables sharing webcasts.
+   */
+  @Value("${sharedWebcasts.cacheCapacity:" + SharedWebcastXmlAdapter.DEFAULT_CACHE_CAPACITY + "}")
+  private int sharedWebcastsCacheCapacity;
+
+  /**
+   * Optional {@link UserIdentityMap} used to resolve the users embedded in unmarshalled API resources - either the map
+   * declared by {@link UserIdentityMapConfig#userIdentityMap()}, if its size is configured, or one declared by the
+   * importing application.
+   */
+  @Autowired(required = false)
+  private UserIdentityMap userIdentityMap;
+
   /**
    * The classes of exception which should be treated as fatal if they occur as the root cause of a marshalling or
    * unmmarshalling error reported to the application's configured JAXB ValidationEventHandler. Defaults to none (empty
@@ -103,17 +257,51 @@ public class AppConfig {
 
   /**
    * Creates a fully configured instance of an implementation of the {@link ApiClient BrightTALK Reporting API client}.
+   * <p>
+   * If a resource cache size is configured, the API client caches the resources which rarely change - see
+   * {@link SpringApiClientImpl#setResourceCache(HttpResourceCache, Object)}. If a {@link MetricsRegistry} bean is
+   * declared, the API client reports metrics for each API call to it. If a {@link TokenBucketRateLimiter} bean is
+   * declared, or a rate limit is configured, the API client limits the rate of its API calls - see
+   * {@link SpringApiClientImpl#setRateLimiter(TokenBucketRateLimiter, Object)}. If enabled, identical concurrent
+   * requests are coalesced - see {@link SpringApiClientImpl#setRequestCoalescingEnabled(boolean)}. If a
+   * {@link CircuitBreaker} bean is declared, or the circuit breaker is enabled, calls to failing endpoints are
+   * rejected - see {@link SpringApiClientImpl#setCircuitBreaker(CircuitBreaker)}.
    * 
    * @return The {@link ApiClient}.
    */
   @Bean
   public ApiClient apiClient() {
-    return new SpringApiClientImpl(this.apiServiceProtocol, this.apiServiceHostName, this.apiServicePort,
-        this.apiClientRestTemplate());
+    SpringApiClientImpl apiClient = new SpringApiClientImpl(this.apiServiceProtocol, this.apiServiceHostName,
+        this.apiServicePort, this.apiClientRestTemplate());
+    apiClient.setStreamingUnmarshaller(this.streamingUnmarshaller());
+    apiClient.setMetricsRegistry(this.metricsRegistry);
+    apiClient.setRequestCoalescingEnabled(this.requestCoalescingEnabled);
+    if (this.resourceCacheMaxEntries > 0) {
+      apiClient.setResourceCache(new HttpResourceCache(this.resourceCacheMaxEntries), this.apiCredentials());
+    }
+    if (this.rateLimiter != null) {
+      apiClient.setRateLimiter(this.rateLimiter, this.apiCredentials().getKey());
+    } else if (this.rateLimiterPermitsPerSecond > 0) {
+      apiClient.setRateLimiter(new TokenBucketRateLimiter(this.rateLimiterPermitsPerSecond, this.rateLimiterBurst,
+          this.rateLimiterFairQueuing), this.apiCredentials().getKey());
+    }
+    if (this.circuitBreaker != null) {
+      apiClient.setCircuitBreaker(this.circuitBreaker);
+    } else if (this.circuitBreakerEnabled) {
+      apiClient.setCircuitBreaker(CircuitBreaker.builder().failureRateThreshold(this.circuitBreakerFailureRateThreshold)
+          .slowCallRateThreshold(this.circuitBreakerSlowCallRateThreshold)
+          .slowCallDurationMillis(this.circuitBreakerSlowCallDurationMillis).windowSize(this.circuitBreakerWindowSize)
+          .minCalls(this.circuitBreakerMinCalls).openDurationMillis(this.circuitBreakerOpenDurationMillis)
+          .halfOpenCalls(this.circuitBreakerHalfOpenCalls).build());
+    }
+    return apiClient;
   }
 
   /**
    * Creates and configures the instance of {@link RestTemplate} to be used by the API client.
+   * <p>
+   * If an {@link AdaptiveConcurrencyLimiter} bean is declared, or an initial concurrency limit is configured, the
+   * no. of concurrent API calls is limited - see {@link ConcurrencyLimitingClientHttpRequestInterceptor}.
    * 
    * @return The instance of {@link RestTemplate} to be used by the API client.
    */
@@ -123,6 +311,16 @@ public class AppConfig {
     RestTemplate restTemplate = new RestTemplate(this.httpMessageConverters());
     restTemplate.setRequestFactory(this.clientHttpRequestFactory());
     restTemplate.setErrorHandler(this.responseErrorHandler());
+    AdaptiveConcurrencyLimiter concurrencyLimiter = this.concurrencyLimiter;
+    if (concurrencyLimiter == null && this.concurrencyLimiterInitialLimit > 0) {
+      concurrencyLimiter = new AdaptiveConcurrencyLimiter(this.concurrencyLimiterInitialLimit,
+          this.concurrencyLimiterMinLimit, this.concurrencyLimiterMaxLimit, this.concurrencyLimiterBackoffRatio,
+          this.concurrencyLimiterLatencyTolerance, this.concurrencyLimiterMaxQueueWaitMillis);
+    }
+    if (concurrencyLimiter != null) {
+      restTemplate.setInterceptors(Collections.<ClientHttpRequestInterceptor> singletonList(
+          new ConcurrencyLimitingClientHttpRequestInterceptor(concurrencyLimiter)));
+    }
     return restTemplate;
   }
 
@@ -148,18 +346,65 @@ public class AppConfig {
    * The created Marshaller is configured with a custom JAXB {@link javax.xml.bind.ValidationEventHandler} which
    * supports logging not fatal validation errors that occur on unmarshalling, and optionally classifying them as fatal
    * errors depending on the class of causal ('linked') exception.
+   * <p>
+   * The Marshaller uses the shared {@link ApiResourceJaxbContext}, which is bound to an explicit list of the API's
+   * resource classes rather than scanning the classpath for them, and is created on a background thread, started when
+   * the Marshaller is created, so that it overlaps with the rest of the application's startup.
+   * <p>
+   * If a {@link UserIdentityMap} bean is declared (see {@link UserIdentityMapConfig#userIdentityMap()}), the users
+   * embedded in unmarshalled resources are resolved using the map - see {@link UserXmlAdapter}. Unless disabled, the
+   * webcasts embedded in unmarshalled resources are shared - see {@link SharedWebcastXmlAdapter}.
    * 
    * @return The created {@link Marshaller}.
    */
   @Bean
   public Marshaller marshaller() {
-    Jaxb2Marshaller jaxb2Marshaller = new Jaxb2Marshaller();
+    Jaxb2Marshaller jaxb2Marshaller = new ApiResourceJaxb2Marshaller();
+    jaxb2Marshaller.setValidationEventHandler(this.validationEventHandler());
+    List<XmlAdapter<?, ?>> adapters = this.xmlAdapters();
+    jaxb2Marshaller.setAdapters(adapters.toArray(new XmlAdapter<?, ?>[adapters.size()]));
+    return jaxb2Marshaller;
+  }
+
+  /**
+   * Creates the JAXB {@link ValidationEventHandler} used on unmarshalling, which supports logging not fatal validation
+   * errors, and optionally classifying them as fatal errors depending on the class of causal ('linked') exception.
+   * 
+   * @return The created {@link ValidationEventHandler}.
+   */
+  @Bean
+  public ValidationEventHandler validationEventHandler() {
     CustomValidationEventHandler eventHandler = new CustomValidationEventHandler();
     eventHandler.setFatalLinkedExceptions(this.marshallingErrorFatalExceptions);
-    jaxb2Marshaller.setValidationEventHandler(eventHandler);
-    Package apiResourcesRootPackage = ChannelResource.class.getPackage();
-    jaxb2Marshaller.setPackagesToScan(new String[] { apiResourcesRootPackage.getName() });
-    return jaxb2Marshaller;
+    return eventHandler;
+  }
+
+  /**
+   * Creates the {@link StaxResourceCollectionUnmarshaller} used by the API client to stream the resources in pages of
+   * resource collections. Shares the JAXB context, validation behaviour and adapters of the {@link #marshaller()}.
+   * 
+   * @return The created {@link StaxResourceCollectionUnmarshaller}.
+   */
+  @Bean
+  public StaxResourceCollectionUnmarshaller streamingUnmarshaller() {
+    return new StaxResourceCollectionUnmarshaller(ApiResourceJaxbContext.INSTANCE, this.validationEventHandler(),
+        this.xmlAdapters());
+  }
+
+  /**
+   * @return The list of JAXB {@link XmlAdapter} set on the unmarshallers used by the API client, in place of the
+   * default instances created by JAXB. Includes a {@link UserXmlAdapter} using the {@link UserIdentityMap}, if a map
+   * bean is declared, and a {@link SharedWebcastXmlAdapter} with its own cache, unless sharing webcasts is disabled.
+   */
+  private List<XmlAdapter<?, ?>> xmlAdapters() {
+    List<XmlAdapter<?, ?>> adapters = new ArrayList<>();
+    if (this.userIdentityMap != null) {
+      adapters.add(new UserXmlAdapter(this.userIdentityMap));
+    }
+    if (this.sharedWebcastsCacheCapacity > 0) {
+      adapters.add(new SharedWebcastXmlAdapter(this.sharedWebcastsCacheCapacity));
+    }
+    return adapters;
   }
 
   /**
@@ -175,24 +420,171 @@ public class AppConfig {
 
   /**
    * @return The instance of {@link HttpClient} to be used by {@link ClientHttpRequestFactory} to create client
-   * requests. Pre-configured to support basic authentication using externally configured API user credentials, and to
-   * utilise the API service's support for HTTP response compression (using gzip).
+   * requests. Pre-configured to support basic authentication using externally configured API user credentials, to use
+   * the externally configured pool of connections, and to utilise the API service's support for HTTP response
+   * compression (using gzip).
    */
   @Bean
   public HttpClient httpClient() {
     HttpClientBuilder builder = HttpClients.custom();
 
+    // Use an explicitly configured connection pool, rather than the default which is limited to 2 connections per route
+    builder.setConnectionManager(this.httpClientConnectionManager());
+    builder.setDefaultRequestConfig(
+        RequestConfig.custom().setStaleConnectionCheckEnabled(this.connectionPoolStaleConnectionCheckEnabled).build());
+
     // Configure the basic authentication credentials to use for all requests
-    CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-    AuthScope authScope = new AuthScope(this.apiServiceHostName, this.apiServicePort);
-    UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(this.apiUserKey, this.apiUserSecret);
-    credentialsProvider.setCredentials(authScope, credentials);
-    builder.setDefaultCredentialsProvider(credentialsProvider);
-    builder.addInterceptorFirst(new PreemptiveBasicAuthHttpRequestInterceptor());
+    builder.addInterceptorFirst(this.basicAuthHttpRequestInterceptor());
 
     // Configure default request headers
+    builder.setDefaultHeaders(this.defaultHeaders(SpringApiClientImpl.class));
+
+    // Record the time to first byte, and the size of response bodies both before and after decompression (which is
+    // performed by an interceptor added by the builder between the first and last interceptors) for API call metrics
+    builder.addInterceptorFirst(new MetricsHttpResponseInterceptor(true));
+    builder.addInterceptorLast(new MetricsHttpResponseInterceptor(false));
+
+    // HttpClient should by default set the Accept-Encoding request header to indicate the client supports HTTP
+    // response compression using gzip
+
+    return builder.build();
+  }
+
+  /**
+   * Creates the pool of HTTP connections used by the {@link #httpClient()}. The size of the pool, both in total and per
+   * route (API service host), and the time to live of each connection, are externally configured.
+   * <p>
+   * The returned connection manager also supports monitoring the pool - see
+   * {@link PoolingHttpClientConnectionManager#getTotalStats()} for the no. of leased, pending and available
+   * connections. The time taken to establish each new connection is recorded for API call metrics.
+   * 
+   * @return The {@link PoolingHttpClientConnectionManager}.
+   */
+  @Bean
+  public PoolingHttpClientConnectionManager httpClientConnectionManager() {
+    Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory> create()
+        .register("http", new MetricsConnectionSocketFactory(PlainConnectionSocketFactory.getSocketFactory()))
+        .register("https", new MetricsConnectionSocketFactory(SSLConnectionSocketFactory.getSocketFactory()))
+        .build();
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+        socketFactoryRegistry, null, null, null, this.connectionPoolTimeToLiveMillis, TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(this.connectionPoolMaxTotal);
+    connectionManager.setDefaultMaxPerRoute(this.connectionPoolMaxPerRoute);
+    return connectionManager;
+  }
+
+  /**
+   * Creates the {@link IdleConnectionEvictor} which closes expired and idle connections in the pool managed by the
+   * {@link #httpClientConnectionManager()} in the background. Started and stopped with the Spring container.
+   * 
+   * @return The {@link IdleConnectionEvictor}.
+   */
+  @Bean(initMethod = "start", destroyMethod = "shutdown")
+  public IdleConnectionEvictor idleConnectionEvictor() {
+    return new IdleConnectionEvictor(this.httpClientConnectionManager(), this.connectionPoolMaxIdleTimeMillis,
+        this.connectionPoolEvictionIntervalMillis);
+  }
+
+  /**
+   * @return The externally configured {@link ApiCredentials} of the API user.
+   * @throws IllegalArgumentException If the configured API user key isn't a positive integer, or the secret is empty.
+   */
+  @Bean
+  public ApiCredentials apiCredentials() {
+    int apiUserKey;
+    try {
+      apiUserKey = Integer.parseInt(this.apiUserKey.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Property apiUser.key must be a positive integer, not [" + this.apiUserKey
+          + "].", e);
+    }
+    return new ApiCredentials(apiUserKey, this.apiUserSecret);
+  }
+
+  /**
+   * Creates the {@link HttpRequestInterceptor} used by both the blocking and non-blocking HTTP clients to
+   * preemptively authenticate all requests to the API service, using the {@link #apiCredentials()}. The Authorization
+   * header is encoded once and reused for all requests. If the API user's credentials are rotated, supply the new
+   * credentials to {@link CachedBasicAuthHttpRequestInterceptor#setApiCredentials(ApiCredentials)}.
+   * 
+   * @return The {@link CachedBasicAuthHttpRequestInterceptor}.
+   */
+  @Bean
+  public CachedBasicAuthHttpRequestInterceptor basicAuthHttpRequestInterceptor() {
+    return new CachedBasicAuthHttpRequestInterceptor(this.apiServiceHostName, this.apiServicePort,
+        this.apiCredentials());
+  }
+
+  /**
+   * Creates a fully configured instance of an implementation of the {@link AsyncApiClient asynchronous BrightTALK
+   * Reporting API client}.
+   * 
+   * @return The {@link AsyncApiClient}.
+   */
+  @Bean
+  public AsyncApiClient asyncApiClient() {
+    return new SpringAsyncApiClientImpl(this.apiServiceProtocol, this.apiServiceHostName, this.apiServicePort,
+        this.asyncApiClientRestTemplate());
+  }
+
+  /**
+   * Creates and configures the instance of {@link AsyncRestTemplate} to be used by the asynchronous API client. Uses
+   * the same HTTP message converters and error handling as the {@link #apiClientRestTemplate()}.
+   * 
+   * @return The instance of {@link AsyncRestTemplate} to be used by the asynchronous API client.
+   */
+  @Bean
+  public AsyncRestTemplate asyncApiClientRestTemplate() {
+    AsyncRestTemplate asyncRestTemplate = new AsyncRestTemplate(this.asyncClientHttpRequestFactory());
+    asyncRestTemplate.setMessageConverters(this.httpMessageConverters());
+    asyncRestTemplate.setErrorHandler(this.responseErrorHandler());
+    return asyncRestTemplate;
+  }
+
+  /**
+   * @return The instance of {@link AsyncClientHttpRequestFactory} to be used to create asynchronous HTTP requests.
+   */
+  @Bean
+  public AsyncClientHttpRequestFactory asyncClientHttpRequestFactory() {
+    // The Apache HttpComponents implementation performs non-blocking I/O, using a small, fixed no. of I/O threads to
+    // service all in-flight requests. The factory starts the HTTP client on initialisation, and closes it on disposal.
+    return new HttpComponentsAsyncClientHttpRequestFactory(this.httpAsyncClient());
+  }
+
+  /**
+   * @return The instance of non-blocking {@link CloseableHttpAsyncClient} to be used by
+   * {@link AsyncClientHttpRequestFactory} to create asynchronous client requests. Pre-configured with the same
+   * preemptive basic authentication, default request headers and connection pool size as the {@link #httpClient()}.
+   * (Unlike the blocking HttpClient it does not request HTTP response compression, as it doesn't support decompressing
+   * responses).
+   */
+  @Bean
+  public CloseableHttpAsyncClient httpAsyncClient() {
+    HttpAsyncClientBuilder builder = HttpAsyncClients.custom();
+    builder.setMaxConnTotal(this.connectionPoolMaxTotal);
+    builder.setMaxConnPerRoute(this.connectionPoolMaxPerRoute);
+    builder.addInterceptorFirst(this.basicAuthHttpRequestInterceptor());
+    builder.setDefaultHeaders(this.defaultHeaders(SpringAsyncApiClientImpl.class));
+    return builder.build();
+  }
+
+  /**
+   * @return The instance of {@link ResponseErrorHandler} to be used by {@link RestTemplate}.
+   */
+  @Bean
+  public ResponseErrorHandler responseErrorHandler() {
+    return new ApiResponseErrorHandler(
+        Arrays.asList(new HttpMessageConverter<?>[] { new Jaxb2RootElementHttpMessageConverter() }));
+  }
+
+  /**
+   * @param apiClientClass The class of API client which will send the headers, identified in the Api-Client header.
+   * @return The list of default request headers to set on all HTTP requests - the Api-Client header, plus any
+   * externally configured {@link #defaultRequestHeaders}.
+   */
+  private List<Header> defaultHeaders(Class<?> apiClientClass) {
     List<Header> headers = new ArrayList<>(5);
-    headers.add(new BasicHeader("Api-Client", SpringApiClientImpl.class.getCanonicalName()));
+    headers.add(new BasicHeader("Api-Client", apiClientClass.getCanonicalName()));
     if (this.defaultRequestHeaders != null) {
       for (String header : this.defaultRequestHeaders) {
         String[] headerNameAndValue = header.split("==", 2);
@@ -201,20 +593,40 @@ public class AppConfig {
         }
       }
     }
-    builder.setDefaultHeaders(headers);
+    return headers;
+  }
 
-    // HttpClient should by default set the Accept-Encoding request header to indicate the client supports HTTP
-    // response compression using gzip
+  /**
+   * Declares the {@link UserIdentityMap} bean, if a user identity map size is configured. Declared separately from
+   * {@link AppConfig}, which autowires the map, so that the map is created by a fully initialised configuration.
+   */
+  @Configuration
+  @Conditional(UserIdentityMapConfiguredCondition.class)
+  static class UserIdentityMapConfig {
 
-    return builder.build();
+    @Autowired
+    private Environment environment;
+
+    /**
+     * Creates the {@link UserIdentityMap} used to resolve the users embedded in unmarshalled API resources, so that
+     * equal users share the same instance. The map can be autowired by the importing application, e.g. to look up users
+     * by id. The importing application may instead declare its own bean of the same name, which overrides this one.
+     * 
+     * @return The {@link UserIdentityMap}, holding the configured max no. of users.
+     */
+    @Bean
+    public UserIdentityMap userIdentityMap() {
+      return new UserIdentityMap(this.environment.getProperty(USER_IDENTITY_MAP_MAX_ENTRIES_PROPERTY, Integer.class));
+    }
   }
 
   /**
-   * @return The instance of {@link ResponseErrorHandler} to be used by {@link RestTemplate}.
+   * {@link Condition} which matches if a user identity map size is configured.
    */
-  @Bean
-  public ResponseErrorHandler responseErrorHandler() {
-    return new ApiResponseErrorHandler(
-        Arrays.asList(new HttpMessageConverter<?>[] { new Jaxb2RootElementHttpMessageConverter() }));
+  static class UserIdentityMapConfiguredCondition implements Condition {
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+      return context.getEnvironment().getProperty(USER_IDENTITY_MAP_MAX_ENTRIES_PROPERTY, Integer.class, 0) > 0;
+    }
   }
-}
\ No newline at end of file
+}
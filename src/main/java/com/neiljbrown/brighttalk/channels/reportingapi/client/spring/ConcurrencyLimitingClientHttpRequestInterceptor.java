@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.AdaptiveConcurrencyLimiter;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.AdaptiveConcurrencyLimiter.Outcome;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.AdaptiveConcurrencyLimiter.Permit;
+
+/**
+ * A {@link ClientHttpRequestInterceptor} which limits the no. of concurrent HTTP requests made by a
+ * {@link org.springframework.web.client.RestTemplate} using an {@link AdaptiveConcurrencyLimiter}.
+ * <p>
+ * A permit is acquired before each request is executed, and held until the response is closed (by the RestTemplate,
+ * once the response body has been read) so that the limit applies to the whole of each API call. The latency of the
+ * call used to adapt the limit is measured until the response headers are received, as this reflects the load on the
+ * API service, whereas the time taken to read the body also depends on its size.
+ * <p>
+ * The outcome of each call is classified using the response status code - 429 Too Many Requests and 503 Service
+ * Unavailable indicate the API service is {@link Outcome#OVERLOADED overloaded}; any other status code of 400 or above
+ * (which includes the client and server error ranges treated as errors by {@link ApiResponseErrorHandler}) and I/O
+ * errors are {@link Outcome#IGNORED ignored}; and all other status codes are a {@link Outcome#SUCCESS success}.
+ * <p>
+ * Requests which can't acquire a permit within the limiter's max queue wait are rejected with a
+ * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.ConcurrencyLimitExceededException}.
+ * 
+ * @author Neil Brown
+ */
+public class ConcurrencyLimitingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+  private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+  /**
+   * @param concurrencyLimiter The {@link AdaptiveConcurrencyLimiter} to use, which may be shared with other API
+   * clients.
+   */
+  public ConcurrencyLimitingClientHttpRequestInterceptor(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    this.concurrencyLimiter = Preconditions.checkNotNull(concurrencyLimiter, "concurrencyLimiter must not be null.");
+  }
+
+  @Override
+  public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+      throws IOException {
+    Permit permit = this.concurrencyLimiter.acquire();
+    long startNanos = System.nanoTime();
+    ClientHttpResponse response;
+    Outcome outcome;
+    try {
+      response = execution.execute(request, body);
+      outcome = getOutcome(response);
+    } catch (IOException | RuntimeException e) {
+      this.concurrencyLimiter.release(permit, Outcome.IGNORED);
+      throw e;
+    }
+    return new PermitReleasingClientHttpResponse(response, permit, outcome, System.nanoTime() - startNanos);
+  }
+
+  /**
+   * @return The {@link AdaptiveConcurrencyLimiter} used by this interceptor.
+   */
+  public final AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+    return this.concurrencyLimiter;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("concurrencyLimiter", this.concurrencyLimiter)
+      .toString();
+    /* @formatter:on */
+  }
+
+  private static Outcome getOutcome(ClientHttpResponse response) throws IOException {
+    int statusCode = response.getRawStatusCode();
+    if (statusCode == HttpStatus.TOO_MANY_REQUESTS.value() || statusCode == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+      return Outcome.OVERLOADED;
+    }
+    return statusCode >= 400 ? Outcome.IGNORED : Outcome.SUCCESS;
+  }
+
+  /**
+   * Decorates a {@link ClientHttpResponse} to release the permit acquired for the request when the response is
+   * closed.
+   */
+  private class PermitReleasingClientHttpResponse implements ClientHttpResponse {
+    private final ClientHttpResponse response;
+    private final Permit permit;
+    private final Outcome outcome;
+    private final long latencyNanos;
+    private boolean released;
+
+    PermitReleasingClientHttpResponse(ClientHttpResponse response, Permit permit, Outcome outcome,
+        long latencyNanos) {
+      this.response = response;
+      this.permit = permit;
+      this.outcome = outcome;
+      this.latencyNanos = latencyNanos;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+      return this.response.getBody();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return this.response.getHeaders();
+    }
+
+    @Override
+    public HttpStatus getStatusCode() throws IOException {
+      return this.response.getStatusCode();
+    }
+
+    @Override
+    public int getRawStatusCode() throws IOException {
+      return this.response.getRawStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+      return this.response.getStatusText();
+    }
+
+    @Override
+    public void close() {
+      try {
+        this.response.close();
+      } finally {
+        if (!this.released) {
+          this.released = true;
+          ConcurrencyLimitingClientHttpRequestInterceptor.this.concurrencyLimiter.release(this.permit, this.outcome,
+              this.latencyNanos);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * A client-side cache of API resources, which supports avoiding re-downloading and re-unmarshalling API resources which
+ * haven't changed since they were last retrieved, using the standard HTTP caching mechanisms supported by the API.
+ * <p>
+ * Resources are cached, in their unmarshalled form, keyed by the absolute URL of the resource and the credentials used
+ * to retrieve it (so that a cache can be safely shared by API clients using different credentials). The
+ * Cache-Control, ETag and Last-Modified headers of API responses are honoured as follows -
+ * <ul>
+ * <li>A response with a Cache-Control 'no-store' directive is not cached.</li>
+ * <li>A cached resource which is still fresh, according to the response's Cache-Control 'max-age' directive (or
+ * Expires header), is returned without making a request.</li>
+ * <li>Otherwise, a cached resource is revalidated by making a conditional GET, including an If-None-Match and/or
+ * If-Modified-Since header, from the response's ETag and Last-Modified headers. If the API responds 304 Not Modified,
+ * the previously unmarshalled resource is returned, without parsing the response.</li>
+ * </ul>
+ * The cache holds a bounded no. of resources, evicting the least recently used resource when full. Counts of cache
+ * hits (fresh resources returned without a request), misses (resources downloaded in full) and revalidations (304
+ * responses) are maintained to support monitoring the effectiveness of the cache.
+ * <p>
+ * Cached resource instances are returned to every caller which requests the same resource, and so must be treated as
+ * immutable.
+ * <p>
+ * Thread safe.
+ * 
+ * @author Neil Brown
+ * @see SpringApiClientImpl#setResourceCache(HttpResourceCache, Object)
+ */
+public class HttpResourceCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(HttpResourceCache.class);
+
+  private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+  private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+  private final int maxEntries;
+  private final Map<Key, Entry> entries;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong revalidationCount = new AtomicLong();
+
+  /**
+   * @param maxEntries The max no. of resources to hold in the cache. Must be a positive number.
+   */
+  public HttpResourceCache(final int maxEntries) {
+    Preconditions.checkArgument(maxEntries > 0, "maxEntries must be a positive number, not [%s].", maxEntries);
+    this.maxEntries = maxEntries;
+    // Access-ordered map, evicting least recently used entry when full
+    this.entries = Collections.synchronizedMap(new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    });
+  }
+
+  /**
+   * Retrieves an identified API resource, either from the cache, or using a supplied {@link RestTemplate}, making a
+   * conditional request if the resource is cached but may be stale.
+   * 
+   * @param restTemplate The {@link RestTemplate} used to make the request.
+   * @param principal An object identifying the credentials used to make the request, e.g. an
+   * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiCredentials}. Must implement equals().
+   * @param url The absolute URL of the resource.
+   * @param resourceClass The class of resource.
+   * @return The resource.
+   */
+  <T> T getForObject(RestTemplate restTemplate, Object principal, final URI url, final Class<T> resourceClass) {
+    final Key key = new Key(principal, url);
+    final Entry cachedEntry = this.entries.get(key);
+    final long now = System.currentTimeMillis();
+    if (cachedEntry != null && cachedEntry.isFresh(now) && resourceClass.isInstance(cachedEntry.resource)) {
+      this.hitCount.incrementAndGet();
+      logger.debug("Returning fresh cached resource for [{}].", url);
+      return resourceClass.cast(cachedEntry.resource);
+    }
+    final ResponseExtractor<T> bodyExtractor =
+        new HttpMessageConverterExtractor<>(resourceClass, restTemplate.getMessageConverters());
+    return restTemplate.execute(url, HttpMethod.GET, new RequestCallback() {
+      @Override
+      public void doWithRequest(ClientHttpRequest request) throws IOException {
+        HttpHeaders headers = request.getHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_XML));
+        if (cachedEntry != null) {
+          if (cachedEntry.eTag != null) {
+            headers.setIfNoneMatch(cachedEntry.eTag);
+          }
+          if (cachedEntry.lastModified != null) {
+            headers.set(HEADER_IF_MODIFIED_SINCE, cachedEntry.lastModified);
+          }
+        }
+      }
+    }, new ResponseExtractor<T>() {
+      @Override
+      public T extractData(ClientHttpResponse response) throws IOException {
+        HttpHeaders headers = response.getHeaders();
+        if (cachedEntry != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+          revalidationCount.incrementAndGet();
+          logger.debug("Cached resource for [{}] not modified.", url);
+          cacheResource(key, cachedEntry.resource, headers, now, cachedEntry);
+          return resourceClass.cast(cachedEntry.resource);
+        }
+        missCount.incrementAndGet();
+        T resource = bodyExtractor.extractData(response);
+        cacheResource(key, resource, headers, now, null);
+        return resource;
+      }
+    });
+  }
+
+  /**
+   * @return The no. of times a fresh, cached resource has been returned without making a request.
+   */
+  public final long getHitCount() {
+    return this.hitCount.get();
+  }
+
+  /**
+   * @return The no. of times a resource has been downloaded in full, either because it wasn't cached, or it had been
+   * modified.
+   */
+  public final long getMissCount() {
+    return this.missCount.get();
+  }
+
+  /**
+   * @return The no. of times a cached resource has been successfully revalidated (a 304 Not Modified response).
+   */
+  public final long getRevalidationCount() {
+    return this.revalidationCount.get();
+  }
+
+  /**
+   * @return The max no. of resources held in the cache.
+   */
+  public final int getMaxEntries() {
+    return this.maxEntries;
+  }
+
+  /**
+   * @return The no. of resources currently held in the cache.
+   */
+  public int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Removes all resources from the cache.
+   */
+  public void clear() {
+    this.entries.clear();
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("maxEntries", this.maxEntries)
+      .add("size", this.size())
+      .add("hitCount", this.hitCount)
+      .add("missCount", this.missCount)
+      .add("revalidationCount", this.revalidationCount)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Caches a resource, if permitted by, and with the validators and freshness lifetime specified by, the headers of
+   * the response it was retrieved (or revalidated) in. Validators omitted from a 304 Not Modified response are retained
+   * from the revalidated entry.
+   */
+  private void cacheResource(Key key, Object resource, HttpHeaders headers, long responseTime, Entry revalidatedEntry) {
+    CacheControl cacheControl = CacheControl.parse(headers.getCacheControl());
+    if (resource == null || cacheControl.noStore) {
+      this.entries.remove(key);
+      return;
+    }
+    long expires = responseTime;
+    if (!cacheControl.noCache) {
+      if (cacheControl.maxAgeSeconds > 0) {
+        expires = responseTime + cacheControl.maxAgeSeconds * 1000L;
+      } else if (cacheControl.maxAgeSeconds < 0) {
+        expires = getExpires(headers, responseTime);
+      }
+    }
+    String eTag = headers.getETag();
+    String lastModified = headers.getFirst(HEADER_LAST_MODIFIED);
+    if (revalidatedEntry != null) {
+      eTag = eTag != null ? eTag : revalidatedEntry.eTag;
+      lastModified = lastModified != null ? lastModified : revalidatedEntry.lastModified;
+    }
+    if (eTag == null && lastModified == null && expires <= responseTime) {
+      // Nothing to be gained from caching the resource as it can't be revalidated and is already stale
+      this.entries.remove(key);
+      return;
+    }
+    this.entries.put(key, new Entry(resource, eTag, lastModified, expires));
+  }
+
+  private static long getExpires(HttpHeaders headers, long defaultValue) {
+    try {
+      long expires = headers.getExpires();
+      return expires != -1 ? expires : defaultValue;
+    } catch (IllegalArgumentException e) {
+      // Invalid dates, e.g. "0", are treated as already expired
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Identifies a cached resource, by the credentials used to retrieve it and its absolute URL.
+   */
+  private static final class Key {
+    private final Object principal;
+    private final URI url;
+
+    Key(Object principal, URI url) {
+      this.principal = principal;
+      this.url = url;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(this.principal, this.url);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return Objects.equal(this.principal, other.principal) && Objects.equal(this.url, other.url);
+    }
+  }
+
+  /**
+   * A cached resource, and the information required to determine whether it is fresh, and to revalidate it if not.
+   */
+  private static final class Entry {
+    private final Object resource;
+    private final String eTag;
+    private final String lastModified;
+    private final long expires;
+
+    Entry(Object resource, String eTag, String lastModified, long expires) {
+      this.resource = resource;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+      this.expires = expires;
+    }
+
+    boolean isFresh(long now) {
+      return now < this.expires;
+    }
+  }
+
+  /**
+   * The subset of the directives in a Cache-Control response header that are relevant to a private client cache.
+   */
+  private static final class CacheControl {
+    private boolean noStore;
+    private boolean noCache;
+    /** The value of the max-age directive, or -1 if not specified */
+    private long maxAgeSeconds = -1;
+
+    static CacheControl parse(String headerValue) {
+      CacheControl cacheControl = new CacheControl();
+      if (headerValue == null) {
+        return cacheControl;
+      }
+      for (String directive : headerValue.split(",")) {
+        directive = directive.trim().toLowerCase();
+        if (directive.equals("no-store")) {
+          cacheControl.noStore = true;
+        } else if (directive.equals("no-cache") || directive.startsWith("no-cache=")) {
+          cacheControl.noCache = true;
+        } else if (directive.startsWith("max-age=")) {
+          try {
+            cacheControl.maxAgeSeconds = Long.parseLong(directive.substring("max-age=".length()).replace("\"", ""));
+          } catch (NumberFormatException e) {
+            // Treat an invalid max-age like a max-age of zero, i.e. must be revalidated
+            cacheControl.maxAgeSeconds = 0;
+          }
+        }
+      }
+      return cacheControl;
+    }
+  }
+}
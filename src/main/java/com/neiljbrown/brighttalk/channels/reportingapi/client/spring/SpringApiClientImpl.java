@@ -15,33 +15,47 @@
  */
 package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
 
+import java.io.IOException;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponents;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import com.google.common.base.Preconditions;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ConcurrencyLimitExceededException;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ResourceCallbackHandler;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetChannelSubscribersRequestParamsBuilder;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetSubscribersWebcastActivityRequestParamsBuilder;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetSurveyResponsesRequestParamsBuilder;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastRegistrationsRequestParamsBuilder;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastViewingsRequestParamsBuilder;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastsRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.CompiledUriTemplate;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.common.PagingRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.StaxResourceCollectionUnmarshaller;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.metrics.ApiCallMetrics;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.metrics.MetricsRegistry;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.metrics.NoOpMetricsRegistry;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscriberResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscriberWebcastActivityResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
@@ -49,8 +63,12 @@ import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveysRe
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.CircuitBreaker;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.SingleFlight;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.TokenBucketRateLimiter;
 
 /**
  * An {@link ApiClient} implementation that delegates to a pre-configured instance of the Spring framework's
@@ -62,27 +80,55 @@ import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsR
  * Diagnostic logging of request and responses is provided by the RestTemplate and its configured
  * {@link org.springframework.http.client.ClientHttpRequest} implementation.
  * <p>
+ * In addition to the {@link ApiClient} operations, this class supports streaming the resources in a page of the larger
+ * resource collections (webcast viewings, channel subscribers and subscriber webcast activity) to a
+ * {@link ResourceCallbackHandler} one at a time as they're read from the response, rather than unmarshalling the whole
+ * page before returning it. This requires a {@link StaxResourceCollectionUnmarshaller} to be configured - see
+ * {@link #setStreamingUnmarshaller(StaxResourceCollectionUnmarshaller)}.
+ * <p>
+ * Optionally, API resources which rarely change (channels, surveys and webcasts) can be cached client-side, and
+ * revalidated using conditional requests - see {@link #setResourceCache(HttpResourceCache, Object)}.
+ * <p>
+ * Metrics for each API call - request and error counts, latencies, response sizes and the no. of resources per page -
+ * can be reported to a {@link MetricsRegistry} - see {@link #setMetricsRegistry(MetricsRegistry)} and
+ * {@link ApiCallMetrics}.
+ * <p>
+ * Optionally, the rate of API calls can be limited client-side, using a {@link TokenBucketRateLimiter} which may be
+ * shared with other API clients using the same credentials - see
+ * {@link #setRateLimiter(TokenBucketRateLimiter, Object)}.
+ * <p>
+ * Optionally, identical concurrent requests for the same resource can be coalesced, so that they share a single HTTP
+ * exchange and unmarshalled resource - see {@link #setRequestCoalescingEnabled(boolean)}.
+ * <p>
+ * Optionally, API calls to an endpoint which is failing or responding slowly can be rejected without being made, using
+ * a {@link CircuitBreaker} - see {@link #setCircuitBreaker(CircuitBreaker)}.
+ * <p>
  * Thread safe.
  * 
  * @author Neil Brown
  */
-public class SpringApiClientImpl implements ApiClient {
+public class SpringApiClientImpl extends AbstractSpringApiClient implements ApiClient {
 
   private static final Logger logger = LoggerFactory.getLogger(SpringApiClientImpl.class);
 
-  private static final String PROTOCOL_HTTP = "http";
-  private static final String PROTOCOL_HTTPS = "https";
-  private static final int HTTP_DEFAULT_PORT = 80;
-  private static final int HTTPS_DEFAULT_PORT = 443;
-  /** Compiled regex for a valid host name. See http://en.wikipedia.org/wiki/Hostname#Restrictions_on_valid_host_names */
-  private static final Pattern VALID_HOST_NAME_PATTERN =
-      Pattern.compile("[a-zA-Z0-9\\.\\-]{4,253}", Pattern.CASE_INSENSITIVE);
-
-  private final String apiServiceProtocol;
-  private final String apiServiceHostName;
-  private final int apiServicePort;
-  private final URI apiServiceBaseUri;
+  /** {@link RequestCallback} used for streamed requests, which sets the media type accepted in the response. */
+  private static final RequestCallback ACCEPT_XML_REQUEST_CALLBACK = new RequestCallback() {
+    @Override
+    public void doWithRequest(ClientHttpRequest request) throws IOException {
+      request.getHeaders().setAccept(Collections.singletonList(MediaType.APPLICATION_XML));
+    }
+  };
+
+  /** Segment of the URI template of all resources belonging to a channel, which identifies the channel. */
+  private static final String CHANNEL_URI_TEMPLATE_SEGMENT = "/channel/{channelId}";
+
   private final RestTemplate restTemplate;
+  private volatile StaxResourceCollectionUnmarshaller streamingUnmarshaller;
+  private volatile CacheConfig cacheConfig;
+  private volatile RateLimiterConfig rateLimiterConfig;
+  private volatile SingleFlight singleFlight;
+  private volatile CircuitBreaker circuitBreaker;
+  private volatile MetricsRegistry metricsRegistry = NoOpMetricsRegistry.INSTANCE;
 
   /**
    * Creates an instance of the API client that communicates with an identified API service, using the default protocol
@@ -112,30 +158,8 @@ public class SpringApiClientImpl implements ApiClient {
    */
   public SpringApiClientImpl(String apiServiceProtocol, String apiServiceHostName, Integer apiServicePort,
       RestTemplate restTemplate) {
-    if (apiServiceProtocol == null) {
-      apiServiceProtocol = PROTOCOL_HTTPS;
-    }
-    Preconditions.checkArgument(
-        PROTOCOL_HTTP.equalsIgnoreCase(apiServiceProtocol) || PROTOCOL_HTTPS.equalsIgnoreCase(apiServiceProtocol),
-        "API service protocol must be one or '%s' or '%s', not [%s]", PROTOCOL_HTTP, PROTOCOL_HTTPS, apiServiceProtocol);
-    this.apiServiceProtocol = apiServiceProtocol.toLowerCase();
-
-    Preconditions.checkNotNull(apiServiceHostName, "API service host name must not be null.");
-    Preconditions.checkArgument(VALID_HOST_NAME_PATTERN.matcher(apiServiceHostName).matches(),
-        "Invalid API service host name [%s].", apiServiceHostName);
-    this.apiServiceHostName = apiServiceHostName;
-
-    if (apiServicePort == null) {
-      apiServicePort = PROTOCOL_HTTP.equalsIgnoreCase(apiServiceProtocol) ? HTTP_DEFAULT_PORT : HTTPS_DEFAULT_PORT;
-    }
-    Preconditions.checkArgument(apiServicePort > 0, "API service port must be a positive number, not [%s]",
-        apiServicePort);
-    this.apiServicePort = apiServicePort;
-
+    super(apiServiceProtocol, apiServiceHostName, apiServicePort);
     this.restTemplate = Preconditions.checkNotNull(restTemplate, "RestTemplate must not be null.");
-
-    this.apiServiceBaseUri =
-        initApiServiceBaseUri(this.apiServiceProtocol, this.apiServiceHostName, this.apiServicePort);
   }
 
   /** {@inheritDoc} */
@@ -143,9 +167,9 @@ public class SpringApiClientImpl implements ApiClient {
   public ChannelsResource getMyChannels(PageCriteria pageCriteria) throws ApiClientException {
     logger.debug("Requesting My Channels with page criteria [{}].", pageCriteria);
     Map<String, List<String>> requestParams = new PagingRequestParamsBuilder(pageCriteria).asMap();
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        ChannelsResource.MY_CHANNELS_RELATIVE_URI_TEMPLATE, requestParams);
-    ChannelsResource channels = this.restTemplate.getForObject(absResourceUrlTemplate, ChannelsResource.class);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(ChannelsResource.MY_CHANNELS_RELATIVE_URI_TEMPLATE);
+    ChannelsResource channels =
+        this.getResource("getMyChannels", true, uriTemplate, requestParams, ChannelsResource.class);
     logger.debug("Got My Channels [{}].", channels);
     return channels;
   }
@@ -155,9 +179,9 @@ public class SpringApiClientImpl implements ApiClient {
   public ChannelsResource getUserChannels(int userId, PageCriteria pageCriteria) throws ApiClientException {
     logger.debug("Requesting User Channels for user [{}] with page criteria [{}].", userId, pageCriteria);
     Map<String, List<String>> requestParams = new PagingRequestParamsBuilder(pageCriteria).asMap();
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        ChannelsResource.USER_CHANNELS_RELATIVE_URI_TEMPLATE, requestParams);
-    ChannelsResource channels = this.restTemplate.getForObject(absResourceUrlTemplate, ChannelsResource.class, userId);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(ChannelsResource.USER_CHANNELS_RELATIVE_URI_TEMPLATE);
+    ChannelsResource channels =
+        this.getResource("getUserChannels", true, uriTemplate, requestParams, ChannelsResource.class, userId);
     logger.debug("Got User Channels [{}].", channels);
     return channels;
   }
@@ -169,10 +193,10 @@ public class SpringApiClientImpl implements ApiClient {
     logger.debug("Requesting Channel Subscribers for channel [{}] with page criteria [{}].", channelId, pageCriteria);
     Map<String, List<String>> requestParams = new GetChannelSubscribersRequestParamsBuilder(subscribed,
         subscribedSince, unsubscribedSince, pageCriteria).asMap();
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        ChannelSubscribersResource.RELATIVE_URI_TEMPLATE, requestParams);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(ChannelSubscribersResource.RELATIVE_URI_TEMPLATE);
     ChannelSubscribersResource subscribers =
-        this.restTemplate.getForObject(absResourceUrlTemplate, ChannelSubscribersResource.class, channelId);
+        this.getResource("getChannelSubscribers", false, uriTemplate, requestParams, ChannelSubscribersResource.class,
+            channelId);
     logger.debug("Got Channel Subscribers [{}].", subscribers);
     return subscribers;
   }
@@ -185,10 +209,11 @@ public class SpringApiClientImpl implements ApiClient {
         pageCriteria);
     Map<String, List<String>> requestParams = new GetSubscribersWebcastActivityRequestParamsBuilder(since,
         expandChannelSurveyResponse, pageCriteria).asMap();
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        SubscribersWebcastActivityResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE, requestParams);
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(SubscribersWebcastActivityResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE);
     SubscribersWebcastActivityResource subscribersWebcastActivity =
-        this.restTemplate.getForObject(absResourceUrlTemplate, SubscribersWebcastActivityResource.class, channelId);
+        this.getResource("getSubscribersWebcastActivityForChannel", false, uriTemplate, requestParams,
+            SubscribersWebcastActivityResource.class, channelId);
     logger.debug("Got Subscribers Webcast Activity [{}].", subscribersWebcastActivity);
     return subscribersWebcastActivity;
   }
@@ -201,11 +226,11 @@ public class SpringApiClientImpl implements ApiClient {
         channelId, webcastId, pageCriteria);
     Map<String, List<String>> requestParams = new GetSubscribersWebcastActivityRequestParamsBuilder(since,
         expandChannelSurveyResponse, pageCriteria).asMap();
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        SubscribersWebcastActivityResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE, requestParams);
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(SubscribersWebcastActivityResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
     SubscribersWebcastActivityResource subscribersWebcastActivity =
-        this.restTemplate.getForObject(absResourceUrlTemplate, SubscribersWebcastActivityResource.class, channelId,
-            webcastId);
+        this.getResource("getSubscribersWebcastActivityForWebcast", false, uriTemplate, requestParams,
+            SubscribersWebcastActivityResource.class, channelId, webcastId);
     logger.debug("Got Subscribers Webcast Activity [{}].", subscribersWebcastActivity);
     return subscribersWebcastActivity;
   }
@@ -214,9 +239,9 @@ public class SpringApiClientImpl implements ApiClient {
   @Override
   public SurveysResource getSurveysForChannel(int channelId) throws ApiClientException {
     logger.debug("Requesting Surveys for channel [{}].", channelId);
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        SurveysResource.FOR_CHANNELS_RELATIVE_URI_TEMPLATE, null);
-    SurveysResource surveys = this.restTemplate.getForObject(absResourceUrlTemplate, SurveysResource.class, channelId);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(SurveysResource.FOR_CHANNELS_RELATIVE_URI_TEMPLATE);
+    SurveysResource surveys =
+        this.getResource("getSurveysForChannel", true, uriTemplate, null, SurveysResource.class, channelId);
     logger.debug("Got Surveys [{}].", surveys);
     return surveys;
   }
@@ -225,9 +250,8 @@ public class SpringApiClientImpl implements ApiClient {
   @Override
   public SurveyResource getSurvey(int surveyId) throws ApiClientException {
     logger.debug("Requesting Survey [{}].", surveyId);
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri, SurveyResource.RELATIVE_URI_TEMPLATE,
-        null);
-    SurveyResource survey = this.restTemplate.getForObject(absResourceUrlTemplate, SurveyResource.class, surveyId);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(SurveyResource.RELATIVE_URI_TEMPLATE);
+    SurveyResource survey = this.getResource("getSurvey", true, uriTemplate, null, SurveyResource.class, surveyId);
     logger.debug("Got Survey [{}].", survey);
     return survey;
   }
@@ -238,10 +262,10 @@ public class SpringApiClientImpl implements ApiClient {
       throws ApiClientException {
     logger.debug("Requesting Survey Responses for survey [{}] with page criteria [{}].", surveyId, pageCriteria);
     Map<String, List<String>> requestParams = new GetSurveyResponsesRequestParamsBuilder(since, pageCriteria).asMap();
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        SurveyResponsesResource.RELATIVE_URI_TEMPLATE, requestParams);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(SurveyResponsesResource.RELATIVE_URI_TEMPLATE);
     SurveyResponsesResource surveyResponses =
-        this.restTemplate.getForObject(absResourceUrlTemplate, SurveyResponsesResource.class, surveyId);
+        this.getResource("getSurveyResponses", false, uriTemplate, requestParams, SurveyResponsesResource.class,
+            surveyId);
     logger.debug("Got Survey Responses [{}].", surveyResponses);
     return surveyResponses;
   }
@@ -252,10 +276,9 @@ public class SpringApiClientImpl implements ApiClient {
       throws ApiClientException {
     logger.debug("Requesting Webcasts for channel [{}] with page criteria [{}].", channelId, pageCriteria);
     Map<String, List<String>> requestParams = new GetWebcastsRequestParamsBuilder(since, pageCriteria).asMap();
-    String absResourceUrlTemplate =
-        buildAbsoluteHttpUrl(this.apiServiceBaseUri, WebcastsResource.RELATIVE_URI_TEMPLATE, requestParams);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(WebcastsResource.RELATIVE_URI_TEMPLATE);
     WebcastsResource webcasts =
-        this.restTemplate.getForObject(absResourceUrlTemplate, WebcastsResource.class, channelId);
+        this.getResource("getWebcastsForChannel", false, uriTemplate, requestParams, WebcastsResource.class, channelId);
     logger.debug("Got Webcasts [{}].", webcasts);
     return webcasts;
   }
@@ -264,10 +287,9 @@ public class SpringApiClientImpl implements ApiClient {
   @Override
   public WebcastResource getWebcast(int channelId, int webcastId) throws ApiClientException {
     logger.debug("Requesting Webcast [{}] for channel [{}].", webcastId, channelId);
-    String absResourceUrlTemplate =
-        buildAbsoluteHttpUrl(this.apiServiceBaseUri, WebcastResource.RELATIVE_URI_TEMPLATE, null);
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(WebcastResource.RELATIVE_URI_TEMPLATE);
     WebcastResource webcast =
-        this.restTemplate.getForObject(absResourceUrlTemplate, WebcastResource.class, channelId, webcastId);
+        this.getResource("getWebcast", true, uriTemplate, null, WebcastResource.class, channelId, webcastId);
     logger.debug("Got Webcast [{}].", webcast);
     return webcast;
   }
@@ -280,10 +302,11 @@ public class SpringApiClientImpl implements ApiClient {
         webcastId, pageCriteria);
     Map<String, List<String>> requestParams = new GetWebcastRegistrationsRequestParamsBuilder(since, viewed,
         pageCriteria).asMap();
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        WebcastRegistrationsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE, requestParams);
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(WebcastRegistrationsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
     WebcastRegistrationsResource webcastRegistrations =
-        this.restTemplate.getForObject(absResourceUrlTemplate, WebcastRegistrationsResource.class, channelId, webcastId);
+        this.getResource("getWebcastRegistrationsForWebcast", false, uriTemplate, requestParams,
+            WebcastRegistrationsResource.class, channelId, webcastId);
     logger.debug("Got Webcast Registrations [{}].", webcastRegistrations);
     return webcastRegistrations;
   }
@@ -295,10 +318,11 @@ public class SpringApiClientImpl implements ApiClient {
     logger.debug("Requesting Webcast Viewings for channel [{}] with page criteria [{}].", channelId, pageCriteria);
     Map<String, List<String>> requestParams = new GetWebcastViewingsRequestParamsBuilder(since, webcastStatus,
         pageCriteria).asMap();
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE, requestParams);
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE);
     WebcastViewingsResource webcastViewings =
-        this.restTemplate.getForObject(absResourceUrlTemplate, WebcastViewingsResource.class, channelId);
+        this.getResource("getWebcastViewingsForChannel", false, uriTemplate, requestParams,
+            WebcastViewingsResource.class, channelId);
     logger.debug("Got Webcast Viewings [{}].", webcastViewings);
     return webcastViewings;
   }
@@ -311,80 +335,578 @@ public class SpringApiClientImpl implements ApiClient {
         webcastId, pageCriteria);
     Map<String, List<String>> requestParams = new GetWebcastViewingsRequestParamsBuilder(since, webcastStatus,
         pageCriteria).asMap();
-    String absResourceUrlTemplate = buildAbsoluteHttpUrl(this.apiServiceBaseUri,
-        WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE, requestParams);
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
     WebcastViewingsResource webcastViewings =
-        this.restTemplate.getForObject(absResourceUrlTemplate, WebcastViewingsResource.class, channelId, webcastId);
+        this.getResource("getWebcastViewingsForWebcast", false, uriTemplate, requestParams,
+            WebcastViewingsResource.class, channelId, webcastId);
     logger.debug("Got Webcast Viewings [{}].", webcastViewings);
     return webcastViewings;
   }
 
   /**
-   * @return the apiServiceProtocol
+   * Streams the resources in a page of the channel subscribers to a supplied handler. Otherwise identical to
+   * {@link #getChannelSubscribers(int, Boolean, Date, Date, PageCriteria)}.
+   * 
+   * @param channelId The ID of the channel.
+   * @param subscribed Optional subscription status filter.
+   * @param subscribedSince Optional subscribed since filter.
+   * @param unsubscribedSince Optional unsubscribed since filter.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @param callbackHandler The {@link ResourceCallbackHandler} to pass each channel subscriber to.
+   * @return The {@link Link} to the next page of channel subscribers, or null if there isn't one.
+   * @throws IllegalStateException If a streaming unmarshaller has not been configured.
+   * @throws ApiClientException If an error occurs on making the API call.
+   * @see #getChannelSubscribers(int, Boolean, Date, Date, PageCriteria)
+   */
+  public Link getChannelSubscribers(int channelId, Boolean subscribed, Date subscribedSince, Date unsubscribedSince,
+      PageCriteria pageCriteria, ResourceCallbackHandler<? super ChannelSubscriberResource> callbackHandler)
+      throws ApiClientException {
+    logger.debug("Streaming Channel Subscribers for channel [{}] with page criteria [{}].", channelId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetChannelSubscribersRequestParamsBuilder(subscribed,
+        subscribedSince, unsubscribedSince, pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate = this.getCompiledUriTemplate(ChannelSubscribersResource.RELATIVE_URI_TEMPLATE);
+    return this.streamResourceCollection("getChannelSubscribers", uriTemplate, requestParams,
+        ChannelSubscriberResource.class, callbackHandler, channelId);
+  }
+
+  /**
+   * Streams the resources in a page of the subscribers webcast activity for a channel to a supplied handler. Otherwise
+   * identical to {@link #getSubscribersWebcastActivityForChannel(int, Date, Boolean, PageCriteria)}.
+   * 
+   * @param channelId The ID of the channel.
+   * @param since Optional since filter.
+   * @param expandChannelSurveyResponse Optional flag controlling whether to include channel survey responses.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @param callbackHandler The {@link ResourceCallbackHandler} to pass each subscriber webcast activity to.
+   * @return The {@link Link} to the next page of activity, or null if there isn't one.
+   * @throws IllegalStateException If a streaming unmarshaller has not been configured.
+   * @throws ApiClientException If an error occurs on making the API call.
+   * @see #getSubscribersWebcastActivityForChannel(int, Date, Boolean, PageCriteria)
+   */
+  public Link getSubscribersWebcastActivityForChannel(int channelId, Date since, Boolean expandChannelSurveyResponse,
+      PageCriteria pageCriteria, ResourceCallbackHandler<? super SubscriberWebcastActivityResource> callbackHandler)
+      throws ApiClientException {
+    logger.debug("Streaming Subscribers Webcast Activity for channel [{}] with page criteria [{}].", channelId,
+        pageCriteria);
+    Map<String, List<String>> requestParams = new GetSubscribersWebcastActivityRequestParamsBuilder(since,
+        expandChannelSurveyResponse, pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(SubscribersWebcastActivityResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE);
+    return this.streamResourceCollection("getSubscribersWebcastActivityForChannel", uriTemplate, requestParams,
+        SubscriberWebcastActivityResource.class, callbackHandler, channelId);
+  }
+
+  /**
+   * Streams the resources in a page of the subscribers webcast activity for a webcast to a supplied handler. Otherwise
+   * identical to {@link #getSubscribersWebcastActivityForWebcast(int, int, Date, Boolean, PageCriteria)}.
+   * 
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @param since Optional since filter.
+   * @param expandChannelSurveyResponse Optional flag controlling whether to include channel survey responses.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @param callbackHandler The {@link ResourceCallbackHandler} to pass each subscriber webcast activity to.
+   * @return The {@link Link} to the next page of activity, or null if there isn't one.
+   * @throws IllegalStateException If a streaming unmarshaller has not been configured.
+   * @throws ApiClientException If an error occurs on making the API call.
+   * @see #getSubscribersWebcastActivityForWebcast(int, int, Date, Boolean, PageCriteria)
+   */
+  public Link getSubscribersWebcastActivityForWebcast(int channelId, int webcastId, Date since,
+      Boolean expandChannelSurveyResponse, PageCriteria pageCriteria,
+      ResourceCallbackHandler<? super SubscriberWebcastActivityResource> callbackHandler) throws ApiClientException {
+    logger.debug("Streaming Subscribers Webcast Activity for channel [{}], webcast [{}] with page criteria [{}].",
+        channelId, webcastId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetSubscribersWebcastActivityRequestParamsBuilder(since,
+        expandChannelSurveyResponse, pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(SubscribersWebcastActivityResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
+    return this.streamResourceCollection("getSubscribersWebcastActivityForWebcast", uriTemplate, requestParams,
+        SubscriberWebcastActivityResource.class, callbackHandler, channelId, webcastId);
+  }
+
+  /**
+   * Streams the resources in a page of the webcast viewings for a channel to a supplied handler. Otherwise identical to
+   * {@link #getWebcastViewingsForChannel(int, Date, WebcastStatus, PageCriteria)}.
+   * 
+   * @param channelId The ID of the channel.
+   * @param since Optional since filter.
+   * @param webcastStatus Optional webcast status filter.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @param callbackHandler The {@link ResourceCallbackHandler} to pass each webcast viewing to.
+   * @return The {@link Link} to the next page of viewings, or null if there isn't one.
+   * @throws IllegalArgumentException If {@code webcastStatus} is not one of the status supported by this API.
+   * @throws IllegalStateException If a streaming unmarshaller has not been configured.
+   * @throws ApiClientException If an error occurs on making the API call.
+   * @see #getWebcastViewingsForChannel(int, Date, WebcastStatus, PageCriteria)
+   */
+  public Link getWebcastViewingsForChannel(int channelId, Date since, WebcastStatus webcastStatus,
+      PageCriteria pageCriteria, ResourceCallbackHandler<? super WebcastViewingResource> callbackHandler)
+      throws ApiClientException {
+    logger.debug("Streaming Webcast Viewings for channel [{}] with page criteria [{}].", channelId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastViewingsRequestParamsBuilder(since, webcastStatus,
+        pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE);
+    return this.streamResourceCollection("getWebcastViewingsForChannel", uriTemplate, requestParams,
+        WebcastViewingResource.class, callbackHandler, channelId);
+  }
+
+  /**
+   * Streams the resources in a page of the webcast viewings for a webcast to a supplied handler. Otherwise identical to
+   * {@link #getWebcastViewingsForWebcast(int, int, Date, WebcastStatus, PageCriteria)}.
+   * 
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @param since Optional since filter.
+   * @param webcastStatus Optional webcast status filter.
+   * @param pageCriteria Optional {@link PageCriteria page criteria}.
+   * @param callbackHandler The {@link ResourceCallbackHandler} to pass each webcast viewing to.
+   * @return The {@link Link} to the next page of viewings, or null if there isn't one.
+   * @throws IllegalArgumentException If {@code webcastStatus} is not one of the status supported by this API.
+   * @throws IllegalStateException If a streaming unmarshaller has not been configured.
+   * @throws ApiClientException If an error occurs on making the API call.
+   * @see #getWebcastViewingsForWebcast(int, int, Date, WebcastStatus, PageCriteria)
+   */
+  public Link getWebcastViewingsForWebcast(int channelId, int webcastId, Date since, WebcastStatus webcastStatus,
+      PageCriteria pageCriteria, ResourceCallbackHandler<? super WebcastViewingResource> callbackHandler)
+      throws ApiClientException {
+    logger.debug("Streaming Webcast Viewings for channel [{}], webcast [{}] with page criteria [{}].", channelId,
+        webcastId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastViewingsRequestParamsBuilder(since, webcastStatus,
+        pageCriteria).asMap();
+    CompiledUriTemplate uriTemplate =
+        this.getCompiledUriTemplate(WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
+    return this.streamResourceCollection("getWebcastViewingsForWebcast", uriTemplate, requestParams,
+        WebcastViewingResource.class, callbackHandler, channelId, webcastId);
+  }
+
+  /**
+   * @param streamingUnmarshaller The {@link StaxResourceCollectionUnmarshaller} used to unmarshal the resources in
+   * streamed pages of resource collections. Must be set before any of the streaming methods are used.
+   */
+  public final void setStreamingUnmarshaller(StaxResourceCollectionUnmarshaller streamingUnmarshaller) {
+    this.streamingUnmarshaller = streamingUnmarshaller;
+  }
+
+  /**
+   * Enables caching of the API resources which rarely change - channels, surveys and webcasts - using a supplied
+   * cache. Disabled by default.
+   * 
+   * @param resourceCache The {@link HttpResourceCache} to use, which may be shared with other API clients. Null to
+   * disable caching.
+   * @param principal An object identifying the credentials this API client uses to authenticate, e.g. an
+   * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiCredentials}, so that resources aren't
+   * shared by API clients using different credentials. Must implement equals() and hashCode().
+   */
+  public final void setResourceCache(HttpResourceCache resourceCache, Object principal) {
+    Preconditions.checkArgument(resourceCache == null || principal != null,
+        "principal must not be null when enabling caching.");
+    this.cacheConfig = resourceCache != null ? new CacheConfig(resourceCache, principal) : null;
+  }
+
+  /**
+   * @return The {@link HttpResourceCache} used by this client, e.g. to monitor its effectiveness, or null if caching is
+   * disabled.
    */
-  public final String getApiServiceProtocol() {
-    return this.apiServiceProtocol;
+  public final HttpResourceCache getResourceCache() {
+    CacheConfig cacheConfig = this.cacheConfig;
+    return cacheConfig != null ? cacheConfig.resourceCache : null;
   }
 
   /**
-   * @return the apiServiceHostName
+   * Sets the registry to which the metrics for each API call are reported. Defaults to a {@link NoOpMetricsRegistry},
+   * in which case no metrics are recorded.
+   * <p>
+   * The phases of each call observed by the HTTP client (connect, time to first byte and response sizes) are only
+   * recorded if the HTTP client is configured to record them, as it is by {@link AppConfig}.
+   * 
+   * @param metricsRegistry The {@link MetricsRegistry}. Null to disable reporting of metrics.
    */
-  public final String getApiServiceHostName() {
-    return this.apiServiceHostName;
+  public final void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+    this.metricsRegistry = metricsRegistry != null ? metricsRegistry : NoOpMetricsRegistry.INSTANCE;
   }
 
   /**
-   * @return the apiServicePort
+   * @return The {@link MetricsRegistry} to which the metrics for each API call are reported.
    */
-  public final int getApiServicePort() {
-    return this.apiServicePort;
+  public final MetricsRegistry getMetricsRegistry() {
+    return this.metricsRegistry;
   }
 
   /**
-   * @return The base (protocol, host name and optional port) {@link URI} of the API service which this client is
-   * currently configured to use. This is an environment specific value.
+   * Enables client-side rate limiting of the API calls made by this client, using a supplied rate limiter. Each API
+   * call acquires a permit from the rate limiter before it's made. Calls for resources belonging to a channel are fair
+   * queued by the ID of the channel, if the rate limiter supports it. Disabled by default.
+   * 
+   * @param rateLimiter The {@link TokenBucketRateLimiter} to use, which may be shared with other API clients. Null to
+   * disable rate limiting.
+   * @param apiKey The API key this API client uses to authenticate, which identifies the rate limit shared with other
+   * clients using the same key. Must implement equals() and hashCode().
    */
-  public final URI getApiServiceBaseUri() {
+  public final void setRateLimiter(TokenBucketRateLimiter rateLimiter, Object apiKey) {
+    Preconditions.checkArgument(rateLimiter == null || apiKey != null,
+        "apiKey must not be null when enabling rate limiting.");
+    this.rateLimiterConfig = rateLimiter != null ? new RateLimiterConfig(rateLimiter, apiKey) : null;
+  }
+
+  /**
+   * @return The {@link TokenBucketRateLimiter} used by this client, e.g. to monitor time spent waiting for permits, or
+   * null if rate limiting is disabled.
+   */
+  public final TokenBucketRateLimiter getRateLimiter() {
+    RateLimiterConfig rateLimiterConfig = this.rateLimiterConfig;
+    return rateLimiterConfig != null ? rateLimiterConfig.rateLimiter : null;
+  }
+
+  /**
+   * Enables or disables coalescing of identical concurrent requests for the same resource (other than streamed
+   * resources). When enabled, a request for a resource whose absolute URL is the same as that of a request already in
+   * progress isn't made; instead the caller waits for and shares the resource (or exception) returned by the request
+   * in progress. Shared resources are the same object, and should be treated as read-only. Disabled by default.
+   * 
+   * @param enabled True to enable request coalescing, false to disable it.
+   */
+  public final void setRequestCoalescingEnabled(boolean enabled) {
+    this.singleFlight = enabled ? new SingleFlight() : null;
+  }
+
+  /**
+   * @return The {@link SingleFlight} used to coalesce requests, e.g. to monitor how many requests have been
+   * coalesced, or null if request coalescing is disabled.
+   */
+  public final SingleFlight getRequestCoalescer() {
+    return this.singleFlight;
+  }
+
+  /**
+   * Enables a circuit breaker for each of the API endpoints called by this client, using a supplied
+   * {@link CircuitBreaker}. Calls to an endpoint whose circuit is open fail fast with a
+   * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.CircuitBreakerOpenException}. Endpoints are
+   * identified by their relative URI template, e.g. {@link WebcastViewingsResource#FOR_CHANNEL_RELATIVE_URI_TEMPLATE}.
+   * Disabled by default.
+   * 
+   * @param circuitBreaker The {@link CircuitBreaker} to use, which may be shared with other API clients. Null to
+   * disable the circuit breaker.
+   */
+  public final void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  /**
+   * @return The {@link CircuitBreaker} used by this client, e.g. to monitor the state of its circuits, or null if it's
+   * disabled.
+   */
+  public final CircuitBreaker getCircuitBreaker() {
+    return this.circuitBreaker;
+  }
+
+  /**
+   * Retrieves an API resource, coalescing the request with any identical request in progress, if enabled.
+   * 
+   * @param operation The name of the API client operation, used to identify the call's metrics.
+   * @param cacheable True if the resource is eligible for caching.
+   * @param uriTemplate The {@link CompiledUriTemplate} of the resource's URL.
+   * @param requestParams An optional, map representation of the request parameters. Can be null.
+   * @param resourceClass The class of resource.
+   * @param urlVariables The values of the URL template variables.
+   * @return The resource.
+   */
+  private <T> T getResource(final String operation, final boolean cacheable, final CompiledUriTemplate uriTemplate,
+      Map<String, List<String>> requestParams, final Class<T> resourceClass, final Object... urlVariables) {
+    final URI url = uriTemplate.expand(requestParams, urlVariables);
+    SingleFlight singleFlight = this.singleFlight;
+    if (singleFlight == null) {
+      return this.requestResource(operation, cacheable, uriTemplate, url, resourceClass, urlVariables);
+    }
+    return singleFlight.execute(url.toString(), new Callable<T>() {
+      @Override
+      public T call() {
+        return requestResource(operation, cacheable, uriTemplate, url, resourceClass, urlVariables);
+      }
+    });
+  }
+
+  /**
+   * Requests an API resource, recording the metrics for the API call.
+   * 
+   * @param operation The name of the API client operation, used to identify the call's metrics.
+   * @param cacheable True if the resource is eligible for caching.
+   * @param uriTemplate The {@link CompiledUriTemplate} of the resource's URL.
+   * @param url The (expanded) URL of the resource.
+   * @param resourceClass The class of resource.
+   * @param urlVariables The values of the URL template variables.
+   * @return The resource.
+   */
+  private <T> T requestResource(String operation, boolean cacheable, CompiledUriTemplate uriTemplate, URI url,
+      Class<T> resourceClass, Object... urlVariables) {
+    CircuitBreaker.Permit circuitBreakerPermit = this.acquireCircuitBreakerPermit(uriTemplate);
+    ApiCallMetrics callMetrics;
+    try {
+      callMetrics = this.startCall(operation, this.acquireRateLimitPermit(uriTemplate, urlVariables));
+    } catch (RuntimeException | Error e) {
+      // The call isn't made, e.g. if interrupted waiting for a rate limit permit, so return the circuit breaker permit
+      this.cancelCircuitBreakerPermit(circuitBreakerPermit);
+      throw e;
+    }
+    long startNanos = System.nanoTime();
+    Throwable error = null;
     try {
-      // Return a new URI to preserve immutability
-      return new URI(this.apiServiceBaseUri.toString());
-    } catch (URISyntaxException e) {
-      throw new ApiClientException(e);
+      T resource = cacheable ? this.getCacheableResource(url, resourceClass)
+          : this.restTemplate.getForObject(url, resourceClass);
+      if (callMetrics != null) {
+        callMetrics.setPageItemCount(getPageItemCount(resource));
+      }
+      return resource;
+    } catch (RuntimeException | Error e) {
+      error = e;
+      throw e;
+    } finally {
+      this.releaseCircuitBreakerPermit(circuitBreakerPermit, error, System.nanoTime() - startNanos);
+      this.endCall(callMetrics, error);
+    }
+  }
+
+  /**
+   * Retrieves an API resource which is eligible for caching, using the configured {@link HttpResourceCache} if there
+   * is one.
+   * 
+   * @param url The URL of the resource.
+   * @param resourceClass The class of resource.
+   * @return The resource.
+   */
+  private <T> T getCacheableResource(URI url, Class<T> resourceClass) {
+    CacheConfig cacheConfig = this.cacheConfig;
+    if (cacheConfig == null) {
+      return this.restTemplate.getForObject(url, resourceClass);
     }
+    return cacheConfig.resourceCache.getForObject(this.restTemplate, cacheConfig.principal, url, resourceClass);
   }
 
-  private static URI initApiServiceBaseUri(String protocol, String hostName, int port) {
+  /**
+   * Requests a page of a resource collection, streaming each resource in the page to a supplied handler as it is
+   * unmarshalled from the response body.
+   * 
+   * @param operation The name of the API client operation, used to identify the call's metrics.
+   * @param uriTemplate The {@link CompiledUriTemplate} of the resource collection's URL.
+   * @param requestParams An optional, map representation of the request parameters. Can be null.
+   * @param resourceClass The class of resource in the collection.
+   * @param callbackHandler The {@link ResourceCallbackHandler} to pass each resource to.
+   * @param urlVariables The values of the URL template variables.
+   * @return The {@link Link} to the next page of the collection, or null if there isn't one.
+   */
+  private <E> Link streamResourceCollection(String operation, CompiledUriTemplate uriTemplate,
+      Map<String, List<String>> requestParams, final Class<E> resourceClass,
+      final ResourceCallbackHandler<? super E> callbackHandler, Object... urlVariables) {
+    final StaxResourceCollectionUnmarshaller unmarshaller = this.streamingUnmarshaller;
+    Preconditions.checkState(unmarshaller != null, "A streaming unmarshaller must be configured to stream resources.");
+    Preconditions.checkNotNull(callbackHandler, "callbackHandler must not be null.");
+    final int[] resourceCount = new int[1];
+    // Time spent by the caller's handler processing resources, which is excluded from the latency of the call
+    final long[] handlerNanos = new long[1];
+    URI url = uriTemplate.expand(requestParams, urlVariables);
+    CircuitBreaker.Permit circuitBreakerPermit = this.acquireCircuitBreakerPermit(uriTemplate);
+    ApiCallMetrics callMetrics;
     try {
-      return new URI(protocol + "://" + hostName + ":" + port);
-    } catch (URISyntaxException e) {
-      throw new ApiClientException(e);
+      callMetrics = this.startCall(operation, this.acquireRateLimitPermit(uriTemplate, urlVariables));
+    } catch (RuntimeException | Error e) {
+      // The call isn't made, e.g. if interrupted waiting for a rate limit permit, so return the circuit breaker permit
+      this.cancelCircuitBreakerPermit(circuitBreakerPermit);
+      throw e;
+    }
+    long startNanos = System.nanoTime();
+    Throwable error = null;
+    try {
+      Link nextPageLink = this.restTemplate.execute(url, HttpMethod.GET,
+          ACCEPT_XML_REQUEST_CALLBACK, new ResponseExtractor<Link>() {
+            @Override
+            public Link extractData(ClientHttpResponse response) throws IOException {
+              return unmarshaller.unmarshal(response.getBody(), resourceClass, new ResourceCallbackHandler<E>() {
+                @Override
+                public void processResource(E resource) {
+                  resourceCount[0]++;
+                  long handlerStartNanos = System.nanoTime();
+                  try {
+                    callbackHandler.processResource(resource);
+                  } finally {
+                    handlerNanos[0] += System.nanoTime() - handlerStartNanos;
+                  }
+                }
+              });
+            }
+          });
+      logger.debug("Streamed [{}] [{}]. Next page link [{}].", resourceCount[0], resourceClass.getSimpleName(),
+          nextPageLink);
+      if (callMetrics != null) {
+        callMetrics.setPageItemCount(resourceCount[0]);
+      }
+      return nextPageLink;
+    } catch (RuntimeException | Error e) {
+      error = e;
+      throw e;
+    } finally {
+      this.releaseCircuitBreakerPermit(circuitBreakerPermit, error, System.nanoTime() - startNanos - handlerNanos[0]);
+      this.endCall(callMetrics, error);
     }
   }
 
   /**
-   * Builds an absolute HTTP URL from a supplied base URI, a relative path an an optional map of request parameters.
-   * <p>
-   * Supports building URLs before URL template variables have been expanded - template variable placeholders ({...})
-   * will _not_ be encoded.
+   * Acquires a permit to make an API call from the configured circuit breaker, if there is one. Acquired before a rate
+   * limit permit, so that calls to a failing endpoint fail fast, without waiting for or spending a rate limit permit.
+   * 
+   * @param uriTemplate The {@link CompiledUriTemplate} of the resource's URL, which identifies the API endpoint.
+   * @return The {@link CircuitBreaker.Permit}, or null if the circuit breaker is disabled.
+   */
+  private CircuitBreaker.Permit acquireCircuitBreakerPermit(CompiledUriTemplate uriTemplate) {
+    CircuitBreaker circuitBreaker = this.circuitBreaker;
+    return circuitBreaker != null ? circuitBreaker.acquire(uriTemplate.getRelativeUriTemplate()) : null;
+  }
+
+  /**
+   * Releases a permit acquired from the configured circuit breaker, recording the outcome of the API call. If the call
+   * didn't reach the endpoint, because it was rejected or interrupted by the client, the permit is cancelled instead,
+   * so that the outcome doesn't count towards the state of the endpoint's circuit.
    * 
-   * @param baseUri The {@link URL base URI}.
-   * @param relativeUrlPath The relative path to be appended to the base URI.
-   * @param requestParams An optional, map representation of request parameters to be appended to the URL. Can be null.
-   * @return A String representation of the absolute URL. A return type of String rather than {@link java.net.URI} is
-   * used to avoid encoding the URL before any template variables have been replaced.
+   * @param permit The {@link CircuitBreaker.Permit}, or null if the circuit breaker is disabled.
+   * @param error The exception or error which caused the call to fail, or null if it succeeded.
+   * @param latencyNanos The time taken by the call, in nanoseconds.
    */
-  private static String buildAbsoluteHttpUrl(URI baseUri, String relativeUrlPath,
-      Map<String, List<String>> requestParams) {
-    UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUri(baseUri);
-    uriBuilder.path(relativeUrlPath);
-    if (requestParams != null) {
-      for (String paramName : requestParams.keySet()) {
-        for (String paramValue : requestParams.get(paramName)) {
-          uriBuilder.queryParam(paramName, paramValue);
-        }
+  private void releaseCircuitBreakerPermit(CircuitBreaker.Permit permit, Throwable error, long latencyNanos) {
+    CircuitBreaker circuitBreaker = this.circuitBreaker;
+    if (permit != null && circuitBreaker != null) {
+      if (error != null && isAbandonedByClient(error)) {
+        circuitBreaker.cancel(permit);
+      } else {
+        circuitBreaker.release(permit, error, latencyNanos);
       }
     }
-    UriComponents uriComponents = uriBuilder.build();
-    return uriComponents.toUriString();
   }
-}
\ No newline at end of file
+
+  /**
+   * Cancels a permit acquired from the configured circuit breaker, for an API call which wasn't made.
+   * 
+   * @param permit The {@link CircuitBreaker.Permit}, or null if the circuit breaker is disabled.
+   */
+  private void cancelCircuitBreakerPermit(CircuitBreaker.Permit permit) {
+    CircuitBreaker circuitBreaker = this.circuitBreaker;
+    if (permit != null && circuitBreaker != null) {
+      circuitBreaker.cancel(permit);
+    }
+  }
+
+  /**
+   * Acquires a permit to make an API call from the configured rate limiter, if there is one, waiting until one is
+   * available if necessary.
+   * 
+   * @param uriTemplate The {@link CompiledUriTemplate} of the resource's URL.
+   * @param urlVariables The values of the URL template variables.
+   * @return The time spent waiting for a permit, in nanoseconds, or -1 if rate limiting is disabled.
+   */
+  private long acquireRateLimitPermit(CompiledUriTemplate uriTemplate, Object... urlVariables) {
+    RateLimiterConfig rateLimiterConfig = this.rateLimiterConfig;
+    if (rateLimiterConfig == null) {
+      return -1;
+    }
+    // The ID of the channel is the first variable of the URI template of all resources belonging to a channel
+    Object channelId = uriTemplate.getRelativeUriTemplate().contains(CHANNEL_URI_TEMPLATE_SEGMENT)
+        && urlVariables.length > 0 ? urlVariables[0] : null;
+    return rateLimiterConfig.rateLimiter.acquire(rateLimiterConfig.apiKey, channelId);
+  }
+
+  /**
+   * Starts recording the metrics for an API call, if a {@link MetricsRegistry} has been configured.
+   * 
+   * @param operation The name of the API client operation making the call.
+   * @param rateLimitWaitNanos The time spent waiting for a rate limit permit, or -1 if rate limiting is disabled.
+   * @return The {@link ApiCallMetrics} for the call, or null if metrics are disabled.
+   */
+  private ApiCallMetrics startCall(String operation, long rateLimitWaitNanos) {
+    if (this.metricsRegistry == NoOpMetricsRegistry.INSTANCE) {
+      return null;
+    }
+    ApiCallMetrics callMetrics = ApiCallMetrics.start(operation);
+    if (rateLimitWaitNanos >= 0) {
+      callMetrics.recordRateLimitWait(rateLimitWaitNanos);
+    }
+    return callMetrics;
+  }
+
+  /**
+   * Ends an API call, reporting its metrics, if they were recorded.
+   * 
+   * @param callMetrics The {@link ApiCallMetrics} for the call, or null if metrics are disabled.
+   * @param error The exception or error which caused the call to fail, or null if it succeeded.
+   */
+  private void endCall(ApiCallMetrics callMetrics, Throwable error) {
+    if (callMetrics != null) {
+      callMetrics.end(this.metricsRegistry, error);
+    }
+  }
+
+  /**
+   * @param resource A resource returned by the API.
+   * @return The no. of resources in the supplied resource if it's a page of a resource collection, otherwise -1.
+   */
+  /**
+   * @param error An exception or error thrown on making an API call.
+   * @return True if the call was abandoned by the client rather than failed by the endpoint - either rejected because
+   * the client's concurrency limit was reached, or the calling thread was interrupted.
+   */
+  private static boolean isAbandonedByClient(Throwable error) {
+    if (error instanceof ConcurrencyLimitExceededException || Thread.currentThread().isInterrupted()) {
+      return true;
+    }
+    for (Throwable cause = error.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof InterruptedException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int getPageItemCount(Object resource) {
+    List<?> items = null;
+    if (resource instanceof ChannelsResource) {
+      items = ((ChannelsResource) resource).getChannels();
+    } else if (resource instanceof ChannelSubscribersResource) {
+      items = ((ChannelSubscribersResource) resource).getChannelSubscribers();
+    } else if (resource instanceof SubscribersWebcastActivityResource) {
+      items = ((SubscribersWebcastActivityResource) resource).getSubscriberWebcastActivities();
+    } else if (resource instanceof SurveysResource) {
+      items = ((SurveysResource) resource).getSurveys();
+    } else if (resource instanceof SurveyResponsesResource) {
+      items = ((SurveyResponsesResource) resource).getSurveyResponses();
+    } else if (resource instanceof WebcastsResource) {
+      items = ((WebcastsResource) resource).getWebcasts();
+    } else if (resource instanceof WebcastRegistrationsResource) {
+      items = ((WebcastRegistrationsResource) resource).getWebcastRegistrations();
+    } else if (resource instanceof WebcastViewingsResource) {
+      items = ((WebcastViewingsResource) resource).getWebcastViewings();
+    } else {
+      return -1;
+    }
+    return items != null ? items.size() : 0;
+  }
+
+  /** The cache used by the client, and the principal which the client's cached resources are keyed by. */
+  private static final class CacheConfig {
+    private final HttpResourceCache resourceCache;
+    private final Object principal;
+
+    CacheConfig(HttpResourceCache resourceCache, Object principal) {
+      this.resourceCache = resourceCache;
+      this.principal = principal;
+    }
+  }
+
+  /** The rate limiter used by the client, and the API key which identifies the client's rate limit. */
+  private static final class RateLimiterConfig {
+    private final TokenBucketRateLimiter rateLimiter;
+    private final Object apiKey;
+
+    RateLimiterConfig(TokenBucketRateLimiter rateLimiter, Object apiKey) {
+      this.rateLimiter = rateLimiter;
+      this.apiKey = apiKey;
+    }
+  }
+}
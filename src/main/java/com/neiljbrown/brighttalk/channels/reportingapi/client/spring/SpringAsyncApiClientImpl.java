@@ -0,0 +1,315 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.AsyncApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetChannelSubscribersRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetSubscribersWebcastActivityRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetSurveyResponsesRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastRegistrationsRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastViewingsRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.GetWebcastsRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.PagingRequestParamsBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveysResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * An {@link AsyncApiClient} implementation that delegates to a pre-configured instance of the Spring framework's
+ * {@link AsyncRestTemplate} to make the authenticated, asynchronous API calls.
+ * <p>
+ * When the {@link AsyncRestTemplate} is configured with a non-blocking HTTP client, such as the Apache HttpAsyncClient
+ * (see {@link AppConfig#asyncApiClientRestTemplate()}), a small, fixed no. of I/O threads are used to service all API
+ * calls in progress, rather than a thread per API call.
+ * <p>
+ * The {@link AsyncRestTemplate} should be configured with the same marshalling and error handling (e.g.
+ * {@link ApiResponseErrorHandler}) as the {@link org.springframework.web.client.RestTemplate} used by
+ * {@link SpringApiClientImpl}, so that API calls fail with the same exceptions. I/O errors are reported as a Spring
+ * {@link ResourceAccessException}, as they are by the RestTemplate.
+ * <p>
+ * Thread safe.
+ * 
+ * @author Neil Brown
+ */
+public class SpringAsyncApiClientImpl extends AbstractSpringApiClient implements AsyncApiClient {
+
+  private static final Logger logger = LoggerFactory.getLogger(SpringAsyncApiClientImpl.class);
+
+  private final AsyncRestTemplate asyncRestTemplate;
+
+  /**
+   * Creates an instance of the API client that communicates with an identified API service, using the default protocol
+   * and port number.
+   * 
+   * @param apiServiceHostName The host name of the BrightTALK API service. A fully qualified domain name.
+   * @param asyncRestTemplate The Spring {@link AsyncRestTemplate} this API client should use to make HTTP requests and
+   * process the resulting HTTP response.
+   * @see #SpringAsyncApiClientImpl(String, String, Integer, AsyncRestTemplate)
+   */
+  public SpringAsyncApiClientImpl(String apiServiceHostName, AsyncRestTemplate asyncRestTemplate) {
+    this(null, apiServiceHostName, null, asyncRestTemplate);
+  }
+
+  /**
+   * Creates an instance of the API client that communicates with a specified API service host.
+   * 
+   * @param apiServiceProtocol The protocol used to communicate with the BrightTALK API service. One of "http" or
+   * "https". Optional. If null defaults to "https".
+   * @param apiServiceHostName The host name of the BrightTALK API service. A fully qualified domain name.
+   * @param apiServicePort The port of the BrightTALK API service. Optional. If null defaults to 80 or 443 depending on
+   * {@code apiServiceProtocol}.
+   * @param asyncRestTemplate The Spring {@link AsyncRestTemplate} this API client should use to make HTTP requests and
+   * process the resulting HTTP response. The object must be fully configured with a request factory supporting the
+   * required API authentication, marshalling of all supported API resources to/from HTTP request and response bodies,
+   * and an {@link ApiResponseErrorHandler}.
+   */
+  public SpringAsyncApiClientImpl(String apiServiceProtocol, String apiServiceHostName, Integer apiServicePort,
+      AsyncRestTemplate asyncRestTemplate) {
+    super(apiServiceProtocol, apiServiceHostName, apiServicePort);
+    this.asyncRestTemplate = Preconditions.checkNotNull(asyncRestTemplate, "AsyncRestTemplate must not be null.");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<ChannelsResource> getMyChannels(PageCriteria pageCriteria) {
+    logger.debug("Requesting My Channels with page criteria [{}].", pageCriteria);
+    Map<String, List<String>> requestParams = new PagingRequestParamsBuilder(pageCriteria).asMap();
+    String absResourceUrlTemplate =
+        this.buildAbsoluteHttpUrl(ChannelsResource.MY_CHANNELS_RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, ChannelsResource.class);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<ChannelsResource> getUserChannels(int userId, PageCriteria pageCriteria) {
+    logger.debug("Requesting User Channels for user [{}] with page criteria [{}].", userId, pageCriteria);
+    Map<String, List<String>> requestParams = new PagingRequestParamsBuilder(pageCriteria).asMap();
+    String absResourceUrlTemplate =
+        this.buildAbsoluteHttpUrl(ChannelsResource.USER_CHANNELS_RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, ChannelsResource.class, userId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<ChannelSubscribersResource> getChannelSubscribers(int channelId, Boolean subscribed,
+      Date subscribedSince, Date unsubscribedSince, PageCriteria pageCriteria) {
+    logger.debug("Requesting Channel Subscribers for channel [{}] with page criteria [{}].", channelId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetChannelSubscribersRequestParamsBuilder(subscribed,
+        subscribedSince, unsubscribedSince, pageCriteria).asMap();
+    String absResourceUrlTemplate =
+        this.buildAbsoluteHttpUrl(ChannelSubscribersResource.RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, ChannelSubscribersResource.class, channelId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<SubscribersWebcastActivityResource> getSubscribersWebcastActivityForChannel(int channelId,
+      Date since, Boolean expandChannelSurveyResponse, PageCriteria pageCriteria) {
+    logger.debug("Requesting Subscribers Webcast Activity for channel [{}] with page criteria [{}].", channelId,
+        pageCriteria);
+    Map<String, List<String>> requestParams = new GetSubscribersWebcastActivityRequestParamsBuilder(since,
+        expandChannelSurveyResponse, pageCriteria).asMap();
+    String absResourceUrlTemplate =
+        this.buildAbsoluteHttpUrl(SubscribersWebcastActivityResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, SubscribersWebcastActivityResource.class, channelId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<SubscribersWebcastActivityResource> getSubscribersWebcastActivityForWebcast(int channelId,
+      int webcastId, Date since, Boolean expandChannelSurveyResponse, PageCriteria pageCriteria) {
+    logger.debug("Requesting Subscribers Webcast Activity for channel [{}], webcast [{}] with page criteria [{}].",
+        channelId, webcastId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetSubscribersWebcastActivityRequestParamsBuilder(since,
+        expandChannelSurveyResponse, pageCriteria).asMap();
+    String absResourceUrlTemplate =
+        this.buildAbsoluteHttpUrl(SubscribersWebcastActivityResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, SubscribersWebcastActivityResource.class, channelId, webcastId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<SurveysResource> getSurveysForChannel(int channelId) {
+    logger.debug("Requesting Surveys for channel [{}].", channelId);
+    String absResourceUrlTemplate = this.buildAbsoluteHttpUrl(SurveysResource.FOR_CHANNELS_RELATIVE_URI_TEMPLATE, null);
+    return this.getForObject(absResourceUrlTemplate, SurveysResource.class, channelId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<SurveyResource> getSurvey(int surveyId) {
+    logger.debug("Requesting Survey [{}].", surveyId);
+    String absResourceUrlTemplate = this.buildAbsoluteHttpUrl(SurveyResource.RELATIVE_URI_TEMPLATE, null);
+    return this.getForObject(absResourceUrlTemplate, SurveyResource.class, surveyId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<SurveyResponsesResource> getSurveyResponses(int surveyId, Date since,
+      PageCriteria pageCriteria) {
+    logger.debug("Requesting Survey Responses for survey [{}] with page criteria [{}].", surveyId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetSurveyResponsesRequestParamsBuilder(since, pageCriteria).asMap();
+    String absResourceUrlTemplate =
+        this.buildAbsoluteHttpUrl(SurveyResponsesResource.RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, SurveyResponsesResource.class, surveyId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<WebcastsResource> getWebcastsForChannel(int channelId, Date since,
+      PageCriteria pageCriteria) {
+    logger.debug("Requesting Webcasts for channel [{}] with page criteria [{}].", channelId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastsRequestParamsBuilder(since, pageCriteria).asMap();
+    String absResourceUrlTemplate = this.buildAbsoluteHttpUrl(WebcastsResource.RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, WebcastsResource.class, channelId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<WebcastResource> getWebcast(int channelId, int webcastId) {
+    logger.debug("Requesting Webcast [{}] for channel [{}].", webcastId, channelId);
+    String absResourceUrlTemplate = this.buildAbsoluteHttpUrl(WebcastResource.RELATIVE_URI_TEMPLATE, null);
+    return this.getForObject(absResourceUrlTemplate, WebcastResource.class, channelId, webcastId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<WebcastRegistrationsResource> getWebcastRegistrationsForWebcast(int channelId,
+      int webcastId, Date since, Boolean viewed, PageCriteria pageCriteria) {
+    logger.debug("Requesting Webcast Registrations for channel [{}], webcast [{}] with page criteria [{}].", channelId,
+        webcastId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastRegistrationsRequestParamsBuilder(since, viewed,
+        pageCriteria).asMap();
+    String absResourceUrlTemplate =
+        this.buildAbsoluteHttpUrl(WebcastRegistrationsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, WebcastRegistrationsResource.class, channelId, webcastId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<WebcastViewingsResource> getWebcastViewingsForChannel(int channelId, Date since,
+      WebcastStatus webcastStatus, PageCriteria pageCriteria) {
+    logger.debug("Requesting Webcast Viewings for channel [{}] with page criteria [{}].", channelId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastViewingsRequestParamsBuilder(since, webcastStatus,
+        pageCriteria).asMap();
+    String absResourceUrlTemplate =
+        this.buildAbsoluteHttpUrl(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, WebcastViewingsResource.class, channelId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ListenableFuture<WebcastViewingsResource> getWebcastViewingsForWebcast(int channelId, int webcastId,
+      Date since, WebcastStatus webcastStatus, PageCriteria pageCriteria) {
+    logger.debug("Requesting Webcast Viewings for channel [{}], webcast [{}] with page criteria [{}].", channelId,
+        webcastId, pageCriteria);
+    Map<String, List<String>> requestParams = new GetWebcastViewingsRequestParamsBuilder(since, webcastStatus,
+        pageCriteria).asMap();
+    String absResourceUrlTemplate =
+        this.buildAbsoluteHttpUrl(WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE, requestParams);
+    return this.getForObject(absResourceUrlTemplate, WebcastViewingsResource.class, channelId, webcastId);
+  }
+
+  /**
+   * Initiates a GET request for an API resource, adapting the Spring
+   * {@link org.springframework.util.concurrent.ListenableFuture} for the response returned by the
+   * {@link AsyncRestTemplate} to a (Guava) {@link ListenableFuture} for the resource in the body of the response.
+   * 
+   * @param absResourceUrlTemplate The absolute URL of the resource, before template variables are expanded.
+   * @param resourceClass The class of resource.
+   * @param urlVariables The values of the URL template variables.
+   * @return A {@link ListenableFuture} for the resource.
+   */
+  private <T> ListenableFuture<T> getForObject(String absResourceUrlTemplate, Class<T> resourceClass,
+      Object... urlVariables) {
+    org.springframework.util.concurrent.ListenableFuture<ResponseEntity<T>> responseFuture;
+    try {
+      responseFuture = this.asyncRestTemplate.getForEntity(absResourceUrlTemplate, resourceClass, urlVariables);
+    } catch (RestClientException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+    ResponseBodyFuture<T> resourceFuture = new ResponseBodyFuture<>(absResourceUrlTemplate, responseFuture);
+    responseFuture.addCallback(resourceFuture);
+    return resourceFuture;
+  }
+
+  /**
+   * A {@link ListenableFuture} for the body of an HTTP response, which is completed by a callback registered with the
+   * Spring future for the response. Cancelling this future cancels the Spring future, aborting the HTTP request.
+   */
+  private static final class ResponseBodyFuture<T> extends AbstractFuture<T> implements
+      ListenableFutureCallback<ResponseEntity<T>> {
+    private final String url;
+    private final org.springframework.util.concurrent.ListenableFuture<ResponseEntity<T>> responseFuture;
+
+    ResponseBodyFuture(String url,
+        org.springframework.util.concurrent.ListenableFuture<ResponseEntity<T>> responseFuture) {
+      this.url = url;
+      this.responseFuture = responseFuture;
+    }
+
+    @Override
+    public void onSuccess(ResponseEntity<T> response) {
+      T resource = response.getBody();
+      logger.debug("Got [{}].", resource);
+      this.set(resource);
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+      if (t instanceof IOException) {
+        t = new ResourceAccessException("I/O error on GET request for \"" + this.url + "\": " + t.getMessage(),
+            (IOException) t);
+      }
+      this.setException(t);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (!super.cancel(mayInterruptIfRunning)) {
+        return false;
+      }
+      this.responseFuture.cancel(mayInterruptIfRunning);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ConcurrencyLimitExceededException;
+
+/**
+ * Limits the no. of concurrent (in-flight) API calls, adapting the limit to the observed load on the API service using
+ * an additive-increase / multiplicative-decrease (AIMD) algorithm.
+ * <p>
+ * Each API call {@link #acquire() acquires} a permit before it's made, and {@link #release(Permit, Outcome) releases}
+ * it with the {@link Outcome} of the call once it completes. The limit is -
+ * <ul>
+ * <li>Increased additively, by roughly one per limit's worth of successful calls, while at least half the limit is
+ * being used and the latency of successful calls stays flat.</li>
+ * <li>Decreased multiplicatively, by the configured backoff ratio, when a call is rejected by the API service as
+ * {@link Outcome#OVERLOADED overloaded} (e.g. 429 Too Many Requests or 503 Service Unavailable), or the latency of a
+ * successful call spikes above the configured tolerance of the average (baseline) latency. Calls started before the
+ * limit was last decreased don't decrease it again, so that a burst of overlapping failures only backs off once.</li>
+ * </ul>
+ * The limit always stays between the configured min and max. Callers which can't acquire a permit because the limit has
+ * been reached queue, in order, for up to a configured max time, after which the call is rejected with a
+ * {@link ConcurrencyLimitExceededException}.
+ * <p>
+ * Thread-safe.
+ * 
+ * @author Neil Brown
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  /** The weight given to each new latency sample in the exponentially weighted moving average baseline latency. */
+  private static final double BASELINE_LATENCY_WEIGHT = 0.05;
+
+  /**
+   * The outcome of an API call, which determines how the call affects the concurrency limit.
+   */
+  public enum Outcome {
+    /** The call succeeded. Its latency is used to detect whether the API service is becoming overloaded. */
+    SUCCESS,
+    /** The call was rejected by the API service due to overload or throttling, e.g. HTTP status 429 or 503. */
+    OVERLOADED,
+    /** The call failed for some other reason, which doesn't indicate the load on the API service. */
+    IGNORED
+  }
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final double latencyTolerance;
+  private final long maxQueueWaitNanos;
+  private final Ticker ticker;
+  private final ReentrantLock lock = new ReentrantLock(true);
+  private final Condition permitReleased = this.lock.newCondition();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /** The current limit, which is fractional so that it can be increased by less than one per call. Guarded by lock. */
+  private double limit;
+  /** The no. of permits currently acquired. Guarded by lock. */
+  private int inFlight;
+  /** The baseline latency of successful calls, in nanoseconds, or zero if none have completed. Guarded by lock. */
+  private double baselineLatencyNanos;
+  /** The time the limit was last decreased, or null if it hasn't been. Guarded by lock. */
+  private Long lastDecreaseNanos;
+
+  /**
+   * @param initialLimit The initial concurrency limit.
+   * @param minLimit The min concurrency limit. Must be a positive number.
+   * @param maxLimit The max concurrency limit. Must not be less than the min limit.
+   * @param backoffRatio The ratio by which the limit is multiplied on detecting overload. Must be greater than zero and
+   * less than one, e.g. 0.5.
+   * @param latencyTolerance The ratio of the baseline latency which a successful call's latency must exceed to be
+   * treated as a latency spike. Must be greater than one, e.g. 2.0.
+   * @param maxQueueWaitMillis The max time, in milliseconds, a caller waits for a permit before being rejected. Zero to
+   * reject calls as soon as the limit is reached.
+   */
+  public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+      double latencyTolerance, long maxQueueWaitMillis) {
+    this(initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance, maxQueueWaitMillis, Ticker.systemTicker());
+  }
+
+  AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+      double latencyTolerance, long maxQueueWaitMillis, Ticker ticker) {
+    Preconditions.checkArgument(minLimit > 0, "minLimit must be a positive number, not [%s].", minLimit);
+    Preconditions.checkArgument(maxLimit >= minLimit, "maxLimit [%s] must not be less than minLimit [%s].", maxLimit,
+        minLimit);
+    Preconditions.checkArgument(initialLimit >= minLimit && initialLimit <= maxLimit,
+        "initialLimit [%s] must be between minLimit [%s] and maxLimit [%s].", initialLimit, minLimit, maxLimit);
+    Preconditions.checkArgument(backoffRatio > 0 && backoffRatio < 1,
+        "backoffRatio must be greater than zero and less than one, not [%s].", backoffRatio);
+    Preconditions.checkArgument(latencyTolerance > 1, "latencyTolerance must be greater than one, not [%s].",
+        latencyTolerance);
+    Preconditions.checkArgument(maxQueueWaitMillis >= 0, "maxQueueWaitMillis must not be negative, not [%s].",
+        maxQueueWaitMillis);
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.backoffRatio = backoffRatio;
+    this.latencyTolerance = latencyTolerance;
+    this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+    this.ticker = Preconditions.checkNotNull(ticker, "ticker must not be null.");
+  }
+
+  /**
+   * Acquires a permit to make an API call, waiting for up to the max queue wait time for one to become available if
+   * the concurrency limit has been reached.
+   * 
+   * @return The acquired {@link Permit}, which must be {@link #release(Permit, Outcome) released} when the call
+   * completes.
+   * @throws ConcurrencyLimitExceededException If a permit didn't become available within the max queue wait time.
+   * @throws ApiClientException If the current thread is interrupted while waiting.
+   */
+  public Permit acquire() throws ConcurrencyLimitExceededException, ApiClientException {
+    this.lock.lock();
+    try {
+      long remainingNanos = this.maxQueueWaitNanos;
+      while (this.inFlight >= this.getLimit()) {
+        if (remainingNanos <= 0) {
+          this.rejectedCount.incrementAndGet();
+          throw new ConcurrencyLimitExceededException(this.getLimit(),
+              TimeUnit.NANOSECONDS.toMillis(this.maxQueueWaitNanos));
+        }
+        remainingNanos = this.permitReleased.awaitNanos(remainingNanos);
+      }
+      this.inFlight++;
+      return new Permit(this.ticker.read());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiClientException("Interrupted waiting for concurrency limit permit.", e);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Releases a permit on completion of an API call, adapting the concurrency limit according to the outcome of the
+   * call.
+   * 
+   * @param permit The {@link Permit} acquired for the call.
+   * @param outcome The {@link Outcome} of the call.
+   */
+  public void release(Permit permit, Outcome outcome) {
+    Preconditions.checkNotNull(permit, "permit must not be null.");
+    this.release(permit, outcome, this.ticker.read() - permit.startNanos);
+  }
+
+  /**
+   * Releases a permit on completion of an API call, adapting the concurrency limit according to the outcome and a
+   * supplied latency of the call, e.g. if the call's latency is measured differently to the time the permit was held.
+   * 
+   * @param permit The {@link Permit} acquired for the call.
+   * @param outcome The {@link Outcome} of the call.
+   * @param latencyNanos The latency of the call, in nanoseconds.
+   */
+  public void release(Permit permit, Outcome outcome, long latencyNanos) {
+    Preconditions.checkNotNull(permit, "permit must not be null.");
+    Preconditions.checkNotNull(outcome, "outcome must not be null.");
+    this.lock.lock();
+    try {
+      // Only increase the limit if at least half of it is being used - otherwise it isn't constraining throughput
+      boolean limitUsed = this.inFlight * 2 >= this.limit;
+      this.inFlight--;
+      if (outcome == Outcome.OVERLOADED) {
+        this.decreaseLimit(permit);
+      } else if (outcome == Outcome.SUCCESS) {
+        if (this.baselineLatencyNanos > 0 && latencyNanos > this.baselineLatencyNanos * this.latencyTolerance) {
+          this.decreaseLimit(permit);
+        } else if (limitUsed) {
+          this.limit = Math.min(this.limit + 1 / this.limit, this.maxLimit);
+        }
+        this.baselineLatencyNanos = this.baselineLatencyNanos == 0 ? latencyNanos : this.baselineLatencyNanos
+            + BASELINE_LATENCY_WEIGHT * (latencyNanos - this.baselineLatencyNanos);
+      }
+      this.permitReleased.signalAll();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * @return The current concurrency limit.
+   */
+  public final int getLimit() {
+    this.lock.lock();
+    try {
+      return (int) this.limit;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * @return The no. of API calls currently in-flight.
+   */
+  public final int getInFlight() {
+    this.lock.lock();
+    try {
+      return this.inFlight;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * @return The total no. of API calls rejected because a permit didn't become available in time.
+   */
+  public final long getRejectedCount() {
+    return this.rejectedCount.get();
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("limit", this.getLimit())
+      .add("inFlight", this.getInFlight())
+      .add("minLimit", this.minLimit)
+      .add("maxLimit", this.maxLimit)
+      .add("backoffRatio", this.backoffRatio)
+      .add("latencyTolerance", this.latencyTolerance)
+      .add("maxQueueWaitNanos", this.maxQueueWaitNanos)
+      .add("rejectedCount", this.rejectedCount)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Decreases the limit in response to a call detecting overload, unless the call was started before the limit was
+   * last decreased. This avoids repeatedly decreasing the limit for a burst of calls that all overlapped the same
+   * period of overload.
+   */
+  private void decreaseLimit(Permit permit) {
+    if (this.lastDecreaseNanos == null || permit.startNanos - this.lastDecreaseNanos > 0) {
+      this.limit = Math.max(this.limit * this.backoffRatio, this.minLimit);
+      this.lastDecreaseNanos = this.ticker.read();
+    }
+  }
+
+  /**
+   * A permit to make an API call, acquired from an {@link AdaptiveConcurrencyLimiter}.
+   */
+  public static final class Permit {
+    private final long startNanos;
+
+    private Permit(long startNanos) {
+      this.startNanos = startNanos;
+    }
+  }
+}
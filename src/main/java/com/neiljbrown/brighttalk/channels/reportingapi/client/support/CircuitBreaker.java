@@ -0,0 +1,441 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.CircuitBreakerOpenException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.HttpErrorResponseException;
+
+/**
+ * A circuit breaker which stops API calls being made to an API endpoint which is failing or responding slowly, so that
+ * callers fail fast, rather than tying up threads and connections waiting for responses which are unlikely to arrive.
+ * <p>
+ * A separate circuit is maintained for each endpoint, identified by its relative URI template, e.g.
+ * {@code /v1/channel/{channelId}/webcast_viewings} (see the resource classes' {@code RELATIVE_URI_TEMPLATE}s).
+ * Each circuit is in one of the following {@link State states} -
+ * <ul>
+ * <li>{@link State#CLOSED} - Calls are allowed. The outcomes of the most recent calls are recorded in a rolling window.
+ * Once the window contains a min no. of calls, if the proportion of them which failed, or which were slow, reaches the
+ * configured threshold, the circuit opens.</li>
+ * <li>{@link State#OPEN} - Calls are rejected with a {@link CircuitBreakerOpenException}, without being made, until
+ * the configured open duration has elapsed, after which the circuit becomes half-open.</li>
+ * <li>{@link State#HALF_OPEN} - A limited no. of trial calls are allowed, and further calls are rejected. If all of the
+ * trial calls succeed (and aren't slow), the circuit closes. If any fails, or is slow, the circuit opens again.</li>
+ * </ul>
+ * A call fails if an HTTP error response with a 5xx status code is returned, or no response is received due to an I/O
+ * error, e.g. a timeout. Other errors, such as 4xx client errors, indicate a problem with the request rather than the
+ * endpoint, and count as successful calls.
+ * <p>
+ * Each call must first acquire a {@link Permit} for its endpoint, see {@link #acquire(String)}, and release it with
+ * the call's outcome when the call completes, see {@link #release(Permit, Throwable, long)}, or cancel it if the call
+ * isn't made, see {@link #cancel(Permit)}. Each permit belongs to the period (generation) of the circuit's state in
+ * which it was acquired. The outcomes of calls whose permits are released after the circuit has since changed state,
+ * e.g. calls started before the circuit opened which complete once it is half-open, are ignored.
+ * <p>
+ * Instances are created using a {@link Builder}, e.g. {@code CircuitBreaker.builder().failureRateThreshold(0.5)
+ * .build()}. Thread-safe. May be shared by multiple API clients.
+ * 
+ * @author Neil Brown
+ */
+public final class CircuitBreaker {
+
+  private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  /** The states of a circuit. */
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final double failureRateThreshold;
+  private final double slowCallRateThreshold;
+  private final long slowCallDurationNanos;
+  private final int windowSize;
+  private final int minCalls;
+  private final long openDurationNanos;
+  private final int halfOpenCalls;
+  private final Ticker ticker;
+  private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+  private CircuitBreaker(Builder builder, Ticker ticker) {
+    this.failureRateThreshold = builder.failureRateThreshold;
+    this.slowCallRateThreshold = builder.slowCallRateThreshold;
+    this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(builder.slowCallDurationMillis);
+    this.windowSize = builder.windowSize;
+    this.minCalls = builder.minCalls;
+    this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(builder.openDurationMillis);
+    this.halfOpenCalls = builder.halfOpenCalls;
+    this.ticker = ticker;
+  }
+
+  /**
+   * @return A new {@link Builder}, initialised with the default settings.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Acquires a permit to make an API call to an identified endpoint.
+   * 
+   * @param endpoint The endpoint, identified by its relative URI template.
+   * @return The {@link Permit}, which must be released when the call completes.
+   * @throws CircuitBreakerOpenException If the endpoint's circuit is open, or is half-open and already allowing its max
+   * no. of trial calls.
+   */
+  public Permit acquire(String endpoint) throws CircuitBreakerOpenException {
+    Preconditions.checkNotNull(endpoint, "endpoint must not be null.");
+    Circuit circuit = this.getCircuit(endpoint);
+    return new Permit(circuit, circuit.acquire());
+  }
+
+  /**
+   * Releases a permit, recording the outcome of the API call made with it.
+   * 
+   * @param permit The {@link Permit} acquired for the call.
+   * @param error The exception or error thrown by the call, or null if it succeeded. An {@link Error} is always
+   * treated as a failure.
+   * @param latencyNanos The time taken by the call, in nanoseconds, used to identify slow calls.
+   */
+  public void release(Permit permit, Throwable error, long latencyNanos) {
+    Preconditions.checkNotNull(permit, "permit must not be null.");
+    boolean failed = error != null && isFailure(error);
+    boolean slow = latencyNanos >= this.slowCallDurationNanos;
+    permit.circuit.release(permit.generation, failed, slow);
+  }
+
+  /**
+   * Releases a permit without recording an outcome, for use when the API call it was acquired for doesn't reach the
+   * endpoint, e.g. because the thread was interrupted waiting for a rate limit permit, or the call was rejected by a
+   * client-side concurrency limit. If the circuit is half-open, the trial call is
+   * returned, so another call may be made in its place.
+   * 
+   * @param permit The {@link Permit} acquired for the call.
+   */
+  public void cancel(Permit permit) {
+    Preconditions.checkNotNull(permit, "permit must not be null.");
+    permit.circuit.cancel(permit.generation);
+  }
+
+  /**
+   * @param endpoint An endpoint, identified by its relative URI template.
+   * @return The current {@link State} of the endpoint's circuit. {@link State#CLOSED} if no calls have been made to it.
+   */
+  public State getState(String endpoint) {
+    Circuit circuit = this.circuits.get(endpoint);
+    return circuit != null ? circuit.getState() : State.CLOSED;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("failureRateThreshold", this.failureRateThreshold)
+      .add("slowCallRateThreshold", this.slowCallRateThreshold)
+      .add("slowCallDurationNanos", this.slowCallDurationNanos)
+      .add("windowSize", this.windowSize)
+      .add("minCalls", this.minCalls)
+      .add("openDurationNanos", this.openDurationNanos)
+      .add("halfOpenCalls", this.halfOpenCalls)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * @param e An exception or error thrown on making an API call.
+   * @return True if the exception indicates the endpoint is failing - a 5xx error response or an I/O error - or it's
+   * an {@link Error}.
+   */
+  static boolean isFailure(Throwable e) {
+    if (e instanceof Error) {
+      return true;
+    }
+    if (e instanceof HttpErrorResponseException) {
+      return ((HttpErrorResponseException) e).getStatusCode() >= 500;
+    }
+    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Circuit getCircuit(String endpoint) {
+    Circuit circuit = this.circuits.get(endpoint);
+    if (circuit == null) {
+      Circuit newCircuit = new Circuit(endpoint);
+      circuit = this.circuits.putIfAbsent(endpoint, newCircuit);
+      if (circuit == null) {
+        circuit = newCircuit;
+      }
+    }
+    return circuit;
+  }
+
+  /**
+   * A permit to make an API call, acquired from a {@link CircuitBreaker}.
+   */
+  public static final class Permit {
+    private final Circuit circuit;
+    private final long generation;
+
+    private Permit(Circuit circuit, long generation) {
+      this.circuit = circuit;
+      this.generation = generation;
+    }
+  }
+
+  /**
+   * The state of the circuit for a single endpoint, and the outcomes of its recent calls. Guarded by its own lock.
+   */
+  private final class Circuit {
+    private final String endpoint;
+    /** The outcomes of the most recent calls - bit 0 set if the call failed, bit 1 set if it was slow. */
+    private final byte[] outcomes = new byte[CircuitBreaker.this.windowSize];
+    private int count;
+    private int next;
+    private int failedCount;
+    private int slowCount;
+    private State state = State.CLOSED;
+    private long openedNanos;
+    private int halfOpenCallsStarted;
+    private int halfOpenCallsSucceeded;
+    /** Incremented on every change of state, to identify the permits acquired before the change. */
+    private long generation;
+
+    Circuit(String endpoint) {
+      this.endpoint = endpoint;
+    }
+
+    synchronized long acquire() {
+      if (this.state == State.OPEN) {
+        long openNanos = CircuitBreaker.this.ticker.read() - this.openedNanos;
+        if (openNanos < CircuitBreaker.this.openDurationNanos) {
+          throw new CircuitBreakerOpenException(this.endpoint,
+              TimeUnit.NANOSECONDS.toMillis(CircuitBreaker.this.openDurationNanos - openNanos));
+        }
+        logger.info("Circuit for API endpoint [{}] half-open.", this.endpoint);
+        this.state = State.HALF_OPEN;
+        this.generation++;
+        this.halfOpenCallsStarted = 0;
+        this.halfOpenCallsSucceeded = 0;
+      }
+      if (this.state == State.HALF_OPEN) {
+        if (this.halfOpenCallsStarted >= CircuitBreaker.this.halfOpenCalls) {
+          throw new CircuitBreakerOpenException(this.endpoint, 0);
+        }
+        this.halfOpenCallsStarted++;
+      }
+      return this.generation;
+    }
+
+    synchronized void release(long permitGeneration, boolean failed, boolean slow) {
+      if (permitGeneration != this.generation) {
+        // Calls started before the circuit last changed state are ignored
+        return;
+      }
+      switch (this.state) {
+        case CLOSED:
+          this.record(failed, slow);
+          if (this.count >= CircuitBreaker.this.minCalls
+              && (this.failedCount >= CircuitBreaker.this.failureRateThreshold * this.count
+              || this.slowCount >= CircuitBreaker.this.slowCallRateThreshold * this.count)) {
+            this.open();
+          }
+          break;
+        case HALF_OPEN:
+          if (failed || slow) {
+            this.open();
+          } else if (++this.halfOpenCallsSucceeded >= CircuitBreaker.this.halfOpenCalls) {
+            this.close();
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    synchronized void cancel(long permitGeneration) {
+      if (permitGeneration == this.generation && this.state == State.HALF_OPEN) {
+        this.halfOpenCallsStarted--;
+      }
+    }
+
+    synchronized State getState() {
+      return this.state;
+    }
+
+    private void record(boolean failed, boolean slow) {
+      if (this.count == this.outcomes.length) {
+        byte evicted = this.outcomes[this.next];
+        this.failedCount -= evicted & 1;
+        this.slowCount -= (evicted >> 1) & 1;
+      } else {
+        this.count++;
+      }
+      this.outcomes[this.next] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+      this.next = (this.next + 1) % this.outcomes.length;
+      this.failedCount += failed ? 1 : 0;
+      this.slowCount += slow ? 1 : 0;
+    }
+
+    private void open() {
+      logger.warn("Circuit for API endpoint [{}] opened. Failed calls [{}], slow calls [{}], of [{}].", this.endpoint,
+          this.failedCount, this.slowCount, this.count);
+      this.state = State.OPEN;
+      this.generation++;
+      this.openedNanos = CircuitBreaker.this.ticker.read();
+    }
+
+    private void close() {
+      logger.info("Circuit for API endpoint [{}] closed.", this.endpoint);
+      this.state = State.CLOSED;
+      this.generation++;
+      this.count = 0;
+      this.next = 0;
+      this.failedCount = 0;
+      this.slowCount = 0;
+    }
+  }
+
+  /**
+   * Builder of {@link CircuitBreaker}. By default, a circuit opens when at least half of the last 20 calls (and at
+   * least 10 calls) failed, or 80% were slower than 10 seconds. It stays open for 30 seconds, then allows 3 trial
+   * calls.
+   */
+  public static final class Builder {
+    private double failureRateThreshold = 0.5;
+    private double slowCallRateThreshold = 0.8;
+    private long slowCallDurationMillis = 10000;
+    private int windowSize = 20;
+    private int minCalls = 10;
+    private long openDurationMillis = 30000;
+    private int halfOpenCalls = 3;
+
+    private Builder() {
+    }
+
+    /**
+     * @param failureRateThreshold The proportion of failed calls in the window at which the circuit opens. Must be
+     * greater than zero and no more than one.
+     * @return This builder.
+     */
+    public Builder failureRateThreshold(double failureRateThreshold) {
+      Preconditions.checkArgument(failureRateThreshold > 0 && failureRateThreshold <= 1,
+          "failureRateThreshold must be greater than zero and no more than one, not [%s].", failureRateThreshold);
+      this.failureRateThreshold = failureRateThreshold;
+      return this;
+    }
+
+    /**
+     * @param slowCallRateThreshold The proportion of slow calls in the window at which the circuit opens. Must be
+     * greater than zero and no more than one.
+     * @return This builder.
+     */
+    public Builder slowCallRateThreshold(double slowCallRateThreshold) {
+      Preconditions.checkArgument(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1,
+          "slowCallRateThreshold must be greater than zero and no more than one, not [%s].", slowCallRateThreshold);
+      this.slowCallRateThreshold = slowCallRateThreshold;
+      return this;
+    }
+
+    /**
+     * @param slowCallDurationMillis The duration, in milliseconds, at or above which a call is slow. Must be a
+     * positive number.
+     * @return This builder.
+     */
+    public Builder slowCallDurationMillis(long slowCallDurationMillis) {
+      Preconditions.checkArgument(slowCallDurationMillis > 0,
+          "slowCallDurationMillis must be a positive number, not [%s].", slowCallDurationMillis);
+      this.slowCallDurationMillis = slowCallDurationMillis;
+      return this;
+    }
+
+    /**
+     * @param windowSize The no. of most recent calls to each endpoint whose outcomes are recorded. Must be a positive
+     * number.
+     * @return This builder.
+     */
+    public Builder windowSize(int windowSize) {
+      Preconditions.checkArgument(windowSize > 0, "windowSize must be a positive number, not [%s].", windowSize);
+      this.windowSize = windowSize;
+      return this;
+    }
+
+    /**
+     * @param minCalls The min no. of calls which must be recorded before the failure and slow call rates are
+     * evaluated. Must be a positive number.
+     * @return This builder.
+     */
+    public Builder minCalls(int minCalls) {
+      Preconditions.checkArgument(minCalls > 0, "minCalls must be a positive number, not [%s].", minCalls);
+      this.minCalls = minCalls;
+      return this;
+    }
+
+    /**
+     * @param openDurationMillis The time, in milliseconds, a circuit stays open before allowing trial calls. Must be a
+     * positive number.
+     * @return This builder.
+     */
+    public Builder openDurationMillis(long openDurationMillis) {
+      Preconditions.checkArgument(openDurationMillis > 0, "openDurationMillis must be a positive number, not [%s].",
+          openDurationMillis);
+      this.openDurationMillis = openDurationMillis;
+      return this;
+    }
+
+    /**
+     * @param halfOpenCalls The no. of trial calls allowed by a half-open circuit, all of which must succeed for the
+     * circuit to close. Must be a positive number.
+     * @return This builder.
+     */
+    public Builder halfOpenCalls(int halfOpenCalls) {
+      Preconditions.checkArgument(halfOpenCalls > 0, "halfOpenCalls must be a positive number, not [%s].",
+          halfOpenCalls);
+      this.halfOpenCalls = halfOpenCalls;
+      return this;
+    }
+
+    /**
+     * @return The built {@link CircuitBreaker}.
+     * @throws IllegalStateException If the min no. of calls exceeds the window size.
+     */
+    public CircuitBreaker build() {
+      return this.build(Ticker.systemTicker());
+    }
+
+    /**
+     * @param ticker The {@link Ticker} used to time how long circuits have been open.
+     * @return The built {@link CircuitBreaker}.
+     */
+    CircuitBreaker build(Ticker ticker) {
+      Preconditions.checkState(this.minCalls <= this.windowSize, "minCalls [%s] must not exceed windowSize [%s].",
+          this.minCalls, this.windowSize);
+      return new CircuitBreaker(this, ticker);
+    }
+  }
+}
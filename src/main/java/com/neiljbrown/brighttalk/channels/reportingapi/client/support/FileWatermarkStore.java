@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+
+/**
+ * A {@link WatermarkStore} which persists watermarks to a local (properties) file.
+ * <p>
+ * The watermarks are loaded from the file, if it exists, on construction. Each update rewrites the whole file
+ * atomically and durably - the new contents are written to a temporary file in the same directory and forced to
+ * storage, and the temporary file is then atomically moved over the existing file, and the move forced to storage by
+ * syncing the directory (on platforms which support it) - so that the file is never left partially written, e.g. if
+ * the process or host crashes mid-update. The file system must support atomic moves within a directory, otherwise
+ * updates fail.
+ * <p>
+ * Thread safe. The file should not be shared by more than one instance of this class.
+ * 
+ * @author Neil Brown
+ */
+public class FileWatermarkStore implements WatermarkStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(FileWatermarkStore.class);
+
+  private final Path file;
+  private final Properties watermarks = new Properties();
+
+  /**
+   * @param file The path of the file used to persist the watermarks. Its parent directory must exist.
+   * @throws ApiClientException If an error occurs reading the existing file.
+   */
+  public FileWatermarkStore(Path file) {
+    this.file = Preconditions.checkNotNull(file, "file must not be null.").toAbsolutePath();
+    if (Files.exists(this.file)) {
+      try (InputStream in = Files.newInputStream(this.file)) {
+        this.watermarks.load(in);
+      } catch (IOException e) {
+        throw new ApiClientException("Failed to read watermarks from file [" + this.file + "].", e);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @throws ApiClientException If the stored watermark is invalid, e.g. the file has been edited by hand.
+   */
+  @Override
+  public synchronized Date getWatermark(String key) {
+    String value = this.watermarks.getProperty(Preconditions.checkNotNull(key, "key must not be null."));
+    if (value == null) {
+      return null;
+    }
+    try {
+      return new Date(Long.parseLong(value));
+    } catch (NumberFormatException e) {
+      throw new ApiClientException("Invalid watermark [" + value + "] for key [" + key + "] in file [" + this.file
+          + "].", e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @throws ApiClientException If an error occurs writing the file. The previously stored watermark is retained.
+   */
+  @Override
+  public synchronized void setWatermark(String key, Date watermark) {
+    Preconditions.checkNotNull(key, "key must not be null.");
+    Preconditions.checkNotNull(watermark, "watermark must not be null.");
+    String previousValue = (String) this.watermarks.setProperty(key, String.valueOf(watermark.getTime()));
+    try {
+      this.writeFile();
+    } catch (IOException e) {
+      if (previousValue != null) {
+        this.watermarks.setProperty(key, previousValue);
+      } else {
+        this.watermarks.remove(key);
+      }
+      throw new ApiClientException("Failed to write watermarks to file [" + this.file + "].", e);
+    }
+    logger.debug("Stored watermark [{}] for key [{}].", watermark, key);
+  }
+
+  /**
+   * @return The path of the file used to persist the watermarks.
+   */
+  public final Path getFile() {
+    return this.file;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("file", this.file)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Replaces the file with the current watermarks. The new contents are written to a temporary file and forced to
+   * storage before the temporary file is atomically moved over the file, and the move itself is then forced to storage
+   * by syncing the parent directory, where supported.
+   * 
+   * @throws IOException If an error occurs writing the file, including if the file system doesn't support moving the
+   * file atomically. The file is unchanged.
+   */
+  private void writeFile() throws IOException {
+    Path tempFile = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+        // Not closed, as closing it would close the channel before it was forced
+        OutputStream out = Channels.newOutputStream(channel);
+        this.watermarks.store(out, "Incremental sync watermarks (milliseconds since epoch)");
+        out.flush();
+        channel.force(true);
+      }
+      Files.move(tempFile, this.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+    this.syncDirectory(this.file.getParent());
+  }
+
+  /**
+   * Forces the entries of a directory, e.g. a file moved into it, to storage. Some platforms (e.g. Windows) don't
+   * support opening a directory to do so, in which case the durability of the entries is left to the file system.
+   */
+  private void syncDirectory(Path directory) {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      logger.debug("Unable to sync directory [{}].", directory, e);
+    }
+  }
+}
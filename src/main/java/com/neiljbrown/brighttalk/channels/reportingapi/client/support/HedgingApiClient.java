@@ -0,0 +1,476 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.SettableFuture;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveysResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * An {@link ApiClient} which hedges the API calls for single (non-paginated) resources - channel surveys, a survey and
+ * a webcast - to reduce their tail latency, which is dominated by occasional slow responses.
+ * <p>
+ * A hedged call is made by delegating to the wrapped {@link ApiClient} on a thread provided by a supplied
+ * {@link Executor}. If the response hasn't been received within a configured percentile of the recent latencies of the
+ * same operation, a duplicate (hedge) request is made in the same way. The resource returned by whichever request
+ * succeeds first is returned. If both requests fail, the error of the original request is thrown. Calls aren't hedged
+ * until a min no. of latencies have been observed for the operation, and until then are made on the calling thread.
+ * <p>
+ * As both requests are made via the wrapped {@link ApiClient}, the hedge request is subject to the same client-side
+ * controls as the original, e.g. the cache, rate limiter, concurrency limiter and circuit breaker of a
+ * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.spring.SpringApiClientImpl}, and is reported in its
+ * metrics. (If the wrapped client coalesces identical concurrent requests, the hedge request shares the original's HTTP
+ * exchange, so hedging has no effect). A blocking HTTP request can't be aborted, so the losing request is left to
+ * complete, and its outcome discarded. The hedge request isn't interrupted if it loses, as that would fail it, e.g.
+ * whilst waiting for a pooled connection, and be recorded as an error of the endpoint, but it is abandoned if it
+ * hasn't yet started. The latency of the original request is recorded when it completes, whether or not the call was
+ * hedged, so that hedge requests don't lower the percentile which triggers them.
+ * <p>
+ * To bound the amplification of traffic, the no. of hedge requests is capped at a configured ratio of the no. of
+ * hedged calls (e.g. 5%), with a small allowance for bursts. Calls which would exceed the cap simply wait for the
+ * original request.
+ * <p>
+ * All other API calls (for pages of resource collections) are delegated to the wrapped {@link ApiClient} as is.
+ * <p>
+ * Thread-safe.
+ * 
+ * @author Neil Brown
+ */
+public class HedgingApiClient implements ApiClient {
+
+  /** The min no. of latencies which must be observed for an operation before its calls are hedged. */
+  static final int MIN_LATENCY_SAMPLES = 20;
+
+  /** The max no. of hedge requests that may be made in a burst, in excess of the max hedge ratio. */
+  private static final int MAX_HEDGE_BURST = 10;
+
+  /** The unit of the hedge budget - a millionth of a hedge request. */
+  private static final long HEDGE_BUDGET_UNIT = 1000000;
+
+  private final ApiClient apiClient;
+  private final Executor executor;
+  private final double hedgePercentile;
+  private final int latencyWindowSize;
+  private final double maxHedgeRatio;
+  private final ConcurrentMap<String, LatencyWindow> latencyWindows = new ConcurrentHashMap<>();
+  /** The no. of hedge requests currently allowed, in millionths. */
+  private final AtomicLong hedgeBudget = new AtomicLong();
+  private final AtomicLong hedgeCount = new AtomicLong();
+  private final AtomicLong hedgeWinCount = new AtomicLong();
+
+  /**
+   * @param apiClient The {@link ApiClient} to which all API calls, including hedge requests, are delegated.
+   * @param executor The {@link Executor} used to make the requests of hedged calls. Should allow at least two threads
+   * per concurrent hedged call. If it rejects a request, the call is made on the calling thread, or isn't hedged.
+   * @param hedgePercentile The percentile of recent latencies after which a hedge request is made, e.g. 95. Must be
+   * greater than zero and less than 100.
+   * @param latencyWindowSize The no. of recent latencies of each operation from which the percentile is calculated.
+   * Must be at least {@value #MIN_LATENCY_SAMPLES}.
+   * @param maxHedgeRatio The max ratio of hedge requests to hedged calls, e.g. 0.05. Must be greater than zero and no
+   * more than one.
+   */
+  public HedgingApiClient(ApiClient apiClient, Executor executor, double hedgePercentile, int latencyWindowSize,
+      double maxHedgeRatio) {
+    this.apiClient = Preconditions.checkNotNull(apiClient, "apiClient must not be null.");
+    this.executor = Preconditions.checkNotNull(executor, "executor must not be null.");
+    Preconditions.checkArgument(hedgePercentile > 0 && hedgePercentile < 100,
+        "hedgePercentile must be greater than zero and less than 100, not [%s].", hedgePercentile);
+    Preconditions.checkArgument(latencyWindowSize >= MIN_LATENCY_SAMPLES,
+        "latencyWindowSize must be at least [%s], not [%s].", MIN_LATENCY_SAMPLES, latencyWindowSize);
+    Preconditions.checkArgument(maxHedgeRatio > 0 && maxHedgeRatio <= 1,
+        "maxHedgeRatio must be greater than zero and no more than one, not [%s].", maxHedgeRatio);
+    this.hedgePercentile = hedgePercentile;
+    this.latencyWindowSize = latencyWindowSize;
+    this.maxHedgeRatio = maxHedgeRatio;
+  }
+
+  @Override
+  public ChannelsResource getMyChannels(PageCriteria pageCriteria) throws ApiClientException {
+    return this.apiClient.getMyChannels(pageCriteria);
+  }
+
+  @Override
+  public ChannelsResource getUserChannels(int userId, PageCriteria pageCriteria) throws ApiClientException {
+    return this.apiClient.getUserChannels(userId, pageCriteria);
+  }
+
+  @Override
+  public ChannelSubscribersResource getChannelSubscribers(int channelId, Boolean subscribed, Date subscribedSince,
+      Date unsubscribedSince, PageCriteria pageCriteria) throws ApiClientException {
+    return this.apiClient.getChannelSubscribers(channelId, subscribed, subscribedSince, unsubscribedSince,
+        pageCriteria);
+  }
+
+  @Override
+  public SubscribersWebcastActivityResource getSubscribersWebcastActivityForChannel(int channelId, Date since,
+      Boolean expandChannelSurveyResponse, PageCriteria pageCriteria) throws ApiClientException {
+    return this.apiClient.getSubscribersWebcastActivityForChannel(channelId, since, expandChannelSurveyResponse,
+        pageCriteria);
+  }
+
+  @Override
+  public SubscribersWebcastActivityResource getSubscribersWebcastActivityForWebcast(int channelId, int webcastId,
+      Date since, Boolean expandChannelSurveyResponse, PageCriteria pageCriteria) throws ApiClientException {
+    return this.apiClient.getSubscribersWebcastActivityForWebcast(channelId, webcastId, since,
+        expandChannelSurveyResponse, pageCriteria);
+  }
+
+  @Override
+  public SurveysResource getSurveysForChannel(final int channelId) throws ApiClientException {
+    return this.execute("getSurveysForChannel", new ApiCall<SurveysResource>() {
+      @Override
+      public SurveysResource call() {
+        return HedgingApiClient.this.apiClient.getSurveysForChannel(channelId);
+      }
+    });
+  }
+
+  @Override
+  public SurveyResource getSurvey(final int surveyId) throws ApiClientException {
+    return this.execute("getSurvey", new ApiCall<SurveyResource>() {
+      @Override
+      public SurveyResource call() {
+        return HedgingApiClient.this.apiClient.getSurvey(surveyId);
+      }
+    });
+  }
+
+  @Override
+  public SurveyResponsesResource getSurveyResponses(int surveyId, Date since, PageCriteria pageCriteria)
+      throws ApiClientException {
+    return this.apiClient.getSurveyResponses(surveyId, since, pageCriteria);
+  }
+
+  @Override
+  public WebcastsResource getWebcastsForChannel(int channelId, Date since, PageCriteria pageCriteria)
+      throws ApiClientException {
+    return this.apiClient.getWebcastsForChannel(channelId, since, pageCriteria);
+  }
+
+  @Override
+  public WebcastResource getWebcast(final int channelId, final int webcastId) throws ApiClientException {
+    return this.execute("getWebcast", new ApiCall<WebcastResource>() {
+      @Override
+      public WebcastResource call() {
+        return HedgingApiClient.this.apiClient.getWebcast(channelId, webcastId);
+      }
+    });
+  }
+
+  @Override
+  public WebcastRegistrationsResource getWebcastRegistrationsForWebcast(int channelId, int webcastId, Date since,
+      Boolean viewed, PageCriteria pageCriteria) throws ApiClientException {
+    return this.apiClient.getWebcastRegistrationsForWebcast(channelId, webcastId, since, viewed, pageCriteria);
+  }
+
+  @Override
+  public WebcastViewingsResource getWebcastViewingsForChannel(int channelId, Date since, WebcastStatus webcastStatus,
+      PageCriteria pageCriteria) throws ApiClientException {
+    return this.apiClient.getWebcastViewingsForChannel(channelId, since, webcastStatus, pageCriteria);
+  }
+
+  @Override
+  public WebcastViewingsResource getWebcastViewingsForWebcast(int channelId, int webcastId, Date since,
+      WebcastStatus webcastStatus, PageCriteria pageCriteria) throws ApiClientException {
+    return this.apiClient.getWebcastViewingsForWebcast(channelId, webcastId, since, webcastStatus, pageCriteria);
+  }
+
+  /**
+   * @return The total no. of hedge requests made.
+   */
+  public final long getHedgeCount() {
+    return this.hedgeCount.get();
+  }
+
+  /**
+   * @return The total no. of hedge requests which returned a resource before the original request.
+   */
+  public final long getHedgeWinCount() {
+    return this.hedgeWinCount.get();
+  }
+
+  /**
+   * @param operation The name of an API client operation, e.g. "getWebcast".
+   * @return The current delay after which a hedge request is made for the operation, in nanoseconds, or null if
+   * insufficient latencies have been observed for the operation to hedge its calls.
+   */
+  public final Long getHedgeDelayNanos(String operation) {
+    LatencyWindow latencyWindow = this.latencyWindows.get(operation);
+    return latencyWindow != null ? latencyWindow.getPercentile(this.hedgePercentile) : null;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("apiClient", this.apiClient)
+      .add("executor", this.executor)
+      .add("hedgePercentile", this.hedgePercentile)
+      .add("latencyWindowSize", this.latencyWindowSize)
+      .add("maxHedgeRatio", this.maxHedgeRatio)
+      .add("hedgeCount", this.hedgeCount)
+      .add("hedgeWinCount", this.hedgeWinCount)
+      .toString();
+    /* @formatter:on */
+  }
+
+  private <T> T execute(String operation, ApiCall<T> apiCall) {
+    LatencyWindow latencyWindow = this.getLatencyWindow(operation);
+    Long hedgeDelayNanos = latencyWindow.getPercentile(this.hedgePercentile);
+    this.earnHedgeBudget();
+    ListenableFuture<T> original = hedgeDelayNanos != null ? this.submit(apiCall, latencyWindow) : null;
+    if (original == null) {
+      long startNanos = System.nanoTime();
+      try {
+        return apiCall.call();
+      } finally {
+        latencyWindow.add(System.nanoTime() - startNanos);
+      }
+    }
+    try {
+      return this.getResult(original, hedgeDelayNanos);
+    } catch (TimeoutException e) {
+      if (!this.spendHedgeBudget()) {
+        return this.getResult(original);
+      }
+    }
+    ListenableFuture<T> hedge = this.submit(apiCall, null);
+    if (hedge == null) {
+      return this.getResult(original);
+    }
+    this.hedgeCount.incrementAndGet();
+    try {
+      T resource = this.getResult(firstSuccessful(original, hedge));
+      if (hedge.isDone() && !original.isDone()) {
+        this.hedgeWinCount.incrementAndGet();
+      }
+      return resource;
+    } finally {
+      // Abandon the hedge request if it hasn't started. It's not interrupted if it's in progress, as the interrupt would
+      // fail it, and the failure be recorded by the wrapped client. The original request is left to complete, as its
+      // latency is recorded
+      hedge.cancel(false);
+    }
+  }
+
+  /**
+   * Submits a request of an API call to the executor.
+   * 
+   * @param apiCall The API call.
+   * @param latencyWindow The {@link LatencyWindow} to which the latency of the request should be added when it
+   * completes, or null if it shouldn't be recorded.
+   * @return A future for the result of the request, or null if the executor rejected it.
+   */
+  private <T> ListenableFuture<T> submit(final ApiCall<T> apiCall, final LatencyWindow latencyWindow) {
+    final long startNanos = System.nanoTime();
+    ListenableFutureTask<T> request = ListenableFutureTask.create(new Callable<T>() {
+      @Override
+      public T call() {
+        try {
+          return apiCall.call();
+        } finally {
+          if (latencyWindow != null) {
+            latencyWindow.add(System.nanoTime() - startNanos);
+          }
+        }
+      }
+    });
+    try {
+      this.executor.execute(request);
+    } catch (RejectedExecutionException e) {
+      return null;
+    }
+    return request;
+  }
+
+  private <T> T getResult(ListenableFuture<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiClientException("Interrupted waiting for API response.", e);
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    }
+  }
+
+  private <T> T getResult(ListenableFuture<T> future, long timeoutNanos) throws TimeoutException {
+    try {
+      return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiClientException("Interrupted waiting for API response.", e);
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    }
+  }
+
+  private static RuntimeException unwrap(ExecutionException e) {
+    if (e.getCause() instanceof RuntimeException) {
+      return (RuntimeException) e.getCause();
+    }
+    if (e.getCause() instanceof Error) {
+      throw (Error) e.getCause();
+    }
+    return new ApiClientException(e.getCause());
+  }
+
+  /**
+   * @return A future which completes with the result of whichever of two futures succeeds first, or the error of the
+   * first future if both fail.
+   */
+  private static <T> ListenableFuture<T> firstSuccessful(final ListenableFuture<T> first,
+      final ListenableFuture<T> second) {
+    final SettableFuture<T> result = SettableFuture.create();
+    final AtomicInteger failures = new AtomicInteger();
+    for (ListenableFuture<T> future : Arrays.asList(first, second)) {
+      Futures.addCallback(future, new FutureCallback<T>() {
+        @Override
+        public void onSuccess(T resource) {
+          result.set(resource);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          if (failures.incrementAndGet() == 2) {
+            try {
+              first.get();
+            } catch (ExecutionException e) {
+              result.setException(e.getCause());
+            } catch (Throwable e) {
+              result.setException(e);
+            }
+          }
+        }
+      });
+    }
+    return result;
+  }
+
+  private LatencyWindow getLatencyWindow(String operation) {
+    LatencyWindow latencyWindow = this.latencyWindows.get(operation);
+    if (latencyWindow == null) {
+      LatencyWindow newLatencyWindow = new LatencyWindow(this.latencyWindowSize);
+      latencyWindow = this.latencyWindows.putIfAbsent(operation, newLatencyWindow);
+      if (latencyWindow == null) {
+        latencyWindow = newLatencyWindow;
+      }
+    }
+    return latencyWindow;
+  }
+
+  /**
+   * Increases the budget for hedge requests by the max hedge ratio of a request, up to the max burst.
+   */
+  private void earnHedgeBudget() {
+    long earned = (long) (this.maxHedgeRatio * HEDGE_BUDGET_UNIT);
+    long maxBudget = MAX_HEDGE_BURST * HEDGE_BUDGET_UNIT;
+    while (true) {
+      long budget = this.hedgeBudget.get();
+      if (budget >= maxBudget || this.hedgeBudget.compareAndSet(budget, Math.min(budget + earned, maxBudget))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return True if the budget allowed a hedge request to be made, in which case it has been reduced accordingly.
+   */
+  private boolean spendHedgeBudget() {
+    while (true) {
+      long budget = this.hedgeBudget.get();
+      if (budget < HEDGE_BUDGET_UNIT) {
+        return false;
+      }
+      if (this.hedgeBudget.compareAndSet(budget, budget - HEDGE_BUDGET_UNIT)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * A single attempt of an API call.
+   */
+  private interface ApiCall<T> {
+    T call() throws ApiClientException;
+  }
+
+  /**
+   * A fixed size window of the most recently observed latencies of an operation.
+   */
+  private static final class LatencyWindow {
+    private final long[] latencies;
+    private int count;
+    private int next;
+
+    LatencyWindow(int size) {
+      this.latencies = new long[size];
+    }
+
+    synchronized void add(long latencyNanos) {
+      this.latencies[this.next] = latencyNanos;
+      this.next = (this.next + 1) % this.latencies.length;
+      this.count = Math.min(this.count + 1, this.latencies.length);
+    }
+
+    /**
+     * @return The percentile of the latencies in the window, or null if the window contains too few latencies.
+     */
+    Long getPercentile(double percentile) {
+      long[] sorted;
+      synchronized (this) {
+        if (this.count < MIN_LATENCY_SAMPLES) {
+          return null;
+        }
+        sorted = Arrays.copyOf(this.latencies, this.count);
+      }
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+      return sorted[Math.max(index, 0)];
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ResourceCallbackHandler;
+
+/**
+ * Synchronises API resource collections incrementally, retrieving only those resources which have been created or
+ * updated since the collection was last synchronised, rather than the whole collection every time.
+ * <p>
+ * For each {@link IncrementalSyncEndpoint collection}, a watermark - the latest 'last updated' date/time of all the
+ * resources retrieved so far - is maintained in a {@link WatermarkStore}. Each sync requests the collection using the
+ * stored watermark, less a configurable overlap, as the value of the 'since' parameter, and walks all of the pages of
+ * the collection, passing each resource to a supplied {@link ResourceCallbackHandler}. The new watermark is only
+ * stored once all pages have been processed. If an error occurs (either on requesting a page, or thrown by the
+ * handler), the stored watermark is left unchanged, and the next sync starts from the same point.
+ * <p>
+ * The overlap caters for resources that are updated while a sync is in progress, and for the limited precision of the
+ * dates/times supported by the API. As a consequence, the same resource may be passed to the handler on more than one
+ * sync, and handlers should therefore be idempotent.
+ * <p>
+ * Thread safe, providing the same collection is not synchronised concurrently.
+ * 
+ * @author Neil Brown
+ * @see IncrementalSyncEndpoints
+ */
+public class IncrementalSync {
+
+  private static final Logger logger = LoggerFactory.getLogger(IncrementalSync.class);
+
+  private final WatermarkStore watermarkStore;
+  private final long overlapMillis;
+
+  /**
+   * @param watermarkStore The {@link WatermarkStore} used to store the watermark for each collection.
+   * @param overlapMillis The period of time, in milliseconds, by which each sync overlaps the previous one, i.e. the
+   * period subtracted from the stored watermark to derive the 'since' parameter. Must not be negative.
+   */
+  public IncrementalSync(WatermarkStore watermarkStore, long overlapMillis) {
+    this.watermarkStore = Preconditions.checkNotNull(watermarkStore, "watermarkStore must not be null.");
+    Preconditions.checkArgument(overlapMillis >= 0, "overlapMillis must not be negative, not [%s].", overlapMillis);
+    this.overlapMillis = overlapMillis;
+  }
+
+  /**
+   * Synchronises an identified collection, retrieving all resources created or updated since the previous sync (or the
+   * whole collection if it's the first sync) and passing each in turn to a supplied handler.
+   * 
+   * @param endpoint The {@link IncrementalSyncEndpoint} identifying the collection.
+   * @param handler The {@link ResourceCallbackHandler} to which each resource is passed.
+   * @param <E> The class of API resource contained in the collection.
+   * @return The {@link Result} of the sync.
+   * @throws ApiClientException If an error occurs on requesting a page of resources, or storing the new watermark.
+   */
+  public <E> Result sync(IncrementalSyncEndpoint<E> endpoint, ResourceCallbackHandler<? super E> handler)
+      throws ApiClientException {
+    Preconditions.checkNotNull(endpoint, "endpoint must not be null.");
+    Preconditions.checkNotNull(handler, "handler must not be null.");
+    String key = endpoint.getWatermarkKey();
+    Date previousWatermark = this.watermarkStore.getWatermark(key);
+    Date since = previousWatermark != null ? new Date(previousWatermark.getTime() - this.overlapMillis) : null;
+    logger.debug("Synchronising [{}] since [{}].", key, since);
+    Date watermark = previousWatermark;
+    int resourceCount = 0;
+    Iterator<E> resources = endpoint.getCollection(since).iterator();
+    try {
+      while (resources.hasNext()) {
+        E resource = resources.next();
+        handler.processResource(resource);
+        resourceCount++;
+        Date lastUpdated = endpoint.getLastUpdated(resource);
+        if (lastUpdated != null && (watermark == null || lastUpdated.after(watermark))) {
+          watermark = lastUpdated;
+        }
+      }
+    } finally {
+      close(resources);
+    }
+    if (watermark != null && !watermark.equals(previousWatermark)) {
+      this.watermarkStore.setWatermark(key, watermark);
+    }
+    Result result = new Result(key, since, watermark, resourceCount);
+    logger.debug("Synchronised [{}].", result);
+    return result;
+  }
+
+  /**
+   * @return The period of time, in milliseconds, by which each sync overlaps the previous one.
+   */
+  public final long getOverlapMillis() {
+    return this.overlapMillis;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("watermarkStore", this.watermarkStore)
+      .add("overlapMillis", this.overlapMillis)
+      .toString();
+    /* @formatter:on */
+  }
+
+  private static void close(Iterator<?> iterator) {
+    if (iterator instanceof Closeable) {
+      try {
+        ((Closeable) iterator).close();
+      } catch (IOException e) {
+        logger.warn("Failed to close iterator.", e);
+      }
+    }
+  }
+
+  /**
+   * The result of synchronising a collection.
+   */
+  public static final class Result {
+    private final String watermarkKey;
+    private final Date since;
+    private final Date watermark;
+    private final int resourceCount;
+
+    Result(String watermarkKey, Date since, Date watermark, int resourceCount) {
+      this.watermarkKey = watermarkKey;
+      this.since = since;
+      this.watermark = watermark;
+      this.resourceCount = resourceCount;
+    }
+
+    /**
+     * @return The key identifying the synchronised collection.
+     */
+    public String getWatermarkKey() {
+      return this.watermarkKey;
+    }
+
+    /**
+     * @return The value of the 'since' parameter used to request the collection, or null if the whole collection was
+     * requested.
+     */
+    public Date getSince() {
+      return this.since != null ? new Date(this.since.getTime()) : null;
+    }
+
+    /**
+     * @return The watermark at the end of the sync, i.e. the latest 'last updated' date/time of all the resources
+     * retrieved so far. Null if no resources have ever been retrieved.
+     */
+    public Date getWatermark() {
+      return this.watermark != null ? new Date(this.watermark.getTime()) : null;
+    }
+
+    /**
+     * @return The no. of resources passed to the handler, including any in the overlap with the previous sync.
+     */
+    public int getResourceCount() {
+      return this.resourceCount;
+    }
+
+    @Override
+    public String toString() {
+      /* @formatter:off */
+      return Objects.toStringHelper(this).omitNullValues()
+        .add("watermarkKey", this.watermarkKey)
+        .add("since", this.since)
+        .add("watermark", this.watermark)
+        .add("resourceCount", this.resourceCount)
+        .toString();
+      /* @formatter:on */
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.util.Date;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * An API resource collection which can be synchronised incrementally by an {@link IncrementalSync}, using the
+ * collection's 'since' request parameter to retrieve only those resources created or updated since the last sync.
+ * <p>
+ * See {@link IncrementalSyncEndpoints} for instances supporting all of the APIs with a 'since' parameter.
+ * 
+ * @param <E> The class of API resource contained in the collection.
+ * @author Neil Brown
+ * @see IncrementalSyncEndpoints
+ */
+public abstract class IncrementalSyncEndpoint<E> {
+
+  private final String watermarkKey;
+
+  /**
+   * @param watermarkKey The key identifying the collection in a {@link WatermarkStore}. Must be unique for each
+   * collection, e.g. include the ID of the channel and any (non-paging) filter parameters.
+   */
+  protected IncrementalSyncEndpoint(String watermarkKey) {
+    this.watermarkKey = Preconditions.checkNotNull(watermarkKey, "watermarkKey must not be null.");
+  }
+
+  /**
+   * Creates a paged view of the collection, filtered to include only those resources created or updated since a given
+   * date/time.
+   * 
+   * @param since The since filter. Null if the whole collection should be retrieved.
+   * @return The {@link PagedResourceCollection}.
+   */
+  protected abstract PagedResourceCollection<?, E> getCollection(Date since);
+
+  /**
+   * @param resource A resource in the collection.
+   * @return The date/time the supplied resource was last updated, which is compared with the 'since' parameter by the
+   * API. Null if unknown.
+   */
+  protected abstract Date getLastUpdated(E resource);
+
+  /**
+   * @return The key identifying the collection in a {@link WatermarkStore}.
+   */
+  public final String getWatermarkKey() {
+    return this.watermarkKey;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("watermarkKey", this.watermarkKey)
+      .toString();
+    /* @formatter:on */
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscriberResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscriberWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponseResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * Utility class providing factory methods for creating an {@link IncrementalSyncEndpoint} for each of the paged APIs
+ * supported by the {@link ApiClient} which have a 'since' request parameter.
+ * <p>
+ * The watermark key of each created endpoint is the relative URL of the API resource collection, including the values
+ * of any filter parameters which affect the contents of the collection, e.g. "/v1/channel/1/webcast_viewings".
+ * 
+ * @author Neil Brown
+ * @see PagedResourceCollections
+ */
+public class IncrementalSyncEndpoints {
+
+  private static final Pattern URI_TEMPLATE_VARIABLE = Pattern.compile("\\{[^}]+\\}");
+
+  /**
+   * Creates an endpoint for synchronising the subscribers to a channel, using the date/time each subscriber last
+   * subscribed as the watermark.
+   * <p>
+   * A subscriber who unsubscribes isn't resubscribed, and so isn't returned by a subsequent sync of this endpoint. To
+   * also synchronise unsubscribes, additionally sync the endpoint created by {@link #channelUnsubscribes}.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link IncrementalSyncEndpoint}.
+   * @see PagedResourceCollections#channelSubscribers
+   */
+  public static IncrementalSyncEndpoint<ChannelSubscriberResource> channelSubscribers(final ApiClient apiClient,
+      final int channelId, final Integer pageSize) {
+    checkApiClient(apiClient);
+    return new IncrementalSyncEndpoint<ChannelSubscriberResource>(
+        expand(ChannelSubscribersResource.RELATIVE_URI_TEMPLATE, channelId)) {
+      @Override
+      protected PagedResourceCollection<?, ChannelSubscriberResource> getCollection(Date since) {
+        return PagedResourceCollections.channelSubscribers(apiClient, channelId, null, since, null, pageSize);
+      }
+
+      @Override
+      protected Date getLastUpdated(ChannelSubscriberResource resource) {
+        return resource.getLastSubscribed();
+      }
+    };
+  }
+
+  /**
+   * Creates an endpoint for synchronising the subscribers who have unsubscribed from a channel, using the date/time
+   * each subscriber unsubscribed as the watermark. Complements {@link #channelSubscribers}, whose watermark doesn't
+   * advance when a subscriber unsubscribes.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link IncrementalSyncEndpoint}.
+   * @see PagedResourceCollections#channelSubscribers
+   */
+  public static IncrementalSyncEndpoint<ChannelSubscriberResource> channelUnsubscribes(final ApiClient apiClient,
+      final int channelId, final Integer pageSize) {
+    checkApiClient(apiClient);
+    return new IncrementalSyncEndpoint<ChannelSubscriberResource>(
+        expand(ChannelSubscribersResource.RELATIVE_URI_TEMPLATE, channelId) + "?subscribed=false") {
+      @Override
+      protected PagedResourceCollection<?, ChannelSubscriberResource> getCollection(Date since) {
+        return PagedResourceCollections.channelSubscribers(apiClient, channelId, Boolean.FALSE, null, since,
+            pageSize);
+      }
+
+      @Override
+      protected Date getLastUpdated(ChannelSubscriberResource resource) {
+        return resource.getUnsubscribed();
+      }
+    };
+  }
+
+  /**
+   * Creates an endpoint for synchronising the per subscriber activity for webcasts in a channel.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param expandChannelSurveyResponse Optional flag controlling whether to include channel survey responses.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link IncrementalSyncEndpoint}.
+   * @see PagedResourceCollections#subscribersWebcastActivityForChannel
+   */
+  public static IncrementalSyncEndpoint<SubscriberWebcastActivityResource> subscribersWebcastActivityForChannel(
+      final ApiClient apiClient, final int channelId, final Boolean expandChannelSurveyResponse,
+      final Integer pageSize) {
+    checkApiClient(apiClient);
+    return new IncrementalSyncEndpoint<SubscriberWebcastActivityResource>(
+        expand(SubscribersWebcastActivityResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE, channelId)
+            + (Boolean.TRUE.equals(expandChannelSurveyResponse) ? "?expand=channelSurveyResponse" : "")) {
+      @Override
+      protected PagedResourceCollection<?, SubscriberWebcastActivityResource> getCollection(Date since) {
+        return PagedResourceCollections.subscribersWebcastActivityForChannel(apiClient, channelId, since,
+            expandChannelSurveyResponse, pageSize);
+      }
+
+      @Override
+      protected Date getLastUpdated(SubscriberWebcastActivityResource resource) {
+        return resource.getLastUpdated();
+      }
+    };
+  }
+
+  /**
+   * Creates an endpoint for synchronising the responses to an identified survey.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param surveyId The ID of the survey.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link IncrementalSyncEndpoint}.
+   * @see PagedResourceCollections#surveyResponses
+   */
+  public static IncrementalSyncEndpoint<SurveyResponseResource> surveyResponses(final ApiClient apiClient,
+      final int surveyId, final Integer pageSize) {
+    checkApiClient(apiClient);
+    return new IncrementalSyncEndpoint<SurveyResponseResource>(
+        expand(SurveyResponsesResource.RELATIVE_URI_TEMPLATE, surveyId)) {
+      @Override
+      protected PagedResourceCollection<?, SurveyResponseResource> getCollection(Date since) {
+        return PagedResourceCollections.surveyResponses(apiClient, surveyId, since, pageSize);
+      }
+
+      @Override
+      protected Date getLastUpdated(SurveyResponseResource resource) {
+        return resource.getLastUpdated();
+      }
+    };
+  }
+
+  /**
+   * Creates an endpoint for synchronising the webcasts in an identified channel.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link IncrementalSyncEndpoint}.
+   * @see PagedResourceCollections#webcastsForChannel
+   */
+  public static IncrementalSyncEndpoint<WebcastResource> webcastsForChannel(final ApiClient apiClient,
+      final int channelId, final Integer pageSize) {
+    checkApiClient(apiClient);
+    return new IncrementalSyncEndpoint<WebcastResource>(expand(WebcastsResource.RELATIVE_URI_TEMPLATE, channelId)) {
+      @Override
+      protected PagedResourceCollection<?, WebcastResource> getCollection(Date since) {
+        return PagedResourceCollections.webcastsForChannel(apiClient, channelId, since, pageSize);
+      }
+
+      @Override
+      protected Date getLastUpdated(WebcastResource resource) {
+        return resource.getLastUpdated();
+      }
+    };
+  }
+
+  /**
+   * Creates an endpoint for synchronising the registrations for an identified webcast.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @param viewed Optional viewed filter.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link IncrementalSyncEndpoint}.
+   * @see PagedResourceCollections#webcastRegistrationsForWebcast
+   */
+  public static IncrementalSyncEndpoint<WebcastRegistrationResource> webcastRegistrationsForWebcast(
+      final ApiClient apiClient, final int channelId, final int webcastId, final Boolean viewed,
+      final Integer pageSize) {
+    checkApiClient(apiClient);
+    return new IncrementalSyncEndpoint<WebcastRegistrationResource>(
+        expand(WebcastRegistrationsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE, channelId, webcastId)
+            + (viewed != null ? "?viewed=" + viewed : "")) {
+      @Override
+      protected PagedResourceCollection<?, WebcastRegistrationResource> getCollection(Date since) {
+        return PagedResourceCollections.webcastRegistrationsForWebcast(apiClient, channelId, webcastId, since, viewed,
+            pageSize);
+      }
+
+      @Override
+      protected Date getLastUpdated(WebcastRegistrationResource resource) {
+        return resource.getLastUpdated();
+      }
+    };
+  }
+
+  /**
+   * Creates an endpoint for synchronising the viewings for all webcasts in an identified channel.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param webcastStatus Optional webcast status filter.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link IncrementalSyncEndpoint}.
+   * @see PagedResourceCollections#webcastViewingsForChannel
+   */
+  public static IncrementalSyncEndpoint<WebcastViewingResource> webcastViewingsForChannel(final ApiClient apiClient,
+      final int channelId, final WebcastStatus webcastStatus, final Integer pageSize) {
+    checkApiClient(apiClient);
+    return new IncrementalSyncEndpoint<WebcastViewingResource>(
+        expand(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE, channelId)
+            + (webcastStatus != null ? "?webcastStatus=" + webcastStatus : "")) {
+      @Override
+      protected PagedResourceCollection<?, WebcastViewingResource> getCollection(Date since) {
+        return PagedResourceCollections.webcastViewingsForChannel(apiClient, channelId, since, webcastStatus,
+            pageSize);
+      }
+
+      @Override
+      protected Date getLastUpdated(WebcastViewingResource resource) {
+        return resource.getLastUpdated();
+      }
+    };
+  }
+
+  private static void checkApiClient(ApiClient apiClient) {
+    Preconditions.checkNotNull(apiClient, "apiClient must not be null.");
+  }
+
+  /** Expands the variables in a relative URI template, in order, using the supplied values. */
+  private static String expand(String uriTemplate, Object... values) {
+    Matcher matcher = URI_TEMPLATE_VARIABLE.matcher(uriTemplate);
+    StringBuffer uri = new StringBuffer();
+    int i = 0;
+    while (matcher.find()) {
+      matcher.appendReplacement(uri, String.valueOf(values[i++]));
+    }
+    matcher.appendTail(uri);
+    return uri.toString();
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+
+/**
+ * A lazily evaluated view of <em>all</em> of the pages of a collection of API resources, which supports iterating over
+ * either the pages or the individual resources in the collection without the need to request each page explicitly.
+ * <p>
+ * A page is only requested from the API when the previous page has been fully consumed, following the 'next' page
+ * {@link Link link} returned in the previous page. At most one page of resources is therefore held in memory by an
+ * iterator at any one time, irrespective of the total size of the collection.
+ * <p>
+ * Each call to {@link #iterator()} or {@link #pages()} starts a new traversal of the collection, beginning with the
+ * first page. Iterators are not thread-safe and do not support removal. {@link ApiClientException} thrown on requesting
+ * a page are propagated from {@link Iterator#hasNext()}.
+ * <p>
+ * Concrete subclasses adapt a specific API call, capturing any (non-paging) request parameters used to filter the
+ * collection, so that the same filters are applied to every page. See {@link PagedResourceCollections} for instances
+ * supporting all of the paged APIs.
+ *
+ * @param <P> The class of API resource representing a page of the collection, e.g.
+ * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource}.
+ * @param <E> The class of API resource contained in each page, e.g.
+ * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource}.
+ * @author Neil Brown
+ * @see PagedResourceCollections
+ */
+public abstract class PagedResourceCollection<P, E> implements Iterable<E> {
+
+  private final Integer pageSize;
+
+  /**
+   * @param pageSize The max no. of entries to request in each page of resources. Optional. If null then the API's
+   * default page size is used.
+   */
+  protected PagedResourceCollection(Integer pageSize) {
+    Preconditions.checkArgument(pageSize == null || pageSize > 0, "pageSize must be null or greater than zero.");
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Requests an identified page of resources from the API.
+   *
+   * @param pageCriteria The {@link PageCriteria} identifying the page. Never null.
+   * @return The page of resources.
+   * @throws ApiClientException If an error occurs on making the API call.
+   */
+  protected abstract P getPage(PageCriteria pageCriteria) throws ApiClientException;
+
+  /**
+   * @param page A page of resources, as returned by {@link #getPage(PageCriteria)}.
+   * @return The list of resources contained in the supplied page.
+   */
+  protected abstract List<E> getEntries(P page);
+
+  /**
+   * @param page A page of resources, as returned by {@link #getPage(PageCriteria)}.
+   * @return The list of links contained in the supplied page, from which any link to the next page is obtained.
+   */
+  protected abstract List<Link> getLinks(P page);
+
+  /**
+   * @return The max no. of entries requested in each page of resources, or null if the API's default page size is used.
+   */
+  public final Integer getPageSize() {
+    return this.pageSize;
+  }
+
+  /**
+   * @return An {@link Iterable} view of the pages of the collection, supporting lazily iterating over each page in turn.
+   */
+  public Iterable<P> pages() {
+    return new Iterable<P>() {
+      @Override
+      public Iterator<P> iterator() {
+        return new PageIterator();
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This implementation returns an iterator over every resource in the collection, across all pages. The returned
+   * iterator also implements {@link Closeable}, releasing any resources held by the iterator over the pages.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new EntryIterator(this.pages().iterator());
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("pageSize", this.pageSize)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Iterator over the pages of the collection. Requests the first page on the first call to {@link #hasNext()}, and each
+   * subsequent page, using the previous page's next page link, when the previous page has been returned by
+   * {@link #next()}.
+   */
+  private class PageIterator implements Iterator<P> {
+    private PageCriteria nextPageCriteria = new PageCriteria(PagedResourceCollection.this.pageSize);
+    private P nextPage;
+
+    @Override
+    public boolean hasNext() {
+      if (this.nextPage == null && this.nextPageCriteria != null) {
+        this.nextPage = getPage(this.nextPageCriteria);
+        Link nextPageLink = this.nextPage != null ? Links.findNextPageLink(getLinks(this.nextPage)) : null;
+        this.nextPageCriteria =
+            nextPageLink != null ? new PageCriteria(PagedResourceCollection.this.pageSize, nextPageLink) : null;
+      }
+      return this.nextPage != null;
+    }
+
+    @Override
+    public P next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      P page = this.nextPage;
+      this.nextPage = null;
+      return page;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+
+  /**
+   * Iterator over the entries of each page of the collection in turn. Only advances to the next page when the entries
+   * in the current page have been exhausted, skipping over any empty pages.
+   */
+  private class EntryIterator implements Iterator<E>, Closeable {
+    private final Iterator<P> pageIterator;
+    private Iterator<E> currentPageEntries = Collections.<E>emptyList().iterator();
+
+    EntryIterator(Iterator<P> pageIterator) {
+      this.pageIterator = pageIterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!this.currentPageEntries.hasNext()) {
+        // Release the reference to the exhausted page before (lazily) requesting the next one
+        this.currentPageEntries = Collections.<E>emptyList().iterator();
+        if (!this.pageIterator.hasNext()) {
+          return false;
+        }
+        this.currentPageEntries = getEntries(this.pageIterator.next()).iterator();
+      }
+      return true;
+    }
+
+    @Override
+    public E next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return this.currentPageEntries.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (this.pageIterator instanceof Closeable) {
+        ((Closeable) this.pageIterator).close();
+      }
+    }
+  }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.util.Date;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscriberResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscriberWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponseResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * Utility class providing factory methods for creating a {@link PagedResourceCollection} for each of the paged APIs
+ * supported by the {@link ApiClient}.
+ * <p>
+ * Each of the created collections delegates to the supplied {@link ApiClient} to request each page, and supplies the
+ * same filter parameters (e.g. 'since') in the request for every page.
+ * 
+ * @author Neil Brown
+ */
+public class PagedResourceCollections {
+
+  /**
+   * Creates a paged collection of the channels owned by the current API user.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getMyChannels(PageCriteria)
+   */
+  public static PagedResourceCollection<ChannelsResource, ChannelResource> myChannels(final ApiClient apiClient,
+      Integer pageSize) {
+    checkApiClient(apiClient);
+    return new ChannelsCollection(pageSize) {
+      @Override
+      protected ChannelsResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getMyChannels(pageCriteria);
+      }
+    };
+  }
+
+  /**
+   * Creates a paged collection of the channels owned by an identified BrightTALK user.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param userId The ID of the BrightTALK user.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getUserChannels(int, PageCriteria)
+   */
+  public static PagedResourceCollection<ChannelsResource, ChannelResource> userChannels(final ApiClient apiClient,
+      final int userId, Integer pageSize) {
+    checkApiClient(apiClient);
+    return new ChannelsCollection(pageSize) {
+      @Override
+      protected ChannelsResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getUserChannels(userId, pageCriteria);
+      }
+    };
+  }
+
+  /**
+   * Creates a paged collection of the current and/or past subscribers to a channel.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param subscribed Optional subscription status filter.
+   * @param subscribedSince Optional subscribed since filter.
+   * @param unsubscribedSince Optional unsubscribed since filter.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getChannelSubscribers(int, Boolean, Date, Date, PageCriteria)
+   */
+  public static PagedResourceCollection<ChannelSubscribersResource, ChannelSubscriberResource> channelSubscribers(
+      final ApiClient apiClient, final int channelId, final Boolean subscribed, Date subscribedSince,
+      Date unsubscribedSince, Integer pageSize) {
+    checkApiClient(apiClient);
+    final Date subscribedSinceCopy = copyOf(subscribedSince);
+    final Date unsubscribedSinceCopy = copyOf(unsubscribedSince);
+    return new PagedResourceCollection<ChannelSubscribersResource, ChannelSubscriberResource>(pageSize) {
+      @Override
+      protected ChannelSubscribersResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getChannelSubscribers(channelId, subscribed, subscribedSinceCopy, unsubscribedSinceCopy,
+            pageCriteria);
+      }
+
+      @Override
+      protected List<ChannelSubscriberResource> getEntries(ChannelSubscribersResource page) {
+        return page.getChannelSubscribers();
+      }
+
+      @Override
+      protected List<Link> getLinks(ChannelSubscribersResource page) {
+        return page.getLinks();
+      }
+    };
+  }
+
+  /**
+   * Creates a paged collection of the per subscriber activity for webcasts in a channel.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param since Optional since filter.
+   * @param expandChannelSurveyResponse Optional flag controlling whether to include channel survey responses.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getSubscribersWebcastActivityForChannel(int, Date, Boolean, PageCriteria)
+   */
+  public static PagedResourceCollection<SubscribersWebcastActivityResource, SubscriberWebcastActivityResource> 
+      subscribersWebcastActivityForChannel(final ApiClient apiClient, final int channelId, Date since,
+          final Boolean expandChannelSurveyResponse, Integer pageSize) {
+    checkApiClient(apiClient);
+    final Date sinceCopy = copyOf(since);
+    return new SubscribersWebcastActivityCollection(pageSize) {
+      @Override
+      protected SubscribersWebcastActivityResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getSubscribersWebcastActivityForChannel(channelId, sinceCopy, expandChannelSurveyResponse,
+            pageCriteria);
+      }
+    };
+  }
+
+  /**
+   * Creates a paged collection of the per subscriber activity for an identified webcast in a channel.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @param since Optional since filter.
+   * @param expandChannelSurveyResponse Optional flag controlling whether to include channel survey responses.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getSubscribersWebcastActivityForWebcast(int, int, Date, Boolean, PageCriteria)
+   */
+  public static PagedResourceCollection<SubscribersWebcastActivityResource, SubscriberWebcastActivityResource> 
+      subscribersWebcastActivityForWebcast(final ApiClient apiClient, final int channelId, final int webcastId,
+          Date since, final Boolean expandChannelSurveyResponse, Integer pageSize) {
+    checkApiClient(apiClient);
+    final Date sinceCopy = copyOf(since);
+    return new SubscribersWebcastActivityCollection(pageSize) {
+      @Override
+      protected SubscribersWebcastActivityResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getSubscribersWebcastActivityForWebcast(channelId, webcastId, sinceCopy,
+            expandChannelSurveyResponse, pageCriteria);
+      }
+    };
+  }
+
+  /**
+   * Creates a paged collection of the responses to an identified survey.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param surveyId The ID of the survey.
+   * @param since Optional since filter.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getSurveyResponses(int, Date, PageCriteria)
+   */
+  public static PagedResourceCollection<SurveyResponsesResource, SurveyResponseResource> surveyResponses(
+      final ApiClient apiClient, final int surveyId, Date since, Integer pageSize) {
+    checkApiClient(apiClient);
+    final Date sinceCopy = copyOf(since);
+    return new PagedResourceCollection<SurveyResponsesResource, SurveyResponseResource>(pageSize) {
+      @Override
+      protected SurveyResponsesResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getSurveyResponses(surveyId, sinceCopy, pageCriteria);
+      }
+
+      @Override
+      protected List<SurveyResponseResource> getEntries(SurveyResponsesResource page) {
+        return page.getSurveyResponses();
+      }
+
+      @Override
+      protected List<Link> getLinks(SurveyResponsesResource page) {
+        return page.getLinks();
+      }
+    };
+  }
+
+  /**
+   * Creates a paged collection of the webcasts in an identified channel.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param since Optional since filter.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getWebcastsForChannel(int, Date, PageCriteria)
+   */
+  public static PagedResourceCollection<WebcastsResource, WebcastResource> webcastsForChannel(
+      final ApiClient apiClient, final int channelId, Date since, Integer pageSize) {
+    checkApiClient(apiClient);
+    final Date sinceCopy = copyOf(since);
+    return new PagedResourceCollection<WebcastsResource, WebcastResource>(pageSize) {
+      @Override
+      protected WebcastsResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getWebcastsForChannel(channelId, sinceCopy, pageCriteria);
+      }
+
+      @Override
+      protected List<WebcastResource> getEntries(WebcastsResource page) {
+        return page.getWebcasts();
+      }
+
+      @Override
+      protected List<Link> getLinks(WebcastsResource page) {
+        return page.getLinks();
+      }
+    };
+  }
+
+  /**
+   * Creates a paged collection of the registrations for an identified webcast.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @param since Optional since filter.
+   * @param viewed Optional viewed filter.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getWebcastRegistrationsForWebcast(int, int, Date, Boolean, PageCriteria)
+   */
+  public static PagedResourceCollection<WebcastRegistrationsResource, WebcastRegistrationResource> 
+      webcastRegistrationsForWebcast(final ApiClient apiClient, final int channelId, final int webcastId, Date since,
+          final Boolean viewed, Integer pageSize) {
+    checkApiClient(apiClient);
+    final Date sinceCopy = copyOf(since);
+    return new PagedResourceCollection<WebcastRegistrationsResource, WebcastRegistrationResource>(pageSize) {
+      @Override
+      protected WebcastRegistrationsResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getWebcastRegistrationsForWebcast(channelId, webcastId, sinceCopy, viewed, pageCriteria);
+      }
+
+      @Override
+      protected List<WebcastRegistrationResource> getEntries(WebcastRegistrationsResource page) {
+        return page.getWebcastRegistrations();
+      }
+
+      @Override
+      protected List<Link> getLinks(WebcastRegistrationsResource page) {
+        return page.getLinks();
+      }
+    };
+  }
+
+  /**
+   * Creates a paged collection of the viewings for all webcasts in an identified channel.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param since Optional since filter.
+   * @param webcastStatus Optional webcast status filter.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getWebcastViewingsForChannel(int, Date, WebcastStatus, PageCriteria)
+   */
+  public static PagedResourceCollection<WebcastViewingsResource, WebcastViewingResource> webcastViewingsForChannel(
+      final ApiClient apiClient, final int channelId, Date since, final WebcastStatus webcastStatus, Integer pageSize) {
+    checkApiClient(apiClient);
+    final Date sinceCopy = copyOf(since);
+    return new WebcastViewingsCollection(pageSize) {
+      @Override
+      protected WebcastViewingsResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getWebcastViewingsForChannel(channelId, sinceCopy, webcastStatus, pageCriteria);
+      }
+    };
+  }
+
+  /**
+   * Creates a paged collection of the viewings for an identified webcast.
+   * 
+   * @param apiClient The {@link ApiClient} to use to request each page.
+   * @param channelId The ID of the channel.
+   * @param webcastId The ID of the webcast.
+   * @param since Optional since filter.
+   * @param webcastStatus Optional webcast status filter.
+   * @param pageSize Optional page size. If null the API's default page size is used.
+   * @return The {@link PagedResourceCollection}.
+   * @see ApiClient#getWebcastViewingsForWebcast(int, int, Date, WebcastStatus, PageCriteria)
+   */
+  public static PagedResourceCollection<WebcastViewingsResource, WebcastViewingResource> webcastViewingsForWebcast(
+      final ApiClient apiClient, final int channelId, final int webcastId, Date since,
+      final WebcastStatus webcastStatus, Integer pageSize) {
+    checkApiClient(apiClient);
+    final Date sinceCopy = copyOf(since);
+    return new WebcastViewingsCollection(pageSize) {
+      @Override
+      protected WebcastViewingsResource getPage(PageCriteria pageCriteria) {
+        return apiClient.getWebcastViewingsForWebcast(channelId, webcastId, sinceCopy, webcastStatus, pageCriteria);
+      }
+    };
+  }
+
+  private static void checkApiClient(ApiClient apiClient) {
+    Preconditions.checkNotNull(apiClient, "apiClient must not be null.");
+  }
+
+  /** Copies a mutable, optional date filter so that it is applied consistently across all pages. */
+  private static Date copyOf(Date date) {
+    return date != null ? new Date(date.getTime()) : null;
+  }
+
+  /** Base class for paged collections of channels, supporting multiple APIs. */
+  private abstract static class ChannelsCollection extends PagedResourceCollection<ChannelsResource, ChannelResource> {
+    ChannelsCollection(Integer pageSize) {
+      super(pageSize);
+    }
+
+    @Override
+    protected List<ChannelResource> getEntries(ChannelsResource page) {
+      return page.getChannels();
+    }
+
+    @Override
+    protected List<Link> getLinks(ChannelsResource page) {
+      return page.getLinks();
+    }
+  }
+
+  /** Base class for paged collections of subscriber webcast activity, supporting multiple APIs. */
+  private abstract static class SubscribersWebcastActivityCollection extends
+      PagedResourceCollection<SubscribersWebcastActivityResource, SubscriberWebcastActivityResource> {
+    SubscribersWebcastActivityCollection(Integer pageSize) {
+      super(pageSize);
+    }
+
+    @Override
+    protected List<SubscriberWebcastActivityResource> getEntries(SubscribersWebcastActivityResource page) {
+      return page.getSubscriberWebcastActivities();
+    }
+
+    @Override
+    protected List<Link> getLinks(SubscribersWebcastActivityResource page) {
+      return page.getLinks();
+    }
+  }
+
+  /** Base class for paged collections of webcast viewings, supporting multiple APIs. */
+  private abstract static class WebcastViewingsCollection extends
+      PagedResourceCollection<WebcastViewingsResource, WebcastViewingResource> {
+    WebcastViewingsCollection(Integer pageSize) {
+      super(pageSize);
+    }
+
+    @Override
+    protected List<WebcastViewingResource> getEntries(WebcastViewingsResource page) {
+      return page.getWebcastViewings();
+    }
+
+    @Override
+    protected List<Link> getLinks(WebcastViewingsResource page) {
+      return page.getLinks();
+    }
+  }
+}
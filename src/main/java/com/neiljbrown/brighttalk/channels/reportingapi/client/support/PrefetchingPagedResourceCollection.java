@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+
+/**
+ * A {@link PagedResourceCollection} which requests pages of resources in the background, ahead of them being consumed,
+ * to overlap the latency of the API calls with the processing of previously returned pages.
+ * <p>
+ * As soon as a page has been returned by the API, the request for the following page is made, using the page's 'next'
+ * link, on a thread provided by a supplied {@link Executor}. Pages are requested in order, one at a time, exactly as
+ * they would be by the decorated collection. Requesting stops once the configured prefetch depth - the max no. of
+ * pages which have been (or are being) requested but not yet consumed - is reached, and resumes as pages are consumed,
+ * bounding the no. of pages held in memory.
+ * <p>
+ * Iterators created by this class consume a thread from the executor until all pages have been requested, or an error
+ * occurs. Callers which stop iterating before reaching the end of the collection should close the iterator (which
+ * implements {@link Closeable}) to release the thread. Any exception or error thrown on requesting a page in the
+ * background, including the background thread being interrupted other than by closing the iterator, is rethrown to
+ * the consumer when it reaches that page, as an {@link ApiClientException} if it's a checked exception.
+ *
+ * @param <P> The class of API resource representing a page of the collection.
+ * @param <E> The class of API resource contained in each page.
+ * @author Neil Brown
+ */
+public class PrefetchingPagedResourceCollection<P, E> extends PagedResourceCollection<P, E> {
+
+  private static final Logger logger = LoggerFactory.getLogger(PrefetchingPagedResourceCollection.class);
+
+  private final PagedResourceCollection<P, E> collection;
+  private final Executor executor;
+  private final int prefetchDepth;
+
+  /**
+   * @param collection The {@link PagedResourceCollection} whose pages should be prefetched.
+   * @param executor The {@link Executor} used to request pages in the background.
+   * @param prefetchDepth The max no. of pages that may be requested ahead of the consumer. Must be a positive number.
+   */
+  public PrefetchingPagedResourceCollection(PagedResourceCollection<P, E> collection, Executor executor,
+      int prefetchDepth) {
+    super(Preconditions.checkNotNull(collection, "collection must not be null.").getPageSize());
+    this.collection = collection;
+    this.executor = Preconditions.checkNotNull(executor, "executor must not be null.");
+    Preconditions.checkArgument(prefetchDepth > 0, "prefetchDepth must be a positive number, not [%s].",
+        prefetchDepth);
+    this.prefetchDepth = prefetchDepth;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This implementation returns pages that have been requested in the background. The returned iterators also
+   * implement {@link Closeable}.
+   */
+  @Override
+  public Iterable<P> pages() {
+    return new Iterable<P>() {
+      @Override
+      public Iterator<P> iterator() {
+        return new PrefetchingPageIterator();
+      }
+    };
+  }
+
+  @Override
+  protected P getPage(PageCriteria pageCriteria) throws ApiClientException {
+    return this.collection.getPage(pageCriteria);
+  }
+
+  @Override
+  protected List<E> getEntries(P page) {
+    return this.collection.getEntries(page);
+  }
+
+  @Override
+  protected List<Link> getLinks(P page) {
+    return this.collection.getLinks(page);
+  }
+
+  /**
+   * @return The max no. of pages that may be requested ahead of the consumer.
+   */
+  public final int getPrefetchDepth() {
+    return this.prefetchDepth;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("collection", this.collection)
+      .add("prefetchDepth", this.prefetchDepth)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * The outcome of requesting a page in the background - either a page, an error, or the end of the collection.
+   */
+  private static final class PageResult<P> {
+    private final P page;
+    private final Throwable error;
+
+    PageResult(P page, Throwable error) {
+      this.page = page;
+      this.error = error;
+    }
+
+    boolean isEnd() {
+      return this.page == null && this.error == null;
+    }
+  }
+
+  /**
+   * Iterator which returns pages requested by a background task. The task is started on creation of the iterator, and
+   * requests pages using an iterator of the decorated collection, blocking when the prefetch depth is reached.
+   */
+  private class PrefetchingPageIterator implements Iterator<P>, Closeable {
+    private final BlockingQueue<PageResult<P>> results = new LinkedBlockingQueue<>();
+    private final Semaphore prefetchPermits = new Semaphore(PrefetchingPagedResourceCollection.this.prefetchDepth);
+    private final FutureTask<Void> producer;
+    private PageResult<P> nextResult;
+    private boolean closed;
+
+    PrefetchingPageIterator() {
+      this.producer = new FutureTask<>(new Runnable() {
+        @Override
+        public void run() {
+          requestPages();
+        }
+      }, null);
+      PrefetchingPagedResourceCollection.this.executor.execute(this.producer);
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (this.closed) {
+        return false;
+      }
+      if (this.nextResult == null) {
+        try {
+          this.nextResult = this.results.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new ApiClientException("Interrupted waiting for next page of resources.", e);
+        }
+        if (!this.nextResult.isEnd()) {
+          this.prefetchPermits.release();
+        }
+      }
+      if (this.nextResult.error != null) {
+        Throwables.propagateIfPossible(this.nextResult.error);
+        throw new ApiClientException("Error requesting next page of resources.", this.nextResult.error);
+      }
+      return !this.nextResult.isEnd();
+    }
+
+    @Override
+    public P next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      P page = this.nextResult.page;
+      this.nextResult = null;
+      return page;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * Stops requesting pages in the background, if not already complete, releasing the thread used to do so. Once
+     * closed, the iterator has no more pages.
+     */
+    @Override
+    public void close() {
+      this.closed = true;
+      this.producer.cancel(true);
+    }
+
+    /**
+     * Requests pages until the end of the collection is reached, or an error occurs, queueing each page for the
+     * consumer. Always ends by queueing a result which ends the iteration, so that the consumer is never left waiting.
+     */
+    private void requestPages() {
+      try {
+        Iterator<P> pages = PrefetchingPagedResourceCollection.this.collection.pages().iterator();
+        while (true) {
+          this.prefetchPermits.acquire();
+          if (!pages.hasNext()) {
+            this.results.put(new PageResult<P>(null, null));
+            return;
+          }
+          this.results.put(new PageResult<P>(pages.next(), null));
+        }
+      } catch (InterruptedException e) {
+        logger.debug("Prefetching of pages interrupted.");
+        this.results.add(new PageResult<P>(null, new ApiClientException(
+            "Interrupted requesting pages of resources in the background.", e)));
+        Thread.currentThread().interrupt();
+      } catch (Throwable t) {
+        this.results.add(new PageResult<P>(null, t));
+      }
+    }
+  }
+}
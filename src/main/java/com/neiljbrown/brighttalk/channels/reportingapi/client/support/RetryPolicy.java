@@ -0,0 +1,254 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.io.IOException;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.HttpErrorResponseException;
+
+/**
+ * An immutable policy for retrying failed API calls, used by {@link RetryingApiClient}.
+ * <p>
+ * The policy comprises -
+ * <ul>
+ * <li>The max no. of attempts made for each API call, including the first.</li>
+ * <li>The initial and max backoff between attempts. The backoff grows exponentially with each attempt, and the actual
+ * delay is chosen at random between zero and the backoff ('full jitter'), to avoid many clients retrying in step.</li>
+ * <li>A total time budget for each API call, across all of its attempts. An attempt is not made if its delay would
+ * exceed the budget.</li>
+ * <li>The classification of errors as retryable or fatal - see {@link #isRetryable(RuntimeException)}.</li>
+ * </ul>
+ * Instances are created using a {@link Builder}, e.g. {@code RetryPolicy.builder().maxAttempts(3).build()}.
+ * 
+ * @author Neil Brown
+ */
+public final class RetryPolicy {
+
+  /** HTTP status code 429 Too Many Requests. */
+  public static final int STATUS_TOO_MANY_REQUESTS = 429;
+  /** HTTP status code 503 Service Unavailable. */
+  public static final int STATUS_SERVICE_UNAVAILABLE = 503;
+
+  /** The HTTP status codes which are retryable by default - 429, 500, 502, 503 and 504. */
+  public static final Set<Integer> DEFAULT_RETRYABLE_STATUS_CODES = ImmutableSet.of(STATUS_TOO_MANY_REQUESTS, 500, 502,
+      STATUS_SERVICE_UNAVAILABLE, 504);
+
+  private final int maxAttempts;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final long timeBudgetMillis;
+  private final Set<Integer> retryableStatusCodes;
+  private final Set<String> fatalErrorCodes;
+
+  private RetryPolicy(Builder builder) {
+    this.maxAttempts = builder.maxAttempts;
+    this.initialBackoffMillis = builder.initialBackoffMillis;
+    this.maxBackoffMillis = builder.maxBackoffMillis;
+    this.timeBudgetMillis = builder.timeBudgetMillis;
+    this.retryableStatusCodes = ImmutableSet.copyOf(builder.retryableStatusCodes);
+    this.fatalErrorCodes = ImmutableSet.copyOf(builder.fatalErrorCodes);
+  }
+
+  /**
+   * @return A new {@link Builder}, initialised with the default policy.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Classifies an exception thrown on making an API call as retryable or fatal. An error is retryable if either -
+   * <ul>
+   * <li>An HTTP error response was returned with one of the configured retryable status codes, unless the response
+   * contained an {@link com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ApiError API error} with one of
+   * the configured fatal error codes; or</li>
+   * <li>No HTTP response was received due to an I/O error, e.g. a connection was refused or reset, or timed out.</li>
+   * </ul>
+   * All other errors, including all other 4xx client errors and errors unmarshalling a response, are fatal.
+   * 
+   * @param e The exception thrown on making an API call.
+   * @return True if the API call should be retried, false otherwise.
+   */
+  public boolean isRetryable(RuntimeException e) {
+    if (e instanceof HttpErrorResponseException) {
+      if (e instanceof ApiErrorResponseException) {
+        ApiErrorResponseException apiErrorException = (ApiErrorResponseException) e;
+        if (apiErrorException.getApiError() != null
+            && this.fatalErrorCodes.contains(apiErrorException.getApiError().getCode())) {
+          return false;
+        }
+      }
+      return this.retryableStatusCodes.contains(((HttpErrorResponseException) e).getStatusCode());
+    }
+    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Calculates the maximum backoff before a retry, which grows exponentially with each failed attempt, up to the
+   * configured max backoff.
+   * 
+   * @param failedAttempts The no. of attempts made so far. Must be greater than zero.
+   * @return The backoff in milliseconds.
+   */
+  public long getBackoffMillis(int failedAttempts) {
+    Preconditions.checkArgument(failedAttempts > 0, "failedAttempts must be greater than zero, not [%s].",
+        failedAttempts);
+    // Cap the shift to avoid overflow - 2^30 multiples of the initial backoff far exceeds any sensible max backoff
+    long backoff = this.initialBackoffMillis << Math.min(failedAttempts - 1, 30);
+    return backoff < 0 || backoff > this.maxBackoffMillis ? this.maxBackoffMillis : backoff;
+  }
+
+  public int getMaxAttempts() {
+    return this.maxAttempts;
+  }
+
+  public long getInitialBackoffMillis() {
+    return this.initialBackoffMillis;
+  }
+
+  public long getMaxBackoffMillis() {
+    return this.maxBackoffMillis;
+  }
+
+  public long getTimeBudgetMillis() {
+    return this.timeBudgetMillis;
+  }
+
+  public Set<Integer> getRetryableStatusCodes() {
+    return this.retryableStatusCodes;
+  }
+
+  public Set<String> getFatalErrorCodes() {
+    return this.fatalErrorCodes;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("maxAttempts", this.maxAttempts)
+      .add("initialBackoffMillis", this.initialBackoffMillis)
+      .add("maxBackoffMillis", this.maxBackoffMillis)
+      .add("timeBudgetMillis", this.timeBudgetMillis)
+      .add("retryableStatusCodes", this.retryableStatusCodes)
+      .add("fatalErrorCodes", this.fatalErrorCodes)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Builder of {@link RetryPolicy}. By default, a policy makes up to 5 attempts, with a backoff starting at 200 ms and
+   * capped at 30 seconds, within a time budget of 2 minutes, and retries the
+   * {@link RetryPolicy#DEFAULT_RETRYABLE_STATUS_CODES default retryable status codes}.
+   */
+  public static final class Builder {
+    private int maxAttempts = 5;
+    private long initialBackoffMillis = 200;
+    private long maxBackoffMillis = 30000;
+    private long timeBudgetMillis = 120000;
+    private Set<Integer> retryableStatusCodes = DEFAULT_RETRYABLE_STATUS_CODES;
+    private Set<String> fatalErrorCodes = ImmutableSet.of();
+
+    private Builder() {
+    }
+
+    /**
+     * @param maxAttempts The max no. of attempts made for each API call, including the first. Must be a positive
+     * number. A value of 1 disables retries.
+     * @return This builder.
+     */
+    public Builder maxAttempts(int maxAttempts) {
+      Preconditions.checkArgument(maxAttempts > 0, "maxAttempts must be a positive number, not [%s].", maxAttempts);
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * @param initialBackoffMillis The max delay before the first retry, in milliseconds. Must be a positive number.
+     * @return This builder.
+     */
+    public Builder initialBackoffMillis(long initialBackoffMillis) {
+      Preconditions.checkArgument(initialBackoffMillis > 0, "initialBackoffMillis must be a positive number, not [%s].",
+          initialBackoffMillis);
+      this.initialBackoffMillis = initialBackoffMillis;
+      return this;
+    }
+
+    /**
+     * @param maxBackoffMillis The max delay before any retry, in milliseconds. Must be a positive number.
+     * @return This builder.
+     */
+    public Builder maxBackoffMillis(long maxBackoffMillis) {
+      Preconditions.checkArgument(maxBackoffMillis > 0, "maxBackoffMillis must be a positive number, not [%s].",
+          maxBackoffMillis);
+      this.maxBackoffMillis = maxBackoffMillis;
+      return this;
+    }
+
+    /**
+     * @param timeBudgetMillis The max total time, in milliseconds, that may be spent on an API call, across all of its
+     * attempts and the delays between them. Must be a positive number.
+     * @return This builder.
+     */
+    public Builder timeBudgetMillis(long timeBudgetMillis) {
+      Preconditions.checkArgument(timeBudgetMillis > 0, "timeBudgetMillis must be a positive number, not [%s].",
+          timeBudgetMillis);
+      this.timeBudgetMillis = timeBudgetMillis;
+      return this;
+    }
+
+    /**
+     * @param retryableStatusCodes The HTTP status codes of error responses which are retryable.
+     * @return This builder.
+     */
+    public Builder retryableStatusCodes(Set<Integer> retryableStatusCodes) {
+      this.retryableStatusCodes = Preconditions.checkNotNull(retryableStatusCodes,
+          "retryableStatusCodes must not be null.");
+      return this;
+    }
+
+    /**
+     * @param fatalErrorCodes The codes of API errors which are fatal, even if the HTTP status code of the error
+     * response is retryable.
+     * @return This builder.
+     */
+    public Builder fatalErrorCodes(Set<String> fatalErrorCodes) {
+      this.fatalErrorCodes = Preconditions.checkNotNull(fatalErrorCodes, "fatalErrorCodes must not be null.");
+      return this;
+    }
+
+    /**
+     * @return The built {@link RetryPolicy}.
+     * @throws IllegalStateException If the max backoff is less than the initial backoff.
+     */
+    public RetryPolicy build() {
+      Preconditions.checkState(this.maxBackoffMillis >= this.initialBackoffMillis,
+          "maxBackoffMillis [%s] must not be less than initialBackoffMillis [%s].", this.maxBackoffMillis,
+          this.initialBackoffMillis);
+      return new RetryPolicy(this);
+    }
+  }
+}
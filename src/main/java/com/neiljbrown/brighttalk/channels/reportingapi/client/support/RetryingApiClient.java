@@ -0,0 +1,371 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.HttpErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SubscribersWebcastActivityResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResponsesResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveysResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastRegistrationsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * An {@link ApiClient} which retries API calls that fail with a transient error, according to a {@link RetryPolicy},
+ * by delegating to another {@link ApiClient}.
+ * <p>
+ * All of the API's operations are idempotent GETs, and are therefore safe to retry. Each retry repeats the failed call
+ * with exactly the same arguments, including any {@link PageCriteria}, so a retried request for a page of a resource
+ * collection resumes from the same cursor (next page link). When used as the API client of a
+ * {@link PagedResourceCollection}, a transient error on requesting one page of a long collection is therefore retried
+ * without skipping or duplicating any pages, rather than aborting the whole traversal.
+ * <p>
+ * Between attempts, the client waits for a randomly chosen delay of up to the policy's exponentially growing backoff
+ * ('full jitter'). If an error response with status 429 Too Many Requests or 503 Service Unavailable includes a
+ * Retry-After header, the client instead waits for the period the API service requested. A call is abandoned, and the
+ * last error rethrown, if the error is not {@link RetryPolicy#isRetryable(RuntimeException) retryable}, the max no. of
+ * attempts has been made, or waiting before the next attempt would exceed the policy's time budget for the call.
+ * <p>
+ * Instances of this class are thread-safe if the delegate API client is.
+ * 
+ * @author Neil Brown
+ */
+public class RetryingApiClient implements ApiClient {
+
+  private static final Logger logger = LoggerFactory.getLogger(RetryingApiClient.class);
+
+  private static final String RETRY_AFTER_HEADER = "Retry-After";
+  private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+  private final ApiClient apiClient;
+  private final RetryPolicy retryPolicy;
+  private final Ticker ticker;
+
+  /**
+   * @param apiClient The {@link ApiClient} to which API calls are delegated.
+   * @param retryPolicy The {@link RetryPolicy} to apply to all API calls.
+   */
+  public RetryingApiClient(ApiClient apiClient, RetryPolicy retryPolicy) {
+    this(apiClient, retryPolicy, Ticker.systemTicker());
+  }
+
+  /**
+   * @param apiClient The {@link ApiClient} to which API calls are delegated.
+   * @param retryPolicy The {@link RetryPolicy} to apply to all API calls.
+   * @param ticker The {@link Ticker} used to measure the time spent on each API call.
+   */
+  RetryingApiClient(ApiClient apiClient, RetryPolicy retryPolicy, Ticker ticker) {
+    this.apiClient = Preconditions.checkNotNull(apiClient, "apiClient must not be null.");
+    this.retryPolicy = Preconditions.checkNotNull(retryPolicy, "retryPolicy must not be null.");
+    this.ticker = Preconditions.checkNotNull(ticker, "ticker must not be null.");
+  }
+
+  @Override
+  public ChannelsResource getMyChannels(final PageCriteria pageCriteria) throws ApiClientException {
+    return this.execute("getMyChannels", new ApiCall<ChannelsResource>() {
+      @Override
+      public ChannelsResource call() {
+        return RetryingApiClient.this.apiClient.getMyChannels(pageCriteria);
+      }
+    });
+  }
+
+  @Override
+  public ChannelsResource getUserChannels(final int userId, final PageCriteria pageCriteria)
+      throws ApiClientException {
+    return this.execute("getUserChannels", new ApiCall<ChannelsResource>() {
+      @Override
+      public ChannelsResource call() {
+        return RetryingApiClient.this.apiClient.getUserChannels(userId, pageCriteria);
+      }
+    });
+  }
+
+  @Override
+  public ChannelSubscribersResource getChannelSubscribers(final int channelId, final Boolean subscribed,
+      final Date subscribedSince, final Date unsubscribedSince, final PageCriteria pageCriteria)
+      throws ApiClientException {
+    return this.execute("getChannelSubscribers", new ApiCall<ChannelSubscribersResource>() {
+      @Override
+      public ChannelSubscribersResource call() {
+        return RetryingApiClient.this.apiClient.getChannelSubscribers(channelId, subscribed, subscribedSince,
+            unsubscribedSince, pageCriteria);
+      }
+    });
+  }
+
+  @Override
+  public SubscribersWebcastActivityResource getSubscribersWebcastActivityForChannel(final int channelId,
+      final Date since, final Boolean expandChannelSurveyResponse, final PageCriteria pageCriteria)
+      throws ApiClientException {
+    return this.execute("getSubscribersWebcastActivityForChannel",
+        new ApiCall<SubscribersWebcastActivityResource>() {
+          @Override
+          public SubscribersWebcastActivityResource call() {
+            return RetryingApiClient.this.apiClient.getSubscribersWebcastActivityForChannel(channelId, since,
+                expandChannelSurveyResponse, pageCriteria);
+          }
+        });
+  }
+
+  @Override
+  public SubscribersWebcastActivityResource getSubscribersWebcastActivityForWebcast(final int channelId,
+      final int webcastId, final Date since, final Boolean expandChannelSurveyResponse,
+      final PageCriteria pageCriteria) throws ApiClientException {
+    return this.execute("getSubscribersWebcastActivityForWebcast",
+        new ApiCall<SubscribersWebcastActivityResource>() {
+          @Override
+          public SubscribersWebcastActivityResource call() {
+            return RetryingApiClient.this.apiClient.getSubscribersWebcastActivityForWebcast(channelId, webcastId,
+                since, expandChannelSurveyResponse, pageCriteria);
+          }
+        });
+  }
+
+  @Override
+  public SurveysResource getSurveysForChannel(final int channelId) throws ApiClientException {
+    return this.execute("getSurveysForChannel", new ApiCall<SurveysResource>() {
+      @Override
+      public SurveysResource call() {
+        return RetryingApiClient.this.apiClient.getSurveysForChannel(channelId);
+      }
+    });
+  }
+
+  @Override
+  public SurveyResource getSurvey(final int surveyId) throws ApiClientException {
+    return this.execute("getSurvey", new ApiCall<SurveyResource>() {
+      @Override
+      public SurveyResource call() {
+        return RetryingApiClient.this.apiClient.getSurvey(surveyId);
+      }
+    });
+  }
+
+  @Override
+  public SurveyResponsesResource getSurveyResponses(final int surveyId, final Date since,
+      final PageCriteria pageCriteria) throws ApiClientException {
+    return this.execute("getSurveyResponses", new ApiCall<SurveyResponsesResource>() {
+      @Override
+      public SurveyResponsesResource call() {
+        return RetryingApiClient.this.apiClient.getSurveyResponses(surveyId, since, pageCriteria);
+      }
+    });
+  }
+
+  @Override
+  public WebcastsResource getWebcastsForChannel(final int channelId, final Date since,
+      final PageCriteria pageCriteria) throws ApiClientException {
+    return this.execute("getWebcastsForChannel", new ApiCall<WebcastsResource>() {
+      @Override
+      public WebcastsResource call() {
+        return RetryingApiClient.this.apiClient.getWebcastsForChannel(channelId, since, pageCriteria);
+      }
+    });
+  }
+
+  @Override
+  public WebcastResource getWebcast(final int channelId, final int webcastId) throws ApiClientException {
+    return this.execute("getWebcast", new ApiCall<WebcastResource>() {
+      @Override
+      public WebcastResource call() {
+        return RetryingApiClient.this.apiClient.getWebcast(channelId, webcastId);
+      }
+    });
+  }
+
+  @Override
+  public WebcastRegistrationsResource getWebcastRegistrationsForWebcast(final int channelId, final int webcastId,
+      final Date since, final Boolean viewed, final PageCriteria pageCriteria) throws ApiClientException {
+    return this.execute("getWebcastRegistrationsForWebcast", new ApiCall<WebcastRegistrationsResource>() {
+      @Override
+      public WebcastRegistrationsResource call() {
+        return RetryingApiClient.this.apiClient.getWebcastRegistrationsForWebcast(channelId, webcastId, since,
+            viewed, pageCriteria);
+      }
+    });
+  }
+
+  @Override
+  public WebcastViewingsResource getWebcastViewingsForChannel(final int channelId, final Date since,
+      final WebcastStatus webcastStatus, final PageCriteria pageCriteria) throws ApiClientException {
+    return this.execute("getWebcastViewingsForChannel", new ApiCall<WebcastViewingsResource>() {
+      @Override
+      public WebcastViewingsResource call() {
+        return RetryingApiClient.this.apiClient.getWebcastViewingsForChannel(channelId, since, webcastStatus,
+            pageCriteria);
+      }
+    });
+  }
+
+  @Override
+  public WebcastViewingsResource getWebcastViewingsForWebcast(final int channelId, final int webcastId,
+      final Date since, final WebcastStatus webcastStatus, final PageCriteria pageCriteria)
+      throws ApiClientException {
+    return this.execute("getWebcastViewingsForWebcast", new ApiCall<WebcastViewingsResource>() {
+      @Override
+      public WebcastViewingsResource call() {
+        return RetryingApiClient.this.apiClient.getWebcastViewingsForWebcast(channelId, webcastId, since,
+            webcastStatus, pageCriteria);
+      }
+    });
+  }
+
+  /**
+   * @return The {@link ApiClient} to which API calls are delegated.
+   */
+  public final ApiClient getApiClient() {
+    return this.apiClient;
+  }
+
+  /**
+   * @return The {@link RetryPolicy} applied to all API calls.
+   */
+  public final RetryPolicy getRetryPolicy() {
+    return this.retryPolicy;
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("apiClient", this.apiClient)
+      .add("retryPolicy", this.retryPolicy)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Waits before retrying an API call. Can be overridden, e.g. by tests.
+   * 
+   * @param delayMillis The delay in milliseconds.
+   * @throws InterruptedException If the current thread is interrupted while waiting.
+   */
+  protected void sleep(long delayMillis) throws InterruptedException {
+    Thread.sleep(delayMillis);
+  }
+
+  private <T> T execute(String operation, ApiCall<T> apiCall) {
+    long startNanos = this.ticker.read();
+    long budgetNanos = TimeUnit.MILLISECONDS.toNanos(this.retryPolicy.getTimeBudgetMillis());
+    for (int attempt = 1;; attempt++) {
+      try {
+        return apiCall.call();
+      } catch (RuntimeException e) {
+        if (!this.retryPolicy.isRetryable(e) || attempt >= this.retryPolicy.getMaxAttempts()) {
+          throw e;
+        }
+        long delayMillis = this.getRetryDelayMillis(attempt, e);
+        long elapsedNanos = this.ticker.read() - startNanos;
+        if (elapsedNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis) > budgetNanos) {
+          logger.warn("Abandoning API call [{}] after [{}] attempts. Retry delay [{}] ms exceeds time budget.",
+              operation, attempt, delayMillis);
+          throw e;
+        }
+        logger.warn("API call [{}] failed on attempt [{}] with retryable error [{}]. Retrying in [{}] ms.",
+            operation, attempt, e.toString(), delayMillis);
+        try {
+          this.sleep(delayMillis);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw new ApiClientException("Interrupted waiting to retry API call [" + operation + "].", ie);
+        }
+      }
+    }
+  }
+
+  /**
+   * Calculates the delay before the next attempt of an API call - either the period requested by the Retry-After
+   * header of a 429 or 503 error response, if present and valid, or otherwise a random delay up to the policy's
+   * backoff.
+   */
+  private long getRetryDelayMillis(int failedAttempts, RuntimeException e) {
+    if (e instanceof HttpErrorResponseException) {
+      HttpErrorResponseException httpException = (HttpErrorResponseException) e;
+      if (httpException.getStatusCode() == RetryPolicy.STATUS_TOO_MANY_REQUESTS
+          || httpException.getStatusCode() == RetryPolicy.STATUS_SERVICE_UNAVAILABLE) {
+        Long retryAfterMillis = parseRetryAfterMillis(httpException.getResponseHeaders());
+        if (retryAfterMillis != null) {
+          return retryAfterMillis;
+        }
+      }
+    }
+    return ThreadLocalRandom.current().nextLong(this.retryPolicy.getBackoffMillis(failedAttempts) + 1);
+  }
+
+  /**
+   * Parses the value of a Retry-After header, which can be either a no. of seconds, or an HTTP date.
+   * 
+   * @return The requested delay in milliseconds, or null if the header is absent or invalid.
+   */
+  static Long parseRetryAfterMillis(Map<String, List<String>> responseHeaders) {
+    String value = null;
+    if (responseHeaders != null) {
+      for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+        if (RETRY_AFTER_HEADER.equalsIgnoreCase(header.getKey()) && header.getValue() != null
+            && !header.getValue().isEmpty()) {
+          value = header.getValue().get(0).trim();
+        }
+      }
+    }
+    if (value == null || value.isEmpty()) {
+      return null;
+    }
+    try {
+      return Math.max(TimeUnit.SECONDS.toMillis(Long.parseLong(value)), 0);
+    } catch (NumberFormatException nfe) {
+      SimpleDateFormat httpDateFormat = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+      httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+      try {
+        return Math.max(httpDateFormat.parse(value).getTime() - System.currentTimeMillis(), 0);
+      } catch (ParseException pe) {
+        logger.debug("Ignoring invalid Retry-After header [{}].", value);
+        return null;
+      }
+    }
+  }
+
+  /**
+   * A single attempt of an API call.
+   */
+  private interface ApiCall<T> {
+    T call();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+
+/**
+ * Coalesces identical, concurrent calls - such as API requests for the same URL - so that only one of them is executed
+ * and its result (or exception) is shared by all of the callers.
+ * <p>
+ * Calls are identified by a key, e.g. the absolute URL of a requested API resource. The first caller to
+ * {@link #execute(String, Callable) execute} a call for a key executes it on its own thread. Any other callers which
+ * execute a call with the same key before the first completes don't execute their own call, but instead wait for and
+ * return the result of the first. Once a call completes, the next call for the same key is executed afresh - results
+ * are not cached.
+ * <p>
+ * Callers sharing a result receive the same object, which should therefore be treated as read-only.
+ * <p>
+ * Thread-safe.
+ * 
+ * @author Neil Brown
+ */
+public class SingleFlight {
+
+  private final ConcurrentMap<String, FutureTask<?>> calls = new ConcurrentHashMap<>();
+  private final AtomicLong executedCount = new AtomicLong();
+  private final AtomicLong sharedCount = new AtomicLong();
+
+  /**
+   * Executes a call, unless an identical call is already in progress, in which case its result is returned instead.
+   * 
+   * @param key The key identifying the call.
+   * @param call The call.
+   * @return The result of the call.
+   * @throws ApiClientException If the call threw a checked exception. Unchecked exceptions are rethrown as is.
+   */
+  public <T> T execute(String key, Callable<T> call) throws ApiClientException {
+    Preconditions.checkNotNull(key, "key must not be null.");
+    Preconditions.checkNotNull(call, "call must not be null.");
+    FutureTask<T> task = new FutureTask<>(call);
+    // All calls for the same key return the same type of result
+    @SuppressWarnings("unchecked")
+    FutureTask<T> inFlightTask = (FutureTask<T>) this.calls.putIfAbsent(key, task);
+    if (inFlightTask == null) {
+      this.executedCount.incrementAndGet();
+      try {
+        task.run();
+      } finally {
+        this.calls.remove(key, task);
+      }
+      inFlightTask = task;
+    } else {
+      this.sharedCount.incrementAndGet();
+    }
+    try {
+      return Uninterruptibles.getUninterruptibly(inFlightTask);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new ApiClientException(e.getCause());
+    }
+  }
+
+  /**
+   * @return The total no. of calls which were executed.
+   */
+  public final long getExecutedCount() {
+    return this.executedCount.get();
+  }
+
+  /**
+   * @return The total no. of calls which weren't executed, but instead shared the result of an identical call.
+   */
+  public final long getSharedCount() {
+    return this.sharedCount.get();
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("inFlight", this.calls.size())
+      .add("executedCount", this.executedCount)
+      .add("sharedCount", this.sharedCount)
+      .toString();
+    /* @formatter:on */
+  }
+}
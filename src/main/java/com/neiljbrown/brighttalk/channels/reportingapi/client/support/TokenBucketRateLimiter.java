@@ -0,0 +1,271 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+
+/**
+ * A client-side rate limiter which limits the rate of API calls made using each API key, so that the API service's
+ * per-key throttling isn't triggered when multiple threads, or API clients, share the same credentials.
+ * <p>
+ * A separate token bucket is maintained for each API key, which fills at a configured no. of permits per second, up to
+ * a max burst. Each API call {@link #acquire(Object, Object) acquires} a permit before it's made, waiting until one is
+ * available if the bucket is empty. The buckets are lock-free - each is represented by the time at which the next
+ * permit becomes available, which acquiring threads advance using compare-and-set, reserving a permit in the future and
+ * then waiting (without holding any lock) until it's due. Permits are therefore granted in the order they're reserved.
+ * <p>
+ * Optionally, permits can be fair queued between the channels being accessed. By default, a thread (e.g. of a
+ * crawler) that makes many concurrent calls for one channel can reserve many permits ahead of calls for other channels.
+ * When fair queuing is enabled, at most one call per channel (and API key) waits for a permit at a time, so that when
+ * the rate limit is reached the available permits are shared between channels in turn. The queue for a channel is
+ * removed once no calls are waiting in it, so the no. of queues is bounded by the no. of concurrent calls.
+ * <p>
+ * An instance of this class is thread-safe, and may be shared by multiple API clients in the same JVM, e.g. by
+ * supplying it to each {@link com.neiljbrown.brighttalk.channels.reportingapi.client.spring.SpringApiClientImpl}.
+ * 
+ * @author Neil Brown
+ */
+public class TokenBucketRateLimiter {
+
+  private final long intervalNanos;
+  private final int burst;
+  private final boolean fairQueuing;
+  private final Ticker ticker;
+  private final ConcurrentMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+  private final ConcurrentMap<List<Object>, ChannelQueue> channelQueues = new ConcurrentHashMap<>();
+  private final AtomicLong waitCount = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+
+  /**
+   * @param permitsPerSecond The rate at which permits are granted for each API key. Must be a positive number.
+   * @param burst The max no. of permits which can be acquired for an API key without waiting, after a period of
+   * inactivity. Must be a positive number.
+   * @param fairQueuing True if permits should be fair queued between channels, false otherwise.
+   */
+  public TokenBucketRateLimiter(double permitsPerSecond, int burst, boolean fairQueuing) {
+    this(permitsPerSecond, burst, fairQueuing, Ticker.systemTicker());
+  }
+
+  TokenBucketRateLimiter(double permitsPerSecond, int burst, boolean fairQueuing, Ticker ticker) {
+    Preconditions.checkArgument(permitsPerSecond > 0, "permitsPerSecond must be a positive number, not [%s].",
+        permitsPerSecond);
+    Preconditions.checkArgument(burst > 0, "burst must be a positive number, not [%s].", burst);
+    this.intervalNanos = Math.max((long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond), 1);
+    this.burst = burst;
+    this.fairQueuing = fairQueuing;
+    this.ticker = Preconditions.checkNotNull(ticker, "ticker must not be null.");
+  }
+
+  /**
+   * Acquires a permit to make an API call, waiting until one is available if necessary.
+   * 
+   * @param apiKey The API key used to make the call, which identifies the token bucket. Must implement equals() and
+   * hashCode().
+   * @param channel An object identifying the channel accessed by the call, e.g. its ID, used for fair queuing. Null if
+   * the call isn't for a specific channel, in which case it's queued with all other such calls.
+   * @return The time spent waiting for a permit, in nanoseconds.
+   * @throws ApiClientException If the current thread is interrupted while waiting.
+   */
+  public long acquire(Object apiKey, Object channel) throws ApiClientException {
+    Preconditions.checkNotNull(apiKey, "apiKey must not be null.");
+    long startNanos = this.ticker.read();
+    ChannelQueue channelQueue = this.fairQueuing ? this.joinChannelQueue(Arrays.asList(apiKey, channel)) : null;
+    try {
+      if (channelQueue != null) {
+        channelQueue.lock.lockInterruptibly();
+      }
+      try {
+        long delayNanos = this.reserve(this.getBucket(apiKey));
+        if (delayNanos > 0) {
+          this.sleep(delayNanos);
+        }
+      } finally {
+        if (channelQueue != null) {
+          channelQueue.lock.unlock();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiClientException("Interrupted waiting for rate limit permit.", e);
+    } finally {
+      if (channelQueue != null) {
+        this.leaveChannelQueue(channelQueue);
+      }
+    }
+    long waitNanos = this.ticker.read() - startNanos;
+    if (waitNanos > 0) {
+      this.waitCount.incrementAndGet();
+      this.totalWaitNanos.addAndGet(waitNanos);
+    }
+    return waitNanos;
+  }
+
+  /**
+   * @return The total no. of acquired permits which had to wait for a permit.
+   */
+  public final long getWaitCount() {
+    return this.waitCount.get();
+  }
+
+  /**
+   * @return The total time, in nanoseconds, spent by all callers waiting for permits.
+   */
+  public final long getTotalWaitNanos() {
+    return this.totalWaitNanos.get();
+  }
+
+  public final double getPermitsPerSecond() {
+    return (double) TimeUnit.SECONDS.toNanos(1) / this.intervalNanos;
+  }
+
+  public final int getBurst() {
+    return this.burst;
+  }
+
+  public final boolean isFairQueuing() {
+    return this.fairQueuing;
+  }
+
+  /**
+   * @return The no. of channel queues which currently exist.
+   */
+  final int getChannelQueueCount() {
+    return this.channelQueues.size();
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("permitsPerSecond", this.getPermitsPerSecond())
+      .add("burst", this.burst)
+      .add("fairQueuing", this.fairQueuing)
+      .add("waitCount", this.waitCount)
+      .add("totalWaitNanos", this.totalWaitNanos)
+      .toString();
+    /* @formatter:on */
+  }
+
+  /**
+   * Waits until a reserved permit is due. Can be overridden, e.g. by tests.
+   * 
+   * @param delayNanos The time to wait, in nanoseconds.
+   * @throws InterruptedException If the current thread is interrupted while waiting.
+   */
+  protected void sleep(long delayNanos) throws InterruptedException {
+    TimeUnit.NANOSECONDS.sleep(delayNanos);
+  }
+
+  /**
+   * Reserves the next permit from a bucket.
+   * 
+   * @param bucket The time at which the bucket's next permit is due, if it were empty.
+   * @return The time to wait until the reserved permit is due, in nanoseconds. Zero or less if it's due now.
+   */
+  private long reserve(AtomicLong bucket) {
+    while (true) {
+      long nextPermitNanos = bucket.get();
+      long nowNanos = this.ticker.read();
+      long newNextPermitNanos = Math.max(nextPermitNanos, nowNanos) + this.intervalNanos;
+      if (bucket.compareAndSet(nextPermitNanos, newNextPermitNanos)) {
+        // Up to the burst no. of permits can be reserved ahead of the current time without waiting
+        return newNextPermitNanos - nowNanos - this.burst * this.intervalNanos;
+      }
+    }
+  }
+
+  private AtomicLong getBucket(Object apiKey) {
+    AtomicLong bucket = this.buckets.get(apiKey);
+    if (bucket == null) {
+      // A new bucket is full - no permits have been reserved ahead of the current time
+      AtomicLong newBucket = new AtomicLong(this.ticker.read());
+      bucket = this.buckets.putIfAbsent(apiKey, newBucket);
+      if (bucket == null) {
+        bucket = newBucket;
+      }
+    }
+    return bucket;
+  }
+
+  /**
+   * Joins the queue of calls for a channel, creating it if there isn't one.
+   * 
+   * @param key The API key and channel identifying the queue.
+   * @return The joined {@link ChannelQueue}, which must be {@link #leaveChannelQueue(ChannelQueue) left} when the call
+   * is no longer waiting in it.
+   */
+  private ChannelQueue joinChannelQueue(List<Object> key) {
+    while (true) {
+      ChannelQueue channelQueue = this.channelQueues.get(key);
+      if (channelQueue == null) {
+        ChannelQueue newChannelQueue = new ChannelQueue(key);
+        channelQueue = this.channelQueues.putIfAbsent(key, newChannelQueue);
+        if (channelQueue == null) {
+          channelQueue = newChannelQueue;
+        }
+      }
+      synchronized (channelQueue) {
+        // Retry if the queue was removed after it was got
+        if (!channelQueue.removed) {
+          channelQueue.callCount++;
+          return channelQueue;
+        }
+      }
+    }
+  }
+
+  /**
+   * Leaves the queue of calls for a channel, removing the queue if no other calls are in it.
+   * 
+   * @param channelQueue The {@link ChannelQueue}.
+   */
+  private void leaveChannelQueue(ChannelQueue channelQueue) {
+    synchronized (channelQueue) {
+      if (--channelQueue.callCount == 0) {
+        channelQueue.removed = true;
+        this.channelQueues.remove(channelQueue.key, channelQueue);
+      }
+    }
+  }
+
+  /**
+   * The queue of calls for a channel (and API key) waiting for a permit, in which at most one call at a time holds the
+   * (fair) lock.
+   */
+  private static final class ChannelQueue {
+    private final List<Object> key;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    /** The no. of calls in the queue, including the one holding the lock. Guarded by this. */
+    private int callCount;
+    /** Whether the queue has been removed, and so must not be joined. Guarded by this. */
+    private boolean removed;
+
+    ChannelQueue(List<Object> key) {
+      this.key = key;
+    }
+  }
+}
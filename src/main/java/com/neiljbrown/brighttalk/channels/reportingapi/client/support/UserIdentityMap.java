@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.User;
+
+/**
+ * A client-wide identity map of the {@link User users} embedded in API resources, keyed by user id.
+ * <p>
+ * The same user appears in many API resources - channel subscribers, webcast registrations and viewings, subscriber
+ * webcast activity and survey responses - across many pages and API calls. When configured for an API client, each
+ * user unmarshalled from an API response is {@link #resolve(User) resolved} against the map, so that equal users
+ * share the same instance, reducing the memory retained by the resources. (See
+ * {@link com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb.UserXmlAdapter}). An existing instance is only
+ * reused if it is equal to the unmarshalled user, so the values returned to callers are never stale. A user whose
+ * details have changed replaces the previous instance.
+ * <p>
+ * The map also supports {@link #get(int) looking up} the most recently unmarshalled instance of a user by id, e.g. to
+ * enrich resources which only identify a user, without a second pass over previously processed resources.
+ * <p>
+ * The map holds a bounded no. of users, evicting users which haven't been used recently when full. It's backed by a
+ * concurrent cache, partitioned into segments which are locked independently, so that concurrent unmarshalling of
+ * API responses isn't serialised on a single lock. (Least recently used users are evicted per segment, so eviction
+ * approximates, rather than strictly follows, least recently used order across the whole map). A count of the users
+ * which were resolved to an existing instance is maintained to support monitoring the effectiveness of the map.
+ * <p>
+ * User instances are shared by every caller, and so must be treated as immutable.
+ * <p>
+ * Thread safe.
+ * 
+ * @author Neil Brown
+ */
+public class UserIdentityMap {
+
+  private final int maxEntries;
+  private final Cache<Integer, User> users;
+  private final AtomicLong hitCount = new AtomicLong();
+
+  /**
+   * @param maxEntries The max no. of users to hold in the map. Must be a positive number.
+   */
+  public UserIdentityMap(final int maxEntries) {
+    Preconditions.checkArgument(maxEntries > 0, "maxEntries must be a positive number, not [%s].", maxEntries);
+    this.maxEntries = maxEntries;
+    this.users = CacheBuilder.newBuilder().maximumSize(maxEntries)
+        .concurrencyLevel(Runtime.getRuntime().availableProcessors()).build();
+  }
+
+  /**
+   * Resolves a supplied user to the instance held in the map with the same id, if that instance is equal to the
+   * supplied user. Otherwise, the supplied user is added to the map, replacing any previous instance with the same id.
+   * If equal users are resolved concurrently, each may be returned, the last to be added remaining in the map.
+   * 
+   * @param user The {@link User}. May be null.
+   * @return The existing instance of the user, if equal to the supplied user; otherwise the supplied user. Null if the
+   * supplied user is null.
+   */
+  public User resolve(User user) {
+    if (user == null) {
+      return null;
+    }
+    User existingUser = this.users.getIfPresent(user.getId());
+    if (user.equals(existingUser)) {
+      this.hitCount.incrementAndGet();
+      return existingUser;
+    }
+    this.users.put(user.getId(), user);
+    return user;
+  }
+
+  /**
+   * Looks up the most recently resolved instance of an identified user.
+   * 
+   * @param userId The id of the user.
+   * @return The {@link User}, or null if the map doesn't hold a user with the supplied id.
+   */
+  public User get(int userId) {
+    return this.users.getIfPresent(userId);
+  }
+
+  /**
+   * @return The no. of users currently held in the map.
+   */
+  public int size() {
+    return (int) this.users.size();
+  }
+
+  /**
+   * Removes all users from the map.
+   */
+  public void clear() {
+    this.users.invalidateAll();
+  }
+
+  /**
+   * @return The max no. of users held in the map.
+   */
+  public final int getMaxEntries() {
+    return this.maxEntries;
+  }
+
+  /**
+   * @return The no. of users which have been resolved to an existing instance held in the map.
+   */
+  public final long getHitCount() {
+    return this.hitCount.get();
+  }
+
+  @Override
+  public String toString() {
+    /* @formatter:off */
+    return Objects.toStringHelper(this).omitNullValues()
+      .add("maxEntries", this.maxEntries)
+      .add("size", this.size())
+      .add("hitCount", this.getHitCount())
+      .toString();
+    /* @formatter:on */
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import java.util.Date;
+
+/**
+ * A store of the watermarks used by an {@link IncrementalSync} - the date/time up to which the resources in a
+ * collection have been retrieved - keyed by the collection they apply to.
+ * 
+ * @author Neil Brown
+ * @see FileWatermarkStore
+ */
+public interface WatermarkStore {
+
+  /**
+   * @param key The key identifying the resource collection, as returned by
+   * {@link IncrementalSyncEndpoint#getWatermarkKey()}.
+   * @return The stored watermark for the identified collection, or null if there is none, i.e. the collection has not
+   * yet been synchronised.
+   */
+  Date getWatermark(String key);
+
+  /**
+   * Stores a new watermark for an identified collection, replacing any existing watermark. The new watermark should be
+   * durable (if supported by the store) on return of this method.
+   * 
+   * @param key The key identifying the resource collection.
+   * @param watermark The new watermark.
+   */
+  void setWatermark(String key, Date watermark);
+}
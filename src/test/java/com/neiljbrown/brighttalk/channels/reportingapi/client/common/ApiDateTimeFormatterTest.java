@@ -15,11 +15,13 @@
  */
 package com.neiljbrown.brighttalk.channels.reportingapi.client.common;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.*;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Random;
 import java.util.TimeZone;
 
 import org.junit.Before;
@@ -63,6 +65,40 @@ public class ApiDateTimeFormatterTest {
     assertThat(actualFormatted, is(expectedFormatted));
   }
     
+  /**
+   * Tests {@link ApiDateTimeFormatter#formatAsDateTime} for dates with the min and max years supported by the API's
+   * four digit year.
+   */
+  @Test
+  public void testFormatAsDateTimeWhenYearAtLimits() {
+    assertThat(this.uut.formatAsDateTime(this.uut.parse("0000-01-01T00:00:00Z")), is("0000-01-01T00:00:00Z"));
+    assertThat(this.uut.formatAsDateTime(this.uut.parse("9999-12-31T23:59:59Z")), is("9999-12-31T23:59:59Z"));
+  }
+
+  /**
+   * Tests that {@link ApiDateTimeFormatter#formatAsDateTime} and {@link ApiDateTimeFormatter#formatAsDateOnly} reject
+   * dates with a year outside the range supported by the API's four digit year, with a clear error message.
+   */
+  @Test
+  public void testFormatWhenYearOutOfRange() {
+    Date[] dates = { new Date(this.uut.parseToEpochMillis("9999-12-31T23:59:59Z") + 1000),
+        new Date(this.uut.parseToEpochMillis("0000-01-01T00:00:00Z") - 1) };
+    for (Date date : dates) {
+      try {
+        this.uut.formatAsDateTime(date);
+        fail("Expected IllegalArgumentException for [" + date.getTime() + "].");
+      } catch (IllegalArgumentException e) {
+        assertThat(e.getMessage(), containsString("is outside the supported range of 0 to 9999"));
+      }
+      try {
+        this.uut.formatAsDateOnly(date);
+        fail("Expected IllegalArgumentException for [" + date.getTime() + "].");
+      } catch (IllegalArgumentException e) {
+        assertThat(e.getMessage(), containsString("is outside the supported range of 0 to 9999"));
+      }
+    }
+  }
+
   /**
    * Tests {@link ApiDateTimeFormatter#parse} for a date/time string which conforms to the format expected by the 
    * reporting APIs and comprises all component fields - date, time (full resolution) and time zone indicator.
@@ -91,6 +127,83 @@ public class ApiDateTimeFormatterTest {
     assertThat(actualDate, is(expectedDate));
   }
   
+  /**
+   * Tests {@link ApiDateTimeFormatter#parseToEpochMillis} for date/time and date only strings.
+   */
+  @Test
+  public void testParseToEpochMillis() {
+    assertThat(this.uut.parseToEpochMillis("1970-01-01T00:00:01Z"), is(1000L));
+    assertThat(this.uut.parseToEpochMillis("1970-01-02"), is(24L * 60 * 60 * 1000));
+    assertThat(this.uut.parseToEpochMillis("1969-12-31T23:59:59Z"), is(-1000L));
+  }
+
+  /**
+   * Tests {@link ApiDateTimeFormatter#parse} for a date/time string on the leap day of a leap year.
+   * 
+   * @throws Exception If an unexpected exception occurs.
+   */
+  @Test
+  public void testParseLeapDay() throws Exception {
+    String dateTimeString = "2016-02-29T12:00:00Z";
+    Date expectedDate = createSimpleDateFormat(ApiDateTimeFormatter.API_DATE_TIME_PATTERN).parse(dateTimeString);
+    assertThat(this.uut.parse(dateTimeString), is(expectedDate));
+  }
+
+  /**
+   * Tests that {@link ApiDateTimeFormatter#parse} rejects strings of the same length as a valid date/time or date, but
+   * which either don't match the format, or contain a field that is out of range.
+   */
+  @Test
+  public void testParseInvalidStrings() {
+    String[] invalidStrings = { "2015-02-29T00:00:00Z", "2014-04-31T00:00:00Z", "2014-13-01T00:00:00Z",
+        "2014-04-30T24:00:00Z", "2014-04-30T23:60:00Z", "2014-04-30T23:59:60Z", "2014-04-30 21:32:21Z",
+        "2014-04-30T21:32:21+", "2014/04/30", "2014-O4-30", "2014-04-00", "-014-04-30" };
+    for (String invalidString : invalidStrings) {
+      try {
+        this.uut.parse(invalidString);
+        fail("Expected IllegalArgumentException for [" + invalidString + "].");
+      } catch (IllegalArgumentException e) {
+        assertThat(e.getMessage().contains(invalidString), is(true));
+      }
+    }
+  }
+
+  /**
+   * Tests {@link ApiDateTimeFormatter#formatAsDateTime} and {@link ApiDateTimeFormatter#formatAsDateOnly} for a date
+   * before the epoch.
+   */
+  @Test
+  public void testFormatBeforeEpoch() {
+    Date date = new Date(-1);
+    assertThat(this.uut.formatAsDateTime(date), is("1969-12-31T23:59:59Z"));
+    assertThat(this.uut.formatAsDateOnly(date), is("1969-12-31"));
+  }
+
+  /**
+   * Tests that formatting and parsing a large sample of random dates, spanning several centuries, produces the same
+   * results as a {@link SimpleDateFormat} using the same pattern and UTC time zone.
+   * 
+   * @throws Exception If an unexpected exception occurs.
+   */
+  @Test
+  public void testFormatAndParseConsistentWithSimpleDateFormat() throws Exception {
+    SimpleDateFormat dateTimeFormat = createSimpleDateFormat(ApiDateTimeFormatter.API_DATE_TIME_PATTERN);
+    SimpleDateFormat dateOnlyFormat = createSimpleDateFormat(ApiDateTimeFormatter.API_DATE_ONLY_PATTERN);
+    long minMillis = dateOnlyFormat.parse("1800-01-01").getTime();
+    long maxMillis = dateOnlyFormat.parse("2200-01-01").getTime();
+    Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      Date date = new Date(minMillis + (long) (random.nextDouble() * (maxMillis - minMillis)));
+      String expectedDateTime = dateTimeFormat.format(date);
+      String expectedDateOnly = dateOnlyFormat.format(date);
+
+      assertThat(this.uut.formatAsDateTime(date), is(expectedDateTime));
+      assertThat(this.uut.formatAsDateOnly(date), is(expectedDateOnly));
+      assertThat(this.uut.parse(expectedDateTime), is(dateTimeFormat.parse(expectedDateTime)));
+      assertThat(this.uut.parse(expectedDateOnly), is(dateOnlyFormat.parse(expectedDateOnly)));
+    }
+  }
+
   private static SimpleDateFormat createSimpleDateFormat(String pattern) {
     SimpleDateFormat sdf = new SimpleDateFormat(pattern);
     sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.common;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriTemplate;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+
+/**
+ * Unit tests for {@link CompiledUriTemplate}.
+ * 
+ * @author Neil Brown
+ */
+public class CompiledUriTemplateTest {
+
+  private static final URI BASE_URI = URI.create("https://api.test.brighttalk.net:443");
+
+  /**
+   * Tests expanding a template with no request parameters.
+   */
+  @Test
+  public void testExpandWithoutRequestParams() {
+    CompiledUriTemplate uriTemplate = new CompiledUriTemplate(BASE_URI, SurveyResource.RELATIVE_URI_TEMPLATE);
+
+    URI uri = uriTemplate.expand(null, 12);
+
+    assertThat(uri, is(URI.create("https://api.test.brighttalk.net:443/v1/survey/12")));
+    assertThat(uri, is(expandUsingSpring(SurveyResource.RELATIVE_URI_TEMPLATE, null, 12)));
+  }
+
+  /**
+   * Tests that expanding a template with multiple variables and request parameters, including values which require
+   * encoding, produces the same URI as building and expanding the template using Spring, as the API client previously
+   * did.
+   */
+  @Test
+  public void testExpandEncodesSameAsSpring() {
+    Map<String, List<String>> requestParams = new LinkedHashMap<>();
+    requestParams.put("since", Collections.singletonList("2014-01-01T00:00:00+01:00"));
+    requestParams.put("webcastStatus", Collections.singletonList("up coming"));
+    requestParams.put("cursor", Collections.singletonList("5-1376595689/a=b?c%dé"));
+    requestParams.put("pageSize", Collections.singletonList("100"));
+    CompiledUriTemplate uriTemplate =
+        new CompiledUriTemplate(BASE_URI, WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE);
+
+    URI uri = uriTemplate.expand(requestParams, 1, "2 3");
+
+    assertThat(uri, is(expandUsingSpring(WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE, requestParams, 1,
+        "2 3")));
+    assertThat(uri.getRawPath(), is("/v1/channel/1/webcast/2%203/viewings"));
+    assertThat(uriTemplate.getRelativeUriTemplate(), is(WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE));
+  }
+
+  /**
+   * Tests that delimiters in request parameter values are encoded, rather than splitting the value.
+   */
+  @Test
+  public void testExpandEncodesDelimitersInRequestParams() {
+    Map<String, List<String>> requestParams = new LinkedHashMap<>();
+    requestParams.put("cursor", Collections.singletonList("a&b#c"));
+    requestParams.put("pageSize", Collections.singletonList("100"));
+    CompiledUriTemplate uriTemplate = new CompiledUriTemplate(BASE_URI, SurveyResource.RELATIVE_URI_TEMPLATE);
+
+    URI uri = uriTemplate.expand(requestParams, 12);
+
+    assertThat(uri.getRawQuery(), is("cursor=a%26b%23c&pageSize=100"));
+  }
+
+  /**
+   * Tests that expanding a template fails if fewer values are supplied than the template has variables.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testExpandWhenNotEnoughVariableValues() {
+    new CompiledUriTemplate(BASE_URI, WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE).expand(null, 1);
+  }
+
+  private static URI expandUsingSpring(String relativeUriTemplate, Map<String, List<String>> requestParams,
+      Object... uriVariables) {
+    UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUri(BASE_URI).path(relativeUriTemplate);
+    if (requestParams != null) {
+      for (Map.Entry<String, List<String>> requestParam : requestParams.entrySet()) {
+        for (String value : requestParam.getValue()) {
+          uriBuilder.queryParam(requestParam.getKey(), value);
+        }
+      }
+    }
+    return new UriTemplate(uriBuilder.build().toUriString()).expand(uriVariables);
+  }
+}
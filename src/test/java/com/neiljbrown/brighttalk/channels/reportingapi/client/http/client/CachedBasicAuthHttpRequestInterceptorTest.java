@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.http.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.*;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.auth.AUTH;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiCredentials;
+
+/**
+ * Unit tests for {@link CachedBasicAuthHttpRequestInterceptor}.
+ * 
+ * @author Neil Brown
+ */
+public class CachedBasicAuthHttpRequestInterceptorTest {
+
+  private static final String API_SERVICE_HOST_NAME = "api.test.brighttalk.net";
+  private static final int API_SERVICE_PORT = 443;
+
+  /** Instance of unit under test */
+  private CachedBasicAuthHttpRequestInterceptor uut;
+
+  @Before
+  public void setUp() {
+    this.uut = new CachedBasicAuthHttpRequestInterceptor(API_SERVICE_HOST_NAME, API_SERVICE_PORT, new ApiCredentials(
+        1, "secret"));
+  }
+
+  /**
+   * Tests {@link CachedBasicAuthHttpRequestInterceptor#process} for a request to the API service. The request should
+   * include the encoded credentials, and the same header should be used for every request.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testProcessWhenApiServiceTargetHost() throws Exception {
+    HttpRequest request1 = new BasicHttpRequest("GET", "/v1/user/me/channels");
+    this.uut.process(request1, createContext(new HttpHost(API_SERVICE_HOST_NAME, API_SERVICE_PORT, "https")));
+
+    // Base64 encoding of '1:secret'
+    assertThat(request1.getFirstHeader(AUTH.WWW_AUTH_RESP).getValue(), is("Basic MTpzZWNyZXQ="));
+
+    HttpRequest request2 = new BasicHttpRequest("GET", "/v1/user/me/channels");
+    this.uut.process(request2, createContext(new HttpHost(API_SERVICE_HOST_NAME, -1, "https")));
+
+    assertThat(request2.getFirstHeader(AUTH.WWW_AUTH_RESP), sameInstance(request1.getFirstHeader(AUTH.WWW_AUTH_RESP)));
+  }
+
+  /**
+   * Tests {@link CachedBasicAuthHttpRequestInterceptor#process} for requests to a host or port other than that of the
+   * API service. Credentials should not be added to the request.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testProcessWhenOtherTargetHostOrPort() throws Exception {
+    HttpRequest request = new BasicHttpRequest("GET", "/");
+    this.uut.process(request, createContext(new HttpHost("www.brighttalk.com", API_SERVICE_PORT, "https")));
+    assertThat(request.getFirstHeader(AUTH.WWW_AUTH_RESP), nullValue());
+
+    this.uut.process(request, createContext(new HttpHost(API_SERVICE_HOST_NAME, 8080, "http")));
+    assertThat(request.getFirstHeader(AUTH.WWW_AUTH_RESP), nullValue());
+
+    this.uut.process(request, createContext(new HttpHost(API_SERVICE_HOST_NAME, -1, "http")));
+    assertThat(request.getFirstHeader(AUTH.WWW_AUTH_RESP), nullValue());
+  }
+
+  /**
+   * Tests that following a call to {@link CachedBasicAuthHttpRequestInterceptor#setApiCredentials}, subsequent requests
+   * are authenticated using the new credentials.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testSetApiCredentials() throws Exception {
+    this.uut.setApiCredentials(new ApiCredentials(2, "rotated"));
+
+    HttpRequest request = new BasicHttpRequest("GET", "/v1/user/me/channels");
+    this.uut.process(request, createContext(new HttpHost(API_SERVICE_HOST_NAME, API_SERVICE_PORT, "https")));
+
+    // Base64 encoding of '2:rotated'
+    assertThat(request.getFirstHeader(AUTH.WWW_AUTH_RESP).getValue(), is("Basic Mjpyb3RhdGVk"));
+  }
+
+  private static HttpContext createContext(HttpHost targetHost) {
+    HttpContext context = new BasicHttpContext();
+    context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, targetHost);
+    return context;
+  }
+}
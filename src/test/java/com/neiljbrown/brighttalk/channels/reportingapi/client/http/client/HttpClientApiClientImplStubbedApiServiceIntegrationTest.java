@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.http.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.common.Log4jNotifier;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiCredentials;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ApiError;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
+
+/**
+ * Integration tests for {@link HttpClientApiClientImpl}, which stub-out the API service (using WireMock).
+ * <p>
+ * Unlike the tests of the Spring implementation of the client, the client under test is created using its builder,
+ * without a Spring application context.
+ * 
+ * @author Neil Brown
+ */
+public class HttpClientApiClientImplStubbedApiServiceIntegrationTest {
+
+  private static final String API_SERVICE_HOST_NAME = "localhost";
+  private static final int API_SERVICE_PORT = 8081;
+
+  private HttpClientApiClientImpl apiClient;
+  private WireMockServer wireMockServer;
+
+  /**
+   * @throws Exception If an unexpected exception occurs.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.wireMockServer = new WireMockServer(wireMockConfig().bindAddress(API_SERVICE_HOST_NAME).port(
+        API_SERVICE_PORT).notifier(new Log4jNotifier()));
+    WireMock.configureFor(API_SERVICE_HOST_NAME, API_SERVICE_PORT);
+    this.wireMockServer.start();
+    this.apiClient = HttpClientApiClientImpl.builder().apiServiceProtocol("http").apiServiceHostName(
+        API_SERVICE_HOST_NAME).apiServicePort(API_SERVICE_PORT).apiCredentials(
+        new ApiCredentials(1, "123456789ABCDEF123456789ABCDEF12")).socketTimeoutMillis(5000).defaultHeader(
+        "X-Test-Header", "test").build();
+  }
+
+  /**
+   * @throws Exception If an unexpected exception occurs.
+   */
+  @After
+  public void tearDown() throws Exception {
+    this.apiClient.close();
+    this.wireMockServer.stop();
+  }
+
+  /**
+   * Tests {@link HttpClientApiClientImpl#getMyChannels} when the API user has zero channels, and that the request is
+   * preemptively authenticated, requests compression of the response, and includes the default headers.
+   */
+  @Test
+  public void getMyChannelsWhenZeroChannels() {
+    String expectedRequestUrl = ChannelsResource.MY_CHANNELS_RELATIVE_URI_TEMPLATE;
+    WireMock.stubFor(get(urlEqualTo(expectedRequestUrl)).willReturn(
+        aResponse().withStatus(200).withHeader("Content-Type", "application/xml").withBody("<channels/>")));
+
+    ChannelsResource channelsResource = this.apiClient.getMyChannels(null);
+
+    assertThat(channelsResource, notNullValue());
+    assertThat(channelsResource.getChannels(), hasSize(0));
+    assertThat(channelsResource.getLinks(), hasSize(0));
+    WireMock.verify(getRequestedFor(urlEqualTo(expectedRequestUrl))
+        .withHeader("Authorization", matching("Basic.*"))
+        .withHeader("Accept", equalTo("application/xml"))
+        .withHeader("Accept-Encoding", matching(".*gzip.*"))
+        .withHeader("Api-Client", equalTo(HttpClientApiClientImpl.class.getCanonicalName()))
+        .withHeader("X-Test-Header", equalTo("test")));
+  }
+
+  /**
+   * Tests {@link HttpClientApiClientImpl#getWebcast} when the webcast exists, and that the URI template's variables
+   * are expanded.
+   */
+  @Test
+  public void getWebcastWhenExists() {
+    WireMock.stubFor(get(urlEqualTo("/v1/channel/1/webcast/2")).willReturn(
+        aResponse().withStatus(200).withHeader("Content-Type", "application/xml").withBody(
+            "<webcast id=\"2\"><title>Title</title><duration>142</duration>"
+                + "<link rel=\"self\" href=\"https://api.test.brighttalk.net/v1/channel/1/webcast/2\"/></webcast>")));
+
+    WebcastResource webcast = this.apiClient.getWebcast(1, 2);
+
+    assertThat(webcast.getId(), is(2));
+    assertThat(webcast.getTitle(), is("Title"));
+    assertThat(webcast.getDuration(), is(142));
+    assertThat(webcast.getLinks(), hasSize(1));
+  }
+
+  /**
+   * Tests {@link HttpClientApiClientImpl#getWebcastsForChannel} with page criteria, which should be included in the
+   * request as request parameters.
+   */
+  @Test
+  public void getWebcastsForChannelWithPageSize() {
+    WireMock.stubFor(get(urlEqualTo("/v1/channel/1/webcasts?pageSize=100")).willReturn(
+        aResponse().withStatus(200).withHeader("Content-Type", "application/xml").withBody("<webcasts/>")));
+
+    WebcastsResource webcasts = this.apiClient.getWebcastsForChannel(1, null, new PageCriteria(100));
+
+    assertThat(webcasts.getWebcasts(), hasSize(0));
+  }
+
+  /**
+   * Tests that an error response which contains an API error results in an {@link ApiErrorResponseException} which
+   * includes the API error, in the same way as the Spring implementation of the client.
+   */
+  @Test
+  public void getWebcastWhenErrorResponseContainsApiError() {
+    String apiErrorXml = "<?xml version='1.0' encoding='UTF-8'?><error><code>WebcastNotFound</code>"
+        + "<message>Webcast not found.</message></error>";
+    WireMock.stubFor(get(urlEqualTo("/v1/channel/1/webcast/2")).willReturn(
+        aResponse().withStatus(404).withHeader("Content-Type", "application/xml").withBody(apiErrorXml)));
+
+    try {
+      this.apiClient.getWebcast(1, 2);
+      fail("Expected exception to be thrown for error response.");
+    } catch (ApiErrorResponseException e) {
+      assertThat(e.getStatusCode(), is(404));
+      assertThat(e.getApiError(), is(new ApiError("WebcastNotFound", "Webcast not found.")));
+      assertThat(new String(e.getResponseBody()), is(apiErrorXml));
+      assertThat(e.getResponseHeaders().get("content-type").get(0), is("application/xml"));
+    }
+  }
+
+  /**
+   * Tests that an error response whose body is in a media type other than XML, e.g. an HTML error page returned by a
+   * web proxy, results in an {@link ApiErrorResponseException} with no API error.
+   */
+  @Test
+  public void getWebcastWhenErrorResponseInUnsupportedMediaType() {
+    String body = "<html><head>Error</head><body>Woz error</body>";
+    WireMock.stubFor(get(urlEqualTo("/v1/channel/1/webcast/2")).willReturn(
+        aResponse().withStatus(504).withHeader("Content-Type", "text/html; charset=UTF-8").withBody(body)));
+
+    try {
+      this.apiClient.getWebcast(1, 2);
+      fail("Expected exception to be thrown for error response.");
+    } catch (ApiErrorResponseException e) {
+      assertThat(e.getStatusCode(), is(504));
+      assertThat(e.getApiError(), nullValue());
+      assertThat(e.getResponseBodyAsString(), is(body));
+    }
+  }
+
+  /**
+   * Tests that an error response whose body contains an unexpected XML entity results in an
+   * {@link ApiErrorResponseException} with no API error.
+   */
+  @Test
+  public void getWebcastWhenErrorResponseContainsUnexpectedEntity() {
+    WireMock.stubFor(get(urlEqualTo("/v1/channel/1/webcast/2")).willReturn(
+        aResponse().withStatus(500).withHeader("Content-Type", "application/xml").withBody(
+            "<notAnApiError><foo>1</foo></notAnApiError>")));
+
+    try {
+      this.apiClient.getWebcast(1, 2);
+      fail("Expected exception to be thrown for error response.");
+    } catch (ApiErrorResponseException e) {
+      assertThat(e.getStatusCode(), is(500));
+      assertThat(e.getApiError(), nullValue());
+    }
+  }
+
+  /**
+   * Tests that building a client without the API user's credentials fails.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void buildWhenNoApiCredentials() {
+    HttpClientApiClientImpl.builder().apiServiceHostName(API_SERVICE_HOST_NAME).build();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiDateTimeFormatter;
+
+/**
+ * Unit tests for {@link ApiDateTimeXmlAdapter}.
+ * 
+ * @author Neil Brown
+ */
+public class ApiDateTimeXmlAdapterTest {
+
+  private ApiDateTimeXmlAdapter xmlAdapter = new ApiDateTimeXmlAdapter();
+
+  /**
+   * Tests {@link ApiDateTimeXmlAdapter#unmarshal} for a date/time string in the format used by the API.
+   */
+  @Test
+  public void testUnmarshalApiDateTimeString() {
+    assertThat(this.xmlAdapter.unmarshal("2014-04-30T21:32:21Z"),
+        is(new ApiDateTimeFormatter().parse("2014-04-30T21:32:21Z")));
+  }
+
+  /**
+   * Tests {@link ApiDateTimeXmlAdapter#unmarshal} for valid XML Schema dateTime strings which aren't in the format used
+   * by the API, which should be parsed in the same way as the JAXB RI.
+   */
+  @Test
+  public void testUnmarshalOtherDateTimeString() {
+    Date expectedDate = new ApiDateTimeFormatter().parse("2014-04-30T21:32:21Z");
+    assertThat(this.xmlAdapter.unmarshal("2014-04-30T22:32:21+01:00"), is(expectedDate));
+    assertThat(this.xmlAdapter.unmarshal("2014-04-30T21:32:21.500Z"), is(new Date(expectedDate.getTime() + 500)));
+  }
+
+  /**
+   * Tests that {@link ApiDateTimeXmlAdapter#unmarshal} parses a string in the API's date only format as a date in the
+   * default time zone, as the JAXB RI does, rather than in UTC.
+   */
+  @Test
+  public void testUnmarshalDateOnlyStringUsesDefaultTimeZone() {
+    TimeZone defaultTimeZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("GMT+05:00"));
+    try {
+      Date date = this.xmlAdapter.unmarshal("2014-04-30");
+
+      assertThat(date, is(DatatypeConverter.parseDateTime("2014-04-30").getTime()));
+      assertThat(date, is(new ApiDateTimeFormatter().parse("2014-04-29T19:00:00Z")));
+    } finally {
+      TimeZone.setDefault(defaultTimeZone);
+    }
+  }
+
+  /**
+   * Tests {@link ApiDateTimeXmlAdapter#unmarshal} for a string which isn't a date/time.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnmarshalNonDateTimeString() {
+    this.xmlAdapter.unmarshal("foo");
+  }
+
+  /**
+   * Tests {@link ApiDateTimeXmlAdapter#marshal} for a non-null and a null date.
+   */
+  @Test
+  public void testMarshal() {
+    assertThat(this.xmlAdapter.marshal(new Date(1000)), is("1970-01-01T00:00:01Z"));
+    assertThat(this.xmlAdapter.marshal(null), is(nullValue()));
+  }
+
+  /**
+   * Tests that {@link ApiDateTimeXmlAdapter#marshal} rejects a date whose year is beyond the range supported by the
+   * API's format.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMarshalWhenYearOutOfRange() {
+    this.xmlAdapter.marshal(new Date(new ApiDateTimeFormatter().parseToEpochMillis("9999-12-31T23:59:59Z") + 1000));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.junit.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+
+/**
+ * Unit tests for {@link ApiResourceJaxbContext}.
+ * 
+ * @author Neil Brown
+ */
+public class ApiResourceJaxbContextTest {
+
+  /**
+   * Tests that the explicit list of {@link ApiResourceJaxbContext#RESOURCE_CLASSES} contains exactly those classes in
+   * the resource package which are annotated with {@link XmlRootElement}, as found by scanning the classpath (as the
+   * API client previously did on startup), so that the list is kept up to date as resources are added.
+   */
+  @Test
+  public void testResourceClassesMatchesAnnotatedClassesInResourcePackage() {
+    ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+    scanner.addIncludeFilter(new AnnotationTypeFilter(XmlRootElement.class));
+    String resourcePackage = ChannelResource.class.getPackage().getName();
+    Set<String> annotatedClassNames = new HashSet<>();
+    for (BeanDefinition beanDefinition : scanner.findCandidateComponents(resourcePackage)) {
+      annotatedClassNames.add(beanDefinition.getBeanClassName());
+    }
+    Set<String> resourceClassNames = new HashSet<>();
+    for (Class<?> resourceClass : ApiResourceJaxbContext.RESOURCE_CLASSES) {
+      resourceClassNames.add(resourceClass.getName());
+    }
+
+    assertThat(resourceClassNames, is(annotatedClassNames));
+  }
+
+  /**
+   * Tests that the context created by {@link ApiResourceJaxbContext#initialiseInBackground()} is returned by every
+   * subsequent call to {@link ApiResourceJaxbContext#get()}, and can unmarshal API resources.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testGetWhenInitialisedInBackground() throws Exception {
+    ApiResourceJaxbContext.INSTANCE.initialiseInBackground();
+
+    JAXBContext jaxbContext = ApiResourceJaxbContext.INSTANCE.get();
+
+    assertThat(ApiResourceJaxbContext.INSTANCE.isInitialised(), is(true));
+    assertThat(ApiResourceJaxbContext.INSTANCE.get(), sameInstance(jaxbContext));
+    Object resource = jaxbContext.createUnmarshaller().unmarshal(new StringReader("<channels/>"));
+    assertThat(resource, instanceOf(ChannelsResource.class));
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CanonicalStringPool}.
+ * 
+ * @author Neil Brown
+ */
+public class CanonicalStringPoolTest {
+
+  /**
+   * Tests that {@link CanonicalStringPool#canonicalise(String)} returns the same instance for equal strings.
+   */
+  @Test
+  public void testCanonicaliseEqualStrings() {
+    CanonicalStringPool pool = new CanonicalStringPool(16);
+    String value = new String("United Kingdom");
+    String equalValue = new String("United Kingdom");
+
+    assertThat(pool.canonicalise(value), sameInstance(value));
+    assertThat(pool.canonicalise(equalValue), sameInstance(value));
+    assertThat(pool.canonicalise("Germany"), is("Germany"));
+  }
+
+  /**
+   * Tests that {@link CanonicalStringPool#canonicalise(String)} returns null for a null string.
+   */
+  @Test
+  public void testCanonicaliseNull() {
+    assertThat(new CanonicalStringPool(16).canonicalise(null), nullValue());
+  }
+
+  /**
+   * Tests that the pool holds no more than its capacity of strings, a string being replaced by a later string which
+   * maps to the same slot, after which the original string is no longer canonical.
+   */
+  @Test
+  public void testCanonicaliseWhenSlotReplaced() {
+    CanonicalStringPool pool = new CanonicalStringPool(1);
+    String value1 = new String("live");
+    String value2 = new String("recorded");
+
+    assertThat(pool.canonicalise(value1), sameInstance(value1));
+    assertThat(pool.canonicalise(value2), sameInstance(value2));
+
+    String equalValue1 = new String("live");
+    assertThat(pool.canonicalise(equalValue1), not(sameInstance(value1)));
+    assertThat(pool.canonicalise(new String("live")), sameInstance(equalValue1));
+  }
+
+  /**
+   * Tests that construction of a pool fails if its capacity is not a positive power of two.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreateWhenCapacityNotPowerOfTwo() {
+    new CanonicalStringPool(100);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+
+import javax.xml.bind.Unmarshaller;
+
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+
+/**
+ * Unit tests for {@link CanonicalStringXmlAdapter}.
+ * 
+ * @author Neil Brown
+ */
+public class CanonicalStringXmlAdapterTest {
+
+  /**
+   * Tests that equal values of fields which opt-in to canonicalisation share the same String instance when unmarshalled
+   * from separate API resources.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalResourcesSharesEqualValues() throws Exception {
+    Unmarshaller unmarshaller = ApiResourceJaxbContext.INSTANCE.get().createUnmarshaller();
+
+    WebcastResource webcast1 = unmarshalWebcast(unmarshaller, "1");
+    WebcastResource webcast2 = unmarshalWebcast(unmarshaller, "2");
+
+    assertThat(webcast1.getStatus(), is("upcoming"));
+    assertThat(webcast2.getStatus(), sameInstance(webcast1.getStatus()));
+    assertThat(webcast2.getVisibility(), sameInstance(webcast1.getVisibility()));
+  }
+
+  /**
+   * Tests that {@link CanonicalStringXmlAdapter#marshal(String)} returns the supplied value unchanged.
+   */
+  @Test
+  public void testMarshal() {
+    assertThat(new CanonicalStringXmlAdapter().marshal("public"), is("public"));
+  }
+
+  private static WebcastResource unmarshalWebcast(Unmarshaller unmarshaller, String id) throws Exception {
+    String xml = "<webcast id=\"" + id + "\"><visibility>public</visibility><status>upcoming</status></webcast>";
+    return (WebcastResource) unmarshaller.unmarshal(new StringReader(xml));
+  }
+}
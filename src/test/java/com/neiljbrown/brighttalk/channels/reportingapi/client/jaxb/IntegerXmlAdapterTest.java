@@ -17,6 +17,7 @@ package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.*;
 
 import org.junit.Test;
@@ -53,6 +54,99 @@ public class IntegerXmlAdapterTest {
     this.xmlAdapter.unmarshal(String.valueOf("foo"));
   }
   
+  /**
+   * Tests {@link IntegerXmlAdapter#unmarshal} for valid integer strings, including signed values, the min and max int
+   * values.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalValidIntegerStrings() throws Exception {
+    assertThat(this.xmlAdapter.unmarshal("0"), is(0));
+    assertThat(this.xmlAdapter.unmarshal("2395"), is(2395));
+    assertThat(this.xmlAdapter.unmarshal("+42"), is(42));
+    assertThat(this.xmlAdapter.unmarshal("-42"), is(-42));
+    assertThat(this.xmlAdapter.unmarshal(String.valueOf(Integer.MAX_VALUE)), is(Integer.MAX_VALUE));
+    assertThat(this.xmlAdapter.unmarshal(String.valueOf(Integer.MIN_VALUE)), is(Integer.MIN_VALUE));
+  }
+
+  /**
+   * Tests that {@link IntegerXmlAdapter#unmarshal} throws a {@link NumberFormatException} for each of a set of invalid
+   * integer strings, including those which are out of the range of an int.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalInvalidIntegerStrings() throws Exception {
+    String[] invalidStrings = { null, "", "  ", "-", "+", "1 2", "1.0", "0x1", "--1", "2147483648", "-2147483649",
+        "99999999999" };
+    for (String invalidString : invalidStrings) {
+      try {
+        this.xmlAdapter.unmarshal(invalidString);
+        fail("Expected NumberFormatException for [" + invalidString + "].");
+      } catch (NumberFormatException e) {
+        // Expected
+      }
+    }
+  }
+
+  /**
+   * Tests that {@link IntegerXmlAdapter#unmarshal} rejects integer strings with leading or trailing whitespace, in the
+   * same way as {@link Integer#parseInt(String)}, which the adapter previously used.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalIntegerStringsWithWhitespace() throws Exception {
+    String[] paddedStrings = { " 42", "42 ", "\t42", "42\n", " \t\n42\r\n " };
+    for (String paddedString : paddedStrings) {
+      try {
+        Integer.parseInt(paddedString);
+        fail("Expected Integer.parseInt() to reject [" + paddedString + "].");
+      } catch (NumberFormatException e) {
+        // Expected
+      }
+      try {
+        this.xmlAdapter.unmarshal(paddedString);
+        fail("Expected NumberFormatException for [" + paddedString + "].");
+      } catch (NumberFormatException e) {
+        // Expected
+      }
+    }
+  }
+
+  /**
+   * Tests that {@link IntegerXmlAdapter#unmarshal} returns the same (cached) Integer for repeated small non-negative
+   * values, including those beyond the range cached by {@link Integer#valueOf(int)}.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalReusesCachedIntegers() throws Exception {
+    assertThat(this.xmlAdapter.unmarshal("2395"), sameInstance(this.xmlAdapter.unmarshal("2395")));
+    assertThat(this.xmlAdapter.unmarshal(String.valueOf(IntegerXmlAdapter.CACHED_VALUE_LIMIT - 1)),
+        sameInstance(this.xmlAdapter.unmarshal(String.valueOf(IntegerXmlAdapter.CACHED_VALUE_LIMIT - 1))));
+  }
+
+  /**
+   * Tests {@link IntegerXmlAdapter#unmarshal} for integer strings containing non-ASCII digits, which should be
+   * accepted or rejected exactly as they are by {@link Integer#parseInt(String)}.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalNonAsciiDigits() throws Exception {
+    // Arabic-Indic and full width digits
+    assertThat(this.xmlAdapter.unmarshal("\u0664\u0662"), is(Integer.parseInt("\u0664\u0662")));
+    assertThat(this.xmlAdapter.unmarshal("-\uff14\uff12"), is(-42));
+    try {
+      this.xmlAdapter.unmarshal("4\u00a0");
+      fail("Expected NumberFormatException for non-breaking space.");
+    } catch (NumberFormatException e) {
+      // Expected
+    }
+  }
+
   /**
    * Tests {@link IntegerXmlAdapter#marshal} for a null string.
    * 
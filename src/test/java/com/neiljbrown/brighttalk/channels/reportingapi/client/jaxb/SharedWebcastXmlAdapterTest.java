@@ -0,0 +1,196 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.bind.Unmarshaller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+
+/**
+ * Unit tests for {@link SharedWebcastXmlAdapter}.
+ * 
+ * @author Neil Brown
+ */
+public class SharedWebcastXmlAdapterTest {
+
+  private Unmarshaller unmarshaller;
+
+  /**
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.unmarshaller = ApiResourceJaxbContext.INSTANCE.get().createUnmarshaller();
+    this.unmarshaller.setAdapter(new SharedWebcastXmlAdapter(SharedWebcastXmlAdapter.DEFAULT_CACHE_CAPACITY));
+  }
+
+  /**
+   * Tests that the webcasts embedded in a page of webcast viewings are resolved to one shared instance per webcast.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalPageSharesWebcastsWithSameId() throws Exception {
+    List<WebcastViewingResource> viewings = unmarshalViewings(
+        "<webcastViewing id=\"1\"><webcast id=\"2\"/></webcastViewing>",
+        "<webcastViewing id=\"2\"><webcast id=\"3\"/></webcastViewing>",
+        "<webcastViewing id=\"3\"><webcast id=\"2\"/></webcastViewing>");
+
+    assertThat(viewings.get(0).getWebcast().getId(), is(2));
+    assertThat(viewings.get(1).getWebcast().getId(), is(3));
+    assertThat(viewings.get(2).getWebcast(), sameInstance(viewings.get(0).getWebcast()));
+  }
+
+  /**
+   * Tests that webcasts are shared across separately unmarshalled pages.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalPagesSharesWebcastsAcrossPages() throws Exception {
+    WebcastResource webcast1 =
+        unmarshalViewings("<webcastViewing id=\"1\"><webcast id=\"4\"/></webcastViewing>").get(0).getWebcast();
+    WebcastResource webcast2 =
+        unmarshalViewings("<webcastViewing id=\"2\"><webcast id=\"4\"/></webcastViewing>").get(0).getWebcast();
+
+    assertThat(webcast2, sameInstance(webcast1));
+  }
+
+  /**
+   * Tests that a webcast with the same id as a previously unmarshalled webcast, but which isn't equal to it, is not
+   * resolved to the previous instance, and replaces it as the shared instance.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalPageWhenWebcastChanged() throws Exception {
+    List<WebcastViewingResource> viewings = unmarshalViewings(
+        "<webcastViewing id=\"1\"><webcast id=\"5\"><status>upcoming</status></webcast></webcastViewing>",
+        "<webcastViewing id=\"2\"><webcast id=\"5\"><status>live</status></webcast></webcastViewing>",
+        "<webcastViewing id=\"3\"><webcast id=\"5\"><status>live</status></webcast></webcastViewing>");
+
+    assertThat(viewings.get(0).getWebcast().getStatus(), is("upcoming"));
+    assertThat(viewings.get(1).getWebcast(), not(sameInstance(viewings.get(0).getWebcast())));
+    assertThat(viewings.get(1).getWebcast().getStatus(), is("live"));
+    assertThat(viewings.get(2).getWebcast(), sameInstance(viewings.get(1).getWebcast()));
+  }
+
+  /**
+   * Tests that webcasts aren't shared by unmarshallers using different adapters, as each adapter has its own cache.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalPagesWithDifferentAdapters() throws Exception {
+    WebcastResource webcast1 =
+        unmarshalViewings("<webcastViewing id=\"1\"><webcast id=\"6\"/></webcastViewing>").get(0).getWebcast();
+    this.unmarshaller.setAdapter(new SharedWebcastXmlAdapter(SharedWebcastXmlAdapter.DEFAULT_CACHE_CAPACITY));
+    WebcastResource webcast2 =
+        unmarshalViewings("<webcastViewing id=\"2\"><webcast id=\"6\"/></webcastViewing>").get(0).getWebcast();
+
+    assertThat(webcast2, not(sameInstance(webcast1)));
+  }
+
+  /**
+   * Tests that webcasts aren't shared by an unmarshaller on which no adapter has been set, in which case JAXB uses an
+   * adapter created with the default constructor.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalPageWhenSharingDisabled() throws Exception {
+    this.unmarshaller = ApiResourceJaxbContext.INSTANCE.get().createUnmarshaller();
+
+    List<WebcastViewingResource> viewings = unmarshalViewings(
+        "<webcastViewing id=\"1\"><webcast id=\"7\"/></webcastViewing>",
+        "<webcastViewing id=\"2\"><webcast id=\"7\"/></webcastViewing>");
+
+    assertThat(viewings.get(1).getWebcast(), is(viewings.get(0).getWebcast()));
+    assertThat(viewings.get(1).getWebcast(), not(sameInstance(viewings.get(0).getWebcast())));
+    assertThat(new SharedWebcastXmlAdapter().getCacheCapacity(), is(0));
+  }
+
+  /**
+   * Tests that a shared webcast can't be modified via its accessors, so that sharing it can't change the values seen
+   * by the other resources which embed it.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testSharedWebcastCannotBeModified() throws Exception {
+    List<WebcastViewingResource> viewings = unmarshalViewings(
+        "<webcastViewing id=\"1\"><webcast id=\"8\"><start>2014-01-01T00:00:00Z</start>"
+            + "<categories><category>test</category></categories></webcast></webcastViewing>",
+        "<webcastViewing id=\"2\"><webcast id=\"8\"><start>2014-01-01T00:00:00Z</start>"
+            + "<categories><category>test</category></categories></webcast></webcastViewing>");
+    WebcastResource webcast = viewings.get(0).getWebcast();
+    assertThat(viewings.get(1).getWebcast(), sameInstance(webcast));
+    long start = webcast.getStart().getTime();
+
+    webcast.getStart().setTime(0);
+    try {
+      webcast.getCategories().clear();
+      fail("Expected UnsupportedOperationException.");
+    } catch (UnsupportedOperationException e) {
+      // Expected
+    }
+
+    assertThat(viewings.get(1).getWebcast().getStart().getTime(), is(start));
+    assertThat(viewings.get(1).getWebcast().getCategories(), is(Arrays.asList("test")));
+  }
+
+  /**
+   * Tests that an adapter can't be created with a cache capacity which isn't a positive power of two.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreateWhenCacheCapacityNotPowerOfTwo() {
+    new SharedWebcastXmlAdapter(1000);
+  }
+
+  /**
+   * Tests that {@link SharedWebcastXmlAdapter#unmarshal(WebcastResource)} returns null for a null webcast.
+   */
+  @Test
+  public void testUnmarshalNull() {
+    assertThat(new SharedWebcastXmlAdapter().unmarshal(null), nullValue());
+  }
+
+  private List<WebcastViewingResource> unmarshalViewings(String... viewings) throws Exception {
+    StringBuilder xml = new StringBuilder("<webcastViewings>");
+    for (String viewing : viewings) {
+      xml.append(viewing);
+    }
+    xml.append("</webcastViewings>");
+    return ((WebcastViewingsResource) this.unmarshaller.unmarshal(new StringReader(xml.toString())))
+        .getWebcastViewings();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ResourceCallbackHandler;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.spring.SpringApiClientImplIntegrationTest;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.LinkRelationType;
+
+/**
+ * Unit tests for {@link StaxResourceCollectionUnmarshaller}.
+ * 
+ * @author Neil Brown
+ */
+public class StaxResourceCollectionUnmarshallerTest {
+
+  private JAXBContext jaxbContext;
+
+  /** Instance of unit under test */
+  private StaxResourceCollectionUnmarshaller uut;
+
+  /**
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.jaxbContext = JAXBContext.newInstance(WebcastViewingsResource.class);
+    this.uut = new StaxResourceCollectionUnmarshaller(this.jaxbContext, new CustomValidationEventHandler());
+  }
+
+  /**
+   * Tests {@link StaxResourceCollectionUnmarshaller#unmarshal} for a page of a collection containing multiple resources
+   * and a next page link. Each resource should be unmarshalled identically to unmarshalling the page as a whole.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalWhenMultipleResourcesAndNextPage() throws Exception {
+    Resource responseBody = new ClassPathResource(
+        "SpringApiClientImplTest.getWebcastViewingsForWebcastWhenMultipleViewingsAndNextPage-response.xml",
+        SpringApiClientImplIntegrationTest.class);
+    WebcastViewingsResource expectedViewings;
+    try (InputStream inputStream = responseBody.getInputStream()) {
+      expectedViewings = (WebcastViewingsResource) this.jaxbContext.createUnmarshaller().unmarshal(inputStream);
+    }
+
+    final List<WebcastViewingResource> actualViewings = new ArrayList<>();
+    Link nextPageLink;
+    try (InputStream inputStream = responseBody.getInputStream()) {
+      nextPageLink = this.uut.unmarshal(inputStream, WebcastViewingResource.class,
+          new ResourceCallbackHandler<WebcastViewingResource>() {
+            @Override
+            public void processResource(WebcastViewingResource resource) {
+              actualViewings.add(resource);
+            }
+          });
+    }
+
+    assertThat(actualViewings, is(expectedViewings.getWebcastViewings()));
+    assertThat(nextPageLink.getRel(), is(LinkRelationType.next.name()));
+    assertThat(nextPageLink, is(expectedViewings.getLinks().get(0)));
+  }
+
+  /**
+   * Tests {@link StaxResourceCollectionUnmarshaller#unmarshal} for an empty collection.
+   */
+  @Test
+  public void testUnmarshalWhenEmptyCollection() {
+    final List<WebcastViewingResource> actualViewings = new ArrayList<>();
+    Link nextPageLink = this.uut.unmarshal(new ByteArrayInputStream("<webcastViewings/>".getBytes()),
+        WebcastViewingResource.class, new ResourceCallbackHandler<WebcastViewingResource>() {
+          @Override
+          public void processResource(WebcastViewingResource resource) {
+            actualViewings.add(resource);
+          }
+        });
+
+    assertThat(actualViewings, hasSize(0));
+    assertThat(nextPageLink, nullValue());
+  }
+
+  /**
+   * Tests {@link StaxResourceCollectionUnmarshaller#unmarshal} for a malformed XML document.
+   */
+  @Test(expected = ApiClientException.class)
+  public void testUnmarshalWhenMalformedDocument() {
+    this.uut.unmarshal(new ByteArrayInputStream("<webcastViewings><webcastViewing>".getBytes()),
+        WebcastViewingResource.class, new ResourceCallbackHandler<WebcastViewingResource>() {
+          @Override
+          public void processResource(WebcastViewingResource resource) {
+          }
+        });
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.Unmarshaller;
+
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelResource;
+
+/**
+ * Unit tests for {@link UnmarshallerPool}.
+ * 
+ * @author Neil Brown
+ */
+public class UnmarshallerPoolTest {
+
+  /**
+   * Tests that {@link UnmarshallerPool#borrow()} creates an unmarshaller configured with the pool's validation event
+   * handler when there are no idle unmarshallers, and that a released unmarshaller is reused by the next borrower.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testBorrowReusesReleasedUnmarshaller() throws Exception {
+    CustomValidationEventHandler validationEventHandler = new CustomValidationEventHandler();
+    UnmarshallerPool pool = new UnmarshallerPool(ApiResourceJaxbContext.INSTANCE, validationEventHandler, 2);
+
+    Unmarshaller unmarshaller = pool.borrow();
+
+    assertThat(unmarshaller.getEventHandler(), sameInstance((Object) validationEventHandler));
+    assertThat(pool.getIdleCount(), is(0));
+
+    pool.release(unmarshaller);
+
+    assertThat(pool.getIdleCount(), is(1));
+    assertThat(pool.borrow(), sameInstance(unmarshaller));
+    assertThat(pool.getIdleCount(), is(0));
+  }
+
+  /**
+   * Tests that {@link UnmarshallerPool#borrow()} creates a new unmarshaller for each concurrent borrower, and that
+   * {@link UnmarshallerPool#release(Unmarshaller)} discards unmarshallers released when the pool already holds its max
+   * no. of idle unmarshallers.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testReleaseWhenPoolFull() throws Exception {
+    UnmarshallerPool pool = new UnmarshallerPool(ApiResourceJaxbContext.INSTANCE, null, 1);
+    Unmarshaller unmarshaller1 = pool.borrow();
+    Unmarshaller unmarshaller2 = pool.borrow();
+
+    assertThat(unmarshaller2, not(sameInstance(unmarshaller1)));
+
+    pool.release(unmarshaller1);
+    pool.release(unmarshaller2);
+
+    assertThat(pool.getIdleCount(), is(pool.getMaxIdle()));
+    assertThat(pool.borrow(), sameInstance(unmarshaller1));
+  }
+
+  /**
+   * Tests that an unmarshaller reused from the pool continues to treat validation errors as non-fatal when the pool is
+   * configured with a lenient {@link CustomValidationEventHandler}, leaving the invalid field set to its default.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testReusedUnmarshallerWhenValidationErrorAndLenient() throws Exception {
+    UnmarshallerPool pool =
+        new UnmarshallerPool(ApiResourceJaxbContext.INSTANCE, new CustomValidationEventHandler(), 1);
+    Unmarshaller unmarshaller = pool.borrow();
+    assertThat(unmarshalChannel(unmarshaller, "1").getId(), is(1));
+    pool.release(unmarshaller);
+
+    Unmarshaller reusedUnmarshaller = pool.borrow();
+
+    assertThat(reusedUnmarshaller, sameInstance(unmarshaller));
+    assertThat(unmarshalChannel(reusedUnmarshaller, "invalid").getId(), is(0));
+  }
+
+  /**
+   * Tests that an unmarshaller reused from the pool continues to treat validation errors as fatal when the pool is
+   * configured with a {@link CustomValidationEventHandler} which isn't lenient.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test(expected = UnmarshalException.class)
+  public void testReusedUnmarshallerWhenValidationErrorAndNotLenient() throws Exception {
+    CustomValidationEventHandler validationEventHandler = new CustomValidationEventHandler();
+    validationEventHandler.setLenient(false);
+    UnmarshallerPool pool = new UnmarshallerPool(ApiResourceJaxbContext.INSTANCE, validationEventHandler, 1);
+    Unmarshaller unmarshaller = pool.borrow();
+    assertThat(unmarshalChannel(unmarshaller, "1").getId(), is(1));
+    pool.release(unmarshaller);
+
+    unmarshalChannel(pool.borrow(), "invalid");
+  }
+
+  private static ChannelResource unmarshalChannel(Unmarshaller unmarshaller, String id) throws Exception {
+    return (ChannelResource) unmarshaller.unmarshal(new StringReader("<channel id=\"" + id + "\"/>"));
+  }
+}
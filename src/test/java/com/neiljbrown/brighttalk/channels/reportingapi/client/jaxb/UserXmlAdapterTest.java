@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.jaxb;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.bind.Unmarshaller;
+
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.User;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.UserIdentityMap;
+
+/**
+ * Unit tests for {@link UserXmlAdapter}.
+ * 
+ * @author Neil Brown
+ */
+public class UserXmlAdapterTest {
+
+  private static final String VIEWINGS_XML = "<webcastViewings>"
+      + "<webcastViewing id=\"1\"><user id=\"10\"><firstName>Davey</firstName></user></webcastViewing>"
+      + "<webcastViewing id=\"2\"><user id=\"11\"><firstName>Goran</firstName></user></webcastViewing>"
+      + "<webcastViewing id=\"3\"><user id=\"10\"><firstName>Davey</firstName></user></webcastViewing>"
+      + "</webcastViewings>";
+
+  /**
+   * Tests that when an unmarshaller is configured with an adapter using a {@link UserIdentityMap}, equal users embedded
+   * in unmarshalled resources share the same instance, which can be looked up in the map.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalWithUserIdentityMap() throws Exception {
+    UserIdentityMap userIdentityMap = new UserIdentityMap(10);
+    UnmarshallerPool pool = new UnmarshallerPool(ApiResourceJaxbContext.INSTANCE, null,
+        Collections.singletonList(new UserXmlAdapter(userIdentityMap)), 1);
+
+    List<WebcastViewingResource> viewings = unmarshalViewings(pool.borrow());
+
+    User user = viewings.get(0).getUser();
+    assertThat(user.getId(), is(10));
+    assertThat(viewings.get(2).getUser(), sameInstance(user));
+    assertThat(userIdentityMap.get(10), sameInstance(user));
+    assertThat(userIdentityMap.get(11), sameInstance(viewings.get(1).getUser()));
+  }
+
+  /**
+   * Tests that when an unmarshaller isn't configured with an adapter, users are unmarshalled without being resolved.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testUnmarshalWithoutUserIdentityMap() throws Exception {
+    List<WebcastViewingResource> viewings =
+        unmarshalViewings(ApiResourceJaxbContext.INSTANCE.get().createUnmarshaller());
+
+    assertThat(viewings.get(2).getUser(), is(viewings.get(0).getUser()));
+    assertThat(viewings.get(2).getUser(), not(sameInstance(viewings.get(0).getUser())));
+  }
+
+  private static List<WebcastViewingResource> unmarshalViewings(Unmarshaller unmarshaller) throws Exception {
+    return ((WebcastViewingsResource) unmarshaller.unmarshal(new StringReader(VIEWINGS_XML))).getWebcastViewings();
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ApiError;
+
+/**
+ * Unit tests for {@link ApiCallMetrics}.
+ * 
+ * @author Neil Brown
+ */
+public class ApiCallMetricsTest {
+
+  private static final String OPERATION = "getWebcastViewingsForChannel";
+
+  private RecordingMetricsRegistry metricsRegistry;
+
+  @Before
+  public void setUp() {
+    this.metricsRegistry = new RecordingMetricsRegistry();
+  }
+
+  /**
+   * Tests the metrics reported for a successful call which established a new connection and returned a page of
+   * resources.
+   */
+  @Test
+  public void testEndWhenSuccessful() {
+    ApiCallMetrics callMetrics = ApiCallMetrics.start(OPERATION);
+    assertThat(ApiCallMetrics.current(), is(callMetrics));
+    callMetrics.recordConnect(1000);
+    callMetrics.recordResponseHeadersReceived();
+    callMetrics.addCompressedBytes(100);
+    callMetrics.addDecompressedBytes(250);
+    callMetrics.addDecompressedBytes(250);
+    callMetrics.setPageItemCount(10);
+
+    callMetrics.end(this.metricsRegistry, null);
+
+    assertThat(ApiCallMetrics.current(), nullValue());
+    Map<String, String> tags = ImmutableMap.of(ApiCallMetrics.TAG_OPERATION, OPERATION);
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.REQUESTS, tags), is(1L));
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.ERRORS, tags), nullValue());
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.LATENCY_CONNECT, tags), is(1000L));
+    assertTrue(this.metricsRegistry.get(ApiCallMetrics.LATENCY_TIME_TO_FIRST_BYTE, tags) >= 0);
+    assertTrue(this.metricsRegistry.get(ApiCallMetrics.LATENCY_UNMARSHAL, tags) >= 0);
+    assertTrue(this.metricsRegistry.get(ApiCallMetrics.LATENCY_TOTAL, tags) >= 0);
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.RESPONSE_BYTES, ImmutableMap.of(ApiCallMetrics.TAG_OPERATION,
+        OPERATION, ApiCallMetrics.TAG_ENCODING, ApiCallMetrics.ENCODING_COMPRESSED)), is(100L));
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.RESPONSE_BYTES, ImmutableMap.of(ApiCallMetrics.TAG_OPERATION,
+        OPERATION, ApiCallMetrics.TAG_ENCODING, ApiCallMetrics.ENCODING_DECOMPRESSED)), is(500L));
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.PAGE_ITEMS, tags), is(10L));
+  }
+
+  /**
+   * Tests the metrics reported for a call which failed with an API error response. The error should be counted,
+   * tagged with the HTTP status and API error code, and no unmarshal time or page size should be recorded.
+   */
+  @Test
+  public void testEndWhenApiErrorResponse() {
+    ApiCallMetrics callMetrics = ApiCallMetrics.start(OPERATION);
+    callMetrics.recordResponseHeadersReceived();
+
+    callMetrics.end(this.metricsRegistry, new ApiErrorResponseException(403, "Forbidden", null, null, null,
+        new ApiError("NotAuthorisedForChannel", "Not authorised.")));
+
+    Map<String, String> tags = ImmutableMap.of(ApiCallMetrics.TAG_OPERATION, OPERATION);
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.REQUESTS, tags), is(1L));
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.ERRORS, ImmutableMap.of(ApiCallMetrics.TAG_OPERATION,
+        OPERATION, ApiCallMetrics.TAG_STATUS, "403", ApiCallMetrics.TAG_ERROR_CODE, "NotAuthorisedForChannel")),
+        is(1L));
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.LATENCY_CONNECT, tags), nullValue());
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.LATENCY_UNMARSHAL, tags), nullValue());
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.PAGE_ITEMS, tags), nullValue());
+  }
+
+  /**
+   * Tests the metrics reported for a call which failed before a response was received. The error should be tagged
+   * with the class of exception, and no response metrics should be recorded.
+   */
+  @Test
+  public void testEndWhenNoResponse() {
+    ApiCallMetrics callMetrics = ApiCallMetrics.start(OPERATION);
+
+    callMetrics.end(this.metricsRegistry, new IOException("Connection refused"));
+
+    Map<String, String> tags = ImmutableMap.of(ApiCallMetrics.TAG_OPERATION, OPERATION);
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.ERRORS, ImmutableMap.of(ApiCallMetrics.TAG_OPERATION,
+        OPERATION, ApiCallMetrics.TAG_STATUS, ApiCallMetrics.TAG_VALUE_NONE, ApiCallMetrics.TAG_ERROR_CODE,
+        "IOException")), is(1L));
+    assertThat(this.metricsRegistry.get(ApiCallMetrics.LATENCY_TIME_TO_FIRST_BYTE, tags), nullValue());
+    assertTrue(this.metricsRegistry.get(ApiCallMetrics.LATENCY_TOTAL, tags) >= 0);
+  }
+
+  /**
+   * {@link MetricsRegistry} which records the sum of the values reported for each metric name and tags.
+   */
+  private static class RecordingMetricsRegistry implements MetricsRegistry {
+    private final Map<String, Long> metrics = new HashMap<>();
+
+    @Override
+    public void incrementCounter(String name, Map<String, String> tags) {
+      this.add(name, tags, 1);
+    }
+
+    @Override
+    public void recordTime(String name, Map<String, String> tags, long durationNanos) {
+      this.add(name, tags, durationNanos);
+    }
+
+    @Override
+    public void recordValue(String name, Map<String, String> tags, long value) {
+      this.add(name, tags, value);
+    }
+
+    Long get(String name, Map<String, String> tags) {
+      return this.metrics.get(name + tags);
+    }
+
+    private void add(String name, Map<String, String> tags, long value) {
+      Long current = this.metrics.get(name + tags);
+      this.metrics.put(name + tags, current != null ? current + value : value);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.oxm.Unmarshaller;
+
+import com.google.common.base.Throwables;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiCredentials;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.User;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.UserIdentityMap;
+
+/**
+ * Unit tests for {@link AppConfig}.
+ * 
+ * @author Neil Brown
+ */
+public class AppConfigTest {
+
+  /**
+   * Tests that an application context can be created from each of the shipped environment properties templates.
+   */
+  @Test
+  public void testCreateContextForShippedEnvironments() {
+    for (String environment : new String[] { "production", "qa" }) {
+      Map<String, Object> properties = new HashMap<>();
+      properties.put("environment", environment);
+      try (AnnotationConfigApplicationContext context = createContext(properties)) {
+        assertThat(context.getBean(ApiCredentials.class).getKey(), is(1));
+      }
+    }
+  }
+
+  /**
+   * Tests that creating an application context fails with a clear error message when the configured API user key is
+   * not an integer.
+   */
+  @Test
+  public void testCreateContextWhenApiUserKeyNotInteger() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("apiUser.key", "abc");
+    try (AnnotationConfigApplicationContext context = createContext(properties)) {
+      fail("Expected BeanCreationException.");
+    } catch (BeanCreationException e) {
+      // The root cause is the NumberFormatException, wrapped by the IllegalArgumentException reporting the property
+      Throwable cause = Throwables.getRootCause(e);
+      assertThat(cause, instanceOf(NumberFormatException.class));
+      for (Throwable t : Throwables.getCausalChain(e)) {
+        if (t.getCause() == cause) {
+          assertThat(t, instanceOf(IllegalArgumentException.class));
+          assertThat(t.getMessage(), containsString("apiUser.key must be a positive integer, not [abc]"));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that when a user identity map size is configured, a {@link UserIdentityMap} bean is declared, which can be
+   * autowired by the application, and which is used to resolve the users embedded in unmarshalled resources.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testCreateContextWhenUserIdentityMapConfigured() throws Exception {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("userIdentityMap.maxEntries", "16");
+    try (AnnotationConfigApplicationContext context = createContext(properties)) {
+      UserIdentityMap userIdentityMap = context.getBean(UserIdentityMap.class);
+      assertThat(userIdentityMap.getMaxEntries(), is(16));
+      assertUsersResolved(context, userIdentityMap);
+    }
+  }
+
+  /**
+   * Tests that when no user identity map size is configured, no {@link UserIdentityMap} bean is declared.
+   */
+  @Test
+  public void testCreateContextWhenUserIdentityMapNotConfigured() {
+    try (AnnotationConfigApplicationContext context = createContext(new HashMap<String, Object>())) {
+      assertThat(context.getBeansOfType(UserIdentityMap.class).isEmpty(), is(true));
+    }
+  }
+
+  /**
+   * Tests that a {@link UserIdentityMap} bean declared by the importing application overrides the one declared by the
+   * configuration, and is used to resolve the users embedded in unmarshalled resources.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testCreateContextWhenUserIdentityMapDeclaredByApplication() throws Exception {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("userIdentityMap.maxEntries", "16");
+    try (AnnotationConfigApplicationContext context = createContext(properties, ApplicationConfig.class)) {
+      UserIdentityMap userIdentityMap = context.getBean(UserIdentityMap.class);
+      assertThat(userIdentityMap.getMaxEntries(), is(ApplicationConfig.USER_IDENTITY_MAP_MAX_ENTRIES));
+      assertUsersResolved(context, userIdentityMap);
+    }
+  }
+
+  private static void assertUsersResolved(AnnotationConfigApplicationContext context, UserIdentityMap userIdentityMap)
+      throws Exception {
+    String xml = "<webcastViewings><webcastViewing id=\"1\"><user id=\"5\"/></webcastViewing>"
+        + "<webcastViewing id=\"2\"><user id=\"5\"/></webcastViewing></webcastViewings>";
+    WebcastViewingsResource viewings = (WebcastViewingsResource) context.getBean(Unmarshaller.class).unmarshal(
+        new StreamSource(new StringReader(xml)));
+    User user = viewings.getWebcastViewings().get(0).getUser();
+    assertThat(viewings.getWebcastViewings().get(1).getUser(), sameInstance(user));
+    assertThat(userIdentityMap.get(5), sameInstance(user));
+  }
+
+  private static AnnotationConfigApplicationContext createContext(Map<String, Object> properties,
+      Class<?>... applicationConfigClasses) {
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+    context.register(AppConfig.class);
+    if (applicationConfigClasses.length > 0) {
+      context.register(applicationConfigClasses);
+    }
+    context.refresh();
+    return context;
+  }
+
+  /**
+   * Configuration of an application which declares its own {@link UserIdentityMap}.
+   */
+  @Configuration
+  static class ApplicationConfig {
+    static final int USER_IDENTITY_MAP_MAX_ENTRIES = 8;
+
+    @Bean
+    public UserIdentityMap userIdentityMap() {
+      return new UserIdentityMap(USER_IDENTITY_MAP_MAX_ENTRIES);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.AdaptiveConcurrencyLimiter;
+
+/**
+ * Unit tests for {@link ConcurrencyLimitingClientHttpRequestInterceptor}.
+ * 
+ * @author Neil Brown
+ */
+public class ConcurrencyLimitingClientHttpRequestInterceptorTest {
+
+  private static final String URL = "https://api.test.brighttalk.net/v1/my/channels";
+
+  private AdaptiveConcurrencyLimiter concurrencyLimiter;
+  private RestTemplate restTemplate;
+  private MockRestServiceServer mockServer;
+
+  @Before
+  public void setUp() {
+    this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 0.5, 2.0, 0);
+    this.restTemplate = new RestTemplate();
+    this.restTemplate.setInterceptors(Collections.<ClientHttpRequestInterceptor> singletonList(
+        new ConcurrencyLimitingClientHttpRequestInterceptor(this.concurrencyLimiter)));
+    this.mockServer = MockRestServiceServer.createServer(this.restTemplate);
+  }
+
+  /**
+   * Tests that the permit acquired for a successful request is released once the response has been read.
+   */
+  @Test
+  public void testInterceptWhenSuccess() {
+    this.mockServer.expect(requestTo(URL)).andRespond(withSuccess("<channels/>", MediaType.APPLICATION_XML));
+
+    this.restTemplate.getForObject(URL, String.class);
+
+    this.mockServer.verify();
+    assertThat(this.concurrencyLimiter.getInFlight(), is(0));
+    assertThat(this.concurrencyLimiter.getLimit(), is(4));
+  }
+
+  /**
+   * Tests that a 429 Too Many Requests response decreases the concurrency limit, and releases the permit.
+   */
+  @Test
+  public void testInterceptWhenTooManyRequests() {
+    this.mockServer.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS));
+
+    try {
+      this.restTemplate.getForObject(URL, String.class);
+      fail("Expected exception to be thrown.");
+    } catch (HttpClientErrorException e) {
+      assertThat(e.getStatusCode(), is(HttpStatus.TOO_MANY_REQUESTS));
+    }
+
+    this.mockServer.verify();
+    assertThat(this.concurrencyLimiter.getInFlight(), is(0));
+    assertThat(this.concurrencyLimiter.getLimit(), is(2));
+  }
+}
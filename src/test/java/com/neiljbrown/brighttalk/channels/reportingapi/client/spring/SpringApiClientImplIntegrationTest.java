@@ -19,10 +19,12 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withBadRequest;
@@ -31,6 +33,7 @@ import static org.springframework.test.web.client.response.MockRestResponseCreat
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withUnauthorizedRequest;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -44,9 +47,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -54,8 +62,13 @@ import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriTemplate;
 
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.CircuitBreakerOpenException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ConcurrencyLimitExceededException;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ResourceCallbackHandler;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiCredentials;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.common.ApiDateTimeFormatter;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.marshall.ChannelResourceXStreamConverter;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.marshall.ChannelSubscriberResourceXStreamConverter;
@@ -101,8 +114,10 @@ import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastVi
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastsResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.spring.AppConfig;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.spring.SpringApiClientImpl;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.CircuitBreaker;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.support.LinkRelationType;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.support.Links;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.TokenBucketRateLimiter;
 import com.thoughtworks.xstream.XStream;
 
 /**
@@ -1249,6 +1264,89 @@ public class SpringApiClientImplIntegrationTest {
     assertThat(webcastResource, is(expectedWebcastResource));
   }
 
+  /**
+   * Tests {@link SpringApiClientImpl#getWebcast} when a resource cache is configured, in the case where the requested
+   * webcast is cached, but not fresh. The API should be sent a conditional request, and on responding 304 Not Modified,
+   * the previously returned resource should be returned.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void getWebcastWhenCachedAndNotModified() throws Exception {
+    int channelId = 1;
+    int webcastId = 2;
+    String expectedTemplateRequestUrl = this.apiClient.getApiServiceBaseUri() + WebcastResource.RELATIVE_URI_TEMPLATE;
+    String expectedRequestUrl = new UriTemplate(expectedTemplateRequestUrl).expand(channelId, webcastId).toString();
+    String eTag = "\"1234\"";
+
+    // Configure mock API service to respond to the first API call with a resource and a validator, and the second
+    // (conditional) API call with a 304
+    Resource responseBody = new ClassPathResource(
+        "SpringApiClientImplTest.getWebcastExistsFullyPopulated-response.xml", this.getClass());
+    HttpHeaders responseHeaders = new HttpHeaders();
+    responseHeaders.setETag(eTag);
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withSuccess(responseBody, MediaType.APPLICATION_XML).headers(responseHeaders));
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl))
+        .andExpect(header("If-None-Match", eTag)).andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+    HttpResourceCache resourceCache = new HttpResourceCache(10);
+    this.apiClient.setResourceCache(resourceCache, new ApiCredentials(1, "secret"));
+    try {
+      // Perform the test
+      WebcastResource webcastResource = this.apiClient.getWebcast(channelId, webcastId);
+      WebcastResource revalidatedWebcastResource = this.apiClient.getWebcast(channelId, webcastId);
+
+      this.mockReportingApiService.verify();
+      assertThat(webcastResource, notNullValue());
+      assertThat(revalidatedWebcastResource, sameInstance(webcastResource));
+      assertThat(resourceCache.getMissCount(), is(1L));
+      assertThat(resourceCache.getRevalidationCount(), is(1L));
+      assertThat(resourceCache.getHitCount(), is(0L));
+    } finally {
+      this.apiClient.setResourceCache(null, null);
+    }
+  }
+
+  /**
+   * Tests {@link SpringApiClientImpl#getWebcast} when a resource cache is configured, in the case where the requested
+   * webcast is cached, and still fresh according to the Cache-Control max-age directive of the response it was
+   * returned in. The cached resource should be returned without making a request.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void getWebcastWhenCachedAndFresh() throws Exception {
+    int channelId = 1;
+    int webcastId = 2;
+    String expectedTemplateRequestUrl = this.apiClient.getApiServiceBaseUri() + WebcastResource.RELATIVE_URI_TEMPLATE;
+    String expectedRequestUrl = new UriTemplate(expectedTemplateRequestUrl).expand(channelId, webcastId).toString();
+
+    // Configure mock API service to respond to the one and only expected API call
+    Resource responseBody = new ClassPathResource(
+        "SpringApiClientImplTest.getWebcastExistsFullyPopulated-response.xml", this.getClass());
+    HttpHeaders responseHeaders = new HttpHeaders();
+    responseHeaders.setCacheControl("private, max-age=60");
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withSuccess(responseBody, MediaType.APPLICATION_XML).headers(responseHeaders));
+
+    HttpResourceCache resourceCache = new HttpResourceCache(10);
+    this.apiClient.setResourceCache(resourceCache, new ApiCredentials(1, "secret"));
+    try {
+      // Perform the test
+      WebcastResource webcastResource = this.apiClient.getWebcast(channelId, webcastId);
+      WebcastResource cachedWebcastResource = this.apiClient.getWebcast(channelId, webcastId);
+
+      this.mockReportingApiService.verify();
+      assertThat(cachedWebcastResource, sameInstance(webcastResource));
+      assertThat(resourceCache.getMissCount(), is(1L));
+      assertThat(resourceCache.getHitCount(), is(1L));
+      assertThat(resourceCache.size(), is(1));
+    } finally {
+      this.apiClient.setResourceCache(null, null);
+    }
+  }
+
   /**
    * Tests {@link SpringApiClientImpl#getWebcastRegistrationsForWebcast} when the request is for the first page of all
    * the registrations for an identified webcast (no filter criteria is specified in the request), and none exist.
@@ -1497,6 +1595,47 @@ public class SpringApiClientImplIntegrationTest {
     assertThat(webcastViewingsResource.getLinks(), hasSize(0));
   }
 
+  /**
+   * Tests the streaming variant of {@link SpringApiClientImpl#getWebcastViewingsForWebcast} when the response contains
+   * more than a pageful of viewings, and hence a next page link. Each viewing should be passed to the supplied handler,
+   * unmarshalled identically to the non-streaming variant, and the next page link returned.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void getWebcastViewingsForWebcastStreamedWhenMultipleViewingsAndNextPage() throws Exception {
+    int channelId = 1;
+    int webcastId = 2;
+    String expectedTemplateRequestUrl = this.apiClient.getApiServiceBaseUri()
+        + WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE;
+    String expectedRequestUrl = new UriTemplate(expectedTemplateRequestUrl).expand(channelId, webcastId).toString();
+
+    // Configure mock API service to respond to API call with a canned collection of API resources read from file
+    Resource responseBody = new ClassPathResource(
+        "SpringApiClientImplTest.getWebcastViewingsForWebcastWhenMultipleViewingsAndNextPage-response.xml",
+        this.getClass());
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withSuccess(responseBody, MediaType.APPLICATION_XML));
+
+    // Perform the test
+    final List<WebcastViewingResource> webcastViewings = new ArrayList<>();
+    Link nextPageLink = this.apiClient.getWebcastViewingsForWebcast(channelId, webcastId, null, null, null,
+        new ResourceCallbackHandler<WebcastViewingResource>() {
+          @Override
+          public void processResource(WebcastViewingResource resource) {
+            webcastViewings.add(resource);
+          }
+        });
+
+    this.mockReportingApiService.verify();
+    assertThat(webcastViewings, hasSize(2));
+    WebcastViewingsResource expectedWebcastViewingsResource =
+        (WebcastViewingsResource) this.xstream.fromXML(responseBody.getInputStream());
+    // Relies on overridden WebcastViewingResource.equals() to test for equality by value
+    assertThat(webcastViewings.get(0), is(expectedWebcastViewingsResource.getWebcastViewings().get(0)));
+    assertThat(nextPageLink, is(Links.findNextPageLink(expectedWebcastViewingsResource.getLinks())));
+  }
+
   private static PageCriteria createPageCriteria(Integer pageSize, String nextPageUrl) {
     return new PageCriteria(pageSize, new Link(nextPageUrl, LinkRelationType.next.name()));
   }
@@ -1506,6 +1645,207 @@ public class SpringApiClientImplIntegrationTest {
         + "</code><message>" + apiError.getMessage() + "</message></error>";
   }
 
+  /**
+   * Tests {@link SpringApiClientImpl#getWebcastViewingsForChannel} when a circuit breaker is configured, in the case
+   * where the API service returns server errors. Once enough calls have failed, the endpoint's circuit, identified by
+   * its relative URI template irrespective of request params, should open and subsequent calls should be rejected
+   * without making a request.
+   */
+  @Test
+  public void getWebcastViewingsForChannelWhenCircuitBreakerOpens() {
+    int channelId = 1;
+    int pageSize = 2;
+    String expectedRequestUrl = new UriTemplate(this.apiClient.getApiServiceBaseUri()
+        + WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE).expand(channelId) + "?pageSize=" + pageSize;
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withServerError());
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withServerError());
+
+    CircuitBreaker circuitBreaker = CircuitBreaker.builder().windowSize(2).minCalls(2).build();
+    this.apiClient.setCircuitBreaker(circuitBreaker);
+    try {
+      for (int i = 0; i < 2; i++) {
+        try {
+          this.apiClient.getWebcastViewingsForChannel(channelId, null, null, new PageCriteria(pageSize));
+          fail("Expected exception to be thrown.");
+        } catch (ApiErrorResponseException e) {
+          assertThat(e.getStatusCode(), is(HttpStatus.INTERNAL_SERVER_ERROR.value()));
+        }
+      }
+      assertThat(circuitBreaker.getState(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE),
+          is(CircuitBreaker.State.OPEN));
+
+      try {
+        this.apiClient.getWebcastViewingsForChannel(channelId, null, null, new PageCriteria(pageSize));
+        fail("Expected exception to be thrown.");
+      } catch (CircuitBreakerOpenException e) {
+        assertThat(e.getEndpoint(), is(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE));
+      }
+      this.mockReportingApiService.verify();
+    } finally {
+      this.apiClient.setCircuitBreaker(null);
+    }
+  }
+
+  /**
+   * Tests {@link SpringApiClientImpl#getWebcastViewingsForChannel} when a circuit breaker and rate limiter are
+   * configured, in the case where the endpoint's circuit is half-open and the calling thread is interrupted waiting for
+   * a rate limit permit. The circuit breaker permit acquired for the call, which isn't made, should be returned, so
+   * that a subsequent trial call is allowed and closes the circuit.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void getWebcastViewingsForChannelWhenCircuitHalfOpenAndInterruptedWaitingForRateLimit() throws Exception {
+    int channelId = 1;
+    String expectedRequestUrl = new UriTemplate(this.apiClient.getApiServiceBaseUri()
+        + WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE).expand(channelId).toString();
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withServerError());
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withSuccess("<webcastViewings/>", MediaType.APPLICATION_XML));
+
+    CircuitBreaker circuitBreaker =
+        CircuitBreaker.builder().windowSize(1).minCalls(1).openDurationMillis(1).halfOpenCalls(1).build();
+    this.apiClient.setCircuitBreaker(circuitBreaker);
+    try {
+      try {
+        this.apiClient.getWebcastViewingsForChannel(channelId, null, null, null);
+        fail("Expected exception to be thrown.");
+      } catch (ApiErrorResponseException e) {
+        assertThat(circuitBreaker.getState(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE),
+            is(CircuitBreaker.State.OPEN));
+      }
+      Thread.sleep(10);
+
+      this.apiClient.setRateLimiter(new TokenBucketRateLimiter(1, 1, true), "key");
+      Thread.currentThread().interrupt();
+      try {
+        this.apiClient.getWebcastViewingsForChannel(channelId, null, null, null);
+        fail("Expected exception to be thrown.");
+      } catch (ApiClientException e) {
+        assertThat(Thread.interrupted(), is(true));
+        assertThat(circuitBreaker.getState(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE),
+            is(CircuitBreaker.State.HALF_OPEN));
+      }
+      this.apiClient.setRateLimiter(null, null);
+
+      this.apiClient.getWebcastViewingsForChannel(channelId, null, null, null);
+
+      assertThat(circuitBreaker.getState(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE),
+          is(CircuitBreaker.State.CLOSED));
+      this.mockReportingApiService.verify();
+    } finally {
+      this.apiClient.setRateLimiter(null, null);
+      this.apiClient.setCircuitBreaker(null);
+    }
+  }
+
+  /**
+   * Tests {@link SpringApiClientImpl#getWebcastViewingsForChannel} when a circuit breaker is configured, in the case
+   * where the endpoint's circuit is half-open and the trial call is rejected by a client-side concurrency limit. The
+   * call doesn't reach the endpoint, so it should neither close the circuit nor use up the trial call, which should be
+   * left to a subsequent call.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void getWebcastViewingsForChannelWhenCircuitHalfOpenAndConcurrencyLimitExceeded() throws Exception {
+    int channelId = 1;
+    String expectedRequestUrl = new UriTemplate(this.apiClient.getApiServiceBaseUri()
+        + WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE).expand(channelId).toString();
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withServerError());
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withSuccess("<webcastViewings/>", MediaType.APPLICATION_XML));
+
+    CircuitBreaker circuitBreaker =
+        CircuitBreaker.builder().windowSize(1).minCalls(1).openDurationMillis(1).halfOpenCalls(1).build();
+    this.apiClient.setCircuitBreaker(circuitBreaker);
+    List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>(this.restTemplate.getInterceptors());
+    try {
+      try {
+        this.apiClient.getWebcastViewingsForChannel(channelId, null, null, null);
+        fail("Expected exception to be thrown.");
+      } catch (ApiErrorResponseException e) {
+        assertThat(circuitBreaker.getState(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE),
+            is(CircuitBreaker.State.OPEN));
+      }
+      Thread.sleep(10);
+
+      List<ClientHttpRequestInterceptor> rejectingInterceptors = new ArrayList<>(interceptors);
+      rejectingInterceptors.add(new ClientHttpRequestInterceptor() {
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+          throw new ConcurrencyLimitExceededException(1, 0);
+        }
+      });
+      this.restTemplate.setInterceptors(rejectingInterceptors);
+      try {
+        this.apiClient.getWebcastViewingsForChannel(channelId, null, null, null);
+        fail("Expected exception to be thrown.");
+      } catch (ConcurrencyLimitExceededException e) {
+        assertThat(circuitBreaker.getState(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE),
+            is(CircuitBreaker.State.HALF_OPEN));
+      }
+      this.restTemplate.setInterceptors(interceptors);
+
+      this.apiClient.getWebcastViewingsForChannel(channelId, null, null, null);
+
+      assertThat(circuitBreaker.getState(WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE),
+          is(CircuitBreaker.State.CLOSED));
+      this.mockReportingApiService.verify();
+    } finally {
+      this.restTemplate.setInterceptors(interceptors);
+      this.apiClient.setCircuitBreaker(null);
+    }
+  }
+
+  /**
+   * Tests the streaming variant of {@link SpringApiClientImpl#getWebcastViewingsForWebcast} when a circuit breaker is
+   * configured, in the case where the caller's handler is slow to process each resource. The time spent in the handler
+   * should be excluded from the latency of the call, so the call isn't recorded as slow.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void getWebcastViewingsForWebcastStreamedWhenCircuitBreakerAndSlowHandler() throws Exception {
+    int channelId = 1;
+    int webcastId = 2;
+    String expectedRequestUrl = new UriTemplate(this.apiClient.getApiServiceBaseUri()
+        + WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE).expand(channelId, webcastId).toString();
+    Resource responseBody = new ClassPathResource(
+        "SpringApiClientImplTest.getWebcastViewingsForWebcastWhenMultipleViewingsAndNextPage-response.xml",
+        this.getClass());
+    this.mockReportingApiService.expect(method(HttpMethod.GET)).andExpect(requestTo(expectedRequestUrl)).andRespond(
+        withSuccess(responseBody, MediaType.APPLICATION_XML));
+
+    CircuitBreaker circuitBreaker = CircuitBreaker.builder().windowSize(1).minCalls(1).slowCallRateThreshold(1)
+        .slowCallDurationMillis(500).build();
+    this.apiClient.setCircuitBreaker(circuitBreaker);
+    try {
+      this.apiClient.getWebcastViewingsForWebcast(channelId, webcastId, null, null, null,
+          new ResourceCallbackHandler<WebcastViewingResource>() {
+            @Override
+            public void processResource(WebcastViewingResource resource) {
+              try {
+                Thread.sleep(300);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          });
+
+      assertThat(circuitBreaker.getState(WebcastViewingsResource.FOR_WEBCAST_RELATIVE_URI_TEMPLATE),
+          is(CircuitBreaker.State.CLOSED));
+      this.mockReportingApiService.verify();
+    } finally {
+      this.apiClient.setCircuitBreaker(null);
+    }
+  }
+
   /**
    * Configures the {@link XStream} instance the test uses to unamrshall (deserialise) canned API response payloads.
    */
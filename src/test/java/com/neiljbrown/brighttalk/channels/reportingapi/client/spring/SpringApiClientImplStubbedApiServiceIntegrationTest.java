@@ -17,10 +17,15 @@ package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.junit.Assert.*;
 
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +40,7 @@ import org.springframework.web.client.RestTemplate;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.common.Log4jNotifier;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.http.client.IdleConnectionEvictor;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.spring.AppConfig;
 import com.neiljbrown.brighttalk.channels.reportingapi.client.spring.SpringApiClientImpl;
@@ -60,6 +66,13 @@ public class SpringApiClientImplStubbedApiServiceIntegrationTest {
   @Autowired
   private SpringApiClientImpl apiClient;
 
+  /** The pool of connections used by the production instance of the HTTP client */
+  @Autowired
+  private PoolingHttpClientConnectionManager connectionManager;
+
+  @Value("${httpClient.connectionPool.maxPerRoute}")
+  private int connectionPoolMaxPerRoute;
+
   // Enviroment specific API service props used by injected SpringApiClientImpl instance for reuse when initialising
   // the mock server
   @Value("${apiService.protocol}")
@@ -146,6 +159,35 @@ public class SpringApiClientImplStubbedApiServiceIntegrationTest {
     WireMock.verify(getRequestedFor(urlEqualTo(expectedRequestUrl)).withHeader("Accept-Encoding", matching(".*gzip.*")));
   }
 
+  /**
+   * Tests that the API client's HTTP client uses the configured pool of connections - returning the connection used to
+   * make an API call to the pool for reuse once the call completes - and that idle connections are evicted from the
+   * pool.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void connectionPooling() throws Exception {
+    String expectedRequestUrl = ChannelsResource.MY_CHANNELS_RELATIVE_URI_TEMPLATE;
+
+    WireMock.stubFor(get(urlEqualTo(expectedRequestUrl)).willReturn(
+        aResponse().withStatus(200).withHeader("Content-Type", MediaType.APPLICATION_XML.toString()).withBody(
+            "<channels/>")));
+
+    this.apiClient.getMyChannels(null);
+
+    HttpRoute route =
+        new HttpRoute(new HttpHost(this.apiServiceHostName, this.apiServicePort, this.apiServiceProtocol));
+    PoolStats routeStats = this.connectionManager.getStats(route);
+    assertThat(routeStats.getMax(), is(this.connectionPoolMaxPerRoute));
+    assertThat(routeStats.getLeased(), is(0));
+    assertThat(routeStats.getAvailable(), is(1));
+
+    Thread.sleep(10);
+    new IdleConnectionEvictor(this.connectionManager, 1, 1000).evictConnections();
+    assertThat(this.connectionManager.getStats(route).getAvailable(), is(0));
+  }
+
   /**
    * Creates a WireMockServer that listens on the configured host and port and initialises the corresponding property.
    */
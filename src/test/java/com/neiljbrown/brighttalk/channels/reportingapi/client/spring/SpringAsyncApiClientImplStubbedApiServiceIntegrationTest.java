@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.spring;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.web.util.UriTemplate;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.common.Log4jNotifier;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelsResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+
+/**
+ * Integration tests for {@link SpringAsyncApiClientImpl}, which stub-out the API service.
+ * <p>
+ * As for {@link SpringApiClientImplStubbedApiServiceIntegrationTest}, the tests are implemented with a stubbed API
+ * service (using WireMock), so as to additionally test that the class' configured non-blocking HTTP client behaves as
+ * expected.
+ * 
+ * @author Neil Brown
+ * @see SpringApiClientImplStubbedApiServiceIntegrationTest
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = { AppConfig.class })
+public class SpringAsyncApiClientImplStubbedApiServiceIntegrationTest {
+
+  /** Max time in seconds to wait for the result of an API call. */
+  private static final long API_CALL_TIMEOUT = 5;
+
+  /** Instance of class under test, configured with production instance of AsyncRestTemplate */
+  @Autowired
+  private SpringAsyncApiClientImpl apiClient;
+
+  // Enviroment specific API service props used by injected SpringAsyncApiClientImpl instance for reuse when
+  // initialising the mock server
+  @Value("${apiService.hostName}")
+  private String apiServiceHostName;
+  @Value("${apiService.port}")
+  private int apiServicePort;
+
+  private WireMockServer wireMockServer;
+
+  /**
+   * @throws Exception If an unexpected exception occurs.
+   */
+  @Before
+  public void setUp() throws Exception {
+    if (this.wireMockServer == null) {
+      this.wireMockServer =
+          new WireMockServer(wireMockConfig().bindAddress(this.apiServiceHostName).port(this.apiServicePort).notifier(
+              new Log4jNotifier()));
+      WireMock.configureFor(this.apiServiceHostName, this.apiServicePort);
+    }
+    this.wireMockServer.start();
+  }
+
+  @After
+  public void teardown() {
+    this.wireMockServer.stop();
+  }
+
+  /**
+   * Tests {@link SpringAsyncApiClientImpl#getMyChannels} when the API user has zero channels.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void getMyChannelsWhenZeroChannels() throws Exception {
+    String expectedRequestUrl = ChannelsResource.MY_CHANNELS_RELATIVE_URI_TEMPLATE;
+
+    WireMock.stubFor(get(urlEqualTo(expectedRequestUrl)).willReturn(
+        aResponse().withStatus(200).withHeader("Content-Type", MediaType.APPLICATION_XML.toString()).withBody(
+            "<channels/>")));
+
+    ChannelsResource channelsResource = this.apiClient.getMyChannels(null).get(API_CALL_TIMEOUT, TimeUnit.SECONDS);
+
+    assertThat(channelsResource, notNullValue());
+    assertThat(channelsResource.getChannels(), hasSize(0));
+    assertThat(channelsResource.getLinks(), hasSize(0));
+  }
+
+  /**
+   * Tests that the asynchronous API client performs preemptive basic authentication, and sends the same default
+   * request headers as the blocking API client.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void preemptiveBasicAuthenticationAndDefaultHeaders() throws Exception {
+    String expectedRequestUrl = ChannelsResource.MY_CHANNELS_RELATIVE_URI_TEMPLATE;
+
+    WireMock.stubFor(get(urlEqualTo(expectedRequestUrl)).willReturn(
+        aResponse().withStatus(200).withHeader("Content-Type", MediaType.APPLICATION_XML.toString()).withBody(
+            "<channels/>")));
+
+    this.apiClient.getMyChannels(null).get(API_CALL_TIMEOUT, TimeUnit.SECONDS);
+
+    WireMock.verify(getRequestedFor(urlEqualTo(expectedRequestUrl)).withHeader("Authorization", matching("Basic.*"))
+        .withHeader("Api-Client", equalTo(SpringAsyncApiClientImpl.class.getCanonicalName())));
+  }
+
+  /**
+   * Tests that when the API returns an error response, the returned future fails with the same
+   * {@link ApiErrorResponseException} as would be thrown by the blocking API client.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void getWebcastWhenApiErrorResponse() throws Exception {
+    int channelId = 1;
+    int webcastId = 2;
+    String expectedRequestUrl = new UriTemplate(WebcastResource.RELATIVE_URI_TEMPLATE).expand(channelId, webcastId)
+        .toString();
+
+    WireMock.stubFor(get(urlEqualTo(expectedRequestUrl)).willReturn(
+        aResponse().withStatus(404).withHeader("Content-Type", MediaType.APPLICATION_XML.toString()).withBody(
+            "<?xml version='1.0' encoding='UTF-8'?><error><code>WebcastNotFound</code><message>Webcast not found."
+                + "</message></error>")));
+
+    try {
+      this.apiClient.getWebcast(channelId, webcastId).get(API_CALL_TIMEOUT, TimeUnit.SECONDS);
+      fail("Expected an exception to be thrown.");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(ApiErrorResponseException.class));
+      ApiErrorResponseException cause = (ApiErrorResponseException) e.getCause();
+      assertThat(cause.getStatusCode(), is(404));
+      assertThat(cause.getApiError().getCode(), is("WebcastNotFound"));
+    }
+  }
+
+  /**
+   * Tests that multiple API calls can be in progress concurrently, and each completes with its own response.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void getWebcastWhenMultipleConcurrentCalls() throws Exception {
+    int channelId = 1;
+    int noOfCalls = 50;
+    for (int webcastId = 1; webcastId <= noOfCalls; webcastId++) {
+      String requestUrl = new UriTemplate(WebcastResource.RELATIVE_URI_TEMPLATE).expand(channelId, webcastId)
+          .toString();
+      WireMock.stubFor(get(urlEqualTo(requestUrl)).willReturn(
+          aResponse().withStatus(200).withHeader("Content-Type", MediaType.APPLICATION_XML.toString()).withBody(
+              "<webcast id=\"" + webcastId + "\"/>").withFixedDelay(100)));
+    }
+
+    List<ListenableFuture<WebcastResource>> futures = new ArrayList<>();
+    for (int webcastId = 1; webcastId <= noOfCalls; webcastId++) {
+      futures.add(this.apiClient.getWebcast(channelId, webcastId));
+    }
+    List<WebcastResource> webcasts = Futures.allAsList(futures).get(API_CALL_TIMEOUT, TimeUnit.SECONDS);
+
+    assertThat(webcasts, hasSize(noOfCalls));
+    for (int i = 0; i < noOfCalls; i++) {
+      assertThat(webcasts.get(i).getId(), is(i + 1));
+    }
+  }
+}
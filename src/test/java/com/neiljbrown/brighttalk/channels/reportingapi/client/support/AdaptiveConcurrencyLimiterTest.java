@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ConcurrencyLimitExceededException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.AdaptiveConcurrencyLimiter.Outcome;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.support.AdaptiveConcurrencyLimiter.Permit;
+
+/**
+ * Unit tests for {@link AdaptiveConcurrencyLimiter}.
+ * 
+ * @author Neil Brown
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+  private FakeTicker ticker;
+  private AdaptiveConcurrencyLimiter limiter;
+
+  @Before
+  public void setUp() {
+    this.ticker = new FakeTicker();
+    this.limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 0.5, 2.0, 0, this.ticker);
+  }
+
+  /**
+   * Tests that the limit is increased additively while it's fully used and the latency of calls stays flat.
+   */
+  @Test
+  public void testReleaseWhenLimitUsedAndLatencyFlat() {
+    // Each round of calls that fully uses the limit increases it by a fraction of one
+    for (int round = 0; round < 4; round++) {
+      List<Permit> permits = this.acquire(this.limiter.getLimit());
+      this.ticker.advance(100, TimeUnit.MILLISECONDS);
+      this.release(permits, Outcome.SUCCESS);
+    }
+
+    assertThat(this.limiter.getLimit(), is(5));
+    assertThat(this.limiter.getInFlight(), is(0));
+
+    // The limit is never increased above the max
+    for (int round = 0; round < 20; round++) {
+      this.release(this.acquire(this.limiter.getLimit()), Outcome.SUCCESS);
+    }
+    assertThat(this.limiter.getLimit(), is(10));
+  }
+
+  /**
+   * Tests that the limit isn't increased when it isn't being fully used.
+   */
+  @Test
+  public void testReleaseWhenLimitNotUsed() {
+    for (int i = 0; i < 10; i++) {
+      this.limiter.release(this.limiter.acquire(), Outcome.SUCCESS);
+    }
+
+    assertThat(this.limiter.getLimit(), is(4));
+  }
+
+  /**
+   * Tests that the limit is decreased multiplicatively when the API service reports it's overloaded, but only once
+   * for a burst of calls which overlapped the same period of overload.
+   */
+  @Test
+  public void testReleaseWhenOverloaded() {
+    List<Permit> permits = this.acquire(4);
+
+    this.release(permits, Outcome.OVERLOADED);
+    assertThat(this.limiter.getLimit(), is(2));
+
+    this.ticker.advance(1, TimeUnit.MILLISECONDS);
+    this.limiter.release(this.limiter.acquire(), Outcome.OVERLOADED);
+    assertThat(this.limiter.getLimit(), is(1));
+
+    // The limit is never decreased below the min
+    this.ticker.advance(1, TimeUnit.MILLISECONDS);
+    this.limiter.release(this.limiter.acquire(), Outcome.OVERLOADED);
+    assertThat(this.limiter.getLimit(), is(1));
+  }
+
+  /**
+   * Tests that the limit is decreased when the latency of a successful call spikes above the tolerance of the baseline
+   * latency, and that failures which don't indicate overload don't affect the limit.
+   */
+  @Test
+  public void testReleaseWhenLatencySpike() {
+    this.limiter.release(this.limiter.acquire(), Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(100));
+    this.limiter.release(this.limiter.acquire(), Outcome.IGNORED, TimeUnit.MILLISECONDS.toNanos(1000));
+    assertThat(this.limiter.getLimit(), is(4));
+
+    this.limiter.release(this.limiter.acquire(), Outcome.SUCCESS, TimeUnit.MILLISECONDS.toNanos(250));
+
+    assertThat(this.limiter.getLimit(), is(2));
+  }
+
+  /**
+   * Tests that a call is rejected when the limit has been reached and a permit doesn't become available within the
+   * max queue wait.
+   */
+  @Test
+  public void testAcquireWhenLimitReached() {
+    this.acquire(4);
+
+    try {
+      this.limiter.acquire();
+      fail("Expected exception to be thrown.");
+    } catch (ConcurrencyLimitExceededException e) {
+      assertThat(e.getLimit(), is(4));
+    }
+
+    assertThat(this.limiter.getRejectedCount(), is(1L));
+    assertThat(this.limiter.getInFlight(), is(4));
+  }
+
+  /**
+   * Tests that a call which is queued because the limit has been reached acquires a permit once one is released.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testAcquireWhenQueued() throws Exception {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 0.5, 2.0, 10000);
+    Permit permit = limiter.acquire();
+    Thread queuedCaller = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        limiter.release(limiter.acquire(), Outcome.SUCCESS);
+      }
+    });
+    queuedCaller.start();
+
+    limiter.release(permit, Outcome.SUCCESS);
+    queuedCaller.join(5000);
+
+    assertThat(queuedCaller.isAlive(), is(false));
+    assertThat(limiter.getInFlight(), is(0));
+    assertThat(limiter.getRejectedCount(), is(0L));
+  }
+
+  private List<Permit> acquire(int count) {
+    List<Permit> permits = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      permits.add(this.limiter.acquire());
+    }
+    return permits;
+  }
+
+  private void release(List<Permit> permits, Outcome outcome) {
+    for (Permit permit : permits) {
+      this.limiter.release(permit, outcome);
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.CircuitBreakerOpenException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+
+/**
+ * Unit tests for {@link CircuitBreaker}.
+ * 
+ * @author Neil Brown
+ */
+public class CircuitBreakerTest {
+
+  private static final String ENDPOINT = WebcastViewingsResource.FOR_CHANNEL_RELATIVE_URI_TEMPLATE;
+  private static final long FAST_CALL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long SLOW_CALL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private FakeTicker ticker;
+  private CircuitBreaker circuitBreaker;
+
+  @Before
+  public void setUp() {
+    this.ticker = new FakeTicker();
+    this.circuitBreaker = CircuitBreaker.builder().windowSize(4).minCalls(4).failureRateThreshold(0.5)
+        .slowCallRateThreshold(0.75).slowCallDurationMillis(10000).openDurationMillis(30000).halfOpenCalls(2)
+        .build(this.ticker);
+  }
+
+  /**
+   * Tests that the circuit opens once the proportion of failed calls in the window reaches the threshold, and then
+   * rejects calls until the open duration has elapsed. Failures of other endpoints don't affect the circuit.
+   */
+  @Test
+  public void testOpenWhenFailureRateThresholdReached() {
+    this.call(ENDPOINT, null, FAST_CALL_NANOS);
+    this.call(ENDPOINT, serverError(), FAST_CALL_NANOS);
+    this.call(ENDPOINT, null, FAST_CALL_NANOS);
+    this.call(WebcastResource.RELATIVE_URI_TEMPLATE, serverError(), FAST_CALL_NANOS);
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.CLOSED));
+
+    this.call(ENDPOINT, new ApiClientException(new SocketTimeoutException()), FAST_CALL_NANOS);
+
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.OPEN));
+    assertThat(this.circuitBreaker.getState(WebcastResource.RELATIVE_URI_TEMPLATE), is(CircuitBreaker.State.CLOSED));
+    this.ticker.advance(10, TimeUnit.SECONDS);
+    try {
+      this.circuitBreaker.acquire(ENDPOINT);
+      fail("Expected exception to be thrown.");
+    } catch (CircuitBreakerOpenException e) {
+      assertThat(e.getEndpoint(), is(ENDPOINT));
+      assertThat(e.getRetryAfterMillis(), is(20000L));
+    }
+  }
+
+  /**
+   * Tests that the circuit opens once the proportion of slow calls in the window reaches the threshold, and that client
+   * (4xx) errors don't count as failures.
+   */
+  @Test
+  public void testOpenWhenSlowCallRateThresholdReached() {
+    this.call(ENDPOINT, clientError(), FAST_CALL_NANOS);
+    this.call(ENDPOINT, clientError(), FAST_CALL_NANOS);
+    this.call(ENDPOINT, clientError(), SLOW_CALL_NANOS);
+    this.call(ENDPOINT, null, SLOW_CALL_NANOS);
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.CLOSED));
+
+    // Evicts the oldest, fast call from the window
+    this.call(ENDPOINT, null, SLOW_CALL_NANOS);
+
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.OPEN));
+  }
+
+  /**
+   * Tests that once the open duration has elapsed the circuit allows a limited no. of trial calls, and closes if they
+   * all succeed.
+   */
+  @Test
+  public void testHalfOpenClosesWhenTrialCallsSucceed() {
+    this.openCircuit();
+    this.ticker.advance(30, TimeUnit.SECONDS);
+
+    CircuitBreaker.Permit permit1 = this.circuitBreaker.acquire(ENDPOINT);
+    CircuitBreaker.Permit permit2 = this.circuitBreaker.acquire(ENDPOINT);
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.HALF_OPEN));
+    try {
+      this.circuitBreaker.acquire(ENDPOINT);
+      fail("Expected exception to be thrown.");
+    } catch (CircuitBreakerOpenException e) {
+      assertThat(e.getRetryAfterMillis(), is(0L));
+    }
+    this.circuitBreaker.release(permit1, null, FAST_CALL_NANOS);
+    this.circuitBreaker.release(permit2, null, FAST_CALL_NANOS);
+
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.CLOSED));
+    // The window is reset on closing
+    this.call(ENDPOINT, serverError(), FAST_CALL_NANOS);
+    this.call(ENDPOINT, serverError(), FAST_CALL_NANOS);
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.CLOSED));
+  }
+
+  /**
+   * Tests that a half-open circuit opens again if a trial call fails.
+   */
+  @Test
+  public void testHalfOpenReopensWhenTrialCallFails() {
+    this.openCircuit();
+    this.ticker.advance(30, TimeUnit.SECONDS);
+
+    this.call(ENDPOINT, serverError(), FAST_CALL_NANOS);
+
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.OPEN));
+    try {
+      this.circuitBreaker.acquire(ENDPOINT);
+      fail("Expected exception to be thrown.");
+    } catch (CircuitBreakerOpenException e) {
+      assertThat(e.getRetryAfterMillis(), is(30000L));
+    }
+  }
+
+  /**
+   * Tests that the outcome of a call whose permit was acquired before the circuit opened is ignored once the circuit is
+   * half-open, rather than being counted as one of the trial calls.
+   */
+  @Test
+  public void testHalfOpenIgnoresReleaseOfPermitAcquiredBeforeOpening() {
+    CircuitBreaker.Permit stalePermit = this.circuitBreaker.acquire(ENDPOINT);
+    this.openCircuit();
+    this.ticker.advance(30, TimeUnit.SECONDS);
+    CircuitBreaker.Permit permit1 = this.circuitBreaker.acquire(ENDPOINT);
+
+    this.circuitBreaker.release(stalePermit, null, FAST_CALL_NANOS);
+    this.circuitBreaker.release(permit1, null, FAST_CALL_NANOS);
+
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.HALF_OPEN));
+    this.call(ENDPOINT, null, FAST_CALL_NANOS);
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.CLOSED));
+  }
+
+  /**
+   * Tests that cancelling a permit acquired when the circuit is half-open returns the trial call, so that the circuit
+   * doesn't reject all further calls.
+   */
+  @Test
+  public void testHalfOpenCancelReturnsTrialCall() {
+    this.openCircuit();
+    this.ticker.advance(30, TimeUnit.SECONDS);
+    this.circuitBreaker.cancel(this.circuitBreaker.acquire(ENDPOINT));
+    this.circuitBreaker.cancel(this.circuitBreaker.acquire(ENDPOINT));
+
+    this.call(ENDPOINT, null, FAST_CALL_NANOS);
+    this.call(ENDPOINT, null, FAST_CALL_NANOS);
+
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.CLOSED));
+  }
+
+  /**
+   * Tests that a call which fails with an {@link Error} is recorded as a failure.
+   */
+  @Test
+  public void testHalfOpenReopensWhenTrialCallThrowsError() {
+    this.openCircuit();
+    this.ticker.advance(30, TimeUnit.SECONDS);
+
+    this.circuitBreaker.release(this.circuitBreaker.acquire(ENDPOINT), new OutOfMemoryError(), FAST_CALL_NANOS);
+
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.OPEN));
+  }
+
+  private void openCircuit() {
+    for (int i = 0; i < 4; i++) {
+      this.call(ENDPOINT, serverError(), FAST_CALL_NANOS);
+    }
+    assertThat(this.circuitBreaker.getState(ENDPOINT), is(CircuitBreaker.State.OPEN));
+  }
+
+  private void call(String endpoint, RuntimeException error, long latencyNanos) {
+    this.circuitBreaker.release(this.circuitBreaker.acquire(endpoint), error, latencyNanos);
+  }
+
+  private static ApiErrorResponseException serverError() {
+    return new ApiErrorResponseException(503, "Service Unavailable", null, null, new byte[0], null);
+  }
+
+  private static ApiErrorResponseException clientError() {
+    return new ApiErrorResponseException(404, "Not Found", null, null, new byte[0], null);
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.SurveyResource;
+
+/**
+ * Unit tests for {@link HedgingApiClient}.
+ * 
+ * @author Neil Brown
+ */
+public class HedgingApiClientTest {
+
+  private static final int SURVEY_ID = 1;
+
+  /** The latency of the API calls used to prime the latencies of an operation, in milliseconds. */
+  private static final long PRIMED_LATENCY_MILLIS = 20;
+
+  private ApiClient mockApiClient;
+  private ExecutorService executor;
+  private HedgingApiClient hedgingApiClient;
+  private SurveyResource survey;
+
+  @Before
+  public void setUp() {
+    this.mockApiClient = EasyMock.createMock(ApiClient.class);
+    // Allow the hedge request to be made while the original request is in progress, rather than serialising them
+    EasyMock.makeThreadSafe(this.mockApiClient, false);
+    this.executor = Executors.newCachedThreadPool();
+    this.hedgingApiClient = new HedgingApiClient(this.mockApiClient, this.executor, 95,
+        HedgingApiClient.MIN_LATENCY_SAMPLES, 0.05);
+    this.survey = new SurveyResource(SURVEY_ID, true, null, null);
+  }
+
+  @After
+  public void tearDown() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Tests that calls aren't hedged until the min no. of latencies have been observed for the operation.
+   */
+  @Test
+  public void testNoHedgeUntilMinLatencySamples() {
+    EasyMock.expect(this.mockApiClient.getSurvey(SURVEY_ID)).andReturn(this.survey)
+        .times(HedgingApiClient.MIN_LATENCY_SAMPLES);
+    EasyMock.replay(this.mockApiClient);
+
+    for (int i = 0; i < HedgingApiClient.MIN_LATENCY_SAMPLES; i++) {
+      assertThat(this.hedgingApiClient.getHedgeDelayNanos("getSurvey"), nullValue());
+      assertThat(this.hedgingApiClient.getSurvey(SURVEY_ID), sameInstance(this.survey));
+    }
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(this.hedgingApiClient.getHedgeDelayNanos("getSurvey"), notNullValue());
+    assertThat(this.hedgingApiClient.getHedgeCount(), is(0L));
+  }
+
+  /**
+   * Tests that when the response to a call isn't received within the hedge delay a hedge request is made via the
+   * wrapped API client, and the resource it returns is returned.
+   */
+  @Test
+  public void testHedgeWhenResponseSlow() {
+    CountDownLatch slowResponse = new CountDownLatch(1);
+    this.expectGetSurvey(PRIMED_LATENCY_MILLIS, HedgingApiClient.MIN_LATENCY_SAMPLES);
+    EasyMock.expect(this.mockApiClient.getSurvey(SURVEY_ID)).andAnswer(this.blockingAnswer(slowResponse));
+    this.expectGetSurvey(0, 1);
+    EasyMock.replay(this.mockApiClient);
+    this.primeLatencies();
+
+    SurveyResource hedgedSurvey = this.hedgingApiClient.getSurvey(SURVEY_ID);
+    slowResponse.countDown();
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(hedgedSurvey, sameInstance(this.survey));
+    assertThat(this.hedgingApiClient.getHedgeCount(), is(1L));
+    assertThat(this.hedgingApiClient.getHedgeWinCount(), is(1L));
+  }
+
+  /**
+   * Tests that the latency of the original request of a hedged call is recorded when it completes, rather than the
+   * latency of the call, which is reduced by hedging.
+   */
+  @Test
+  public void testHedgedCallRecordsLatencyOfOriginalRequest() throws Exception {
+    this.hedgingApiClient = new HedgingApiClient(this.mockApiClient, this.executor, 99,
+        HedgingApiClient.MIN_LATENCY_SAMPLES, 0.05);
+    CountDownLatch slowResponse = new CountDownLatch(1);
+    this.expectGetSurvey(PRIMED_LATENCY_MILLIS, HedgingApiClient.MIN_LATENCY_SAMPLES);
+    EasyMock.expect(this.mockApiClient.getSurvey(SURVEY_ID)).andAnswer(this.blockingAnswer(slowResponse));
+    this.expectGetSurvey(0, 1);
+    EasyMock.replay(this.mockApiClient);
+    this.primeLatencies();
+
+    long startNanos = System.nanoTime();
+    this.hedgingApiClient.getSurvey(SURVEY_ID);
+    Thread.sleep(200);
+    slowResponse.countDown();
+    long originalLatencyNanos = System.nanoTime() - startNanos;
+    this.executor.shutdown();
+    assertTrue("Expected original request to complete.", this.executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    assertThat(this.hedgingApiClient.getHedgeWinCount(), is(1L));
+    assertThat(this.hedgingApiClient.getHedgeDelayNanos("getSurvey"),
+        greaterThanOrEqualTo(originalLatencyNanos - TimeUnit.MILLISECONDS.toNanos(PRIMED_LATENCY_MILLIS)));
+  }
+
+  /**
+   * Tests that once the budget for hedge requests has been spent, slow calls wait for the original request rather than
+   * being hedged, capping the amplification of traffic.
+   */
+  @Test
+  public void testNoHedgeWhenHedgeBudgetSpent() {
+    this.expectGetSurvey(PRIMED_LATENCY_MILLIS, HedgingApiClient.MIN_LATENCY_SAMPLES);
+    // The first slow call is hedged, spending the budget earned by the previous 20 calls, at a ratio of 0.05
+    this.expectGetSurvey(100, 1);
+    this.expectGetSurvey(0, 1);
+    // The second slow call isn't hedged
+    this.expectGetSurvey(100, 1);
+    EasyMock.replay(this.mockApiClient);
+    this.primeLatencies();
+
+    assertThat(this.hedgingApiClient.getSurvey(SURVEY_ID), sameInstance(this.survey));
+    assertThat(this.hedgingApiClient.getSurvey(SURVEY_ID), sameInstance(this.survey));
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(this.hedgingApiClient.getHedgeCount(), is(1L));
+  }
+
+  /**
+   * Tests that a hedge request which loses to the original request is left to complete, rather than interrupted, so
+   * that the wrapped client doesn't fail it and record an error for the endpoint.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testLosingHedgeNotInterrupted() throws Exception {
+    final CountDownLatch slowResponse = new CountDownLatch(1);
+    final AtomicBoolean hedgeInterrupted = new AtomicBoolean();
+    this.expectGetSurvey(PRIMED_LATENCY_MILLIS, HedgingApiClient.MIN_LATENCY_SAMPLES);
+    this.expectGetSurvey(100, 1);
+    EasyMock.expect(this.mockApiClient.getSurvey(SURVEY_ID)).andAnswer(new IAnswer<SurveyResource>() {
+      @Override
+      public SurveyResource answer() throws Throwable {
+        try {
+          slowResponse.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          hedgeInterrupted.set(true);
+          throw e;
+        }
+        return HedgingApiClientTest.this.survey;
+      }
+    });
+    EasyMock.replay(this.mockApiClient);
+    this.primeLatencies();
+
+    assertThat(this.hedgingApiClient.getSurvey(SURVEY_ID), sameInstance(this.survey));
+    Thread.sleep(100);
+    slowResponse.countDown();
+    this.executor.shutdown();
+    assertTrue("Expected hedge request to complete.", this.executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(this.hedgingApiClient.getHedgeCount(), is(1L));
+    assertThat(this.hedgingApiClient.getHedgeWinCount(), is(0L));
+    assertThat(hedgeInterrupted.get(), is(false));
+  }
+
+  private void primeLatencies() {
+    for (int i = 0; i < HedgingApiClient.MIN_LATENCY_SAMPLES; i++) {
+      this.hedgingApiClient.getSurvey(SURVEY_ID);
+    }
+  }
+
+  private void expectGetSurvey(final long latencyMillis, int times) {
+    EasyMock.expect(this.mockApiClient.getSurvey(SURVEY_ID)).andAnswer(new IAnswer<SurveyResource>() {
+      @Override
+      public SurveyResource answer() throws Throwable {
+        Thread.sleep(latencyMillis);
+        return HedgingApiClientTest.this.survey;
+      }
+    }).times(times);
+  }
+
+  private IAnswer<SurveyResource> blockingAnswer(final CountDownLatch response) {
+    return new IAnswer<SurveyResource>() {
+      @Override
+      public SurveyResource answer() throws Throwable {
+        response.await(5, TimeUnit.SECONDS);
+        return HedgingApiClientTest.this.survey;
+      }
+    };
+  }
+}
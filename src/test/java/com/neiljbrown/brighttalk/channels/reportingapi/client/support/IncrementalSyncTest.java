@@ -0,0 +1,227 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ResourceCallbackHandler;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscriberResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ChannelSubscribersResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+
+/**
+ * Unit tests for {@link IncrementalSync}, using a {@link FileWatermarkStore}.
+ * 
+ * @author Neil Brown
+ */
+public class IncrementalSyncTest {
+
+  private static final String NEXT_PAGE_URL =
+      "https://api.test.brighttalk.net/v1/channel/1/webcast_viewings?cursor=1234&pageSize=2";
+  private static final long OVERLAP_MILLIS = 60000;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private ApiClient mockApiClient;
+  private Path watermarkFile;
+
+  @Before
+  public void setUp() throws Exception {
+    this.mockApiClient = EasyMock.createMock(ApiClient.class);
+    this.watermarkFile = this.tempFolder.getRoot().toPath().resolve("watermarks.properties");
+  }
+
+  /**
+   * Tests the first sync of a collection, which spans multiple pages. The whole collection should be requested, and
+   * the latest last updated date of all the resources should be persisted as the new watermark.
+   */
+  @Test
+  public void testSyncWhenFirstSyncMultiplePages() {
+    Date lastUpdated1 = new Date(1000000);
+    Date lastUpdated2 = new Date(3000000);
+    Date lastUpdated3 = new Date(2000000);
+    WebcastViewingsResource page1 = new WebcastViewingsResource(ImmutableList.of(
+        createWebcastViewing(1, lastUpdated1), createWebcastViewing(2, lastUpdated2)),
+        ImmutableList.of(new Link(NEXT_PAGE_URL, LinkRelationType.next.name())));
+    WebcastViewingsResource page2 =
+        new WebcastViewingsResource(ImmutableList.of(createWebcastViewing(3, lastUpdated3)), null);
+    EasyMock.expect(this.mockApiClient.getWebcastViewingsForChannel(EasyMock.eq(1), EasyMock.<Date>isNull(),
+        EasyMock.<WebcastStatus>isNull(), EasyMock.anyObject(PageCriteria.class))).andReturn(page1).andReturn(page2);
+    EasyMock.replay(this.mockApiClient);
+
+    RecordingHandler handler = new RecordingHandler();
+    IncrementalSync sync = new IncrementalSync(new FileWatermarkStore(this.watermarkFile), OVERLAP_MILLIS);
+    IncrementalSync.Result result =
+        sync.sync(IncrementalSyncEndpoints.webcastViewingsForChannel(this.mockApiClient, 1, null, 2), handler);
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(handler.ids, is((List<Integer>) ImmutableList.of(1, 2, 3)));
+    assertThat(result.getSince(), nullValue());
+    assertThat(result.getWatermark(), is(lastUpdated2));
+    assertThat(result.getResourceCount(), is(3));
+    assertThat(result.getWatermarkKey(), is("/v1/channel/1/webcast_viewings"));
+    // Watermark should have been persisted
+    assertThat(new FileWatermarkStore(this.watermarkFile).getWatermark(result.getWatermarkKey()), is(lastUpdated2));
+  }
+
+  /**
+   * Tests a sync of a collection which has previously been synchronised. The collection should be requested since the
+   * stored watermark, less the overlap.
+   */
+  @Test
+  public void testSyncWhenPreviouslySynchronised() {
+    String key = "/v1/channel/1/webcast_viewings?webcastStatus=recorded";
+    Date previousWatermark = new Date(5000000);
+    new FileWatermarkStore(this.watermarkFile).setWatermark(key, previousWatermark);
+    Date lastUpdated = new Date(6000000);
+    WebcastViewingsResource page1 =
+        new WebcastViewingsResource(ImmutableList.of(createWebcastViewing(1, lastUpdated)), null);
+    Date expectedSince = new Date(previousWatermark.getTime() - OVERLAP_MILLIS);
+    EasyMock.expect(this.mockApiClient.getWebcastViewingsForChannel(EasyMock.eq(1), EasyMock.eq(expectedSince),
+        EasyMock.eq(WebcastStatus.RECORDED), EasyMock.anyObject(PageCriteria.class))).andReturn(page1);
+    EasyMock.replay(this.mockApiClient);
+
+    FileWatermarkStore watermarkStore = new FileWatermarkStore(this.watermarkFile);
+    IncrementalSync sync = new IncrementalSync(watermarkStore, OVERLAP_MILLIS);
+    IncrementalSync.Result result = sync.sync(IncrementalSyncEndpoints.webcastViewingsForChannel(this.mockApiClient, 1,
+        WebcastStatus.RECORDED, null), new RecordingHandler());
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(result.getSince(), is(expectedSince));
+    assertThat(result.getWatermark(), is(lastUpdated));
+    assertThat(watermarkStore.getWatermark(key), is(lastUpdated));
+  }
+
+  /**
+   * Tests a sync which fails part way through. The stored watermark should not be updated.
+   */
+  @Test
+  public void testSyncWhenHandlerFails() {
+    WebcastViewingsResource page1 = new WebcastViewingsResource(ImmutableList.of(
+        createWebcastViewing(1, new Date(1000000)), createWebcastViewing(2, new Date(2000000))), null);
+    EasyMock.expect(this.mockApiClient.getWebcastViewingsForChannel(EasyMock.eq(1), EasyMock.<Date>isNull(),
+        EasyMock.<WebcastStatus>isNull(), EasyMock.anyObject(PageCriteria.class))).andReturn(page1);
+    EasyMock.replay(this.mockApiClient);
+
+    FileWatermarkStore watermarkStore = new FileWatermarkStore(this.watermarkFile);
+    IncrementalSync sync = new IncrementalSync(watermarkStore, OVERLAP_MILLIS);
+    IncrementalSyncEndpoint<WebcastViewingResource> endpoint =
+        IncrementalSyncEndpoints.webcastViewingsForChannel(this.mockApiClient, 1, null, null);
+    try {
+      sync.sync(endpoint, new ResourceCallbackHandler<WebcastViewingResource>() {
+        @Override
+        public void processResource(WebcastViewingResource resource) {
+          if (resource.getId() == 2) {
+            throw new IllegalStateException("Failed to process resource.");
+          }
+        }
+      });
+      fail("Expected an exception to be thrown.");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+
+    assertThat(watermarkStore.getWatermark(endpoint.getWatermarkKey()), nullValue());
+    assertThat(this.watermarkFile.toFile().exists(), is(false));
+  }
+
+  /**
+   * Tests syncing both the subscribers and the unsubscribes of a channel, after a subscriber has unsubscribed. The
+   * unsubscribe isn't seen by the subscribers endpoint, but is by the unsubscribes endpoint, which requests the
+   * collection using the unsubscribed since filter, and persists the latest unsubscribed date as its watermark.
+   */
+  @Test
+  public void testSyncChannelSubscribersAndUnsubscribes() {
+    Date previousWatermark = new Date(5000000);
+    FileWatermarkStore watermarkStore = new FileWatermarkStore(this.watermarkFile);
+    IncrementalSyncEndpoint<ChannelSubscriberResource> subscribersEndpoint =
+        IncrementalSyncEndpoints.channelSubscribers(this.mockApiClient, 1, null);
+    IncrementalSyncEndpoint<ChannelSubscriberResource> unsubscribesEndpoint =
+        IncrementalSyncEndpoints.channelUnsubscribes(this.mockApiClient, 1, null);
+    watermarkStore.setWatermark(subscribersEndpoint.getWatermarkKey(), previousWatermark);
+    watermarkStore.setWatermark(unsubscribesEndpoint.getWatermarkKey(), previousWatermark);
+    Date expectedSince = new Date(previousWatermark.getTime() - OVERLAP_MILLIS);
+    // Subscriber 2 subscribed before, and unsubscribed after, the previous sync
+    Date unsubscribed = new Date(6000000);
+    ChannelSubscriberResource unsubscriber =
+        new ChannelSubscriberResource(2, new Date(1000000), unsubscribed, null, null, null);
+    EasyMock.expect(this.mockApiClient.getChannelSubscribers(EasyMock.eq(1), EasyMock.<Boolean>isNull(),
+        EasyMock.eq(expectedSince), EasyMock.<Date>isNull(), EasyMock.anyObject(PageCriteria.class))).andReturn(
+        new ChannelSubscribersResource(ImmutableList.<ChannelSubscriberResource>of(), null));
+    EasyMock.expect(this.mockApiClient.getChannelSubscribers(EasyMock.eq(1), EasyMock.eq(Boolean.FALSE),
+        EasyMock.<Date>isNull(), EasyMock.eq(expectedSince), EasyMock.anyObject(PageCriteria.class))).andReturn(
+        new ChannelSubscribersResource(ImmutableList.of(unsubscriber), null));
+    EasyMock.replay(this.mockApiClient);
+
+    IncrementalSync sync = new IncrementalSync(watermarkStore, OVERLAP_MILLIS);
+    final List<ChannelSubscriberResource> unsubscribes = new ArrayList<>();
+    IncrementalSync.Result subscribersResult = sync.sync(subscribersEndpoint,
+        new ResourceCallbackHandler<ChannelSubscriberResource>() {
+          @Override
+          public void processResource(ChannelSubscriberResource resource) {
+            fail("Unexpected subscriber [" + resource + "].");
+          }
+        });
+    IncrementalSync.Result unsubscribesResult = sync.sync(unsubscribesEndpoint,
+        new ResourceCallbackHandler<ChannelSubscriberResource>() {
+          @Override
+          public void processResource(ChannelSubscriberResource resource) {
+            unsubscribes.add(resource);
+          }
+        });
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(subscribersResult.getResourceCount(), is(0));
+    assertThat(unsubscribes, is((List<ChannelSubscriberResource>) ImmutableList.of(unsubscriber)));
+    assertThat(unsubscribesResult.getSince(), is(expectedSince));
+    assertThat(unsubscribesResult.getWatermarkKey(), is("/v1/channel/1/subscribers?subscribed=false"));
+    assertThat(watermarkStore.getWatermark(unsubscribesEndpoint.getWatermarkKey()), is(unsubscribed));
+    assertThat(watermarkStore.getWatermark(subscribersEndpoint.getWatermarkKey()), is(previousWatermark));
+  }
+
+  private static WebcastViewingResource createWebcastViewing(int id, Date lastUpdated) {
+    return new WebcastViewingResource(id, null, null, 0, null, null, null, lastUpdated, null);
+  }
+
+  private static class RecordingHandler implements ResourceCallbackHandler<WebcastViewingResource> {
+    private final List<Integer> ids = new ArrayList<>();
+
+    @Override
+    public void processResource(WebcastViewingResource resource) {
+      this.ids.add(resource.getId());
+    }
+  }
+}
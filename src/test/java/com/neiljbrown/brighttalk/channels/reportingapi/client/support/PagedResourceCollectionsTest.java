@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+
+/**
+ * Unit tests for {@link PagedResourceCollections} and the {@link PagedResourceCollection} it creates.
+ * 
+ * @author Neil Brown
+ */
+public class PagedResourceCollectionsTest {
+
+  private static final String NEXT_PAGE_URL =
+      "https://api.test.brighttalk.net/v1/channel/1/webcast_viewings?cursor=1234&pageSize=2";
+
+  private ApiClient mockApiClient;
+
+  @Before
+  public void setUp() {
+    this.mockApiClient = EasyMock.createMock(ApiClient.class);
+  }
+
+  /**
+   * Tests iterating over all the entries in a collection which spans multiple pages. Every page should be requested
+   * using the same filter params and page size, with secondary pages also using the previous page's next page link.
+   */
+  @Test
+  public void testIteratorWhenMultiplePages() {
+    int channelId = 1;
+    Date since = new Date();
+    WebcastStatus webcastStatus = WebcastStatus.RECORDED;
+    Integer pageSize = 2;
+    Link nextPageLink = new Link(NEXT_PAGE_URL, LinkRelationType.next.name());
+    WebcastViewingsResource page1 = new WebcastViewingsResource(
+        ImmutableList.of(createWebcastViewing(1), createWebcastViewing(2)), ImmutableList.of(nextPageLink));
+    WebcastViewingsResource page2 = new WebcastViewingsResource(ImmutableList.of(createWebcastViewing(3)), null);
+    Capture<PageCriteria> pageCriteria = new Capture<>(CaptureType.ALL);
+    EasyMock.expect(this.mockApiClient.getWebcastViewingsForChannel(EasyMock.eq(channelId), EasyMock.eq(since),
+        EasyMock.eq(webcastStatus), EasyMock.capture(pageCriteria))).andReturn(page1).andReturn(page2);
+    EasyMock.replay(this.mockApiClient);
+
+    List<Integer> viewingIds = new ArrayList<>();
+    for (WebcastViewingResource viewing : PagedResourceCollections.webcastViewingsForChannel(this.mockApiClient,
+        channelId, since, webcastStatus, pageSize)) {
+      viewingIds.add(viewing.getId());
+    }
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(viewingIds, is((List<Integer>) ImmutableList.of(1, 2, 3)));
+    assertThat(pageCriteria.getValues(), hasSize(2));
+    assertThat(pageCriteria.getValues().get(0).getPageSize(), is(pageSize));
+    assertThat(pageCriteria.getValues().get(0).getNextPageLink(), nullValue());
+    assertThat(pageCriteria.getValues().get(1).getPageSize(), is(pageSize));
+    assertThat(pageCriteria.getValues().get(1).getNextPageLink(), is(nextPageLink));
+  }
+
+  /**
+   * Tests that the next page of a collection is only requested once the entries in the current page have been consumed.
+   */
+  @Test
+  public void testIteratorRequestsNextPageLazily() {
+    WebcastViewingsResource page1 = new WebcastViewingsResource(ImmutableList.of(createWebcastViewing(1)),
+        ImmutableList.of(new Link(NEXT_PAGE_URL, LinkRelationType.next.name())));
+    EasyMock.expect(this.mockApiClient.getWebcastViewingsForChannel(EasyMock.eq(1), EasyMock.<Date>isNull(),
+        EasyMock.<WebcastStatus>isNull(), EasyMock.anyObject(PageCriteria.class))).andReturn(page1);
+    EasyMock.replay(this.mockApiClient);
+
+    Iterator<WebcastViewingResource> iterator =
+        PagedResourceCollections.webcastViewingsForChannel(this.mockApiClient, 1, null, null, null).iterator();
+    assertThat(iterator.next().getId(), is(1));
+
+    // Only the first page should have been requested
+    EasyMock.verify(this.mockApiClient);
+  }
+
+  /**
+   * Tests iterating over the pages of a collection when the first page is empty and has no next page link.
+   */
+  @Test
+  public void testPagesWhenSingleEmptyPage() {
+    WebcastViewingsResource page1 = new WebcastViewingsResource(null, null);
+    EasyMock.expect(this.mockApiClient.getWebcastViewingsForWebcast(EasyMock.eq(1), EasyMock.eq(2),
+        EasyMock.<Date>isNull(), EasyMock.<WebcastStatus>isNull(), EasyMock.anyObject(PageCriteria.class))).andReturn(
+        page1);
+    EasyMock.replay(this.mockApiClient);
+
+    PagedResourceCollection<WebcastViewingsResource, WebcastViewingResource> viewings =
+        PagedResourceCollections.webcastViewingsForWebcast(this.mockApiClient, 1, 2, null, null, null);
+    Iterator<WebcastViewingsResource> pages = viewings.pages().iterator();
+
+    assertThat(pages.next(), is(page1));
+    assertThat(pages.hasNext(), is(false));
+    EasyMock.verify(this.mockApiClient);
+  }
+
+  private static WebcastViewingResource createWebcastViewing(int id) {
+    return new WebcastViewingResource(id, null, null, 0, null, null, null, null, null);
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingResource;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+
+/**
+ * Unit tests for {@link PrefetchingPagedResourceCollection}.
+ * 
+ * @author Neil Brown
+ */
+public class PrefetchingPagedResourceCollectionTest {
+
+  private static final String NEXT_PAGE_URL = "https://api.test.brighttalk.net/v1/channel/1/webcast_viewings?cursor=";
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    this.executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Tests iterating over all the entries in a collection which spans multiple pages. The entries should be returned in
+   * the same order as they would be without prefetching.
+   */
+  @Test
+  public void testIteratorWhenMultiplePages() {
+    StubWebcastViewingsCollection collection = new StubWebcastViewingsCollection(3, null);
+
+    List<Integer> viewingIds = new ArrayList<>();
+    for (WebcastViewingResource viewing : new PrefetchingPagedResourceCollection<>(collection, this.executor, 2)) {
+      viewingIds.add(viewing.getId());
+    }
+
+    assertThat(viewingIds, is((List<Integer>) ImmutableList.of(1, 2, 3)));
+  }
+
+  /**
+   * Tests that pages are requested ahead of being consumed, up to, but not exceeding, the configured prefetch depth.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testPagesPrefetchedUpToPrefetchDepth() throws Exception {
+    StubWebcastViewingsCollection collection = new StubWebcastViewingsCollection(5, null);
+    int prefetchDepth = 2;
+
+    Iterator<WebcastViewingsResource> pages =
+        new PrefetchingPagedResourceCollection<>(collection, this.executor, prefetchDepth).pages().iterator();
+    pages.next();
+    Thread.sleep(200);
+
+    // The consumed page, plus the prefetched pages
+    assertThat(collection.requestCount.get(), is(1 + prefetchDepth));
+    ((Closeable) pages).close();
+  }
+
+  /**
+   * Tests that an error which occurs requesting a page in the background is rethrown to the consumer, after the pages
+   * which preceded it.
+   */
+  @Test
+  public void testIteratorWhenRequestForPageFails() {
+    ApiClientException error = new ApiClientException("Test error.");
+    StubWebcastViewingsCollection collection = new StubWebcastViewingsCollection(3, error);
+    Iterator<WebcastViewingsResource> pages =
+        new PrefetchingPagedResourceCollection<>(collection, this.executor, 1).pages().iterator();
+    pages.next();
+    pages.next();
+    try {
+      pages.hasNext();
+      fail("Expected an exception to be thrown.");
+    } catch (ApiClientException e) {
+      assertThat(e, is(error));
+    }
+  }
+
+  /**
+   * Tests that an {@link Error} thrown requesting a page in the background is rethrown to the consumer, rather than
+   * leaving it waiting for the page.
+   */
+  @Test(timeout = 5000)
+  public void testIteratorWhenRequestForPageFailsWithError() {
+    Error error = new Error("Test error.");
+    StubWebcastViewingsCollection collection = new StubWebcastViewingsCollection(2, error);
+    Iterator<WebcastViewingsResource> pages =
+        new PrefetchingPagedResourceCollection<>(collection, this.executor, 1).pages().iterator();
+    pages.next();
+    try {
+      pages.hasNext();
+      fail("Expected an error to be thrown.");
+    } catch (Error e) {
+      assertThat(e, is(error));
+    }
+  }
+
+  /**
+   * Tests that the consumer is signalled with an exception, rather than left waiting, when the background thread
+   * requesting pages is interrupted other than by closing the iterator, e.g. on shutting down the executor.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test(timeout = 5000)
+  public void testIteratorWhenPrefetchingInterrupted() throws Exception {
+    StubWebcastViewingsCollection collection = new StubWebcastViewingsCollection(100, null);
+    Iterator<WebcastViewingsResource> pages =
+        new PrefetchingPagedResourceCollection<>(collection, this.executor, 1).pages().iterator();
+    pages.next();
+
+    this.executor.shutdownNow();
+    assertThat(this.executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+
+    try {
+      while (pages.hasNext()) {
+        pages.next();
+      }
+      fail("Expected an exception to be thrown.");
+    } catch (ApiClientException e) {
+      assertThat(e.getCause(), instanceOf(InterruptedException.class));
+    }
+  }
+
+  /**
+   * Tests that a closed iterator has no more pages, rather than waiting for pages which will never be requested.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test(timeout = 5000)
+  public void testHasNextAfterClose() throws Exception {
+    StubWebcastViewingsCollection collection = new StubWebcastViewingsCollection(100, null);
+    Iterator<WebcastViewingsResource> pages =
+        new PrefetchingPagedResourceCollection<>(collection, this.executor, 1).pages().iterator();
+    pages.next();
+
+    ((Closeable) pages).close();
+
+    assertThat(pages.hasNext(), is(false));
+  }
+
+  /**
+   * Tests that the executor's thread is released when an iterator is closed before all pages have been consumed.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testCloseBeforeAllPagesConsumed() throws Exception {
+    StubWebcastViewingsCollection collection = new StubWebcastViewingsCollection(100, null);
+    Iterator<WebcastViewingResource> iterator =
+        new PrefetchingPagedResourceCollection<>(collection, this.executor, 1).iterator();
+    iterator.next();
+
+    ((Closeable) iterator).close();
+
+    this.executor.shutdown();
+    assertThat(this.executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+  }
+
+  /**
+   * Stub collection of a fixed no. of pages, each containing a single viewing, which records the no. of requests made.
+   */
+  private static class StubWebcastViewingsCollection extends
+      PagedResourceCollection<WebcastViewingsResource, WebcastViewingResource> {
+    private final int pageCount;
+    private final Throwable lastPageError;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    StubWebcastViewingsCollection(int pageCount, Throwable lastPageError) {
+      super(null);
+      this.pageCount = pageCount;
+      this.lastPageError = lastPageError;
+    }
+
+    @Override
+    protected WebcastViewingsResource getPage(PageCriteria pageCriteria) {
+      int pageNo = this.requestCount.incrementAndGet();
+      if (pageNo == this.pageCount && this.lastPageError != null) {
+        throw Throwables.propagate(this.lastPageError);
+      }
+      List<Link> links = pageNo < this.pageCount ?
+          ImmutableList.of(new Link(NEXT_PAGE_URL + pageNo, LinkRelationType.next.name())) : null;
+      return new WebcastViewingsResource(
+          ImmutableList.of(new WebcastViewingResource(pageNo, null, null, 0, null, null, null, null, null)), links);
+    }
+
+    @Override
+    protected List<WebcastViewingResource> getEntries(WebcastViewingsResource page) {
+      return page.getWebcastViewings();
+    }
+
+    @Override
+    protected List<Link> getLinks(WebcastViewingsResource page) {
+      return page.getLinks();
+    }
+  }
+}
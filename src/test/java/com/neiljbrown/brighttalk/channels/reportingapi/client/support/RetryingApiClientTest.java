@@ -0,0 +1,206 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClient;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiErrorResponseException;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.PageCriteria;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.ApiError;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.Link;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastStatus;
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.WebcastViewingsResource;
+
+/**
+ * Unit tests for {@link RetryingApiClient}.
+ * 
+ * @author Neil Brown
+ */
+public class RetryingApiClientTest {
+
+  private static final String NEXT_PAGE_URL =
+      "https://api.test.brighttalk.net/v1/channel/1/webcast_viewings?cursor=1234&pageSize=2";
+
+  private ApiClient mockApiClient;
+  private FakeTicker ticker;
+  private List<Long> delays;
+
+  @Before
+  public void setUp() {
+    this.mockApiClient = EasyMock.createMock(ApiClient.class);
+    this.ticker = new FakeTicker();
+    this.delays = new ArrayList<>();
+  }
+
+  /**
+   * Tests that a call for a page of a collection which fails with a retryable error response is retried using the same
+   * page criteria (cursor), after a jittered delay no greater than the policy's backoff, and the page returned by the
+   * successful attempt is returned.
+   */
+  @Test
+  public void testRetryWhenRetryableErrorResponse() {
+    PageCriteria pageCriteria = new PageCriteria(2, new Link(NEXT_PAGE_URL, LinkRelationType.next.name()));
+    WebcastViewingsResource page = new WebcastViewingsResource(null, null);
+    EasyMock.expect(this.mockApiClient.getWebcastViewingsForChannel(1, null, null, pageCriteria))
+        .andThrow(createErrorResponse(503, null, null)).andThrow(createErrorResponse(500, null, null))
+        .andReturn(page);
+    EasyMock.replay(this.mockApiClient);
+    RetryPolicy retryPolicy = RetryPolicy.builder().initialBackoffMillis(100).build();
+
+    WebcastViewingsResource returnedPage =
+        this.createRetryingApiClient(retryPolicy).getWebcastViewingsForChannel(1, null, null, pageCriteria);
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(returnedPage, sameInstance(page));
+    assertThat(this.delays.size(), is(2));
+    assertTrue(this.delays.get(0) >= 0 && this.delays.get(0) <= 100);
+    assertTrue(this.delays.get(1) >= 0 && this.delays.get(1) <= 200);
+  }
+
+  /**
+   * Tests that the delay requested by the Retry-After header of a 429 error response is honoured.
+   */
+  @Test
+  public void testRetryWhenTooManyRequestsWithRetryAfter() {
+    EasyMock.expect(this.mockApiClient.getWebcastViewingsForChannel(1, null, WebcastStatus.LIVE, null))
+        .andThrow(createErrorResponse(429, "7", null)).andReturn(new WebcastViewingsResource(null, null));
+    EasyMock.replay(this.mockApiClient);
+
+    this.createRetryingApiClient(RetryPolicy.builder().build()).getWebcastViewingsForChannel(1, null,
+        WebcastStatus.LIVE, null);
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(this.delays, is(Collections.singletonList(7000L)));
+  }
+
+  /**
+   * Tests that a call which fails due to an I/O error, without receiving a response, is retried.
+   */
+  @Test
+  public void testRetryWhenIoError() {
+    EasyMock.expect(this.mockApiClient.getSurvey(1)).andThrow(
+        new ApiClientException("I/O error.", new SocketException("Connection reset"))).andReturn(null);
+    EasyMock.replay(this.mockApiClient);
+
+    this.createRetryingApiClient(RetryPolicy.builder().build()).getSurvey(1);
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(this.delays.size(), is(1));
+  }
+
+  /**
+   * Tests that fatal errors are not retried - both a non-retryable status code, and a retryable status code with an
+   * API error code configured as fatal.
+   */
+  @Test
+  public void testRetryWhenFatalError() {
+    ApiErrorResponseException notFound = createErrorResponse(404, null, null);
+    ApiErrorResponseException fatalCode = createErrorResponse(503, null, "ChannelSuspended");
+    EasyMock.expect(this.mockApiClient.getSurvey(1)).andThrow(notFound).andThrow(fatalCode);
+    EasyMock.replay(this.mockApiClient);
+    RetryingApiClient retryingApiClient = this.createRetryingApiClient(RetryPolicy.builder().fatalErrorCodes(
+        Collections.singleton("ChannelSuspended")).build());
+
+    for (ApiErrorResponseException expected : new ApiErrorResponseException[] { notFound, fatalCode }) {
+      try {
+        retryingApiClient.getSurvey(1);
+        fail("Expected exception to be thrown.");
+      } catch (ApiErrorResponseException e) {
+        assertThat(e, sameInstance(expected));
+      }
+    }
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(this.delays.size(), is(0));
+  }
+
+  /**
+   * Tests that the last error is rethrown once the max no. of attempts have been made.
+   */
+  @Test
+  public void testRetryWhenMaxAttemptsExceeded() {
+    ApiErrorResponseException lastError = createErrorResponse(502, null, null);
+    EasyMock.expect(this.mockApiClient.getSurvey(1)).andThrow(createErrorResponse(502, null, null)).times(2)
+        .andThrow(lastError);
+    EasyMock.replay(this.mockApiClient);
+
+    try {
+      this.createRetryingApiClient(RetryPolicy.builder().maxAttempts(3).build()).getSurvey(1);
+      fail("Expected exception to be thrown.");
+    } catch (ApiErrorResponseException e) {
+      assertThat(e, sameInstance(lastError));
+    }
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(this.delays.size(), is(2));
+  }
+
+  /**
+   * Tests that a call is abandoned, without waiting, if the delay before the next attempt would exceed the time
+   * budget.
+   */
+  @Test
+  public void testRetryWhenTimeBudgetExceeded() {
+    ApiErrorResponseException error = createErrorResponse(503, "60", null);
+    EasyMock.expect(this.mockApiClient.getSurvey(1)).andThrow(error);
+    EasyMock.replay(this.mockApiClient);
+
+    try {
+      this.createRetryingApiClient(RetryPolicy.builder().timeBudgetMillis(10000).build()).getSurvey(1);
+      fail("Expected exception to be thrown.");
+    } catch (ApiErrorResponseException e) {
+      assertThat(e, sameInstance(error));
+    }
+
+    EasyMock.verify(this.mockApiClient);
+    assertThat(this.delays.size(), is(0));
+  }
+
+  private RetryingApiClient createRetryingApiClient(RetryPolicy retryPolicy) {
+    return new RetryingApiClient(this.mockApiClient, retryPolicy, this.ticker) {
+      @Override
+      protected void sleep(long delayMillis) {
+        RetryingApiClientTest.this.delays.add(delayMillis);
+        RetryingApiClientTest.this.ticker.advance(delayMillis, TimeUnit.MILLISECONDS);
+      }
+    };
+  }
+
+  private static ApiErrorResponseException createErrorResponse(int statusCode, String retryAfter, String errorCode) {
+    Map<String, List<String>> headers = retryAfter != null ? ImmutableMap.<String, List<String>> of("Retry-After",
+        Collections.singletonList(retryAfter)) : Collections.<String, List<String>> emptyMap();
+    ApiError apiError = errorCode != null ? new ApiError(errorCode, "Error.") : null;
+    return new ApiErrorResponseException(statusCode, "Error", headers, null, new byte[0], apiError);
+  }
+}
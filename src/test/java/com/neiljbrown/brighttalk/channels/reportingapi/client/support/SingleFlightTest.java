@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+
+/**
+ * Unit tests for {@link SingleFlight}.
+ * 
+ * @author Neil Brown
+ */
+public class SingleFlightTest {
+
+  private static final String KEY = "https://api.test.brighttalk.net:443/v1/survey/1";
+
+  private SingleFlight singleFlight;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    this.singleFlight = new SingleFlight();
+    this.executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Tests that concurrent calls with the same key share the result of a single executed call.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testExecuteWhenConcurrentIdenticalCalls() throws Exception {
+    final Object result = new Object();
+    final CountDownLatch leaderStarted = new CountDownLatch(1);
+    final CountDownLatch leaderRelease = new CountDownLatch(1);
+    Future<Object> leader = this.executeAsync(new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        leaderStarted.countDown();
+        leaderRelease.await();
+        return result;
+      }
+    });
+    assertThat(leaderStarted.await(5, TimeUnit.SECONDS), is(true));
+
+    List<Future<Object>> followers = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      followers.add(this.executeAsync(new Callable<Object>() {
+        @Override
+        public Object call() {
+          throw new AssertionError("Identical call should not be executed.");
+        }
+      }));
+    }
+    this.awaitSharedCount(3);
+    leaderRelease.countDown();
+
+    assertThat(leader.get(5, TimeUnit.SECONDS), sameInstance(result));
+    for (Future<Object> follower : followers) {
+      assertThat(follower.get(5, TimeUnit.SECONDS), sameInstance(result));
+    }
+    assertThat(this.singleFlight.getExecutedCount(), is(1L));
+  }
+
+  /**
+   * Tests that an exception thrown by a call is rethrown to all of the callers sharing it.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testExecuteWhenCallFails() throws Exception {
+    final ApiClientException error = new ApiClientException("Failed.");
+    final CountDownLatch leaderRelease = new CountDownLatch(1);
+    Future<Object> leader = this.executeAsync(new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        leaderRelease.await();
+        throw error;
+      }
+    });
+    this.awaitExecutedCount(1);
+    Future<Object> follower = this.executeAsync(new Callable<Object>() {
+      @Override
+      public Object call() {
+        throw new AssertionError("Identical call should not be executed.");
+      }
+    });
+    this.awaitSharedCount(1);
+    leaderRelease.countDown();
+
+    for (Future<Object> caller : new Future[] { leader, follower }) {
+      try {
+        caller.get(5, TimeUnit.SECONDS);
+        fail("Expected exception to be thrown.");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), sameInstance((Throwable) error));
+      }
+    }
+  }
+
+  /**
+   * Tests that calls which don't overlap are each executed, i.e. results aren't cached.
+   */
+  @Test
+  public void testExecuteWhenSequentialCalls() {
+    for (int i = 0; i < 2; i++) {
+      final Integer result = i;
+      assertThat(this.singleFlight.execute(KEY, new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          return result;
+        }
+      }), is(result));
+    }
+
+    assertThat(this.singleFlight.getExecutedCount(), is(2L));
+    assertThat(this.singleFlight.getSharedCount(), is(0L));
+  }
+
+  private Future<Object> executeAsync(final Callable<Object> call) {
+    return this.executor.submit(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return SingleFlightTest.this.singleFlight.execute(KEY, call);
+      }
+    });
+  }
+
+  private void awaitExecutedCount(long count) throws InterruptedException {
+    for (int i = 0; i < 500 && this.singleFlight.getExecutedCount() < count; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(this.singleFlight.getExecutedCount(), is(count));
+  }
+
+  private void awaitSharedCount(long count) throws InterruptedException {
+    for (int i = 0; i < 500 && this.singleFlight.getSharedCount() < count; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(this.singleFlight.getSharedCount(), is(count));
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.ApiClientException;
+
+/**
+ * Unit tests for {@link TokenBucketRateLimiter}.
+ * 
+ * @author Neil Brown
+ */
+public class TokenBucketRateLimiterTest {
+
+  private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private FakeTicker ticker;
+
+  @Before
+  public void setUp() {
+    this.ticker = new FakeTicker();
+  }
+
+  /**
+   * Tests that a burst of permits can be acquired without waiting, after which each permit is granted at the
+   * configured rate.
+   */
+  @Test
+  public void testAcquireWhenBurstExhausted() {
+    TokenBucketRateLimiter rateLimiter = this.createRateLimiter(10, 3, false);
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(rateLimiter.acquire(1, null), is(0L));
+    }
+    assertThat(rateLimiter.acquire(1, null), is(INTERVAL_NANOS));
+    assertThat(rateLimiter.acquire(1, null), is(INTERVAL_NANOS));
+
+    assertThat(rateLimiter.getWaitCount(), is(2L));
+    assertThat(rateLimiter.getTotalWaitNanos(), is(2 * INTERVAL_NANOS));
+  }
+
+  /**
+   * Tests that the bucket refills at the configured rate, up to the max burst, while no permits are acquired.
+   */
+  @Test
+  public void testAcquireWhenBucketRefilled() {
+    TokenBucketRateLimiter rateLimiter = this.createRateLimiter(10, 2, false);
+    rateLimiter.acquire(1, null);
+    rateLimiter.acquire(1, null);
+
+    // Advance by more than the time taken to refill the bucket
+    this.ticker.advance(10 * INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+
+    assertThat(rateLimiter.acquire(1, null), is(0L));
+    assertThat(rateLimiter.acquire(1, null), is(0L));
+    assertThat(rateLimiter.acquire(1, null), is(INTERVAL_NANOS));
+  }
+
+  /**
+   * Tests that separate API keys have separate rate limits.
+   */
+  @Test
+  public void testAcquireWhenDifferentApiKeys() {
+    TokenBucketRateLimiter rateLimiter = this.createRateLimiter(10, 1, false);
+
+    assertThat(rateLimiter.acquire(1, null), is(0L));
+    assertThat(rateLimiter.acquire(2, null), is(0L));
+    assertThat(rateLimiter.acquire(1, null), is(INTERVAL_NANOS));
+  }
+
+  /**
+   * Tests that when fair queuing is enabled, calls for different channels using the same API key share the same rate
+   * limit.
+   */
+  @Test
+  public void testAcquireWhenFairQueuing() {
+    TokenBucketRateLimiter rateLimiter = this.createRateLimiter(10, 1, true);
+
+    assertThat(rateLimiter.acquire(1, 100), is(0L));
+    assertThat(rateLimiter.acquire(1, 200), is(INTERVAL_NANOS));
+    assertThat(rateLimiter.acquire(1, 100), is(INTERVAL_NANOS));
+  }
+
+  /**
+   * Tests that when fair queuing is enabled, a channel with many calls waiting for a permit can't starve another
+   * channel - a call for another channel waits for at most one of the queued calls for the busy channel, rather than
+   * all of them.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testAcquireWhenFairQueuingInterleavesChannels() throws Exception {
+    // Uses the system ticker, and real waits, as calls for the busy channel must be queued concurrently
+    final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(10, 1, true);
+    final List<Integer> grantedChannels = Collections.synchronizedList(new ArrayList<Integer>());
+    List<Thread> busyChannelThreads = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      busyChannelThreads.add(startAcquire(rateLimiter, 100, grantedChannels));
+    }
+    // Wait until every call for the busy channel is waiting, either for a permit or in the channel's queue
+    for (Thread thread : busyChannelThreads) {
+      while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING
+          && thread.getState() != Thread.State.TERMINATED) {
+        Thread.sleep(1);
+      }
+    }
+
+    Thread otherChannelThread = startAcquire(rateLimiter, 200, grantedChannels);
+    otherChannelThread.join(5000);
+    for (Thread thread : busyChannelThreads) {
+      thread.join(5000);
+    }
+
+    assertThat(grantedChannels.size(), is(6));
+    // At most one busy channel call was granted a permit before the other's was queued, and one while it was queued
+    assertThat(grantedChannels.indexOf(200), lessThanOrEqualTo(2));
+  }
+
+  /**
+   * Tests that the queue for a channel is removed once no calls are waiting in it, including when a waiting call is
+   * interrupted, so that the no. of queues doesn't grow with the no. of channels accessed.
+   */
+  @Test
+  public void testAcquireWhenFairQueuingRemovesIdleChannelQueues() {
+    TokenBucketRateLimiter rateLimiter = this.createRateLimiter(10, 1, true);
+    for (int channel = 0; channel < 100; channel++) {
+      rateLimiter.acquire(1, channel);
+    }
+    assertThat(rateLimiter.getChannelQueueCount(), is(0));
+
+    Thread.currentThread().interrupt();
+    try {
+      rateLimiter.acquire(1, 100);
+      fail("Expected ApiClientException.");
+    } catch (ApiClientException e) {
+      // Expected
+    } finally {
+      Thread.interrupted();
+    }
+    assertThat(rateLimiter.getChannelQueueCount(), is(0));
+  }
+
+  private static Thread startAcquire(final TokenBucketRateLimiter rateLimiter, final int channel,
+      final List<Integer> grantedChannels) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        rateLimiter.acquire(1, channel);
+        grantedChannels.add(channel);
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private TokenBucketRateLimiter createRateLimiter(double permitsPerSecond, int burst, boolean fairQueuing) {
+    return new TokenBucketRateLimiter(permitsPerSecond, burst, fairQueuing, this.ticker) {
+      @Override
+      protected void sleep(long delayNanos) {
+        TokenBucketRateLimiterTest.this.ticker.advance(delayNanos, TimeUnit.NANOSECONDS);
+      }
+    };
+  }
+}
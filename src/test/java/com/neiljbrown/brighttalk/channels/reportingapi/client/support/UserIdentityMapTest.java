@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014-present the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.neiljbrown.brighttalk.channels.reportingapi.client.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.neiljbrown.brighttalk.channels.reportingapi.client.resource.User;
+
+/**
+ * Unit tests for {@link UserIdentityMap}.
+ * 
+ * @author Neil Brown
+ */
+public class UserIdentityMapTest {
+
+  /**
+   * Tests that {@link UserIdentityMap#resolve(User)} returns the existing instance of a user which is equal to the
+   * supplied user, and that the user can be looked up by id.
+   */
+  @Test
+  public void testResolveEqualUsers() {
+    UserIdentityMap userIdentityMap = new UserIdentityMap(10);
+    User user = createUser(1, "United Kingdom");
+
+    assertThat(userIdentityMap.resolve(user), sameInstance(user));
+    assertThat(userIdentityMap.resolve(createUser(1, "United Kingdom")), sameInstance(user));
+    assertThat(userIdentityMap.getHitCount(), is(1L));
+    assertThat(userIdentityMap.size(), is(1));
+    assertThat(userIdentityMap.get(1), sameInstance(user));
+    assertThat(userIdentityMap.get(2), nullValue());
+  }
+
+  /**
+   * Tests that {@link UserIdentityMap#resolve(User)} returns a supplied user which has the same id as an existing
+   * user, but isn't equal to it, and that it replaces the existing user in the map.
+   */
+  @Test
+  public void testResolveChangedUser() {
+    UserIdentityMap userIdentityMap = new UserIdentityMap(10);
+    User user = createUser(1, "United Kingdom");
+    userIdentityMap.resolve(user);
+    User changedUser = createUser(1, "Germany");
+
+    assertThat(userIdentityMap.resolve(changedUser), sameInstance(changedUser));
+    assertThat(userIdentityMap.resolve(changedUser), not(sameInstance(user)));
+    assertThat(userIdentityMap.get(1), sameInstance(changedUser));
+    assertThat(userIdentityMap.size(), is(1));
+  }
+
+  /**
+   * Tests that when the map is full, resolving a new user evicts the least recently used user. (A map of this size
+   * isn't partitioned, so eviction is in strict least recently used order).
+   */
+  @Test
+  public void testResolveWhenFull() {
+    UserIdentityMap userIdentityMap = new UserIdentityMap(2);
+    User user1 = createUser(1, "United Kingdom");
+    User user2 = createUser(2, "United Kingdom");
+    userIdentityMap.resolve(user1);
+    userIdentityMap.resolve(user2);
+    // Use user 1, making user 2 the least recently used
+    userIdentityMap.resolve(createUser(1, "United Kingdom"));
+
+    userIdentityMap.resolve(createUser(3, "United Kingdom"));
+
+    assertThat(userIdentityMap.size(), is(2));
+    assertThat(userIdentityMap.get(1), sameInstance(user1));
+    assertThat(userIdentityMap.get(2), nullValue());
+  }
+
+  /**
+   * Tests resolving users concurrently from multiple threads. Equal users should be resolved to an instance held in
+   * the map, which should remain within its max no. of users.
+   * 
+   * @throws Exception If an unexpected error occurs.
+   */
+  @Test
+  public void testResolveConcurrently() throws Exception {
+    final UserIdentityMap userIdentityMap = new UserIdentityMap(100);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 4; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (int id = 0; id < 1000; id++) {
+            userIdentityMap.resolve(createUser(id % 200, "United Kingdom"));
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue("Expected users to be resolved.", executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    assertThat(userIdentityMap.size(), lessThanOrEqualTo(100));
+    User user = createUser(199, "United Kingdom");
+    assertThat(userIdentityMap.resolve(user), is(user));
+  }
+
+  /**
+   * Tests that {@link UserIdentityMap#resolve(User)} returns null for a null user.
+   */
+  @Test
+  public void testResolveNull() {
+    UserIdentityMap userIdentityMap = new UserIdentityMap(10);
+
+    assertThat(userIdentityMap.resolve(null), nullValue());
+    assertThat(userIdentityMap.size(), is(0));
+  }
+
+  private static User createUser(int id, String country) {
+    return new User(id, "user" + id + "@brighttalk.com", null, null, "First", "Last", "Europe/London", null, null,
+        null, "BrightTALK", null, null, country, null);
+  }
+}